@@ -4,13 +4,12 @@
 package com.azure.android.communication.chat;
 
 import com.azure.android.communication.chat.implementation.AzureCommunicationChatServiceImplBuilder;
-import com.azure.android.communication.common.CommunicationAccessToken;
+import com.azure.android.communication.chat.implementation.CommunicationTokenCredentialPolicy;
 import com.azure.android.communication.common.CommunicationTokenCredential;
 import com.azure.android.core.http.HttpClient;
 import com.azure.android.core.http.HttpPipeline;
 import com.azure.android.core.http.HttpPipelineBuilder;
 import com.azure.android.core.http.HttpPipelinePolicy;
-import com.azure.android.core.http.HttpRequest;
 import com.azure.android.core.http.policy.CookiePolicy;
 import com.azure.android.core.http.policy.HttpLogOptions;
 import com.azure.android.core.http.policy.HttpLoggingPolicy;
@@ -20,10 +19,8 @@ import com.azure.android.core.logging.ClientLogger;
 import com.azure.android.core.rest.annotation.ServiceClientBuilder;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-
-import java9.util.concurrent.CompletableFuture;
 
 import static com.azure.android.communication.chat.BuildConfig.LIBRARY_PACKAGE_NAME;
 import static com.azure.android.communication.chat.BuildConfig.VERSION_NAME;
@@ -166,6 +163,34 @@ public final class ChatClientBuilder {
         return this;
     }
 
+    /**
+     * Opens a connection to the {@link #endpoint(String) endpoint} in the background, so that the first calls of the
+     * clients built afterwards don't wait for the DNS lookup and the TCP and TLS handshakes.
+     *
+     * If no {@link HttpClient} or {@link HttpPipeline} is set, the default {@link HttpClient} is created now and
+     * used by the clients built afterwards, so they find the connection in its pool.
+     *
+     * @throws NullPointerException if endpoint is not set.
+     * @return The updated {@link ChatClientBuilder} object.
+     */
+    public ChatClientBuilder prewarm() {
+        if (this.endpoint == null) {
+            throw logger.logExceptionAsError(new NullPointerException("Endpoint is required."));
+        }
+
+        final HttpClient client;
+        if (this.httpPipeline != null) {
+            client = this.httpPipeline.getHttpClient();
+        } else {
+            if (this.httpClient == null) {
+                this.httpClient = HttpClient.createDefault();
+            }
+            client = this.httpClient;
+        }
+        client.prewarm(Collections.singletonList(this.endpoint));
+        return this;
+    }
+
     /**
      * Create synchronous client applying CommunicationTokenCredential, UserAgentPolicy,
      * RetryPolicy, and CookiePolicy.
@@ -203,23 +228,8 @@ public final class ChatClientBuilder {
                             "CommunicationTokenCredential is required."));
             }
 
-            HttpPipelinePolicy authorizationPolicy = chain -> {
-                final CompletableFuture<CommunicationAccessToken> tokenFuture
-                    = this.communicationTokenCredential.getToken();
-                final CommunicationAccessToken token;
-                try {
-                    token = tokenFuture.get();
-                } catch (ExecutionException e) {
-                    chain.completedError(e);
-                    return;
-                } catch (InterruptedException e) {
-                    chain.completedError(e);
-                    return;
-                }
-                HttpRequest httpRequest = chain.getRequest();
-                httpRequest.getHeaders().put("Authorization", "Bearer " + token.getToken());
-                chain.processNextPolicy(httpRequest);
-            };
+            HttpPipelinePolicy authorizationPolicy
+                = new CommunicationTokenCredentialPolicy(this.communicationTokenCredential);
 
             pipeline = createHttpPipeline(this.httpClient,
                 authorizationPolicy,
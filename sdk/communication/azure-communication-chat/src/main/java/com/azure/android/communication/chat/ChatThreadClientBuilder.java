@@ -5,13 +5,12 @@ package com.azure.android.communication.chat;
 
 import com.azure.android.communication.chat.implementation.AzureCommunicationChatServiceImpl;
 import com.azure.android.communication.chat.implementation.AzureCommunicationChatServiceImplBuilder;
-import com.azure.android.communication.common.CommunicationAccessToken;
+import com.azure.android.communication.chat.implementation.CommunicationTokenCredentialPolicy;
 import com.azure.android.communication.common.CommunicationTokenCredential;
 import com.azure.android.core.http.HttpClient;
 import com.azure.android.core.http.HttpPipeline;
 import com.azure.android.core.http.HttpPipelineBuilder;
 import com.azure.android.core.http.HttpPipelinePolicy;
-import com.azure.android.core.http.HttpRequest;
 import com.azure.android.core.http.policy.CookiePolicy;
 import com.azure.android.core.http.policy.HttpLogOptions;
 import com.azure.android.core.http.policy.HttpLoggingPolicy;
@@ -22,9 +21,6 @@ import com.azure.android.core.rest.annotation.ServiceClientBuilder;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-
-import java9.util.concurrent.CompletableFuture;
 
 import static com.azure.android.communication.chat.BuildConfig.LIBRARY_PACKAGE_NAME;
 import static com.azure.android.communication.chat.BuildConfig.VERSION_NAME;
@@ -224,23 +220,8 @@ public final class ChatThreadClientBuilder {
                             "CommunicationTokenCredential is required."));
             }
 
-            HttpPipelinePolicy authorizationPolicy = chain -> {
-                final CompletableFuture<CommunicationAccessToken> tokenFuture
-                    = this.communicationTokenCredential.getToken();
-                final CommunicationAccessToken token;
-                try {
-                    token = tokenFuture.get();
-                } catch (ExecutionException e) {
-                    chain.completedError(e);
-                    return;
-                } catch (InterruptedException e) {
-                    chain.completedError(e);
-                    return;
-                }
-                HttpRequest httpRequest = chain.getRequest();
-                httpRequest.getHeaders().put("Authorization", "Bearer " + token.getToken());
-                chain.processNextPolicy(httpRequest);
-            };
+            HttpPipelinePolicy authorizationPolicy
+                = new CommunicationTokenCredentialPolicy(this.communicationTokenCredential);
 
             pipeline = createHttpPipeline(this.httpClient,
                 authorizationPolicy,
@@ -0,0 +1,107 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.communication.chat.implementation;
+
+import com.azure.android.communication.common.CommunicationAccessToken;
+import com.azure.android.communication.common.CommunicationTokenCredential;
+import com.azure.android.core.http.HttpPipelinePolicy;
+import com.azure.android.core.http.HttpPipelinePolicyChain;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.NextPolicyCallback;
+import com.azure.android.core.http.PolicyCompleter;
+import com.azure.android.core.logging.ClientLogger;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import java9.util.concurrent.CompletableFuture;
+import java9.util.concurrent.CompletionException;
+
+/**
+ * The pipeline policy that authorizes requests with the token from a {@link CommunicationTokenCredential}.
+ *
+ * <p>
+ * When the credential already holds a valid token, the request is authorized and proceeds on the current
+ * thread. Otherwise the policy returns without waiting, and the pipeline resumes on a dispatcher thread once
+ * the token retrieval completes, so no dispatcher thread is parked while the credential refreshes the token.
+ * </p>
+ */
+public final class CommunicationTokenCredentialPolicy implements HttpPipelinePolicy {
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String BEARER = "Bearer";
+
+    private final ClientLogger logger = new ClientLogger(CommunicationTokenCredentialPolicy.class);
+    private final CommunicationTokenCredential credential;
+
+    /**
+     * Creates CommunicationTokenCredentialPolicy.
+     *
+     * @param credential The credential to retrieve the token from.
+     * @throws NullPointerException if {@code credential} is null.
+     */
+    public CommunicationTokenCredentialPolicy(CommunicationTokenCredential credential) {
+        if (credential == null) {
+            throw logger.logExceptionAsError(new NullPointerException("'credential' is required."));
+        }
+        this.credential = credential;
+    }
+
+    @Override
+    public void process(HttpPipelinePolicyChain chain) {
+        final CompletableFuture<CommunicationAccessToken> tokenFuture;
+        try {
+            tokenFuture = this.credential.getToken();
+        } catch (RuntimeException e) {
+            chain.completedError(e);
+            return;
+        }
+
+        if (tokenFuture.isDone() && !tokenFuture.isCompletedExceptionally()) {
+            // Fast path, the cached token is valid.
+            final HttpRequest httpRequest = chain.getRequest();
+            authorizeRequest(httpRequest, tokenFuture.join());
+            chain.processNextPolicy(httpRequest);
+            return;
+        }
+
+        tokenFuture.whenComplete((token, error) -> {
+            if (error != null) {
+                chain.completedError(unwrap(error));
+                return;
+            }
+            final HttpRequest httpRequest = chain.getRequest();
+            authorizeRequest(httpRequest, token);
+            // The future may complete on a thread owned by the credential; hand the rest of the
+            // pipeline run back to the dispatcher.
+            chain.processNextPolicy(httpRequest, PassThroughCallback.INSTANCE, 0, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private static void authorizeRequest(HttpRequest httpRequest, CommunicationAccessToken token) {
+        httpRequest.getHeaders().put(AUTHORIZATION_HEADER, BEARER + " " + token.getToken());
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if ((error instanceof CompletionException || error instanceof CancellationException)
+            && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    private static final class PassThroughCallback implements NextPolicyCallback {
+        private static final PassThroughCallback INSTANCE = new PassThroughCallback();
+
+        @Override
+        public PolicyCompleter.CompletionState onSuccess(HttpResponse response, PolicyCompleter completer) {
+            return completer.completed(response);
+        }
+
+        @Override
+        public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
+            return completer.completedError(error);
+        }
+    }
+}
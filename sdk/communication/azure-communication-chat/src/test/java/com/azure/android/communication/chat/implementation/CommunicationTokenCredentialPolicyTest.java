@@ -0,0 +1,183 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.communication.chat.implementation;
+
+import com.azure.android.communication.common.CommunicationTokenCredential;
+import com.azure.android.communication.common.CommunicationTokenRefreshOptions;
+import com.azure.android.core.http.HttpCallDispatcher;
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpClient;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipeline;
+import com.azure.android.core.http.HttpPipelineBuilder;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.test.http.MockHttpResponse;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommunicationTokenCredentialPolicyTest {
+    private static final String URL = "https://localhost/";
+
+    private ExecutorService dispatcherExecutor;
+    private RecordingHttpClient httpClient;
+
+    @BeforeEach
+    public void setup() {
+        // A single dispatcher thread, so a parked thread stalls every other call.
+        this.dispatcherExecutor = Executors.newSingleThreadExecutor();
+        this.httpClient = new RecordingHttpClient(new HttpCallDispatcher(this.dispatcherExecutor));
+    }
+
+    @AfterEach
+    public void teardown() {
+        this.dispatcherExecutor.shutdownNow();
+    }
+
+    @Test
+    public void dispatcherThreadIsNotBlockedDuringTokenRefresh() throws InterruptedException {
+        final String rawToken = generateRawToken();
+        final CountDownLatch refreshGate = new CountDownLatch(1);
+        final CommunicationTokenCredential credential = new CommunicationTokenCredential(
+            new CommunicationTokenRefreshOptions(() -> {
+                refreshGate.await(30, TimeUnit.SECONDS);
+                return rawToken;
+            }, false));
+
+        final HttpPipeline authorizedPipeline = new HttpPipelineBuilder()
+            .httpClient(this.httpClient)
+            .policies(new CommunicationTokenCredentialPolicy(credential))
+            .build();
+        final HttpPipeline plainPipeline = new HttpPipelineBuilder()
+            .httpClient(this.httpClient)
+            .build();
+
+        final ResultCallback authorizedCall = new ResultCallback();
+        authorizedPipeline.send(new HttpRequest(HttpMethod.GET, URL), RequestContext.NONE,
+            CancellationToken.NONE, authorizedCall);
+
+        // The token refresh is still pending; another call on the same dispatcher must be able to run.
+        final ResultCallback plainCall = new ResultCallback();
+        plainPipeline.send(new HttpRequest(HttpMethod.GET, URL), RequestContext.NONE,
+            CancellationToken.NONE, plainCall);
+        assertTrue(plainCall.latch.await(10, TimeUnit.SECONDS),
+            "The dispatcher thread was blocked by the pending token refresh.");
+        assertEquals(1, authorizedCall.latch.getCount());
+
+        refreshGate.countDown();
+        assertTrue(authorizedCall.latch.await(10, TimeUnit.SECONDS));
+        assertNotNull(authorizedCall.response.get());
+        assertEquals("Bearer " + rawToken,
+            authorizedCall.response.get().getRequest().getHeaders().getValue("Authorization"));
+    }
+
+    @Test
+    public void cachedTokenIsApplied() throws InterruptedException {
+        final String rawToken = generateRawToken();
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(this.httpClient)
+            .policies(new CommunicationTokenCredentialPolicy(new CommunicationTokenCredential(rawToken)))
+            .build();
+
+        for (int i = 0; i < 2; i++) {
+            final ResultCallback call = new ResultCallback();
+            pipeline.send(new HttpRequest(HttpMethod.GET, URL), RequestContext.NONE,
+                CancellationToken.NONE, call);
+            assertTrue(call.latch.await(10, TimeUnit.SECONDS));
+            assertNotNull(call.response.get());
+        }
+
+        assertEquals(2, this.httpClient.authorizations.size());
+        for (String authorization : this.httpClient.authorizations) {
+            assertEquals("Bearer " + rawToken, authorization);
+        }
+    }
+
+    @Test
+    public void tokenRefreshErrorIsPropagated() throws InterruptedException {
+        final CommunicationTokenCredential credential = new CommunicationTokenCredential(
+            new CommunicationTokenRefreshOptions(() -> {
+                throw new IllegalStateException("refresh failed");
+            }, false));
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(this.httpClient)
+            .policies(new CommunicationTokenCredentialPolicy(credential))
+            .build();
+
+        final ResultCallback call = new ResultCallback();
+        pipeline.send(new HttpRequest(HttpMethod.GET, URL), RequestContext.NONE, CancellationToken.NONE, call);
+
+        assertTrue(call.latch.await(10, TimeUnit.SECONDS));
+        assertNotNull(call.error.get());
+        assertTrue(this.httpClient.authorizations.isEmpty());
+    }
+
+    private static String generateRawToken() {
+        final long expSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600;
+        final JWTClaimsSet claims = new JWTClaimsSet.Builder()
+            .claim("id", "communication:resourceId.userIdentity")
+            .claim("exp", expSeconds)
+            .build();
+        return new PlainJWT(claims).serialize();
+    }
+
+    private static final class RecordingHttpClient implements HttpClient {
+        private final HttpCallDispatcher httpCallDispatcher;
+        private final Queue<String> authorizations = new ConcurrentLinkedQueue<>();
+
+        private RecordingHttpClient(HttpCallDispatcher httpCallDispatcher) {
+            this.httpCallDispatcher = httpCallDispatcher;
+        }
+
+        @Override
+        public HttpCallDispatcher getHttpCallDispatcher() {
+            return this.httpCallDispatcher;
+        }
+
+        @Override
+        public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+            final String authorization = httpRequest.getHeaders().getValue("Authorization");
+            if (authorization != null) {
+                this.authorizations.add(authorization);
+            }
+            httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200));
+        }
+    }
+
+    private static final class ResultCallback implements HttpCallback {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final AtomicReference<HttpResponse> response = new AtomicReference<>();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        @Override
+        public void onSuccess(HttpResponse response) {
+            this.response.set(response);
+            this.latch.countDown();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error.set(error);
+            this.latch.countDown();
+        }
+    }
+}
@@ -11,6 +11,8 @@ import com.azure.android.core.http.HttpRequest;
 import com.azure.android.core.http.HttpHeader;
 import com.azure.android.core.http.HttpMethod;
 import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.RequestDeadline;
+import com.azure.android.core.http.implementation.HttpClientProviders;
 import com.azure.android.core.util.CancellationToken;
 import com.azure.android.core.logging.ClientLogger;
 
@@ -21,12 +23,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,9 +43,13 @@ class HttpUrlConnectionAsyncHttpClient implements HttpClient {
         = Pattern.compile("charset=([\\S]+)\\b", Pattern.CASE_INSENSITIVE);
 
     private final HttpCallDispatcher httpCallDispatcher;
+    // The key of the shared dispatcher the client references, null if the dispatcher is its own.
+    private final String sharedTransportKey;
+    private final AtomicBoolean closed = new AtomicBoolean();
 
-    HttpUrlConnectionAsyncHttpClient(HttpCallDispatcher httpCallDispatcher) {
+    HttpUrlConnectionAsyncHttpClient(HttpCallDispatcher httpCallDispatcher, String sharedTransportKey) {
         this.httpCallDispatcher = httpCallDispatcher;
+        this.sharedTransportKey = sharedTransportKey;
     }
 
     @Override
@@ -47,6 +57,64 @@ class HttpUrlConnectionAsyncHttpClient implements HttpClient {
         return this.httpCallDispatcher;
     }
 
+    @Override
+    public void close() {
+        if (this.sharedTransportKey != null && this.closed.compareAndSet(false, true)) {
+            HttpClientProviders.releaseSharedTransport(this.sharedTransportKey);
+        }
+    }
+
+    @Override
+    public void prewarm(List<String> endpoints) {
+        for (String endpoint : endpoints) {
+            final HttpRequest prewarmRequest;
+            try {
+                final URL endpointUrl = new URL(endpoint);
+                prewarmRequest = new HttpRequest(HttpMethod.HEAD,
+                    new URL(endpointUrl.getProtocol(), endpointUrl.getHost(), endpointUrl.getPort(), "/").toString());
+            } catch (MalformedURLException | RuntimeException e) {
+                logger.warning("Skipping the prewarm of the invalid endpoint '{}'.", endpoint, e);
+                continue;
+            }
+            this.httpCallDispatcher.enqueue(new HttpCallDispatcher.HttpCallFunction() {
+                @Override
+                public void apply(HttpRequest request, HttpCallback httpCallback) {
+                    prewarmIntern(request, httpCallback);
+                }
+            }, prewarmRequest, CancellationToken.NONE, new HttpCallback() {
+                @Override
+                public void onSuccess(HttpResponse response) {
+                    response.close();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    logger.verbose("Failed to prewarm the connection to '{}'.", endpoint, error);
+                }
+            });
+        }
+    }
+
+    private void prewarmIntern(HttpRequest httpRequest, HttpCallback httpCallback) {
+        final int statusCode;
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) httpRequest.getUrl().openConnection();
+            connection.setRequestMethod(HttpMethod.HEAD.toString());
+            statusCode = connection.getResponseCode();
+            // Closing the stream rather than disconnecting hands the connection to the keep-alive cache, where the
+            // next call to the host picks it up.
+            closeQuietly(innerInputStream(connection));
+        } catch (IOException | RuntimeException e) {
+            httpCallback.onError(e);
+            return;
+        }
+        httpCallback.onSuccess(new UrlConnectionResponse(logger,
+            httpRequest,
+            statusCode,
+            new HttpHeaders(),
+            new ByteArrayInputStream(new byte[0])));
+    }
+
     @Override
     public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
         if (httpRequest.getTags().containsKey("prefer-running-http-in-calling-thread")) {
@@ -78,6 +146,14 @@ class HttpUrlConnectionAsyncHttpClient implements HttpClient {
 
         connection.setDoInput(true);
 
+        final RequestDeadline deadline = RequestDeadline.fromRequest(httpRequest);
+        if (deadline != null) {
+            // Don't let the connection wait past the deadline of the call, 0 means no timeout.
+            connection.setConnectTimeout((int) deadline.boundTimeout(connection.getConnectTimeout(),
+                TimeUnit.MILLISECONDS));
+            connection.setReadTimeout((int) deadline.boundTimeout(connection.getReadTimeout(), TimeUnit.MILLISECONDS));
+        }
+
         Throwable error = null;
         HttpResponse httpResponse = null;
         boolean hasResponseContent = false;
@@ -103,6 +179,9 @@ class HttpUrlConnectionAsyncHttpClient implements HttpClient {
                     final byte[] requestContent = httpRequest.getBody();
                     if (requestContent != null) {
                         connection.setDoOutput(true);
+                        // Stream the content with its known length instead of letting HttpURLConnection buffer it
+                        // to compute the Content-Length.
+                        connection.setFixedLengthStreamingMode(requestContent.length);
                         final OutputStream requestContentStream = connection.getOutputStream();
                         try {
                             requestContentStream.write(requestContent);
@@ -148,9 +227,14 @@ class HttpUrlConnectionAsyncHttpClient implements HttpClient {
                 && statusCode >= HttpURLConnection.HTTP_OK
                 && httpRequest.getHttpMethod() != HttpMethod.HEAD;
 
-            final InputStream responseContentStream = hasResponseContent
-                ? new ResponseContentStream(connection)
-                : new ByteArrayInputStream(new byte[0]);
+            final InputStream responseContentStream;
+            if (hasResponseContent) {
+                responseContentStream = new ResponseContentStream(connection);
+            } else {
+                // There is no content to read, closing the stream hands the connection to the keep-alive cache.
+                closeQuietly(innerInputStream(connection));
+                responseContentStream = new ByteArrayInputStream(new byte[0]);
+            }
 
             httpResponse = new UrlConnectionResponse(logger,
                 httpRequest,
@@ -160,7 +244,7 @@ class HttpUrlConnectionAsyncHttpClient implements HttpClient {
         } catch (Throwable e) {
             error = e;
         } finally {
-            if (error != null || !hasResponseContent) {
+            if (error != null) {
                 connection.disconnect();
             }
         }
@@ -173,8 +257,36 @@ class HttpUrlConnectionAsyncHttpClient implements HttpClient {
         }
     }
 
+    private static InputStream innerInputStream(HttpURLConnection connection) {
+        try {
+            // try reading from input-stream..
+            return connection.getInputStream();
+        } catch (IOException ioe) {
+            // input-stream read can throw IOE for responses with error HTTP code (e.g. 400), try error-stream..
+            return connection.getErrorStream();
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+                // The connection is not reused.
+            }
+        }
+    }
+
+    /**
+     * The response content, success or error. Closing the stream reads the unread content, up to
+     * {@link #DRAIN_LIMIT_BYTES}, so the connection returns to the keep-alive cache; a connection with more content
+     * left is disconnected, reading the content would cost more than a new connection.
+     */
     private static class ResponseContentStream extends FilterInputStream {
+        private static final int DRAIN_LIMIT_BYTES = 16 * 1024;
+
         private final HttpURLConnection innerConnection;
+        private boolean closed;
 
         ResponseContentStream(HttpURLConnection connection) {
             super(innerInputStream(connection));
@@ -182,19 +294,53 @@ class HttpUrlConnectionAsyncHttpClient implements HttpClient {
         }
 
         @Override
-        public void close() throws IOException {
-            super.close();
-            this.innerConnection.disconnect();
+        public int read() throws IOException {
+            return this.in == null ? -1 : super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return this.in == null ? -1 : super.read(b, off, len);
         }
 
-        private static InputStream innerInputStream(HttpURLConnection connection) {
+        @Override
+        public void close() throws IOException {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            if (this.in == null) {
+                this.innerConnection.disconnect();
+                return;
+            }
+            boolean drained = false;
             try {
-                // try reading from input-stream..
-                return connection.getInputStream();
-            } catch (IOException ioe) {
-                // input-stream read can throw IOE for responses with error HTTP code (e.g. 400), try error-stream..
-                return connection.getErrorStream();
+                drained = drain();
+            } catch (IOException ignored) {
+                // The connection is broken, it is disconnected below.
+            } finally {
+                try {
+                    super.close();
+                } finally {
+                    if (!drained) {
+                        this.innerConnection.disconnect();
+                    }
+                }
+            }
+        }
+
+        private boolean drain() throws IOException {
+            final byte[] buffer = new byte[1024];
+            int remaining = DRAIN_LIMIT_BYTES;
+            while (remaining > 0) {
+                final int read = this.in.read(buffer, 0, Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    return true;
+                }
+                remaining -= read;
             }
+            // The limit is read, the content is drained only if nothing is left.
+            return this.in.read() == -1;
         }
     }
 
@@ -5,13 +5,32 @@ package com.azure.android.core.http.httpurlconnection;
 
 import com.azure.android.core.http.HttpCallDispatcher;
 import com.azure.android.core.http.HttpClient;
+import com.azure.android.core.http.implementation.HttpClientProviders;
 
 /**
  * Builder class responsible for creating instances of {@link com.azure.android.core.http.HttpClient}
  * backed by HttpUrlConnection.
  */
 public class HttpUrlConnectionAsyncHttpClientBuilder {
+    // The configuration of the shared transport, the default HttpCallDispatcher.
+    static final String SHARED_TRANSPORT_KEY = "httpurlconnection:default";
+    private static final HttpClientProviders.SharedTransportFactory<HttpCallDispatcher> SHARED_TRANSPORT_FACTORY
+        = new HttpClientProviders.SharedTransportFactory<HttpCallDispatcher>() {
+            @Override
+            public HttpCallDispatcher create() {
+                return new HttpCallDispatcher();
+            }
+
+            @Override
+            public void dispose(HttpCallDispatcher httpCallDispatcher) {
+                // The dispatcher stops its threads once the calls in flight completed; HttpURLConnection pools the
+                // connections process-wide.
+                httpCallDispatcher.shutdown();
+            }
+        };
+
     private HttpCallDispatcher httpCallDispatcher;
+    private boolean sharedTransportEnabled = true;
 
     /**
      * Creates HttpUrlConnectionAsyncHttpClientBuilder.
@@ -34,6 +53,18 @@ public class HttpUrlConnectionAsyncHttpClientBuilder {
         return this;
     }
 
+    /**
+     * Sets whether the clients built without an {@link HttpCallDispatcher} share a single dispatcher, and its limit on
+     * running calls, with the other such clients of the process, which is the default.
+     *
+     * @param sharedTransportEnabled false to give each built client its own dispatcher.
+     * @return The updated HttpUrlConnectionAsyncHttpClientBuilder object.
+     */
+    public HttpUrlConnectionAsyncHttpClientBuilder setSharedTransportEnabled(boolean sharedTransportEnabled) {
+        this.sharedTransportEnabled = sharedTransportEnabled;
+        return this;
+    }
+
     /**
      * Creates a new HttpUrlConnection-backed {@link com.azure.android.core.http.HttpClient} instance on every call,
      * using the configuration set in the builder at the time of the build method call.
@@ -41,9 +72,15 @@ public class HttpUrlConnectionAsyncHttpClientBuilder {
      * @return A new HttpUrlConnection-backed {@link com.azure.android.core.http.HttpClient} instance.
      */
     public HttpClient build() {
+        if (this.httpCallDispatcher == null && this.sharedTransportEnabled) {
+            return new HttpUrlConnectionAsyncHttpClient(
+                HttpClientProviders.acquireSharedTransport(SHARED_TRANSPORT_KEY, SHARED_TRANSPORT_FACTORY),
+                SHARED_TRANSPORT_KEY);
+        }
+
         final HttpCallDispatcher httpCallDispatcher = this.httpCallDispatcher == null
             ? new HttpCallDispatcher()
             : this.httpCallDispatcher;
-        return new HttpUrlConnectionAsyncHttpClient(httpCallDispatcher);
+        return new HttpUrlConnectionAsyncHttpClient(httpCallDispatcher, null);
     }
 }
@@ -0,0 +1,125 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.httpurlconnection;
+
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipeline;
+import com.azure.android.core.http.HttpPipelineBuilder;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.policy.CompressionOptions;
+import com.azure.android.core.http.policy.CompressionPolicy;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies the compression negotiation against WireMock, whose Jetty server gzips the responses of requests that
+ * accept it. {@link java.net.HttpURLConnection} hands the encoded body over as is, so the policy decodes it.
+ */
+public class CompressionWithHttpUrlConnectionTests {
+    private static final String MESSAGES_PATH = "/messages";
+    private static final String MESSAGES = createMessages();
+
+    private static WireMockServer server;
+
+    @BeforeAll
+    public static void startWireMockServer() {
+        server = new WireMockServer(WireMockConfiguration.options().dynamicPort());
+        server.stubFor(get(MESSAGES_PATH).willReturn(aResponse().withStatus(200)
+            .withHeader("Content-Type", "application/json")
+            .withBody(MESSAGES)));
+        server.stubFor(post(MESSAGES_PATH).willReturn(aResponse().withStatus(201)));
+        server.start();
+    }
+
+    @AfterAll
+    public static void shutdownWireMockServer() {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void gzipResponseIsDecoded() {
+        final HttpResponse response = send(new CompressionPolicy(), new HttpRequest(HttpMethod.GET, url()));
+
+        assertEquals(200, response.getStatusCode());
+        assertNull(response.getHeaderValue("Content-Encoding"));
+        assertEquals(MESSAGES, response.getBodyAsString());
+    }
+
+    @Test
+    public void requestBodyIsCompressed() {
+        final CompressionPolicy policy = new CompressionPolicy(new CompressionOptions()
+            .setRequestCompressionHosts("localhost"));
+        final HttpResponse response = send(policy, new HttpRequest(HttpMethod.POST, url()).setBody(MESSAGES));
+
+        assertEquals(201, response.getStatusCode());
+        // WireMock decodes gzip request bodies before matching them.
+        assertEquals(1, server.countRequestsMatching(postRequestedFor(urlEqualTo(MESSAGES_PATH))
+            .withHeader("Content-Encoding", equalTo("gzip"))
+            .withRequestBody(equalTo(MESSAGES)).build()).getCount());
+    }
+
+    private static HttpResponse send(CompressionPolicy policy, HttpRequest request) {
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new HttpUrlConnectionAsyncHttpClientBuilder().build())
+            .policies(policy)
+            .build();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final HttpResponse[] response = new HttpResponse[1];
+        pipeline.send(request, RequestContext.NONE, CancellationToken.NONE, new HttpCallback() {
+            @Override
+            public void onSuccess(HttpResponse httpResponse) {
+                response[0] = httpResponse;
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                latch.countDown();
+            }
+        });
+        try {
+            assertTrue(latch.await(30, TimeUnit.SECONDS), "The call did not complete.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return response[0];
+    }
+
+    private static String url() {
+        return "http://localhost:" + server.port() + MESSAGES_PATH;
+    }
+
+    private static String createMessages() {
+        final StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < 200; i++) {
+            builder.append(i == 0 ? "" : ",")
+                .append("{\"id\":\"").append(1600000000000L + i)
+                .append("\",\"content\":{\"message\":\"Message number ").append(i).append("\"}}");
+        }
+        return builder.append(']').toString();
+    }
+}
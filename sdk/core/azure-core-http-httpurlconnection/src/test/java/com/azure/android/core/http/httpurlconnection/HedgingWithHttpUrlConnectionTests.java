@@ -0,0 +1,152 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.httpurlconnection;
+
+import com.azure.android.core.http.HttpCallDispatcher;
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpClient;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipeline;
+import com.azure.android.core.http.HttpPipelineBuilder;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.policy.HedgingOptions;
+import com.azure.android.core.http.policy.HedgingPolicy;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.threeten.bp.Duration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies hedging with the HttpUrlConnection client, which runs each attempt on a dispatcher thread.
+ */
+public class HedgingWithHttpUrlConnectionTests {
+    private static final String SLOW_PATH = "/slow";
+    private static final String SLOW_ONCE_PATH = "/slowOnce";
+    private static final String SCENARIO = "slowOnce";
+    private static final String SLOW_ATTEMPT_SEEN = "slowAttemptSeen";
+    private static final int MAX_RUNNING_CALLS = 2;
+
+    private WireMockServer server;
+
+    @BeforeEach
+    public void startWireMockServer() {
+        this.server = new WireMockServer(WireMockConfiguration.options().dynamicPort());
+        this.server.stubFor(get(SLOW_PATH).willReturn(aResponse().withStatus(200).withFixedDelay(300)));
+        // The first request to SLOW_ONCE_PATH is delayed, the next ones are not.
+        this.server.stubFor(get(SLOW_ONCE_PATH)
+            .inScenario(SCENARIO)
+            .whenScenarioStateIs(Scenario.STARTED)
+            .willReturn(aResponse().withStatus(200).withBody("slow").withFixedDelay(5000))
+            .willSetStateTo(SLOW_ATTEMPT_SEEN));
+        this.server.stubFor(get(SLOW_ONCE_PATH)
+            .inScenario(SCENARIO)
+            .whenScenarioStateIs(SLOW_ATTEMPT_SEEN)
+            .willReturn(aResponse().withStatus(200).withBody("fast")));
+        this.server.start();
+    }
+
+    @AfterEach
+    public void shutdownWireMockServer() {
+        if (this.server != null) {
+            this.server.shutdown();
+        }
+    }
+
+    @Test
+    public void hedgedCallsCompleteOnSaturatedDispatcher() throws InterruptedException {
+        final HttpCallDispatcher dispatcher = new HttpCallDispatcher();
+        dispatcher.setMaxRunningCalls(MAX_RUNNING_CALLS);
+        final HttpClient httpClient = new HttpUrlConnectionAsyncHttpClientBuilder()
+            .setHttpCallDispatcher(dispatcher)
+            .build();
+        final HedgingPolicy policy = new HedgingPolicy(new HedgingOptions()
+            .setHedgeDelay(Duration.ofMillis(50))
+            .setMaxHedgeBurst(10));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        // More calls than running slots, the hedges wait for a free slot like the other calls.
+        final int callCount = 3 * MAX_RUNNING_CALLS;
+        final CountDownLatch latch = new CountDownLatch(callCount);
+        final AtomicInteger successCount = new AtomicInteger();
+        for (int i = 0; i < callCount; i++) {
+            pipeline.send(new HttpRequest(HttpMethod.GET, "http://localhost:" + this.server.port() + SLOW_PATH),
+                RequestContext.NONE, CancellationToken.NONE, new HttpCallback() {
+                    @Override
+                    public void onSuccess(HttpResponse response) {
+                        if (response.getStatusCode() == 200) {
+                            successCount.incrementAndGet();
+                        }
+                        response.close();
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        latch.countDown();
+                    }
+                });
+        }
+
+        int maxRunningCallCount = 0;
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!latch.await(10, TimeUnit.MILLISECONDS)) {
+            assertTrue(System.nanoTime() < deadline, "The hedged calls did not complete.");
+            maxRunningCallCount = Math.max(maxRunningCallCount, dispatcher.getMetrics().getRunningCallCount());
+        }
+
+        assertEquals(callCount, successCount.get());
+        assertTrue(maxRunningCallCount <= MAX_RUNNING_CALLS, "Running calls: " + maxRunningCallCount);
+    }
+
+    @Test
+    public void slowAttemptIsHedged() throws InterruptedException {
+        final HttpClient httpClient = new HttpUrlConnectionAsyncHttpClientBuilder()
+            .setHttpCallDispatcher(new HttpCallDispatcher())
+            .build();
+        final HedgingPolicy policy = new HedgingPolicy(new HedgingOptions().setHedgeDelay(Duration.ofMillis(100)));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<String> body = new AtomicReference<>();
+        final long start = System.nanoTime();
+        pipeline.send(new HttpRequest(HttpMethod.GET, "http://localhost:" + this.server.port() + SLOW_ONCE_PATH),
+            RequestContext.NONE, CancellationToken.NONE, new HttpCallback() {
+                @Override
+                public void onSuccess(HttpResponse response) {
+                    body.set(new String(response.getBodyAsByteArray(), StandardCharsets.UTF_8));
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    latch.countDown();
+                }
+            });
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // The primary attempt blocks its dispatcher thread, the hedge runs on another one.
+        assertEquals("fast", body.get());
+        assertTrue(elapsedMillis < 3000, "The hedged call took " + elapsedMillis + " ms.");
+        assertEquals(1, policy.getHedgeWinCount());
+    }
+}
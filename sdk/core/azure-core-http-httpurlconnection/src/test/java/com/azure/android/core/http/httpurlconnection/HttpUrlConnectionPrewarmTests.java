@@ -0,0 +1,55 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.httpurlconnection;
+
+import com.azure.android.core.http.HttpClient;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.head;
+import static com.github.tomakehurst.wiremock.client.WireMock.headRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpUrlConnectionPrewarmTests {
+    private WireMockServer server;
+
+    @BeforeEach
+    public void startWireMockServer() {
+        this.server = new WireMockServer(WireMockConfiguration.options().dynamicPort());
+        this.server.stubFor(head(urlEqualTo("/")).willReturn(aResponse().withStatus(200)));
+        this.server.start();
+    }
+
+    @AfterEach
+    public void stopWireMockServer() {
+        this.server.stop();
+    }
+
+    @Test
+    public void prewarmSendsHeadToTheRootOfEachEndpoint() throws InterruptedException {
+        final HttpClient httpClient = new HttpUrlConnectionAsyncHttpClientBuilder()
+            .setSharedTransportEnabled(false)
+            .build();
+        try {
+            httpClient.prewarm(Arrays.asList("not a url", this.server.baseUrl() + "/chat/threads?api-version=1"));
+
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (this.server.findAll(headRequestedFor(urlEqualTo("/"))).isEmpty()) {
+                assertTrue(System.nanoTime() < deadline, "The endpoint was not prewarmed.");
+                Thread.sleep(10);
+            }
+        } finally {
+            httpClient.close();
+        }
+    }
+}
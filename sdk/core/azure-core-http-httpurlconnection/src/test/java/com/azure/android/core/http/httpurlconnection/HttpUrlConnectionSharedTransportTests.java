@@ -0,0 +1,45 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.httpurlconnection;
+
+import com.azure.android.core.http.HttpCallDispatcher;
+import com.azure.android.core.http.HttpClient;
+import com.azure.android.core.http.implementation.HttpClientProviders;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class HttpUrlConnectionSharedTransportTests {
+    private static final String KEY = HttpUrlConnectionAsyncHttpClientBuilder.SHARED_TRANSPORT_KEY;
+
+    @Test
+    public void defaultClientsShareTheirDispatcher() {
+        final int references = HttpClientProviders.getSharedTransportReferenceCount(KEY);
+        final HttpClient first = new HttpUrlConnectionAsyncHttpClientBuilder().build();
+        final HttpClient second = new HttpUrlConnectionAsyncHttpClientBuilder().build();
+        final HttpClient dedicated = new HttpUrlConnectionAsyncHttpClientBuilder()
+            .setSharedTransportEnabled(false)
+            .build();
+        final HttpCallDispatcher httpCallDispatcher = new HttpCallDispatcher();
+        final HttpClient custom = new HttpUrlConnectionAsyncHttpClientBuilder()
+            .setHttpCallDispatcher(httpCallDispatcher)
+            .build();
+        try {
+            assertEquals(references + 2, HttpClientProviders.getSharedTransportReferenceCount(KEY));
+            assertSame(first.getHttpCallDispatcher(), second.getHttpCallDispatcher());
+            assertNotSame(first.getHttpCallDispatcher(), dedicated.getHttpCallDispatcher());
+            assertSame(httpCallDispatcher, custom.getHttpCallDispatcher());
+        } finally {
+            first.close();
+            second.close();
+            second.close();
+            dedicated.close();
+            custom.close();
+        }
+        assertEquals(references, HttpClientProviders.getSharedTransportReferenceCount(KEY));
+    }
+}
@@ -0,0 +1,91 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.httpurlconnection;
+
+import com.azure.android.core.http.HttpCallDispatcher;
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpClient;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipeline;
+import com.azure.android.core.http.HttpPipelineBuilder;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.policy.RequestCoalescingPolicy;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies request coalescing with the HttpUrlConnection client, which runs each call on a dispatcher thread.
+ */
+public class RequestCoalescingWithHttpUrlConnectionTests {
+    private static final String SLOW_PATH = "/slow";
+
+    private WireMockServer server;
+
+    @BeforeEach
+    public void startWireMockServer() {
+        this.server = new WireMockServer(WireMockConfiguration.options().dynamicPort());
+        this.server.stubFor(get(SLOW_PATH).willReturn(aResponse().withStatus(200).withBody("ok").withFixedDelay(300)));
+        this.server.start();
+    }
+
+    @AfterEach
+    public void shutdownWireMockServer() {
+        if (this.server != null) {
+            this.server.shutdown();
+        }
+    }
+
+    @Test
+    public void coalescedCallsCompleteOnSaturatedDispatcher() throws InterruptedException {
+        final HttpCallDispatcher dispatcher = new HttpCallDispatcher();
+        dispatcher.setMaxRunningCalls(2);
+        final HttpClient httpClient = new HttpUrlConnectionAsyncHttpClientBuilder()
+            .setHttpCallDispatcher(dispatcher)
+            .build();
+        final RequestCoalescingPolicy policy = new RequestCoalescingPolicy();
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        // The requests waiting for the shared call hold the running slots, the shared call runs in the slot of the
+        // request that made it.
+        final int callCount = 6;
+        final CountDownLatch latch = new CountDownLatch(callCount);
+        final AtomicInteger successCount = new AtomicInteger();
+        for (int i = 0; i < callCount; i++) {
+            pipeline.send(new HttpRequest(HttpMethod.GET, "http://localhost:" + this.server.port() + SLOW_PATH),
+                RequestContext.NONE, CancellationToken.NONE, new HttpCallback() {
+                    @Override
+                    public void onSuccess(HttpResponse response) {
+                        if ("ok".equals(response.getBodyAsString())) {
+                            successCount.incrementAndGet();
+                        }
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        latch.countDown();
+                    }
+                });
+        }
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS), "The coalesced calls did not complete.");
+        assertEquals(callCount, successCount.get());
+    }
+}
@@ -0,0 +1,66 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.nio;
+
+import com.azure.android.core.http.HttpCallDispatcher;
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpClient;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.implementation.HttpClientProviders;
+import com.azure.android.core.logging.ClientLogger;
+import com.azure.android.core.util.CancellationToken;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class NioAsyncHttpClient implements HttpClient {
+    private final ClientLogger logger = new ClientLogger(NioAsyncHttpClient.class);
+
+    private final NioTransport transport;
+    // The key of the shared transport the client references, null if the transport is its own.
+    private final String sharedTransportKey;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    NioAsyncHttpClient(NioTransport transport, String sharedTransportKey) {
+        this.transport = transport;
+        this.sharedTransportKey = sharedTransportKey;
+    }
+
+    @Override
+    public HttpCallDispatcher getHttpCallDispatcher() {
+        return this.transport.httpCallDispatcher;
+    }
+
+    @Override
+    public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+        // The call never blocks the calling thread: the I/O runs on the selector loops and the callback on the
+        // transport's callback threads.
+        this.transport.send(httpRequest, cancellationToken, httpCallback);
+    }
+
+    @Override
+    public void prewarm(List<String> endpoints) {
+        for (String endpoint : endpoints) {
+            try {
+                this.transport.prewarm(new URL(endpoint));
+            } catch (MalformedURLException | RuntimeException e) {
+                logger.warning("Skipping the prewarm of the invalid endpoint '{}'.", endpoint, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!this.closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (this.sharedTransportKey != null) {
+            HttpClientProviders.releaseSharedTransport(this.sharedTransportKey);
+        } else {
+            this.transport.shutdown();
+        }
+    }
+}
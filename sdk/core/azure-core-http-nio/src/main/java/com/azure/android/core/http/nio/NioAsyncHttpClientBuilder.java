@@ -0,0 +1,233 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.nio;
+
+import com.azure.android.core.http.HttpCallDispatcher;
+import com.azure.android.core.http.HttpClient;
+import com.azure.android.core.http.implementation.HttpClientProviders;
+import com.azure.android.core.http.implementation.Util;
+import com.azure.android.core.logging.ClientLogger;
+
+import org.threeten.bp.Duration;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+
+/**
+ * Builder class responsible for creating instances of {@link com.azure.android.core.http.HttpClient}
+ * backed by non-blocking java.nio socket channels.
+ *
+ * <p>
+ * The connections of a client are multiplexed on a few selector threads instead of holding a thread each while
+ * they wait on the network, and are kept alive in a pool to run the next requests to the same endpoint.
+ * </p>
+ */
+public class NioAsyncHttpClientBuilder {
+    // The configuration of the shared transport, the builder defaults.
+    static final String SHARED_TRANSPORT_KEY = "nio:default";
+    private static final HttpClientProviders.SharedTransportFactory<NioTransport> SHARED_TRANSPORT_FACTORY
+        = new HttpClientProviders.SharedTransportFactory<NioTransport>() {
+            @Override
+            public NioTransport create() {
+                return new NioAsyncHttpClientBuilder().buildTransport();
+            }
+
+            @Override
+            public void dispose(NioTransport transport) {
+                transport.shutdown();
+            }
+        };
+
+    private static final int DEFAULT_SELECTOR_THREAD_COUNT = 1;
+    private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(60);
+    private static final Duration DEFAULT_KEEP_ALIVE_TIMEOUT = Duration.ofMinutes(5);
+    private static final int DEFAULT_MAX_IDLE_CONNECTIONS_PER_HOST = 5;
+
+    private final ClientLogger logger = new ClientLogger(NioAsyncHttpClientBuilder.class);
+
+    private HttpCallDispatcher httpCallDispatcher;
+    private int selectorThreadCount = DEFAULT_SELECTOR_THREAD_COUNT;
+    private Duration connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private Duration readTimeout = DEFAULT_READ_TIMEOUT;
+    private Duration keepAliveTimeout = DEFAULT_KEEP_ALIVE_TIMEOUT;
+    private int maxIdleConnectionsPerHost = DEFAULT_MAX_IDLE_CONNECTIONS_PER_HOST;
+    private SSLContext sslContext;
+    private HostnameVerifier hostnameVerifier;
+    private boolean customized;
+    private boolean sharedTransportEnabled = true;
+
+    /**
+     * Creates NioAsyncHttpClientBuilder.
+     */
+    public NioAsyncHttpClientBuilder() {
+    }
+
+    /**
+     * Sets the {@link HttpCallDispatcher} the pipelines of the built clients run on. The HTTP calls themselves don't
+     * take a dispatcher thread, they run on the selector threads.
+     *
+     * @param httpCallDispatcher The HTTP call dispatcher
+     * @return The updated NioAsyncHttpClientBuilder object.
+     * @throws NullPointerException if the httpCallDispatcher parameter is null.
+     */
+    public NioAsyncHttpClientBuilder setHttpCallDispatcher(HttpCallDispatcher httpCallDispatcher) {
+        Util.requireNonNull(httpCallDispatcher, "'httpCallDispatcher' is required.");
+        this.httpCallDispatcher = httpCallDispatcher;
+        this.customized = true;
+        return this;
+    }
+
+    /**
+     * Sets the number of selector threads multiplexing the connections, 1 by default.
+     *
+     * @param selectorThreadCount The number of selector threads.
+     * @return The updated NioAsyncHttpClientBuilder object.
+     * @throws IllegalArgumentException if selectorThreadCount is less than 1.
+     */
+    public NioAsyncHttpClientBuilder setSelectorThreadCount(int selectorThreadCount) {
+        if (selectorThreadCount < 1) {
+            throw logger.logExceptionAsError(
+                new IllegalArgumentException("'selectorThreadCount' must be at least 1."));
+        }
+        this.selectorThreadCount = selectorThreadCount;
+        this.customized = true;
+        return this;
+    }
+
+    /**
+     * Sets the maximum time to open a connection, TLS handshake included, 10 seconds by default.
+     *
+     * @param connectTimeout The connect timeout.
+     * @return The updated NioAsyncHttpClientBuilder object.
+     * @throws NullPointerException if connectTimeout is null.
+     * @throws IllegalArgumentException if connectTimeout is not positive.
+     */
+    public NioAsyncHttpClientBuilder setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = requirePositive(connectTimeout, "connectTimeout");
+        this.customized = true;
+        return this;
+    }
+
+    /**
+     * Sets the maximum time a call waits for the server without receiving a byte, 60 seconds by default. The time a
+     * reader leaves the received content unread doesn't count.
+     *
+     * @param readTimeout The read timeout.
+     * @return The updated NioAsyncHttpClientBuilder object.
+     * @throws NullPointerException if readTimeout is null.
+     * @throws IllegalArgumentException if readTimeout is not positive.
+     */
+    public NioAsyncHttpClientBuilder setReadTimeout(Duration readTimeout) {
+        this.readTimeout = requirePositive(readTimeout, "readTimeout");
+        this.customized = true;
+        return this;
+    }
+
+    /**
+     * Sets how long an idle connection is kept in the pool, 5 minutes by default.
+     *
+     * @param keepAliveTimeout The keep-alive timeout.
+     * @return The updated NioAsyncHttpClientBuilder object.
+     * @throws NullPointerException if keepAliveTimeout is null.
+     * @throws IllegalArgumentException if keepAliveTimeout is not positive.
+     */
+    public NioAsyncHttpClientBuilder setKeepAliveTimeout(Duration keepAliveTimeout) {
+        this.keepAliveTimeout = requirePositive(keepAliveTimeout, "keepAliveTimeout");
+        this.customized = true;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of idle connections kept in the pool for each endpoint, 5 by default.
+     *
+     * @param maxIdleConnectionsPerHost The maximum number of idle connections per endpoint, 0 to disable the pool.
+     * @return The updated NioAsyncHttpClientBuilder object.
+     * @throws IllegalArgumentException if maxIdleConnectionsPerHost is negative.
+     */
+    public NioAsyncHttpClientBuilder setMaxIdleConnectionsPerHost(int maxIdleConnectionsPerHost) {
+        if (maxIdleConnectionsPerHost < 0) {
+            throw logger.logExceptionAsError(
+                new IllegalArgumentException("'maxIdleConnectionsPerHost' cannot be negative."));
+        }
+        this.maxIdleConnectionsPerHost = maxIdleConnectionsPerHost;
+        this.customized = true;
+        return this;
+    }
+
+    /**
+     * Sets the {@link SSLContext} creating the TLS engines of the https connections, the default context if not set.
+     *
+     * @param sslContext The SSL context.
+     * @return The updated NioAsyncHttpClientBuilder object.
+     * @throws NullPointerException if sslContext is null.
+     */
+    public NioAsyncHttpClientBuilder setSslContext(SSLContext sslContext) {
+        Util.requireNonNull(sslContext, "'sslContext' is required.");
+        this.sslContext = sslContext;
+        this.customized = true;
+        return this;
+    }
+
+    /**
+     * Sets the {@link HostnameVerifier} checking the certificate of the https connections matches their host. If not
+     * set, the TLS engine verifies the host, or the default verifier of HttpsURLConnection where the engine can't.
+     *
+     * @param hostnameVerifier The hostname verifier.
+     * @return The updated NioAsyncHttpClientBuilder object.
+     * @throws NullPointerException if hostnameVerifier is null.
+     */
+    public NioAsyncHttpClientBuilder setHostnameVerifier(HostnameVerifier hostnameVerifier) {
+        Util.requireNonNull(hostnameVerifier, "'hostnameVerifier' is required.");
+        this.hostnameVerifier = hostnameVerifier;
+        this.customized = true;
+        return this;
+    }
+
+    /**
+     * Sets whether the clients built with the default configuration share their selector threads and connection pool
+     * with the other such clients of the process, which is the default.
+     *
+     * @param sharedTransportEnabled false to give each built client its own selector threads and connection pool.
+     * @return The updated NioAsyncHttpClientBuilder object.
+     */
+    public NioAsyncHttpClientBuilder setSharedTransportEnabled(boolean sharedTransportEnabled) {
+        this.sharedTransportEnabled = sharedTransportEnabled;
+        return this;
+    }
+
+    /**
+     * Creates a new java.nio-backed {@link com.azure.android.core.http.HttpClient} instance on every call, using the
+     * configuration set in the builder at the time of the build method call.
+     *
+     * @return A new java.nio-backed {@link com.azure.android.core.http.HttpClient} instance.
+     */
+    public HttpClient build() {
+        if (!this.customized && this.sharedTransportEnabled) {
+            return new NioAsyncHttpClient(
+                HttpClientProviders.acquireSharedTransport(SHARED_TRANSPORT_KEY, SHARED_TRANSPORT_FACTORY),
+                SHARED_TRANSPORT_KEY);
+        }
+        return new NioAsyncHttpClient(buildTransport(), null);
+    }
+
+    NioTransport buildTransport() {
+        return new NioTransport(this.httpCallDispatcher == null ? new HttpCallDispatcher() : this.httpCallDispatcher,
+            this.selectorThreadCount,
+            this.connectTimeout.toNanos(),
+            this.readTimeout.toNanos(),
+            this.keepAliveTimeout.toNanos(),
+            this.maxIdleConnectionsPerHost,
+            this.sslContext,
+            this.hostnameVerifier);
+    }
+
+    private Duration requirePositive(Duration duration, String name) {
+        Util.requireNonNull(duration, "'" + name + "' is required.");
+        if (duration.isNegative() || duration.isZero()) {
+            throw logger.logExceptionAsError(new IllegalArgumentException("'" + name + "' must be positive."));
+        }
+        return duration;
+    }
+}
@@ -0,0 +1,761 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.nio;
+
+import com.azure.android.core.http.HttpHeaders;
+import com.azure.android.core.logging.ClientLogger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLPeerUnverifiedException;
+
+/**
+ * An HTTP/1.1 connection driven by a {@link SelectorLoop}: it writes the request of an exchange, parses the
+ * response head, streams the content to a {@link ResponseBodyStream} and then goes back to the pool, to run the next
+ * exchange to the same endpoint.
+ *
+ * <p>
+ * The state is only accessed from the loop thread, except through {@link #resumeReading()}, {@link #abandonBody()}
+ * and {@link #cancel(NioTransport.Exchange)}, which hand their work to the loop.
+ * </p>
+ */
+final class NioConnection implements SelectorLoop.ChannelHandler {
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final int READ_BUFFER_BYTES = 16 * 1024;
+    private static final int MAX_HEAD_BYTES = 64 * 1024;
+    // The content left unread when a body stream is closed early that is discarded to reuse the connection.
+    private static final int DRAIN_LIMIT_BYTES = 16 * 1024;
+
+    private final ClientLogger logger = new ClientLogger(NioConnection.class);
+
+    private final NioTransport transport;
+    private final SelectorLoop loop;
+    private final String poolKey;
+    private final String host;
+    private final int port;
+    private final boolean secure;
+
+    private State state = State.NEW;
+    private SocketChannel channel;
+    private SelectionKey key;
+    private TlsSession tls;
+    private SelectorLoop.Timer timer;
+    private long lastActivityNanos;
+    // Whether the connection ran an exchange before, a pooled connection may have been closed by the server.
+    private boolean reused;
+
+    // The received bytes not processed yet, in write mode.
+    private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+    private NioTransport.Exchange exchange;
+    private ByteBuffer[] requestBuffers;
+    private boolean responseStarted;
+    private ResponseBodyStream body;
+    private Framing framing;
+    private long remaining;
+    private ChunkState chunkState;
+    private boolean keepAlive;
+    private boolean paused;
+    private boolean abandoned;
+    private long discardedBytes;
+
+    NioConnection(NioTransport transport, SelectorLoop loop, String poolKey, String host, int port, boolean secure) {
+        this.transport = transport;
+        this.loop = loop;
+        this.poolKey = poolKey;
+        this.host = host;
+        this.port = port;
+        this.secure = secure;
+    }
+
+    SelectorLoop getLoop() {
+        return this.loop;
+    }
+
+    String getPoolKey() {
+        return this.poolKey;
+    }
+
+    /**
+     * Opens the connection; called from the loop.
+     *
+     * @param address The resolved address of the endpoint.
+     * @param exchange The exchange to run once connected, null to add the connection to the pool instead.
+     */
+    void connect(InetSocketAddress address, NioTransport.Exchange exchange) {
+        this.exchange = exchange;
+        if (exchange != null) {
+            exchange.setConnection(this);
+        }
+        this.state = State.CONNECTING;
+        scheduleTimeout(exchange == null
+            ? this.transport.connectTimeoutNanos
+            : exchange.boundTimeoutNanos(this.transport.connectTimeoutNanos));
+        try {
+            this.channel = SocketChannel.open();
+            this.channel.configureBlocking(false);
+            this.channel.socket().setTcpNoDelay(true);
+            if (this.channel.connect(address)) {
+                this.key = this.loop.register(this.channel, 0, this);
+                onConnected();
+            } else {
+                this.key = this.loop.register(this.channel, SelectionKey.OP_CONNECT, this);
+            }
+        } catch (IOException e) {
+            onClosed(e);
+        }
+    }
+
+    /**
+     * Runs an exchange on the connection; called from the loop.
+     *
+     * @param exchange The exchange.
+     */
+    void startExchange(NioTransport.Exchange exchange) {
+        if (this.state != State.IDLE) {
+            // The pooled connection was closed after it was polled.
+            this.transport.connect(exchange.poolKey, exchange.host, exchange.port, exchange.secure, exchange);
+            return;
+        }
+        cancelTimer();
+        if (exchange.isCanceled()) {
+            exchange.fail(new IOException("Canceled."));
+            becomeIdle();
+            return;
+        }
+        this.exchange = exchange;
+        exchange.setConnection(this);
+        this.requestBuffers = exchange.createRequestBuffers();
+        this.readBuffer.clear();
+        this.responseStarted = false;
+        this.body = null;
+        this.paused = false;
+        this.abandoned = false;
+        this.discardedBytes = 0;
+        this.state = State.WRITING;
+        touch();
+        scheduleTimeout(exchange.boundTimeoutNanos(this.transport.readTimeoutNanos));
+        try {
+            continueWriting();
+        } catch (IOException e) {
+            onClosed(e);
+        }
+    }
+
+    /**
+     * Resumes reading the content once the reader consumed the buffered bytes; called from any thread.
+     */
+    void resumeReading() {
+        this.loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (state == State.READING_BODY && paused) {
+                    resume();
+                }
+            }
+        });
+    }
+
+    /**
+     * Discards the rest of the content after the reader closed the body stream early; called from any thread.
+     */
+    void abandonBody() {
+        this.loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (state != State.READING_BODY) {
+                    return;
+                }
+                abandoned = true;
+                if (paused) {
+                    resume();
+                }
+            }
+        });
+    }
+
+    /**
+     * Fails an exchange canceled before its response was received; called from any thread.
+     *
+     * @param exchange The exchange.
+     */
+    void cancel(NioTransport.Exchange exchange) {
+        this.loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (NioConnection.this.exchange == exchange && !responseStarted) {
+                    exchange.fail(new IOException("Canceled."));
+                    NioConnection.this.exchange = null;
+                    close();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onReady(SelectionKey key) throws IOException {
+        if (key.isConnectable()) {
+            if (this.channel.finishConnect()) {
+                onConnected();
+            }
+            return;
+        }
+        switch (this.state) {
+            case HANDSHAKING:
+                continueHandshake();
+                break;
+            case WRITING:
+                continueWriting();
+                break;
+            case READING_HEAD:
+            case READING_BODY:
+                readAvailable();
+                break;
+            case IDLE:
+                checkIdle();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void onClosed(IOException cause) {
+        if (this.state == State.CLOSED) {
+            return;
+        }
+        final boolean retry = this.reused
+            && (this.state == State.WRITING || this.state == State.READING_HEAD)
+            && !this.responseStarted
+            && this.readBuffer.position() == 0;
+        final NioTransport.Exchange failed = this.exchange;
+        final ResponseBodyStream stream = this.body;
+        this.exchange = null;
+        close();
+        if (failed == null) {
+            return;
+        }
+        if (!this.responseStarted) {
+            if (retry && !failed.retried && !failed.isCanceled()) {
+                // The server closed the pooled connection before it got the request, send it on a new one.
+                failed.retried = true;
+                this.transport.connect(failed.poolKey, failed.host, failed.port, failed.secure, failed);
+            } else {
+                failed.fail(cause);
+            }
+        } else if (stream != null) {
+            stream.fail(cause);
+        }
+    }
+
+    private void resume() {
+        this.paused = false;
+        touch();
+        try {
+            // The bytes received before the pause are processed first.
+            this.readBuffer.flip();
+            try {
+                processInput();
+            } finally {
+                this.readBuffer.compact();
+            }
+            readAvailable();
+        } catch (IOException e) {
+            onClosed(e);
+        }
+    }
+
+    private void onConnected() throws IOException {
+        touch();
+        this.key.interestOps(0);
+        if (this.secure) {
+            this.tls = new TlsSession(this.transport.createSslEngine(this.host, this.port), this.channel);
+            this.tls.getEngine().beginHandshake();
+            this.state = State.HANDSHAKING;
+            continueHandshake();
+        } else {
+            onEstablished();
+        }
+    }
+
+    private void continueHandshake() throws IOException {
+        if (!this.tls.handshake()) {
+            interest(this.tls.wantsWrite() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            return;
+        }
+        final HostnameVerifier verifier = this.transport.getHostnameVerifier(this.tls.getEngine());
+        if (verifier != null && !verifier.verify(this.host, this.tls.getEngine().getSession())) {
+            throw new SSLPeerUnverifiedException("Hostname " + this.host + " not verified.");
+        }
+        onEstablished();
+    }
+
+    private void onEstablished() {
+        cancelTimer();
+        final NioTransport.Exchange pending = this.exchange;
+        this.exchange = null;
+        this.state = State.IDLE;
+        if (pending == null) {
+            becomeIdle();
+        } else {
+            startExchange(pending);
+        }
+    }
+
+    private void continueWriting() throws IOException {
+        for (ByteBuffer buffer : this.requestBuffers) {
+            if (this.tls != null) {
+                if (!this.tls.write(buffer)) {
+                    interest(SelectionKey.OP_WRITE);
+                    return;
+                }
+            } else {
+                while (buffer.hasRemaining()) {
+                    if (this.channel.write(buffer) == 0) {
+                        interest(SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+            }
+        }
+        touch();
+        this.requestBuffers = null;
+        this.state = State.READING_HEAD;
+        readAvailable();
+    }
+
+    private void readAvailable() throws IOException {
+        while ((this.state == State.READING_HEAD || this.state == State.READING_BODY) && !this.paused) {
+            if (!this.readBuffer.hasRemaining()) {
+                if (this.readBuffer.capacity() >= MAX_HEAD_BYTES) {
+                    throw new ProtocolException("The response head exceeds " + MAX_HEAD_BYTES + " bytes.");
+                }
+                final ByteBuffer larger = ByteBuffer.allocate(this.readBuffer.capacity() * 2);
+                this.readBuffer.flip();
+                larger.put(this.readBuffer);
+                this.readBuffer = larger;
+            }
+            final int read = this.tls == null ? this.channel.read(this.readBuffer) : this.tls.read(this.readBuffer);
+            if (read == 0) {
+                interest(this.tls != null && this.tls.wantsWrite() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+                return;
+            }
+            if (read < 0) {
+                onEndOfStream();
+                return;
+            }
+            touch();
+            this.readBuffer.flip();
+            try {
+                processInput();
+            } finally {
+                this.readBuffer.compact();
+            }
+        }
+        if (this.paused) {
+            interest(0);
+        }
+    }
+
+    /**
+     * Processes the received bytes, with the read buffer in read mode.
+     */
+    private void processInput() throws IOException {
+        while (!this.paused) {
+            if (this.state == State.READING_HEAD) {
+                if (!parseHead()) {
+                    return;
+                }
+            } else if (this.state == State.READING_BODY) {
+                if (!processBody()) {
+                    return;
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Parses a response head.
+     *
+     * @return false if more bytes must be received first.
+     */
+    private boolean parseHead() throws IOException {
+        final int end = indexOfHeadEnd();
+        if (end < 0) {
+            return false;
+        }
+        final int start = this.readBuffer.position();
+        final String head = new String(this.readBuffer.array(), this.readBuffer.arrayOffset() + start, end - start,
+            ISO_8859_1);
+        this.readBuffer.position(end + 4);
+        final String[] lines = head.split("\r\n");
+
+        final String statusLine = lines[0];
+        if (!statusLine.startsWith("HTTP/1.") || statusLine.length() < 12 || statusLine.charAt(8) != ' ') {
+            throw new ProtocolException("Unexpected status line: " + statusLine);
+        }
+        final boolean http10 = statusLine.charAt(7) == '0';
+        final int statusCode;
+        try {
+            statusCode = Integer.parseInt(statusLine.substring(9, 12));
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Unexpected status line: " + statusLine);
+        }
+        if (statusCode >= 100 && statusCode < 200) {
+            // An interim response, the final one follows.
+            return true;
+        }
+
+        final HttpHeaders headers = new HttpHeaders();
+        for (int i = 1; i < lines.length; i++) {
+            final int colon = lines[i].indexOf(':');
+            if (colon <= 0) {
+                throw new ProtocolException("Unexpected header line: " + lines[i]);
+            }
+            final String name = lines[i].substring(0, colon).trim();
+            final String value = lines[i].substring(colon + 1).trim();
+            final String existing = headers.getValue(name);
+            headers.put(name, existing == null ? value : existing + "," + value);
+        }
+
+        final String connection = lowerCase(headers.getValue("Connection"));
+        this.keepAlive = http10
+            ? connection != null && connection.contains("keep-alive")
+            : connection == null || !connection.contains("close");
+        final String transferEncoding = lowerCase(headers.getValue("Transfer-Encoding"));
+        final String contentLength = headers.getValue("Content-Length");
+        if (!this.exchange.expectsBody || statusCode == 204 || statusCode == 304) {
+            this.framing = Framing.NONE;
+        } else if (transferEncoding != null && transferEncoding.endsWith("chunked")) {
+            this.framing = Framing.CHUNKED;
+            this.chunkState = ChunkState.SIZE;
+        } else if (contentLength != null) {
+            this.framing = Framing.FIXED;
+            try {
+                this.remaining = Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                throw new ProtocolException("Unexpected Content-Length: " + contentLength);
+            }
+            if (this.remaining < 0) {
+                throw new ProtocolException("Unexpected Content-Length: " + contentLength);
+            }
+        } else {
+            this.framing = Framing.UNTIL_CLOSE;
+            this.keepAlive = false;
+        }
+
+        this.responseStarted = true;
+        final NioTransport.Exchange current = this.exchange;
+        final ResponseBodyStream stream = new ResponseBodyStream(this);
+        this.body = stream;
+        this.state = State.READING_BODY;
+        if (this.framing == Framing.NONE || (this.framing == Framing.FIXED && this.remaining == 0)) {
+            completeBody();
+        }
+        if (!current.succeed(new NioHttpResponse(current.request, statusCode, headers, stream))) {
+            // Canceled while the head was parsed, nobody reads the content.
+            this.abandoned = true;
+        }
+        return true;
+    }
+
+    private int indexOfHeadEnd() {
+        final byte[] bytes = this.readBuffer.array();
+        final int offset = this.readBuffer.arrayOffset();
+        for (int i = this.readBuffer.position(); i + 3 < this.readBuffer.limit(); i++) {
+            if (bytes[offset + i] == '\r' && bytes[offset + i + 1] == '\n'
+                && bytes[offset + i + 2] == '\r' && bytes[offset + i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Processes the received content.
+     *
+     * @return false if more bytes must be received first.
+     */
+    private boolean processBody() throws IOException {
+        switch (this.framing) {
+            case FIXED:
+                final int fixed = (int) Math.min(this.remaining, this.readBuffer.remaining());
+                if (fixed == 0) {
+                    return false;
+                }
+                deliver(fixed);
+                this.remaining -= fixed;
+                if (this.remaining == 0) {
+                    completeBody();
+                }
+                return true;
+            case UNTIL_CLOSE:
+                if (!this.readBuffer.hasRemaining()) {
+                    return false;
+                }
+                deliver(this.readBuffer.remaining());
+                return true;
+            case CHUNKED:
+                return processChunked();
+            default:
+                completeBody();
+                return true;
+        }
+    }
+
+    private boolean processChunked() throws IOException {
+        switch (this.chunkState) {
+            case SIZE:
+                final String sizeLine = readLine();
+                if (sizeLine == null) {
+                    return false;
+                }
+                final int extension = sizeLine.indexOf(';');
+                try {
+                    this.remaining = Long.parseLong(
+                        (extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+                } catch (NumberFormatException e) {
+                    throw new ProtocolException("Unexpected chunk size: " + sizeLine);
+                }
+                this.chunkState = this.remaining == 0 ? ChunkState.TRAILER : ChunkState.DATA;
+                return true;
+            case DATA:
+                final int chunk = (int) Math.min(this.remaining, this.readBuffer.remaining());
+                if (chunk == 0) {
+                    return false;
+                }
+                deliver(chunk);
+                this.remaining -= chunk;
+                if (this.remaining == 0) {
+                    this.chunkState = ChunkState.DATA_END;
+                }
+                return true;
+            case DATA_END:
+                final String end = readLine();
+                if (end == null) {
+                    return false;
+                }
+                if (!end.isEmpty()) {
+                    throw new ProtocolException("Unexpected bytes after a chunk.");
+                }
+                this.chunkState = ChunkState.SIZE;
+                return true;
+            default:
+                final String trailer = readLine();
+                if (trailer == null) {
+                    return false;
+                }
+                if (trailer.isEmpty()) {
+                    completeBody();
+                }
+                return true;
+        }
+    }
+
+    /**
+     * Reads a line of the chunked framing.
+     *
+     * @return The line without its line break, null if more bytes must be received first.
+     */
+    private String readLine() throws IOException {
+        final byte[] bytes = this.readBuffer.array();
+        final int offset = this.readBuffer.arrayOffset();
+        final int start = this.readBuffer.position();
+        for (int i = start; i + 1 < this.readBuffer.limit(); i++) {
+            if (bytes[offset + i] == '\r' && bytes[offset + i + 1] == '\n') {
+                this.readBuffer.position(i + 2);
+                return new String(bytes, offset + start, i - start, ISO_8859_1);
+            }
+        }
+        if (this.readBuffer.remaining() >= READ_BUFFER_BYTES) {
+            throw new ProtocolException("A line of the chunked content exceeds " + READ_BUFFER_BYTES + " bytes.");
+        }
+        return null;
+    }
+
+    /**
+     * Hands content from the read buffer to the body stream, or discards it if the stream was abandoned.
+     *
+     * @param count The number of bytes.
+     */
+    private void deliver(int count) throws IOException {
+        if (this.abandoned || this.body.isClosed()) {
+            this.abandoned = true;
+            this.readBuffer.position(this.readBuffer.position() + count);
+            this.discardedBytes += count;
+            if (this.discardedBytes > DRAIN_LIMIT_BYTES) {
+                // Too much content left to drain, closing is cheaper than reading it.
+                this.body.complete();
+                this.exchange = null;
+                close();
+            }
+            return;
+        }
+        final byte[] chunk = new byte[count];
+        this.readBuffer.get(chunk);
+        if (!this.body.offer(chunk)) {
+            this.paused = true;
+        }
+    }
+
+    private void completeBody() {
+        final ResponseBodyStream stream = this.body;
+        this.body = null;
+        this.exchange = null;
+        this.paused = false;
+        cancelTimer();
+        // The connection goes back to the pool before the reader sees the end of the content, for a request sent
+        // right after to find it there.
+        if (this.keepAlive && this.state == State.READING_BODY && !this.readBuffer.hasRemaining()) {
+            this.reused = true;
+            becomeIdle();
+        } else {
+            close();
+        }
+        stream.complete();
+    }
+
+    private void onEndOfStream() throws IOException {
+        if (this.state == State.READING_BODY && this.framing == Framing.UNTIL_CLOSE) {
+            this.keepAlive = false;
+            completeBody();
+            return;
+        }
+        throw new EOFException("The connection was closed before the response was complete.");
+    }
+
+    private void becomeIdle() {
+        this.state = State.IDLE;
+        if (!this.transport.offerIdleConnection(this)) {
+            close();
+            return;
+        }
+        // Watching for reads while idle detects the server closing the connection.
+        interest(SelectionKey.OP_READ);
+        this.timer = this.loop.schedule(new Runnable() {
+            @Override
+            public void run() {
+                timer = null;
+                if (state == State.IDLE) {
+                    transport.removeIdleConnection(NioConnection.this);
+                    close();
+                }
+            }
+        }, this.transport.keepAliveTimeoutNanos);
+    }
+
+    private void checkIdle() throws IOException {
+        final int read = this.tls == null ? this.channel.read(this.readBuffer) : this.tls.read(this.readBuffer);
+        if (read != 0) {
+            // The server closed the connection, or sent bytes no request asked for.
+            this.transport.removeIdleConnection(this);
+            close();
+        }
+    }
+
+    private void scheduleTimeout(long timeoutNanos) {
+        cancelTimer();
+        this.timer = this.loop.schedule(new Runnable() {
+            @Override
+            public void run() {
+                timer = null;
+                onTimeout(timeoutNanos);
+            }
+        }, timeoutNanos);
+    }
+
+    private void onTimeout(long timeoutNanos) {
+        if (this.state == State.CONNECTING || this.state == State.HANDSHAKING) {
+            onClosed(new SocketTimeoutException("Connect timed out."));
+        } else if (this.state == State.WRITING || this.state == State.READING_HEAD
+            || this.state == State.READING_BODY) {
+            final long inactiveNanos = System.nanoTime() - this.lastActivityNanos;
+            if (this.paused || inactiveNanos < timeoutNanos) {
+                // The reader holds the connection back, or bytes were received since the timer was scheduled.
+                scheduleTimeout(this.paused ? timeoutNanos : timeoutNanos - inactiveNanos);
+            } else {
+                final NioTransport.Exchange timedOut = this.exchange;
+                if (timedOut != null) {
+                    // A timed out request is not retried, the server may have processed it.
+                    timedOut.retried = true;
+                }
+                this.reused = false;
+                onClosed(new SocketTimeoutException("Read timed out."));
+            }
+        }
+    }
+
+    private void touch() {
+        this.lastActivityNanos = System.nanoTime();
+    }
+
+    private void interest(int ops) {
+        if (this.key != null && this.key.isValid()) {
+            this.key.interestOps(ops);
+        }
+    }
+
+    private void cancelTimer() {
+        if (this.timer != null) {
+            this.timer.cancel();
+            this.timer = null;
+        }
+    }
+
+    private void close() {
+        if (this.state == State.CLOSED) {
+            return;
+        }
+        final boolean wasIdle = this.state == State.IDLE;
+        this.state = State.CLOSED;
+        cancelTimer();
+        if (wasIdle) {
+            this.transport.removeIdleConnection(this);
+        }
+        if (this.body != null) {
+            this.body.fail(new EOFException("The connection was closed before the response was complete."));
+            this.body = null;
+        }
+        if (this.tls != null && this.channel.isConnected()) {
+            this.tls.closeOutbound();
+        }
+        if (this.key != null) {
+            this.key.cancel();
+        }
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                logger.verbose("Failed to close the connection to '{}'.", this.poolKey, e);
+            }
+        }
+    }
+
+    private static String lowerCase(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    private enum State {
+        NEW, CONNECTING, HANDSHAKING, IDLE, WRITING, READING_HEAD, READING_BODY, CLOSED
+    }
+
+    private enum Framing {
+        NONE, FIXED, CHUNKED, UNTIL_CLOSE
+    }
+
+    private enum ChunkState {
+        SIZE, DATA, DATA_END, TRAILER
+    }
+}
@@ -0,0 +1,168 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.nio;
+
+import com.azure.android.core.http.HttpHeaders;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.logging.ClientLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A response whose content is streamed from its connection.
+ */
+final class NioHttpResponse extends HttpResponse {
+    private static final Pattern CHARSET_PATTERN
+        = Pattern.compile("charset=([\\S]+)\\b", Pattern.CASE_INSENSITIVE);
+
+    private final ClientLogger logger = new ClientLogger(NioHttpResponse.class);
+
+    private final int statusCode;
+    private final HttpHeaders headers;
+    private final InputStream contentStream;
+
+    NioHttpResponse(HttpRequest request, int statusCode, HttpHeaders headers, InputStream contentStream) {
+        super(request);
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.contentStream = contentStream;
+    }
+
+    @Override
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    @Override
+    public String getHeaderValue(String name) {
+        return this.headers.getValue(name);
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return this.headers;
+    }
+
+    @Override
+    public InputStream getBody() {
+        return this.contentStream;
+    }
+
+    @Override
+    public byte[] getBodyAsByteArray() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        int nRead;
+        byte[] data = new byte[1024];
+        InputStream is = this.getBody();
+        try {
+            while ((nRead = is.read(data, 0, data.length)) != -1) {
+                buffer.write(data, 0, nRead);
+            }
+            buffer.flush();
+        } catch (IOException ioe) {
+            throw logger.logExceptionAsError(new RuntimeException(ioe));
+        } finally {
+            try {
+                is.close();
+            } catch (IOException ioe) {
+                throw logger.logExceptionAsError(new RuntimeException(ioe));
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    @Override
+    public String getBodyAsString() {
+        return bomAwareToString(this.getBodyAsByteArray(),
+            headers.getValue("Content-Type"));
+    }
+
+    @Override
+    public String getBodyAsString(Charset charset) {
+        return new String(this.getBodyAsByteArray(), charset);
+    }
+
+    @Override
+    public void close() {
+        try {
+            getBody().close();
+        } catch (IOException ioe) {
+            throw logger.logExceptionAsError(new RuntimeException(ioe));
+        }
+    }
+
+    /**
+     * Attempts to convert a byte stream into the properly encoded String.
+     * <p>
+     * The method will attempt to find the encoding for the String in this order.
+     * <ol>
+     *     <li>Find the byte order mark in the byte array.</li>
+     *     <li>Find the {@code charset} in the {@code Content-Type} header.</li>
+     *     <li>Default to {@code UTF-8}.</li>
+     * </ol>
+     *
+     * @param bytes Byte array.
+     * @param contentType {@code Content-Type} header value.
+     * @return A string representation of the byte array encoded to the found encoding.
+     */
+    private String bomAwareToString(byte[] bytes, String contentType) {
+        if (bytes == null) {
+            return null;
+        }
+
+        if (bytes.length >= 3
+            && bytes[0] == (byte) 0xEF
+            && bytes[1] == (byte) 0xBB
+            && bytes[2] == (byte) 0xBF) {
+            return new String(bytes, 3, bytes.length - 3, Charset.forName("UTF-8"));
+        } else if (bytes.length >= 4
+            && bytes[0] == (byte) 0x00
+            && bytes[1] == (byte) 0x00
+            && bytes[2] == (byte) 0xFE
+            && bytes[3] == (byte) 0xFF) {
+            return new String(bytes, 4, bytes.length - 4, Charset.forName("UTF-32BE"));
+        } else if (bytes.length >= 4
+            && bytes[0] == (byte) 0xFF
+            && bytes[1] == (byte) 0xFE
+            && bytes[2] == (byte) 0x00
+            && bytes[3] == (byte) 0x00) {
+            return new String(bytes, 4, bytes.length - 4, Charset.forName("UTF-32LE"));
+        } else if (bytes.length >= 2
+            && bytes[0] == (byte) 0xFE
+            && bytes[1] == (byte) 0xFF) {
+            return new String(bytes, 2, bytes.length - 2, Charset.forName("UTF-16BE"));
+        } else if (bytes.length >= 2
+            && bytes[0] == (byte) 0xFF
+            && bytes[1] == (byte) 0xFE) {
+            return new String(bytes, 2, bytes.length - 2, Charset.forName("UTF-16LE"));
+        } else {
+            /*
+             * Attempt to retrieve the default charset from the 'Content-Encoding' header,
+             * if the value isn't present or invalid fallback to 'UTF-8' for the default charset.
+             */
+            if (contentType != null && contentType.length() != 0) {
+                try {
+                    Matcher charsetMatcher = CHARSET_PATTERN.matcher(contentType);
+                    if (charsetMatcher.find()) {
+                        return new String(bytes, Charset.forName(charsetMatcher.group(1)));
+                    } else {
+                        return new String(bytes, Charset.forName("UTF-8"));
+                    }
+                } catch (IllegalCharsetNameException | UnsupportedCharsetException ex) {
+                    return new String(bytes, Charset.forName("UTF-8"));
+                }
+            } else {
+                return new String(bytes, Charset.forName("UTF-8"));
+            }
+        }
+    }
+}
@@ -0,0 +1,560 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.nio;
+
+import com.azure.android.core.http.HttpCallDispatcher;
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpHeader;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.RequestDeadline;
+import com.azure.android.core.logging.ClientLogger;
+import com.azure.android.core.util.CancellationToken;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * The selector loops, connection pool and callback threads shared by the clients of a configuration.
+ *
+ * <p>
+ * The I/O of all the connections runs on the selector loops. The callbacks, which may block reading a response
+ * body, and the DNS lookups, which block, run on a thread pool whose threads only live while they have work.
+ * </p>
+ */
+final class NioTransport {
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final AtomicInteger TRANSPORT_COUNT = new AtomicInteger();
+
+    private final ClientLogger logger = new ClientLogger(NioTransport.class);
+
+    final HttpCallDispatcher httpCallDispatcher;
+    final long connectTimeoutNanos;
+    final long readTimeoutNanos;
+    final long keepAliveTimeoutNanos;
+    private final int maxIdleConnectionsPerHost;
+    private final SSLContext sslContext;
+    private final HostnameVerifier hostnameVerifier;
+    private final SelectorLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final ExecutorService executorService;
+    // The idle connections by pool key, the most recently used last.
+    private final Map<String, ArrayDeque<NioConnection>> idleConnections = new HashMap<>();
+    private volatile boolean shutdown;
+
+    NioTransport(HttpCallDispatcher httpCallDispatcher,
+                 int selectorThreadCount,
+                 long connectTimeoutNanos,
+                 long readTimeoutNanos,
+                 long keepAliveTimeoutNanos,
+                 int maxIdleConnectionsPerHost,
+                 SSLContext sslContext,
+                 HostnameVerifier hostnameVerifier) {
+        this.httpCallDispatcher = httpCallDispatcher;
+        this.connectTimeoutNanos = connectTimeoutNanos;
+        this.readTimeoutNanos = readTimeoutNanos;
+        this.keepAliveTimeoutNanos = keepAliveTimeoutNanos;
+        this.maxIdleConnectionsPerHost = maxIdleConnectionsPerHost;
+        this.sslContext = sslContext;
+        this.hostnameVerifier = hostnameVerifier;
+
+        final int transportId = TRANSPORT_COUNT.incrementAndGet();
+        this.loops = new SelectorLoop[selectorThreadCount];
+        try {
+            for (int i = 0; i < selectorThreadCount; i++) {
+                this.loops[i] = new SelectorLoop("azure-nio-" + transportId + "-selector-" + i);
+            }
+        } catch (IOException e) {
+            shutdown();
+            throw logger.logExceptionAsError(new IllegalStateException("Failed to open a selector.", e));
+        }
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executorService = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable,
+                        "azure-nio-" + transportId + "-callback-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    }
+
+    /**
+     * Sends a request.
+     *
+     * @param httpRequest The request.
+     * @param cancellationToken The token to cancel the call until the response headers are received.
+     * @param httpCallback The callback, notified on a callback thread.
+     */
+    void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+        final Exchange exchange;
+        try {
+            exchange = new Exchange(this, httpRequest, cancellationToken, httpCallback);
+        } catch (IllegalArgumentException e) {
+            httpCallback.onError(e);
+            return;
+        }
+        if (this.shutdown) {
+            exchange.fail(new IOException("The HTTP client was closed."));
+            return;
+        }
+        if (cancellationToken.isCancellationRequested()) {
+            exchange.fail(new IOException("Canceled."));
+            return;
+        }
+        exchange.registerOnCancel();
+
+        final NioConnection pooled = pollIdleConnection(exchange.poolKey);
+        if (pooled != null) {
+            pooled.getLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    pooled.startExchange(exchange);
+                }
+            });
+        } else {
+            connect(exchange.poolKey, exchange.host, exchange.port, exchange.secure, exchange);
+        }
+    }
+
+    /**
+     * Opens a connection and adds it to the pool once connected.
+     *
+     * @param url The URL of the endpoint.
+     */
+    void prewarm(URL url) {
+        final Endpoint endpoint = new Endpoint(url);
+        connect(endpoint.poolKey, endpoint.host, endpoint.port, endpoint.secure, null);
+    }
+
+    /**
+     * Opens a new connection, resolving the host on a callback thread.
+     *
+     * @param poolKey The key of the pool of the connection.
+     * @param host The host.
+     * @param port The port.
+     * @param secure Whether the connection uses TLS.
+     * @param exchange The exchange to run on the connection, null to pool the connection once connected.
+     */
+    void connect(String poolKey, String host, int port, boolean secure, Exchange exchange) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                final InetSocketAddress address = new InetSocketAddress(host, port);
+                if (address.isUnresolved()) {
+                    final UnknownHostException error = new UnknownHostException("Unable to resolve host " + host);
+                    if (exchange != null) {
+                        exchange.fail(error);
+                    } else {
+                        logger.verbose("Failed to prewarm the connection to '{}'.", poolKey, error);
+                    }
+                    return;
+                }
+                final SelectorLoop loop = nextLoop();
+                final NioConnection connection = new NioConnection(NioTransport.this, loop, poolKey, host, port,
+                    secure);
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        connection.connect(address, exchange);
+                    }
+                });
+            }
+        }, exchange);
+    }
+
+    /**
+     * Runs a task on a callback thread.
+     *
+     * @param task The task.
+     * @param exchange The exchange to fail if the transport is shut down, null if none.
+     */
+    void execute(Runnable task, Exchange exchange) {
+        try {
+            this.executorService.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (exchange != null) {
+                exchange.failNow(new IOException("The HTTP client was closed.", e));
+            }
+        }
+    }
+
+    /**
+     * Runs a callback on a callback thread, or on the calling thread once the transport is shut down.
+     *
+     * @param callback The callback.
+     */
+    void executeCallback(Runnable callback) {
+        try {
+            this.executorService.execute(callback);
+        } catch (RejectedExecutionException e) {
+            callback.run();
+        }
+    }
+
+    /**
+     * Creates the SSLEngine of a connection.
+     *
+     * @param host The host.
+     * @param port The port.
+     * @return The engine, in client mode.
+     * @throws IOException if the default SSLContext is not available.
+     */
+    SSLEngine createSslEngine(String host, int port) throws IOException {
+        SSLContext context = this.sslContext;
+        if (context == null) {
+            try {
+                context = SSLContext.getDefault();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException("The default SSLContext is not available.", e);
+            }
+        }
+        final SSLEngine engine = context.createSSLEngine(host, port);
+        engine.setUseClientMode(true);
+        if (this.hostnameVerifier == null) {
+            try {
+                final SSLParameters parameters = engine.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                engine.setSSLParameters(parameters);
+            } catch (NoSuchMethodError e) {
+                // Android before API 24, the hostname is verified after the handshake.
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Gets the verifier to check the hostname with after the handshake.
+     *
+     * @param engine The engine of the connection.
+     * @return The verifier, null if the engine verified the hostname.
+     */
+    HostnameVerifier getHostnameVerifier(SSLEngine engine) {
+        if (this.hostnameVerifier != null) {
+            return this.hostnameVerifier;
+        }
+        final String algorithm = engine.getSSLParameters().getEndpointIdentificationAlgorithm();
+        return algorithm == null ? HttpsURLConnection.getDefaultHostnameVerifier() : null;
+    }
+
+    /**
+     * Adds a connection to the pool.
+     *
+     * @param connection The idle connection.
+     * @return false if the pool of the host is full or the transport was shut down, the connection must be closed.
+     */
+    boolean offerIdleConnection(NioConnection connection) {
+        if (this.shutdown) {
+            return false;
+        }
+        synchronized (this.idleConnections) {
+            ArrayDeque<NioConnection> connections = this.idleConnections.get(connection.getPoolKey());
+            if (connections == null) {
+                connections = new ArrayDeque<>();
+                this.idleConnections.put(connection.getPoolKey(), connections);
+            }
+            if (connections.size() >= this.maxIdleConnectionsPerHost) {
+                return false;
+            }
+            connections.addLast(connection);
+            return true;
+        }
+    }
+
+    /**
+     * Removes a connection from the pool, if it's pooled.
+     *
+     * @param connection The connection.
+     */
+    void removeIdleConnection(NioConnection connection) {
+        synchronized (this.idleConnections) {
+            final ArrayDeque<NioConnection> connections = this.idleConnections.get(connection.getPoolKey());
+            if (connections != null && connections.remove(connection) && connections.isEmpty()) {
+                this.idleConnections.remove(connection.getPoolKey());
+            }
+        }
+    }
+
+    /**
+     * Gets the number of idle connections in the pool.
+     *
+     * @return The number of idle connections.
+     */
+    int getIdleConnectionCount() {
+        synchronized (this.idleConnections) {
+            int count = 0;
+            for (ArrayDeque<NioConnection> connections : this.idleConnections.values()) {
+                count += connections.size();
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Closes the idle connections, stops the selector loops, failing the calls in flight, and the callback threads.
+     */
+    void shutdown() {
+        this.shutdown = true;
+        synchronized (this.idleConnections) {
+            this.idleConnections.clear();
+        }
+        for (SelectorLoop loop : this.loops) {
+            if (loop != null) {
+                loop.shutdown();
+            }
+        }
+        if (this.executorService != null) {
+            this.executorService.shutdown();
+        }
+    }
+
+    private NioConnection pollIdleConnection(String poolKey) {
+        synchronized (this.idleConnections) {
+            final ArrayDeque<NioConnection> connections = this.idleConnections.get(poolKey);
+            if (connections == null) {
+                return null;
+            }
+            final NioConnection connection = connections.pollLast();
+            if (connections.isEmpty()) {
+                this.idleConnections.remove(poolKey);
+            }
+            return connection;
+        }
+    }
+
+    private SelectorLoop nextLoop() {
+        return this.loops[(this.nextLoop.getAndIncrement() & Integer.MAX_VALUE) % this.loops.length];
+    }
+
+    /**
+     * The scheme, host and port of a URL, and the key of the pool of the connections to them.
+     */
+    static class Endpoint {
+        final boolean secure;
+        final String host;
+        final int port;
+        final String poolKey;
+
+        Endpoint(URL url) {
+            final String scheme = url.getProtocol().toLowerCase(Locale.ROOT);
+            if (!"http".equals(scheme) && !"https".equals(scheme)) {
+                throw new IllegalArgumentException("Unsupported scheme '" + scheme + "', expected http or https.");
+            }
+            this.secure = "https".equals(scheme);
+            this.host = url.getHost();
+            this.port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+            this.poolKey = scheme + "://" + this.host + ":" + this.port;
+        }
+    }
+
+    /**
+     * A request sent on a connection and the callback of its response.
+     */
+    static final class Exchange extends Endpoint {
+        final HttpRequest request;
+        final boolean expectsBody;
+        private final NioTransport transport;
+        private final RequestDeadline deadline;
+        private final byte[] head;
+        private final byte[] body;
+        private final CancellationToken cancellationToken;
+        private final HttpCallback callback;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private String onCancelId;
+        private volatile boolean canceled;
+        private volatile NioConnection connection;
+        // Whether the request was retried on a new connection after a pooled one turned out to be closed.
+        boolean retried;
+
+        Exchange(NioTransport transport,
+                 HttpRequest request,
+                 CancellationToken cancellationToken,
+                 HttpCallback callback) {
+            super(request.getUrl());
+            this.transport = transport;
+            this.request = request;
+            this.cancellationToken = cancellationToken;
+            this.callback = callback;
+            this.expectsBody = request.getHttpMethod() != HttpMethod.HEAD;
+            this.deadline = RequestDeadline.fromRequest(request);
+            this.body = request.getBody();
+            this.head = encodeHead(request, this.body, this.host, this.port, this.secure);
+        }
+
+        /**
+         * Bounds a connect or read timeout by the deadline of the call, if any.
+         *
+         * @param timeoutNanos The timeout configured on the client.
+         * @return The timeout for this exchange.
+         */
+        long boundTimeoutNanos(long timeoutNanos) {
+            return this.deadline == null
+                ? timeoutNanos
+                : this.deadline.boundTimeout(timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Creates the buffers of the request; a new set for each attempt.
+         *
+         * @return The buffers of the head and body of the request.
+         */
+        ByteBuffer[] createRequestBuffers() {
+            return this.body == null || this.body.length == 0
+                ? new ByteBuffer[] {ByteBuffer.wrap(this.head)}
+                : new ByteBuffer[] {ByteBuffer.wrap(this.head), ByteBuffer.wrap(this.body)};
+        }
+
+        boolean isCanceled() {
+            return this.canceled;
+        }
+
+        void setConnection(NioConnection connection) {
+            this.connection = connection;
+        }
+
+        void registerOnCancel() {
+            if (this.cancellationToken == CancellationToken.NONE) {
+                return;
+            }
+            this.onCancelId = UUID.randomUUID().toString();
+            this.cancellationToken.registerOnCancel(this.onCancelId, new Runnable() {
+                @Override
+                public void run() {
+                    canceled = true;
+                    final NioConnection current = connection;
+                    if (current != null) {
+                        current.cancel(Exchange.this);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Notifies the response on a callback thread, unless the exchange already completed.
+         *
+         * @param response The response.
+         * @return false if the exchange already completed.
+         */
+        boolean succeed(HttpResponse response) {
+            if (!complete()) {
+                return false;
+            }
+            this.transport.executeCallback(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onSuccess(response);
+                }
+            });
+            return true;
+        }
+
+        /**
+         * Notifies the error on a callback thread, unless the exchange already completed.
+         *
+         * @param error The error.
+         */
+        void fail(Throwable error) {
+            if (complete()) {
+                this.transport.executeCallback(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onError(error);
+                    }
+                });
+            }
+        }
+
+        /**
+         * Notifies the error on the calling thread, unless the exchange already completed.
+         *
+         * @param error The error.
+         */
+        void failNow(Throwable error) {
+            if (complete()) {
+                this.callback.onError(error);
+            }
+        }
+
+        private boolean complete() {
+            if (!this.done.compareAndSet(false, true)) {
+                return false;
+            }
+            if (this.onCancelId != null) {
+                this.cancellationToken.unregisterOnCancel(this.onCancelId);
+            }
+            return true;
+        }
+
+        private static byte[] encodeHead(HttpRequest request, byte[] body, String host, int port, boolean secure) {
+            final URL url = request.getUrl();
+            final String file = url.getFile();
+            final StringBuilder head = new StringBuilder(256)
+                .append(request.getHttpMethod().toString())
+                .append(' ')
+                .append(file == null || file.isEmpty() ? "/" : file)
+                .append(" HTTP/1.1\r\n");
+            boolean hasHost = false;
+            for (HttpHeader header : request.getHeaders()) {
+                final String name = header.getName();
+                if (header.getValue() == null
+                    || "Content-Length".equalsIgnoreCase(name)
+                    || "Transfer-Encoding".equalsIgnoreCase(name)) {
+                    continue;
+                }
+                hasHost |= "Host".equalsIgnoreCase(name);
+                appendHeader(head, name, header.getValue());
+            }
+            if (!hasHost) {
+                appendHeader(head, "Host", port == (secure ? 443 : 80) ? host : host + ":" + port);
+            }
+            if (body != null) {
+                appendHeader(head, "Content-Length", Integer.toString(body.length));
+            } else if (request.getHttpMethod() == HttpMethod.POST
+                || request.getHttpMethod() == HttpMethod.PUT
+                || request.getHttpMethod() == HttpMethod.PATCH) {
+                appendHeader(head, "Content-Length", "0");
+            }
+            head.append("\r\n");
+            return head.toString().getBytes(ISO_8859_1);
+        }
+
+        private static void appendHeader(StringBuilder head, String name, String value) {
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == '\r' || c == '\n') {
+                    throw new IllegalArgumentException("The value of the header '" + name
+                        + "' contains a line break.");
+                }
+            }
+            head.append(name).append(": ").append(value).append("\r\n");
+        }
+    }
+}
@@ -0,0 +1,176 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.nio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+
+/**
+ * The content of a response, streamed from the selector loop to the reader.
+ *
+ * <p>
+ * The loop offers the content as it arrives and stops reading from the connection while more than
+ * {@link #HIGH_WATER_MARK_BYTES} bytes wait to be read; the connection resumes reading once the reader brings the
+ * buffered bytes under {@link #LOW_WATER_MARK_BYTES}. A read blocks the reading thread, never the loop.
+ * </p>
+ */
+final class ResponseBodyStream extends InputStream {
+    static final int HIGH_WATER_MARK_BYTES = 256 * 1024;
+    static final int LOW_WATER_MARK_BYTES = 64 * 1024;
+
+    private final NioConnection connection;
+    private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+    // The index of the first unread byte of the first chunk.
+    private int chunkOffset;
+    private int bufferedBytes;
+    private boolean complete;
+    private IOException error;
+    private boolean closed;
+    private boolean paused;
+
+    ResponseBodyStream(NioConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Offers a chunk of content; called from the loop.
+     *
+     * @param chunk The chunk, not shared.
+     * @return false if the stream buffers too many bytes, then the connection must stop reading until it's resumed
+     * through {@link NioConnection#resumeReading()}.
+     */
+    synchronized boolean offer(byte[] chunk) {
+        if (this.closed) {
+            return true;
+        }
+        this.chunks.add(chunk);
+        this.bufferedBytes += chunk.length;
+        notifyAll();
+        if (this.bufferedBytes > HIGH_WATER_MARK_BYTES) {
+            this.paused = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Marks the end of the content; called from the loop.
+     */
+    synchronized void complete() {
+        this.complete = true;
+        notifyAll();
+    }
+
+    /**
+     * Marks the content as truncated; called from the loop.
+     *
+     * @param error The cause.
+     */
+    synchronized void fail(IOException error) {
+        if (!this.complete) {
+            this.error = error;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Checks whether the reader closed the stream before the end of the content.
+     *
+     * @return true if the stream was closed.
+     */
+    synchronized boolean isClosed() {
+        return this.closed;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] single = new byte[1];
+        final int read = read(single, 0, 1);
+        return read == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        boolean resume = false;
+        final int read;
+        synchronized (this) {
+            if (this.closed) {
+                throw new IOException("The response body stream is closed.");
+            }
+            while (this.chunks.isEmpty()) {
+                if (this.error != null) {
+                    throw this.error;
+                }
+                if (this.complete) {
+                    return -1;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while reading the response body.");
+                }
+            }
+            final byte[] chunk = this.chunks.peek();
+            read = Math.min(len, chunk.length - this.chunkOffset);
+            System.arraycopy(chunk, this.chunkOffset, b, off, read);
+            this.chunkOffset += read;
+            if (this.chunkOffset == chunk.length) {
+                this.chunks.poll();
+                this.chunkOffset = 0;
+            }
+            this.bufferedBytes -= read;
+            if (this.paused && this.bufferedBytes < LOW_WATER_MARK_BYTES) {
+                this.paused = false;
+                resume = true;
+            }
+        }
+        if (resume) {
+            this.connection.resumeReading();
+        }
+        return read;
+    }
+
+    @Override
+    public synchronized int available() {
+        return this.bufferedBytes;
+    }
+
+    /**
+     * Closes the stream. If the content didn't end yet, the rest is discarded for the connection to go back to the
+     * pool, or the connection is closed if too much is left; the call returns once the connection is done with the
+     * content, for the next call to the endpoint to find the connection in the pool.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.chunks.clear();
+            this.bufferedBytes = 0;
+            this.paused = false;
+            if (this.complete || this.error != null) {
+                return;
+            }
+        }
+        this.connection.abandonBody();
+        synchronized (this) {
+            while (!this.complete && this.error == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.nio;
+
+import com.azure.android.core.logging.ClientLogger;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread multiplexing the I/O of many channels with a {@link Selector}.
+ *
+ * <p>
+ * The channels registered to the loop, and the state of the connections owning them, are only accessed from the
+ * loop thread; other threads hand work to the loop with {@link #execute(Runnable)}.
+ * </p>
+ */
+final class SelectorLoop implements Runnable {
+    private final ClientLogger logger = new ClientLogger(SelectorLoop.class);
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Accessed from the loop thread only.
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+    private volatile boolean shutdown;
+
+    SelectorLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Checks whether the calling thread is the loop thread.
+     *
+     * @return true if called from the loop thread.
+     */
+    boolean inLoop() {
+        return Thread.currentThread() == this.thread;
+    }
+
+    /**
+     * Runs a task on the loop thread.
+     *
+     * @param task The task.
+     */
+    void execute(Runnable task) {
+        this.tasks.add(task);
+        if (!inLoop()) {
+            this.selector.wakeup();
+        }
+    }
+
+    /**
+     * Schedules a task to run on the loop thread after a delay; must be called from the loop thread.
+     *
+     * @param task The task.
+     * @param delayNanos The delay in nanoseconds.
+     * @return The timer, to cancel the task from the loop thread.
+     */
+    Timer schedule(Runnable task, long delayNanos) {
+        final Timer timer = new Timer(task, System.nanoTime() + delayNanos);
+        this.timers.add(timer);
+        return timer;
+    }
+
+    /**
+     * Registers a channel to the selector; must be called from the loop thread.
+     *
+     * @param channel The channel, in non-blocking mode.
+     * @param ops The interest set.
+     * @param handler The handler of the channel events.
+     * @return The selection key of the channel.
+     * @throws ClosedChannelException if the channel is closed.
+     */
+    SelectionKey register(SelectableChannel channel, int ops, ChannelHandler handler) throws ClosedChannelException {
+        return channel.register(this.selector, ops, handler);
+    }
+
+    /**
+     * Stops the loop; the handlers of the channels still registered are notified with {@link ChannelHandler#onClosed}.
+     */
+    void shutdown() {
+        this.shutdown = true;
+        this.selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!this.shutdown) {
+                runTasks();
+                // After the tasks, which may schedule timers, e.g. the read timeout of an exchange on a pooled
+                // connection, for the select to wake up for them.
+                final long timeoutMillis = runTimers();
+                if (this.shutdown) {
+                    break;
+                }
+                if (!this.tasks.isEmpty()) {
+                    this.selector.selectNow();
+                } else if (timeoutMillis > 0) {
+                    this.selector.select(timeoutMillis);
+                } else {
+                    this.selector.select();
+                }
+                processSelectedKeys();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("The selector loop failed.", e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.warning("A selector loop task failed.", e);
+            }
+        }
+    }
+
+    /**
+     * Runs the timers that are due.
+     *
+     * @return The milliseconds until the next timer is due, 0 if there is none.
+     */
+    private long runTimers() {
+        Timer timer;
+        while ((timer = this.timers.peek()) != null) {
+            if (timer.cancelled) {
+                this.timers.poll();
+                continue;
+            }
+            final long remainingNanos = timer.deadlineNanos - System.nanoTime();
+            if (remainingNanos > 0) {
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+            }
+            this.timers.poll();
+            try {
+                timer.task.run();
+            } catch (RuntimeException e) {
+                logger.warning("A selector loop timer failed.", e);
+            }
+        }
+        return 0;
+    }
+
+    private void processSelectedKeys() {
+        final Iterator<SelectionKey> iterator = this.selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            final SelectionKey key = iterator.next();
+            iterator.remove();
+            final ChannelHandler handler = (ChannelHandler) key.attachment();
+            if (!key.isValid()) {
+                continue;
+            }
+            try {
+                handler.onReady(key);
+            } catch (IOException e) {
+                handler.onClosed(e);
+            } catch (RuntimeException e) {
+                handler.onClosed(new IOException(e));
+            }
+        }
+    }
+
+    private void closeAll() {
+        runTasks();
+        final IOException closed = new IOException("The HTTP client was closed.");
+        for (SelectionKey key : this.selector.keys()) {
+            final ChannelHandler handler = (ChannelHandler) key.attachment();
+            if (handler != null) {
+                handler.onClosed(closed);
+            }
+        }
+        try {
+            this.selector.close();
+        } catch (IOException ignored) {
+            // Nothing to do.
+        }
+    }
+
+    /**
+     * The handler of the events of a channel registered to the loop, called on the loop thread.
+     */
+    interface ChannelHandler {
+        /**
+         * Called when the channel is ready for the operations of its interest set.
+         *
+         * @param key The selection key of the channel.
+         * @throws IOException if the I/O failed, the handler is then notified with {@link #onClosed}.
+         */
+        void onReady(SelectionKey key) throws IOException;
+
+        /**
+         * Called when the I/O of the channel failed or the loop stopped; the handler closes the channel.
+         *
+         * @param cause The cause.
+         */
+        void onClosed(IOException cause);
+    }
+
+    /**
+     * A task scheduled on the loop.
+     */
+    static final class Timer implements Comparable<Timer> {
+        private final Runnable task;
+        private final long deadlineNanos;
+        private boolean cancelled;
+
+        Timer(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancels the task; must be called from the loop thread.
+         */
+        void cancel() {
+            this.cancelled = true;
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            final long difference = this.deadlineNanos - other.deadlineNanos;
+            return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+        }
+    }
+}
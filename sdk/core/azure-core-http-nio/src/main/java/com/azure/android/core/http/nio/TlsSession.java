@@ -0,0 +1,284 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.nio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+
+/**
+ * The TLS layer of a non-blocking socket channel, driving an {@link SSLEngine}.
+ *
+ * <p>
+ * The operations never block: they return when the channel can't read or write more, and {@link #wantsWrite()}
+ * tells whether the channel must be selected for writes, rather than reads, to progress. Not thread-safe, the
+ * session is used from the loop thread of its connection.
+ * </p>
+ */
+final class TlsSession {
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SSLEngine engine;
+    private final SocketChannel channel;
+    // The encrypted bytes read from the channel and not unwrapped yet, in write mode.
+    private ByteBuffer netIn;
+    // The encrypted bytes to write to the channel, in read mode.
+    private ByteBuffer netOut;
+    // The decrypted bytes not read yet, in read mode.
+    private ByteBuffer appIn;
+    private boolean wantsWrite;
+
+    TlsSession(SSLEngine engine, SocketChannel channel) {
+        this.engine = engine;
+        this.channel = channel;
+        final int packetBufferSize = engine.getSession().getPacketBufferSize();
+        this.netIn = ByteBuffer.allocate(packetBufferSize);
+        this.netOut = ByteBuffer.allocate(packetBufferSize);
+        this.netOut.flip();
+        this.appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+        this.appIn.flip();
+    }
+
+    SSLEngine getEngine() {
+        return this.engine;
+    }
+
+    /**
+     * Checks whether the last operation stopped because the channel couldn't take more bytes.
+     *
+     * @return true to select the channel for writes, false to select it for reads.
+     */
+    boolean wantsWrite() {
+        return this.wantsWrite;
+    }
+
+    /**
+     * Advances the handshake.
+     *
+     * @return true once the handshake is complete.
+     * @throws IOException if the handshake failed or the channel was closed.
+     */
+    boolean handshake() throws IOException {
+        while (true) {
+            if (!flush()) {
+                return false;
+            }
+            switch (this.engine.getHandshakeStatus()) {
+                case NEED_WRAP:
+                    wrap(EMPTY);
+                    break;
+                case NEED_UNWRAP:
+                    if (!unwrap()) {
+                        final int read = fill();
+                        if (read < 0) {
+                            throw new EOFException("The connection was closed during the TLS handshake.");
+                        }
+                        if (read == 0) {
+                            return false;
+                        }
+                    }
+                    break;
+                case NEED_TASK:
+                    runDelegatedTasks();
+                    break;
+                default:
+                    return flush();
+            }
+        }
+    }
+
+    /**
+     * Reads decrypted bytes.
+     *
+     * @param destination The buffer to read to.
+     * @return The number of bytes read, possibly 0, or -1 if the peer closed the connection.
+     * @throws IOException if the read failed.
+     */
+    int read(ByteBuffer destination) throws IOException {
+        while (true) {
+            if (this.appIn.hasRemaining()) {
+                final int count = Math.min(this.appIn.remaining(), destination.remaining());
+                final int limit = this.appIn.limit();
+                this.appIn.limit(this.appIn.position() + count);
+                destination.put(this.appIn);
+                this.appIn.limit(limit);
+                return count;
+            }
+            if (this.engine.isInboundDone()) {
+                return -1;
+            }
+            if (!unwrap()) {
+                final int read = fill();
+                if (read <= 0) {
+                    return read;
+                }
+            }
+            // A post-handshake message, e.g. a TLS 1.3 session ticket, may need an answer.
+            if (this.engine.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING
+                && !handshake()) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Encrypts and writes bytes.
+     *
+     * @param source The bytes to write.
+     * @return true if all the bytes were written, false if the channel couldn't take more.
+     * @throws IOException if the write failed.
+     */
+    boolean write(ByteBuffer source) throws IOException {
+        if (!flush()) {
+            return false;
+        }
+        while (source.hasRemaining()) {
+            wrap(source);
+            if (!flush()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sends the close notification, without waiting for the peer's.
+     */
+    void closeOutbound() {
+        this.engine.closeOutbound();
+        try {
+            if (flush()) {
+                wrap(EMPTY);
+                flush();
+            }
+        } catch (IOException ignored) {
+            // The connection is being closed anyway.
+        }
+    }
+
+    private boolean flush() throws IOException {
+        while (this.netOut.hasRemaining()) {
+            if (this.channel.write(this.netOut) == 0) {
+                this.wantsWrite = true;
+                return false;
+            }
+        }
+        this.wantsWrite = false;
+        return true;
+    }
+
+    private int fill() throws IOException {
+        if (!this.netIn.hasRemaining()) {
+            this.netIn = enlarge(this.netIn, this.engine.getSession().getPacketBufferSize(), false);
+        }
+        final int read = this.channel.read(this.netIn);
+        if (read < 0) {
+            try {
+                this.engine.closeInbound();
+            } catch (SSLException ignored) {
+                // The peer closed without a close notification, the HTTP framing detects truncated responses.
+            }
+            return -1;
+        }
+        this.wantsWrite = false;
+        return read;
+    }
+
+    private void wrap(ByteBuffer source) throws IOException {
+        while (true) {
+            this.netOut.compact();
+            final SSLEngineResult result;
+            try {
+                result = this.engine.wrap(source, this.netOut);
+            } finally {
+                this.netOut.flip();
+            }
+            switch (result.getStatus()) {
+                case OK:
+                    if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                        runDelegatedTasks();
+                    }
+                    return;
+                case BUFFER_OVERFLOW:
+                    this.netOut = enlarge(this.netOut, this.engine.getSession().getPacketBufferSize(), true);
+                    break;
+                case CLOSED:
+                    if (this.engine.isOutboundDone()) {
+                        return;
+                    }
+                    throw new SSLException("The TLS session was closed.");
+                default:
+                    throw new SSLException("Unexpected TLS wrap status " + result.getStatus() + ".");
+            }
+        }
+    }
+
+    /**
+     * Unwraps the buffered encrypted bytes.
+     *
+     * @return true if a TLS record was consumed, false if more bytes must be read first.
+     * @throws IOException if the bytes couldn't be decrypted.
+     */
+    private boolean unwrap() throws IOException {
+        while (true) {
+            this.netIn.flip();
+            this.appIn.compact();
+            final SSLEngineResult result;
+            try {
+                result = this.engine.unwrap(this.netIn, this.appIn);
+            } finally {
+                this.appIn.flip();
+                this.netIn.compact();
+            }
+            switch (result.getStatus()) {
+                case OK:
+                    if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                        runDelegatedTasks();
+                    }
+                    return true;
+                case BUFFER_UNDERFLOW:
+                    return false;
+                case BUFFER_OVERFLOW:
+                    this.appIn = enlarge(this.appIn, this.engine.getSession().getApplicationBufferSize(), true);
+                    break;
+                case CLOSED:
+                    return true;
+                default:
+                    throw new SSLException("Unexpected TLS unwrap status " + result.getStatus() + ".");
+            }
+        }
+    }
+
+    private void runDelegatedTasks() {
+        Runnable task;
+        while ((task = this.engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Creates a larger buffer with the content of the given one.
+     *
+     * @param buffer The buffer.
+     * @param minimumCapacity The minimum capacity of the new buffer.
+     * @param readMode Whether the buffer is, and the new buffer must be, in read mode rather than write mode.
+     * @return The new buffer.
+     */
+    private static ByteBuffer enlarge(ByteBuffer buffer, int minimumCapacity, boolean readMode) {
+        final ByteBuffer larger = ByteBuffer.allocate(Math.max(minimumCapacity, buffer.capacity() * 2));
+        if (!readMode) {
+            buffer.flip();
+        }
+        larger.put(buffer);
+        if (readMode) {
+            larger.flip();
+        }
+        return larger;
+    }
+}
@@ -0,0 +1,7 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+/**
+ * Package containing the non-blocking java.nio HTTP client plugin for azure-core-http.
+ */
+package com.azure.android.core.http.nio;
@@ -0,0 +1,175 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.nio;
+
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpClient;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.util.CancellationToken;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.http.trafficlistener.WiremockNetworkTrafficListener;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.head;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that sequential calls reuse the pooled connection, by counting the connections the server accepts.
+ */
+public class NioKeepAliveTests {
+    private final AtomicInteger acceptedConnections = new AtomicInteger();
+    private WireMockServer server;
+    private HttpClient httpClient;
+
+    @BeforeEach
+    public void setup() {
+        final byte[] smallBody = new byte[8 * 1024];
+        final byte[] largeBody = new byte[1024 * 1024];
+        Arrays.fill(smallBody, (byte) 'a');
+        Arrays.fill(largeBody, (byte) 'a');
+
+        this.server = new WireMockServer(WireMockConfiguration.options()
+            .dynamicPort()
+            .networkTrafficListener(new WiremockNetworkTrafficListener() {
+                @Override
+                public void opened(Socket socket) {
+                    acceptedConnections.incrementAndGet();
+                }
+
+                @Override
+                public void incoming(Socket socket, ByteBuffer bytes) {
+                }
+
+                @Override
+                public void outgoing(Socket socket, ByteBuffer bytes) {
+                }
+
+                @Override
+                public void closed(Socket socket) {
+                }
+            }));
+        this.server.stubFor(get("/small").willReturn(aResponse().withStatus(200).withBody(smallBody)));
+        this.server.stubFor(get("/large").willReturn(aResponse().withStatus(200).withBody(largeBody)));
+        this.server.stubFor(get("/error").willReturn(aResponse().withStatus(404).withBody("{\"error\":{}}")));
+        this.server.stubFor(get("/empty").willReturn(aResponse().withStatus(204)));
+        this.server.stubFor(head(urlEqualTo("/small")).willReturn(aResponse().withStatus(200)));
+        this.server.stubFor(post("/messages").willReturn(aResponse().withStatus(201).withBody("{}")));
+        this.server.start();
+
+        this.httpClient = new NioAsyncHttpClientBuilder().setSharedTransportEnabled(false).build();
+    }
+
+    @AfterEach
+    public void teardown() {
+        this.httpClient.close();
+        this.server.stop();
+    }
+
+    @Test
+    public void sequentialCallsReuseTheConnection() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(8 * 1024,
+                send(new HttpRequest(HttpMethod.GET, this.server.baseUrl() + "/small")).getBodyAsByteArray().length);
+        }
+        assertEquals(1, this.acceptedConnections.get());
+    }
+
+    @Test
+    public void unreadBodiesAreDrainedOnClose() {
+        for (int i = 0; i < 3; i++) {
+            send(new HttpRequest(HttpMethod.GET, this.server.baseUrl() + "/small")).close();
+        }
+        assertEquals(1, this.acceptedConnections.get());
+    }
+
+    @Test
+    public void partiallyReadBodiesAreDrainedOnClose() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            final HttpResponse response = send(new HttpRequest(HttpMethod.GET, this.server.baseUrl() + "/small"));
+            assertEquals('a', response.getBody().read());
+            response.close();
+        }
+        assertEquals(1, this.acceptedConnections.get());
+    }
+
+    @Test
+    public void errorAndEmptyResponsesKeepTheConnection() {
+        final HttpResponse error = send(new HttpRequest(HttpMethod.GET, this.server.baseUrl() + "/error"));
+        assertEquals(404, error.getStatusCode());
+        error.close();
+        assertEquals(204, send(new HttpRequest(HttpMethod.GET, this.server.baseUrl() + "/empty")).getStatusCode());
+        assertEquals(200, send(new HttpRequest(HttpMethod.HEAD, this.server.baseUrl() + "/small")).getStatusCode());
+        send(new HttpRequest(HttpMethod.GET, this.server.baseUrl() + "/small")).close();
+        assertEquals(1, this.acceptedConnections.get());
+    }
+
+    @Test
+    public void requestBodiesKeepTheConnection() {
+        for (int i = 0; i < 3; i++) {
+            final HttpRequest request = new HttpRequest(HttpMethod.POST, this.server.baseUrl() + "/messages")
+                .setHeader("Content-Type", "application/json")
+                .setBody("{\"content\":\"hello\"}");
+            assertEquals("{}", send(request).getBodyAsString());
+        }
+        assertEquals(1, this.acceptedConnections.get());
+        this.server.verify(3, postRequestedFor(urlEqualTo("/messages"))
+            .withHeader("Content-Length", equalTo("19"))
+            .withRequestBody(equalTo("{\"content\":\"hello\"}")));
+    }
+
+    @Test
+    public void bodiesOverTheDrainLimitAreNotDrained() {
+        send(new HttpRequest(HttpMethod.GET, this.server.baseUrl() + "/large")).close();
+        send(new HttpRequest(HttpMethod.GET, this.server.baseUrl() + "/small")).close();
+        assertEquals(2, this.acceptedConnections.get());
+    }
+
+    private HttpResponse send(HttpRequest request) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<HttpResponse> response = new AtomicReference<>();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        this.httpClient.send(request, CancellationToken.NONE, new HttpCallback() {
+            @Override
+            public void onSuccess(HttpResponse httpResponse) {
+                response.set(httpResponse);
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error.set(throwable);
+                latch.countDown();
+            }
+        });
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS), "The call did not complete.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        assertNotNull(response.get(), () -> "The call failed: " + error.get());
+        return response.get();
+    }
+}
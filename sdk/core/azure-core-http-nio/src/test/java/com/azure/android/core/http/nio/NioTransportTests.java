@@ -0,0 +1,400 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.nio;
+
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpClient;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.implementation.HttpClientProviders;
+import com.azure.android.core.util.CancellationToken;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.threeten.bp.Duration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NioTransportTests {
+    private static final byte[] LARGE_BODY = new byte[4 * 1024 * 1024];
+
+    static {
+        for (int i = 0; i < LARGE_BODY.length; i++) {
+            LARGE_BODY[i] = (byte) i;
+        }
+    }
+
+    private WireMockServer server;
+    private HttpClient httpClient;
+
+    @BeforeEach
+    public void setup() {
+        this.server = new WireMockServer(WireMockConfiguration.options().dynamicPort().dynamicHttpsPort());
+        this.server.stubFor(get("/small").willReturn(aResponse().withStatus(200).withBody("Hello World!")));
+        this.server.stubFor(get("/large").willReturn(aResponse().withStatus(200).withBody(LARGE_BODY)));
+        this.server.stubFor(get("/slow").willReturn(aResponse().withStatus(200).withFixedDelay(2000)));
+        this.server.start();
+
+        this.httpClient = new NioAsyncHttpClientBuilder().setSharedTransportEnabled(false).build();
+    }
+
+    @AfterEach
+    public void teardown() {
+        this.httpClient.close();
+        this.server.stop();
+    }
+
+    @Test
+    public void largeBodyIsStreamed() throws Exception {
+        final HttpResponse response = send(this.httpClient, getRequest(baseUrl() + "/large"));
+        // Reading slowly makes the connection pause and resume.
+        Thread.sleep(200);
+        assertArrayEquals(LARGE_BODY, response.getBodyAsByteArray());
+    }
+
+    @Test
+    public void concurrentCallsComplete() throws Exception {
+        final int calls = 100;
+        final CountDownLatch latch = new CountDownLatch(calls);
+        final AtomicInteger successes = new AtomicInteger();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        for (int i = 0; i < calls; i++) {
+            final HttpRequest request = getRequest(baseUrl() + "/small");
+            this.httpClient.send(request, CancellationToken.NONE, new HttpCallback() {
+                @Override
+                public void onSuccess(HttpResponse response) {
+                    if ("Hello World!".equals(response.getBodyAsString())) {
+                        successes.incrementAndGet();
+                    }
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    error.set(throwable);
+                    latch.countDown();
+                }
+            });
+        }
+        assertTrue(latch.await(30, TimeUnit.SECONDS), "The calls did not complete.");
+        assertEquals(calls, successes.get(), () -> "A call failed: " + error.get());
+    }
+
+    @Test
+    public void httpsWithCustomSslContext() throws Exception {
+        final HttpClient client = new NioAsyncHttpClientBuilder()
+            .setSslContext(trustAllSslContext())
+            .setHostnameVerifier(new HostnameVerifier() {
+                @Override
+                public boolean verify(String hostname, SSLSession session) {
+                    return true;
+                }
+            })
+            .build();
+        try {
+            final String url = "https://localhost:" + this.server.httpsPort();
+            assertEquals("Hello World!", send(client, getRequest(url + "/small")).getBodyAsString());
+            assertArrayEquals(LARGE_BODY, send(client, getRequest(url + "/large")).getBodyAsByteArray());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void httpsWithUntrustedCertificateFails() {
+        final Throwable error = sendExpectingError(this.httpClient,
+            getRequest("https://localhost:" + this.server.httpsPort() + "/small"));
+        assertTrue(error instanceof SSLException, () -> "Unexpected error: " + error);
+    }
+
+    @Test
+    public void readTimeoutFailsTheCall() {
+        final HttpClient client = new NioAsyncHttpClientBuilder().setReadTimeout(Duration.ofMillis(200)).build();
+        try {
+            final Throwable error = sendExpectingError(client, getRequest(baseUrl() + "/slow"));
+            assertTrue(error instanceof SocketTimeoutException, () -> "Unexpected error: " + error);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void cancellationFailsTheCall() throws Exception {
+        final CancellationToken cancellationToken = new CancellationToken();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        this.httpClient.send(getRequest(baseUrl() + "/slow"), cancellationToken, new HttpCallback() {
+            @Override
+            public void onSuccess(HttpResponse response) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error.set(throwable);
+                latch.countDown();
+            }
+        });
+        Thread.sleep(100);
+        cancellationToken.cancel();
+        assertTrue(latch.await(1, TimeUnit.SECONDS), "The call was not canceled.");
+        assertNotNull(error.get());
+        assertEquals("Canceled.", error.get().getMessage());
+    }
+
+    @Test
+    public void closedClientFailsCalls() {
+        this.httpClient.close();
+        assertNotNull(sendExpectingError(this.httpClient, getRequest(baseUrl() + "/small")));
+    }
+
+    @Test
+    public void prewarmPoolsAConnection() throws Exception {
+        final NioTransport transport = new NioAsyncHttpClientBuilder().setSharedTransportEnabled(false)
+            .setMaxIdleConnectionsPerHost(5)
+            .buildTransport();
+        try {
+            final NioAsyncHttpClient client = new NioAsyncHttpClient(transport, null);
+            client.prewarm(Collections.singletonList(baseUrl() + "/path?query"));
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (transport.getIdleConnectionCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, transport.getIdleConnectionCount());
+            assertEquals("Hello World!", send(client, getRequest(baseUrl() + "/small")).getBodyAsString());
+            assertEquals(1, transport.getIdleConnectionCount());
+        } finally {
+            transport.shutdown();
+        }
+    }
+
+    @Test
+    public void chunkedAndUntilCloseResponsesAreDecoded() throws Exception {
+        final List<String> responses = Arrays.asList(
+            "HTTP/1.1 100 Continue\r\n\r\n"
+                + "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\nX-Repeated: a\r\nX-Repeated: b\r\n\r\n"
+                + "5;name=value\r\nHello\r\n7\r\n World!\r\n0\r\nX-Trailer: c\r\n\r\n",
+            "HTTP/1.0 200 OK\r\n\r\nHello World!");
+        try (ScriptedServer scripted = new ScriptedServer(responses, false)) {
+            final HttpResponse chunked = send(this.httpClient, getRequest(scripted.baseUrl() + "/chunked"));
+            assertEquals("a,b", chunked.getHeaderValue("X-Repeated"));
+            assertEquals("Hello World!", chunked.getBodyAsString());
+            assertEquals("Hello World!", send(this.httpClient, getRequest(scripted.baseUrl() + "/close"))
+                .getBodyAsString());
+            assertEquals(1, scripted.acceptedConnections.get());
+        }
+    }
+
+    @Test
+    public void requestOnAConnectionClosedByTheServerIsRetried() throws Exception {
+        final List<String> responses = Arrays.asList(
+            "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nfirst",
+            "HTTP/1.1 200 OK\r\nContent-Length: 6\r\n\r\nsecond");
+        try (ScriptedServer scripted = new ScriptedServer(responses, true)) {
+            assertEquals("first", send(this.httpClient, getRequest(scripted.baseUrl() + "/")).getBodyAsString());
+            assertEquals("second", send(this.httpClient, getRequest(scripted.baseUrl() + "/")).getBodyAsString());
+            assertEquals(2, scripted.acceptedConnections.get());
+        }
+    }
+
+    @Test
+    public void defaultClientsShareTheirTransport() {
+        final String key = NioAsyncHttpClientBuilder.SHARED_TRANSPORT_KEY;
+        final int references = HttpClientProviders.getSharedTransportReferenceCount(key);
+        final HttpClient first = new NioAsyncHttpClientBuilder().build();
+        final HttpClient second = new NioAsyncHttpClientBuilder().build();
+        final HttpClient custom = new NioAsyncHttpClientBuilder().setSelectorThreadCount(2).build();
+        try {
+            assertEquals(references + 2, HttpClientProviders.getSharedTransportReferenceCount(key));
+            assertSame(first.getHttpCallDispatcher(), second.getHttpCallDispatcher());
+            assertNotSame(first.getHttpCallDispatcher(), custom.getHttpCallDispatcher());
+        } finally {
+            first.close();
+            second.close();
+            second.close();
+            custom.close();
+        }
+        assertEquals(references, HttpClientProviders.getSharedTransportReferenceCount(key));
+    }
+
+    private String baseUrl() {
+        return "http://localhost:" + this.server.port();
+    }
+
+    private static HttpRequest getRequest(String url) {
+        return new HttpRequest(HttpMethod.GET, url);
+    }
+
+    private static HttpResponse send(HttpClient client, HttpRequest request) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<HttpResponse> response = new AtomicReference<>();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        client.send(request, CancellationToken.NONE, new HttpCallback() {
+            @Override
+            public void onSuccess(HttpResponse httpResponse) {
+                response.set(httpResponse);
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error.set(throwable);
+                latch.countDown();
+            }
+        });
+        await(latch);
+        assertNotNull(response.get(), () -> "The call failed: " + error.get());
+        return response.get();
+    }
+
+    private static Throwable sendExpectingError(HttpClient client, HttpRequest request) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        client.send(request, CancellationToken.NONE, new HttpCallback() {
+            @Override
+            public void onSuccess(HttpResponse httpResponse) {
+                httpResponse.close();
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error.set(throwable);
+                latch.countDown();
+            }
+        });
+        await(latch);
+        assertNotNull(error.get(), "The call did not fail.");
+        return error.get();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS), "The call did not complete.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static SSLContext trustAllSslContext() throws Exception {
+        final SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, new TrustManager[] {
+            new X509TrustManager() {
+                @Override
+                public void checkClientTrusted(X509Certificate[] chain, String authType) {
+                }
+
+                @Override
+                public void checkServerTrusted(X509Certificate[] chain, String authType) {
+                }
+
+                @Override
+                public X509Certificate[] getAcceptedIssuers() {
+                    return new X509Certificate[0];
+                }
+            }
+        }, null);
+        return sslContext;
+    }
+
+    /**
+     * A server answering the requests it receives, in order, with raw responses.
+     */
+    private static final class ScriptedServer implements AutoCloseable {
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        private final AtomicInteger acceptedConnections = new AtomicInteger();
+        private final Thread thread;
+
+        /**
+         * Creates the server.
+         *
+         * @param responses The responses, one per request.
+         * @param closeAfterResponse Whether to close each connection after a response, without telling the client.
+         */
+        ScriptedServer(List<String> responses, boolean closeAfterResponse) throws IOException {
+            final List<String> pending = Collections.synchronizedList(new ArrayList<>(responses));
+            this.thread = new Thread(() -> {
+                while (!pending.isEmpty()) {
+                    try (Socket socket = this.serverSocket.accept()) {
+                        this.acceptedConnections.incrementAndGet();
+                        final InputStream in = socket.getInputStream();
+                        final OutputStream out = socket.getOutputStream();
+                        while (!pending.isEmpty() && readRequestHead(in)) {
+                            final String response = pending.remove(0);
+                            out.write(response.getBytes(StandardCharsets.ISO_8859_1));
+                            out.flush();
+                            if (closeAfterResponse || response.startsWith("HTTP/1.0")) {
+                                break;
+                            }
+                        }
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        String baseUrl() {
+            return "http://localhost:" + this.serverSocket.getLocalPort();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.serverSocket.close();
+        }
+
+        private static boolean readRequestHead(InputStream in) throws IOException {
+            int matched = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                if ((b == '\r' && (matched == 0 || matched == 2)) || (b == '\n' && (matched == 1 || matched == 3))) {
+                    matched++;
+                    if (matched == 4) {
+                        return true;
+                    }
+                } else {
+                    matched = 0;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.okhttp;
+
+/**
+ * A snapshot of the connection metrics of a host, see {@link OkHttpConnectionMetrics#getSnapshot()}.
+ */
+public final class HostConnectionMetrics {
+    private final String host;
+    private final long acquiredConnectionCount;
+    private final long reusedConnectionCount;
+    private final long newConnectionCount;
+    private final long connectFailureCount;
+    private final long idleEvictionCount;
+    private final LatencyHistogram dnsLatency;
+    private final LatencyHistogram connectLatency;
+    private final LatencyHistogram handshakeLatency;
+
+    HostConnectionMetrics(String host,
+                          long acquiredConnectionCount,
+                          long reusedConnectionCount,
+                          long newConnectionCount,
+                          long connectFailureCount,
+                          long idleEvictionCount,
+                          LatencyHistogram dnsLatency,
+                          LatencyHistogram connectLatency,
+                          LatencyHistogram handshakeLatency) {
+        this.host = host;
+        this.acquiredConnectionCount = acquiredConnectionCount;
+        this.reusedConnectionCount = reusedConnectionCount;
+        this.newConnectionCount = newConnectionCount;
+        this.connectFailureCount = connectFailureCount;
+        this.idleEvictionCount = idleEvictionCount;
+        this.dnsLatency = dnsLatency;
+        this.connectLatency = connectLatency;
+        this.handshakeLatency = handshakeLatency;
+    }
+
+    /**
+     * Gets the name of the host.
+     *
+     * @return The host.
+     */
+    public String getHost() {
+        return this.host;
+    }
+
+    /**
+     * Gets the number of times a call acquired a connection to the host, new or reused.
+     *
+     * @return The number of connection acquisitions.
+     */
+    public long getAcquiredConnectionCount() {
+        return this.acquiredConnectionCount;
+    }
+
+    /**
+     * Gets the number of connections successfully opened to the host.
+     *
+     * @return The number of new connections.
+     */
+    public long getNewConnectionCount() {
+        return this.newConnectionCount;
+    }
+
+    /**
+     * Gets the number of times a call acquired a connection already open to the host, from the pool or shared
+     * through HTTP/2.
+     *
+     * @return The number of reused connections.
+     */
+    public long getReusedConnectionCount() {
+        return this.reusedConnectionCount;
+    }
+
+    /**
+     * Gets the ratio of the connection acquisitions that reused an open connection.
+     *
+     * @return The pool reuse ratio, between 0 and 1, 0 if no connection was acquired.
+     */
+    public double getPoolReuseRatio() {
+        return this.acquiredConnectionCount == 0
+            ? 0
+            : (double) this.reusedConnectionCount / this.acquiredConnectionCount;
+    }
+
+    /**
+     * Gets the number of attempts to connect to an address of the host that failed.
+     *
+     * @return The number of connect failures.
+     */
+    public long getConnectFailureCount() {
+        return this.connectFailureCount;
+    }
+
+    /**
+     * Gets the number of idle connections to the host that were closed while in the pool, because they stayed idle
+     * too long, the pool had too many idle connections, or they were found stale.
+     *
+     * @return The number of idle evictions.
+     */
+    public long getIdleEvictionCount() {
+        return this.idleEvictionCount;
+    }
+
+    /**
+     * Gets the distribution of the time spent resolving the host.
+     *
+     * @return The DNS lookup latency.
+     */
+    public LatencyHistogram getDnsLatency() {
+        return this.dnsLatency;
+    }
+
+    /**
+     * Gets the distribution of the time spent opening the TCP connections to the host, through the proxy if any,
+     * excluding the TLS handshake.
+     *
+     * @return The connect latency.
+     */
+    public LatencyHistogram getConnectLatency() {
+        return this.connectLatency;
+    }
+
+    /**
+     * Gets the distribution of the time spent in the TLS handshakes with the host.
+     *
+     * @return The TLS handshake latency.
+     */
+    public LatencyHistogram getHandshakeLatency() {
+        return this.handshakeLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "HostConnectionMetrics{host=" + this.host
+            + ", acquiredConnectionCount=" + this.acquiredConnectionCount
+            + ", reusedConnectionCount=" + this.reusedConnectionCount
+            + ", newConnectionCount=" + this.newConnectionCount
+            + ", poolReuseRatio=" + getPoolReuseRatio()
+            + ", connectFailureCount=" + this.connectFailureCount
+            + ", idleEvictionCount=" + this.idleEvictionCount
+            + ", dnsLatency=" + this.dnsLatency
+            + ", connectLatency=" + this.connectLatency
+            + ", handshakeLatency=" + this.handshakeLatency + '}';
+    }
+}
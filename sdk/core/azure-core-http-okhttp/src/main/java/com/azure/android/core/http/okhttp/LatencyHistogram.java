@@ -0,0 +1,160 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.okhttp;
+
+import com.azure.android.core.logging.ClientLogger;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A snapshot of the distribution of a latency, as the number of values recorded in fixed buckets.
+ *
+ * <p>
+ * The bucket {@code i} counts the values greater than the upper bound of the bucket {@code i - 1} and lower than or
+ * equal to {@code getBucketUpperBoundsMillis()[i]}; the last bucket counts the values greater than the last upper
+ * bound.
+ * </p>
+ */
+public final class LatencyHistogram {
+    private static final ClientLogger LOGGER = new ClientLogger(LatencyHistogram.class);
+    private static final long[] BUCKET_UPPER_BOUNDS_MILLIS = {
+        1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000
+    };
+    private static final long[] BUCKET_UPPER_BOUNDS_NANOS = new long[BUCKET_UPPER_BOUNDS_MILLIS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MILLIS.length; i++) {
+            BUCKET_UPPER_BOUNDS_NANOS[i] = TimeUnit.MILLISECONDS.toNanos(BUCKET_UPPER_BOUNDS_MILLIS[i]);
+        }
+    }
+
+    private final long[] bucketCounts;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    private LatencyHistogram(long[] bucketCounts, long count, long totalNanos, long maxNanos) {
+        this.bucketCounts = bucketCounts;
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * Gets the upper bounds of the buckets, inclusive, in milliseconds.
+     *
+     * @return The upper bounds of the buckets, one less than the number of buckets.
+     */
+    public long[] getBucketUpperBoundsMillis() {
+        return BUCKET_UPPER_BOUNDS_MILLIS.clone();
+    }
+
+    /**
+     * Gets the number of values recorded in each bucket.
+     *
+     * @return The counts of the buckets.
+     */
+    public long[] getBucketCounts() {
+        return this.bucketCounts.clone();
+    }
+
+    /**
+     * Gets the number of values recorded.
+     *
+     * @return The number of values.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Gets the mean of the values recorded.
+     *
+     * @return The mean in milliseconds, 0 if no value was recorded.
+     */
+    public double getMeanMillis() {
+        return this.count == 0 ? 0 : (double) this.totalNanos / this.count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Gets the greatest value recorded.
+     *
+     * @return The greatest value in milliseconds, 0 if no value was recorded.
+     */
+    public double getMaxMillis() {
+        return (double) this.maxNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Gets an upper bound of the given percentile of the values recorded: the upper bound of the bucket the
+     * percentile falls in, or the greatest value if it falls in the last bucket.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The upper bound of the percentile in milliseconds, 0 if no value was recorded.
+     * @throws IllegalArgumentException if the percentile is not between 0 and 100.
+     */
+    public double getPercentileMillis(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw LOGGER.logExceptionAsError(
+                new IllegalArgumentException("'percentile' must be between 0 and 100."));
+        }
+        if (this.count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MILLIS.length; i++) {
+            seen += this.bucketCounts[i];
+            if (seen >= rank) {
+                return Math.min(BUCKET_UPPER_BOUNDS_MILLIS[i], getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{count=" + this.count
+            + ", meanMillis=" + getMeanMillis()
+            + ", maxMillis=" + getMaxMillis()
+            + ", bucketCounts=" + Arrays.toString(this.bucketCounts) + '}';
+    }
+
+    /**
+     * Records the values of a histogram, safe for concurrent use.
+     */
+    static final class Recorder {
+        private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_UPPER_BOUNDS_MILLIS.length + 1);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            int bucket = 0;
+            while (bucket < BUCKET_UPPER_BOUNDS_MILLIS.length && nanos > BUCKET_UPPER_BOUNDS_NANOS[bucket]) {
+                bucket++;
+            }
+            this.bucketCounts.incrementAndGet(bucket);
+            this.count.incrementAndGet();
+            this.totalNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = this.maxNanos.get()) && !this.maxNanos.compareAndSet(max, nanos)) {
+                // Another value was recorded concurrently, compare again.
+            }
+        }
+
+        LatencyHistogram snapshot() {
+            final long[] counts = new long[this.bucketCounts.length()];
+            long count = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = this.bucketCounts.get(i);
+                count += counts[i];
+            }
+            return new LatencyHistogram(counts, count, this.totalNanos.get(), this.maxNanos.get());
+        }
+    }
+}
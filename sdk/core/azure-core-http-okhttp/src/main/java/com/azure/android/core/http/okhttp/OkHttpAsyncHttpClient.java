@@ -11,6 +11,8 @@ import com.azure.android.core.http.HttpRequest;
 import com.azure.android.core.http.HttpHeader;
 import com.azure.android.core.http.HttpMethod;
 import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.RequestDeadline;
+import com.azure.android.core.http.implementation.HttpClientProviders;
 import com.azure.android.core.util.CancellationToken;
 import com.azure.android.core.logging.ClientLogger;
 
@@ -22,12 +24,16 @@ import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import okhttp3.Headers;
+import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.RequestBody;
@@ -41,11 +47,14 @@ class OkHttpAsyncHttpClient implements HttpClient {
 
     private final OkHttpClient httpClient;
     private final HttpCallDispatcher httpCallDispatcher;
+    // The key of the shared transport the client references, null if the transport is its own.
+    private final String sharedTransportKey;
+    private final AtomicBoolean closed = new AtomicBoolean();
 
-
-    OkHttpAsyncHttpClient(OkHttpClient okHttpClient, HttpCallDispatcher httpCallDispatcher) {
-        this.httpClient = okHttpClient;
-        this.httpCallDispatcher = httpCallDispatcher;
+    OkHttpAsyncHttpClient(Transport transport, String sharedTransportKey) {
+        this.httpClient = transport.okHttpClient;
+        this.httpCallDispatcher = transport.httpCallDispatcher;
+        this.sharedTransportKey = sharedTransportKey;
     }
 
     @Override
@@ -53,6 +62,45 @@ class OkHttpAsyncHttpClient implements HttpClient {
         return this.httpCallDispatcher;
     }
 
+    @Override
+    public void close() {
+        if (this.sharedTransportKey != null && this.closed.compareAndSet(false, true)) {
+            HttpClientProviders.releaseSharedTransport(this.sharedTransportKey);
+        }
+    }
+
+    @Override
+    public void prewarm(List<String> endpoints) {
+        for (String endpoint : endpoints) {
+            final HttpUrl endpointUrl = endpoint == null ? null : HttpUrl.parse(endpoint);
+            if (endpointUrl == null) {
+                logger.warning("Skipping the prewarm of the invalid endpoint '{}'.", endpoint);
+                continue;
+            }
+            // A HEAD to the root makes OkHttp resolve the host, connect and pool the connection, its response is
+            // discarded.
+            final okhttp3.Request request = new okhttp3.Request.Builder()
+                .url(endpointUrl.newBuilder().encodedPath("/").query(null).fragment(null).build())
+                .head()
+                .build();
+            httpClient.newCall(request).enqueue(new okhttp3.Callback() {
+                @Override
+                public void onFailure(okhttp3.Call call, IOException error) {
+                    logger.verbose("Failed to prewarm the connection to '{}'.", endpoint, error);
+                }
+
+                @Override
+                public void onResponse(okhttp3.Call call, Response response) {
+                    response.close();
+                }
+            });
+        }
+    }
+
+    OkHttpClient getOkHttpClient() {
+        return this.httpClient;
+    }
+
     @Override
     public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
         okhttp3.Request.Builder okhttpRequestBuilder = new okhttp3.Request.Builder();
@@ -91,6 +139,12 @@ class OkHttpAsyncHttpClient implements HttpClient {
 
         final okhttp3.Request okHttpRequest = okhttpRequestBuilder.build();
         final okhttp3.Call call = httpClient.newCall(okHttpRequest);
+        final RequestDeadline deadline = RequestDeadline.fromRequest(httpRequest);
+        if (deadline != null) {
+            // OkHttp has no per-call connect and read timeouts, bound the whole call instead; 0 means no timeout.
+            call.timeout().timeout(deadline.boundTimeout(call.timeout().timeoutNanos(), TimeUnit.NANOSECONDS),
+                TimeUnit.NANOSECONDS);
+        }
 
         final String onCancelId = (cancellationToken == CancellationToken.NONE) ? null : UUID.randomUUID().toString();
         if (onCancelId != null) {
@@ -254,4 +308,17 @@ class OkHttpAsyncHttpClient implements HttpClient {
             }
         }
     }
+
+    /**
+     * The OkHttpClient and the dispatcher running the calls of a client, possibly shared with other clients.
+     */
+    static final class Transport {
+        final OkHttpClient okHttpClient;
+        final HttpCallDispatcher httpCallDispatcher;
+
+        Transport(OkHttpClient okHttpClient, HttpCallDispatcher httpCallDispatcher) {
+            this.okHttpClient = okHttpClient;
+            this.httpCallDispatcher = httpCallDispatcher;
+        }
+    }
 }
@@ -5,6 +5,7 @@ package com.azure.android.core.http.okhttp;
 
 import com.azure.android.core.http.HttpCallDispatcher;
 import com.azure.android.core.http.HttpClient;
+import com.azure.android.core.http.implementation.HttpClientProviders;
 
 import java.util.Objects;
 
@@ -14,7 +15,25 @@ import okhttp3.OkHttpClient;
  * Builder class responsible for creating instances of {@link com.azure.android.core.http.HttpClient} backed by OkHttp.
  */
 public class OkHttpAsyncHttpClientBuilder {
+    // The configuration of the shared transport, the default OkHttpClient.
+    static final String SHARED_TRANSPORT_KEY = "okhttp:default";
+    private static final HttpClientProviders.SharedTransportFactory<OkHttpAsyncHttpClient.Transport>
+        SHARED_TRANSPORT_FACTORY = new HttpClientProviders.SharedTransportFactory<OkHttpAsyncHttpClient.Transport>() {
+            @Override
+            public OkHttpAsyncHttpClient.Transport create() {
+                return createTransport(new OkHttpClient.Builder());
+            }
+
+            @Override
+            public void dispose(OkHttpAsyncHttpClient.Transport transport) {
+                transport.okHttpClient.dispatcher().executorService().shutdown();
+                transport.okHttpClient.connectionPool().evictAll();
+            }
+        };
+
     private final okhttp3.OkHttpClient okHttpClient;
+    private boolean sharedTransportEnabled = true;
+    private OkHttpConnectionMetrics connectionMetrics;
 
     /**
      * Creates OkHttpAsyncHttpClientBuilder.
@@ -32,6 +51,41 @@ public class OkHttpAsyncHttpClientBuilder {
         this.okHttpClient = Objects.requireNonNull(okHttpClient, "'okHttpClient' cannot be null.");
     }
 
+    /**
+     * Sets whether the clients built without an OkHttpClient share the connection pool and the threads of a single
+     * OkHttpClient with the other such clients of the process, which is the default. The connections to the same
+     * hosts are then reused across clients instead of each client opening and handshaking its own.
+     *
+     * <p>
+     * The clients built with an OkHttpClient always use the connection pool and threads of that OkHttpClient.
+     * </p>
+     *
+     * @param sharedTransportEnabled false to give the built clients their own connection pool and threads.
+     * @return The updated OkHttpAsyncHttpClientBuilder object.
+     */
+    public OkHttpAsyncHttpClientBuilder setSharedTransportEnabled(boolean sharedTransportEnabled) {
+        this.sharedTransportEnabled = sharedTransportEnabled;
+        return this;
+    }
+
+    /**
+     * Sets the metrics the built clients record their connection pool reuse, DNS, connect and TLS handshake
+     * latencies, connect failures and idle evictions to. No metrics are recorded by default.
+     *
+     * <p>
+     * The clients built with metrics get their own connection pool and threads, as if
+     * {@link #setSharedTransportEnabled(boolean) setSharedTransportEnabled(false)} was set; the event listener of the
+     * OkHttpClient, if any, keeps receiving the events.
+     * </p>
+     *
+     * @param connectionMetrics The metrics to record to, null to record none.
+     * @return The updated OkHttpAsyncHttpClientBuilder object.
+     */
+    public OkHttpAsyncHttpClientBuilder setConnectionMetrics(OkHttpConnectionMetrics connectionMetrics) {
+        this.connectionMetrics = connectionMetrics;
+        return this;
+    }
+
     /**
      * Creates a new OkHttp-backed {@link com.azure.android.core.http.HttpClient} instance on every call, using the
      * configuration set in the builder at the time of the build method call.
@@ -39,15 +93,27 @@ public class OkHttpAsyncHttpClientBuilder {
      * @return A new OkHttp-backed {@link com.azure.android.core.http.HttpClient} instance.
      */
     public HttpClient build() {
+        if (this.okHttpClient == null && this.sharedTransportEnabled && this.connectionMetrics == null) {
+            return new OkHttpAsyncHttpClient(
+                HttpClientProviders.acquireSharedTransport(SHARED_TRANSPORT_KEY, SHARED_TRANSPORT_FACTORY),
+                SHARED_TRANSPORT_KEY);
+        }
+
         OkHttpClient.Builder httpClientBuilder = this.okHttpClient == null
             ? new OkHttpClient.Builder()
             : this.okHttpClient.newBuilder();
+        if (this.connectionMetrics != null) {
+            httpClientBuilder.eventListenerFactory(this.connectionMetrics.createEventListenerFactory(
+                this.okHttpClient == null ? null : this.okHttpClient.eventListenerFactory()));
+        }
+        return new OkHttpAsyncHttpClient(createTransport(httpClientBuilder), null);
+    }
 
+    private static OkHttpAsyncHttpClient.Transport createTransport(OkHttpClient.Builder httpClientBuilder) {
         final OkHttpClient okHttpClient = httpClientBuilder.build();
         final HttpCallDispatcher httpCallDispatcher
             = new HttpCallDispatcher(okHttpClient.dispatcher().executorService());
         httpCallDispatcher.setMaxRunningCalls(okHttpClient.dispatcher().getMaxRequests());
-
-        return new OkHttpAsyncHttpClient(okHttpClient, httpCallDispatcher);
+        return new OkHttpAsyncHttpClient.Transport(okHttpClient, httpCallDispatcher);
     }
 }
@@ -0,0 +1,300 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.okhttp;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Aggregates per host the connection metrics of the OkHttp clients it is set on, see
+ * {@link OkHttpAsyncHttpClientBuilder#setConnectionMetrics(OkHttpConnectionMetrics)}: how often the calls reuse a
+ * pooled connection, how long the DNS lookups, TCP connects and TLS handshakes take, how many connects fail and how
+ * many idle connections are evicted from the pool.
+ *
+ * <p>
+ * The metrics are keyed by the host of the calls' URLs and recorded from OkHttp's {@link EventListener} events,
+ * the OkHttpClient's own listener, if any, still receives all of them. A snapshot is taken with
+ * {@link #getSnapshot()}; the counters of a host are read one after the other while calls may be recording, so
+ * they may be off by the calls in flight.
+ * </p>
+ */
+public final class OkHttpConnectionMetrics {
+    private final ConcurrentHashMap<String, HostRecorder> hosts = new ConcurrentHashMap<>();
+    // The connections released to the pool and not acquired since, to detect the ones the pool closes.
+    private final Map<Connection, HostRecorder> idleConnections = new IdentityHashMap<>();
+
+    /**
+     * Creates an OkHttpConnectionMetrics, with no metrics recorded.
+     */
+    public OkHttpConnectionMetrics() {
+    }
+
+    /**
+     * Gets a snapshot of the metrics recorded so far.
+     *
+     * @return The metrics of each host a connection was acquired or attempted to, keyed by host name.
+     */
+    public Map<String, HostConnectionMetrics> getSnapshot() {
+        sweepIdleConnections();
+        final Map<String, HostConnectionMetrics> snapshot = new TreeMap<>();
+        for (Map.Entry<String, HostRecorder> entry : this.hosts.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().snapshot(entry.getKey()));
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Creates the factory of the listeners recording the metrics of the calls.
+     *
+     * @param delegate The factory of the listeners to forward the events to, null if none.
+     * @return The listener factory.
+     */
+    EventListener.Factory createEventListenerFactory(EventListener.Factory delegate) {
+        return new EventListener.Factory() {
+            @Override
+            public EventListener create(Call call) {
+                return new CallListener(call, delegate == null ? EventListener.NONE : delegate.create(call));
+            }
+        };
+    }
+
+    private HostRecorder host(String host) {
+        HostRecorder recorder = this.hosts.get(host);
+        if (recorder == null) {
+            final HostRecorder newRecorder = new HostRecorder();
+            recorder = this.hosts.putIfAbsent(host, newRecorder);
+            if (recorder == null) {
+                recorder = newRecorder;
+            }
+        }
+        return recorder;
+    }
+
+    private void onConnectionAcquired(Connection connection) {
+        synchronized (this.idleConnections) {
+            this.idleConnections.remove(connection);
+        }
+    }
+
+    private void onConnectionReleased(Connection connection, HostRecorder recorder) {
+        synchronized (this.idleConnections) {
+            // OkHttp closes a connection that can't be reused before reporting its release.
+            if (!connection.socket().isClosed()) {
+                this.idleConnections.put(connection, recorder);
+            }
+            sweepIdleConnectionsLocked();
+        }
+    }
+
+    private void sweepIdleConnections() {
+        synchronized (this.idleConnections) {
+            sweepIdleConnectionsLocked();
+        }
+    }
+
+    private void sweepIdleConnectionsLocked() {
+        final Iterator<Map.Entry<Connection, HostRecorder>> iterator = this.idleConnections.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Connection, HostRecorder> entry = iterator.next();
+            final Socket socket = entry.getKey().socket();
+            if (socket.isClosed()) {
+                entry.getValue().idleEvictionCount.incrementAndGet();
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class HostRecorder {
+        private final AtomicLong acquiredConnectionCount = new AtomicLong();
+        private final AtomicLong reusedConnectionCount = new AtomicLong();
+        private final AtomicLong newConnectionCount = new AtomicLong();
+        private final AtomicLong connectFailureCount = new AtomicLong();
+        private final AtomicLong idleEvictionCount = new AtomicLong();
+        private final LatencyHistogram.Recorder dnsLatency = new LatencyHistogram.Recorder();
+        private final LatencyHistogram.Recorder connectLatency = new LatencyHistogram.Recorder();
+        private final LatencyHistogram.Recorder handshakeLatency = new LatencyHistogram.Recorder();
+
+        HostConnectionMetrics snapshot(String host) {
+            return new HostConnectionMetrics(host,
+                this.acquiredConnectionCount.get(),
+                this.reusedConnectionCount.get(),
+                this.newConnectionCount.get(),
+                this.connectFailureCount.get(),
+                this.idleEvictionCount.get(),
+                this.dnsLatency.snapshot(),
+                this.connectLatency.snapshot(),
+                this.handshakeLatency.snapshot());
+        }
+    }
+
+    /**
+     * The listener of the events of a call, OkHttp reports the events of a call sequentially.
+     */
+    private final class CallListener extends EventListener {
+        private final EventListener delegate;
+        private final HostRecorder recorder;
+        private long dnsStartNanos;
+        private long connectStartNanos;
+        private long handshakeStartNanos;
+        // Whether the call opened the connection it acquires next.
+        private boolean connected;
+
+        CallListener(Call call, EventListener delegate) {
+            this.delegate = delegate;
+            this.recorder = host(call.request().url().host());
+        }
+
+        @Override
+        public void callStart(Call call) {
+            this.delegate.callStart(call);
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            this.dnsStartNanos = System.nanoTime();
+            this.delegate.dnsStart(call, domainName);
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            this.recorder.dnsLatency.record(System.nanoTime() - this.dnsStartNanos);
+            this.delegate.dnsEnd(call, domainName, inetAddressList);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            this.connectStartNanos = System.nanoTime();
+            this.handshakeStartNanos = 0;
+            this.delegate.connectStart(call, inetSocketAddress, proxy);
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            this.handshakeStartNanos = System.nanoTime();
+            this.recorder.connectLatency.record(this.handshakeStartNanos - this.connectStartNanos);
+            this.delegate.secureConnectStart(call);
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            this.recorder.handshakeLatency.record(System.nanoTime() - this.handshakeStartNanos);
+            this.delegate.secureConnectEnd(call, handshake);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            if (this.handshakeStartNanos == 0) {
+                // A plain-text connection, the connect latency wasn't recorded when the handshake started.
+                this.recorder.connectLatency.record(System.nanoTime() - this.connectStartNanos);
+            }
+            this.recorder.newConnectionCount.incrementAndGet();
+            this.connected = true;
+            this.delegate.connectEnd(call, inetSocketAddress, proxy, protocol);
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol,
+                                  IOException ioe) {
+            this.recorder.connectFailureCount.incrementAndGet();
+            this.delegate.connectFailed(call, inetSocketAddress, proxy, protocol, ioe);
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            this.recorder.acquiredConnectionCount.incrementAndGet();
+            if (this.connected) {
+                this.connected = false;
+            } else {
+                this.recorder.reusedConnectionCount.incrementAndGet();
+            }
+            onConnectionAcquired(connection);
+            this.delegate.connectionAcquired(call, connection);
+        }
+
+        @Override
+        public void connectionReleased(Call call, Connection connection) {
+            onConnectionReleased(connection, this.recorder);
+            this.delegate.connectionReleased(call, connection);
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            this.delegate.requestHeadersStart(call);
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            this.delegate.requestHeadersEnd(call, request);
+        }
+
+        @Override
+        public void requestBodyStart(Call call) {
+            this.delegate.requestBodyStart(call);
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            this.delegate.requestBodyEnd(call, byteCount);
+        }
+
+        @Override
+        public void requestFailed(Call call, IOException ioe) {
+            this.delegate.requestFailed(call, ioe);
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            this.delegate.responseHeadersStart(call);
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            this.delegate.responseHeadersEnd(call, response);
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            this.delegate.responseBodyStart(call);
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            this.delegate.responseBodyEnd(call, byteCount);
+        }
+
+        @Override
+        public void responseFailed(Call call, IOException ioe) {
+            this.delegate.responseFailed(call, ioe);
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            this.delegate.callEnd(call);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            this.delegate.callFailed(call, ioe);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.okhttp;
+
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpClient;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipeline;
+import com.azure.android.core.http.HttpPipelineBuilder;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.policy.HedgingOptions;
+import com.azure.android.core.http.policy.HedgingPolicy;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.threeten.bp.Duration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies hedging against WireMock endpoints that answer with a delay.
+ */
+public class HedgingWithOkHttpTests {
+    private static final String SLOW_ONCE_PATH = "/slowOnce";
+    private static final String FAST_PATH = "/fast";
+    private static final String SLOW_PATH = "/slow";
+    private static final String SCENARIO = "slowOnce";
+    private static final String SLOW_ATTEMPT_SEEN = "slowAttemptSeen";
+
+    private WireMockServer server;
+
+    @BeforeEach
+    public void startWireMockServer() {
+        this.server = new WireMockServer(WireMockConfiguration.options().dynamicPort());
+        // The first request to SLOW_ONCE_PATH is delayed, the next ones are not.
+        this.server.stubFor(get(SLOW_ONCE_PATH)
+            .inScenario(SCENARIO)
+            .whenScenarioStateIs(Scenario.STARTED)
+            .willReturn(aResponse().withStatus(200).withBody("slow").withFixedDelay(5000))
+            .willSetStateTo(SLOW_ATTEMPT_SEEN));
+        this.server.stubFor(get(SLOW_ONCE_PATH)
+            .inScenario(SCENARIO)
+            .whenScenarioStateIs(SLOW_ATTEMPT_SEEN)
+            .willReturn(aResponse().withStatus(200).withBody("fast")));
+        this.server.stubFor(get(FAST_PATH).willReturn(aResponse().withStatus(200).withBody("fast")));
+        this.server.stubFor(get(SLOW_PATH).willReturn(aResponse().withStatus(200).withFixedDelay(300)));
+        this.server.stubFor(post(SLOW_PATH).willReturn(aResponse().withStatus(200).withFixedDelay(300)));
+        this.server.start();
+    }
+
+    @AfterEach
+    public void shutdownWireMockServer() {
+        if (this.server != null) {
+            this.server.shutdown();
+        }
+    }
+
+    @Test
+    public void slowAttemptIsHedged() {
+        final HttpClient httpClient = new OkHttpAsyncHttpClientBuilder().build();
+        final HedgingPolicy policy = new HedgingPolicy(new HedgingOptions().setHedgeDelay(Duration.ofMillis(100)));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        final long start = System.nanoTime();
+        final HttpResponse response = send(pipeline, HttpMethod.GET, SLOW_ONCE_PATH);
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("fast", new String(response.getBodyAsByteArray(), StandardCharsets.UTF_8));
+        assertTrue(elapsedMillis < 3000, "The hedged call took " + elapsedMillis + " ms.");
+        assertEquals(1, policy.getHedgeCount());
+        assertEquals(1, policy.getHedgeWinCount());
+        assertEquals(2, countRequests(SLOW_ONCE_PATH));
+    }
+
+    @Test
+    public void fastAttemptIsNotHedged() {
+        final HttpClient httpClient = new OkHttpAsyncHttpClientBuilder().build();
+        final HedgingPolicy policy = new HedgingPolicy(new HedgingOptions().setHedgeDelay(Duration.ofMillis(1000)));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, send(pipeline, HttpMethod.GET, FAST_PATH).getStatusCode());
+        }
+        assertEquals(0, policy.getHedgeCount());
+        assertEquals(5, countRequests(FAST_PATH));
+    }
+
+    @Test
+    public void hedgesAreLimitedByBudget() {
+        final HttpClient httpClient = new OkHttpAsyncHttpClientBuilder().build();
+        final HedgingPolicy policy = new HedgingPolicy(new HedgingOptions()
+            .setHedgeDelay(Duration.ofMillis(50))
+            .setMaxHedgeBurst(2)
+            .setMaxHedgePercentage(5));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        final int callCount = 10;
+        for (int i = 0; i < callCount; i++) {
+            assertEquals(200, send(pipeline, HttpMethod.GET, SLOW_PATH).getStatusCode());
+        }
+        // The burst allows two hedges, ten calls at 5% don't earn another one.
+        assertEquals(2, policy.getHedgeCount());
+        assertEquals(callCount + 2, countRequests(SLOW_PATH));
+    }
+
+    @Test
+    public void nonIdempotentRequestIsNotHedged() {
+        final HttpClient httpClient = new OkHttpAsyncHttpClientBuilder().build();
+        final HedgingPolicy policy = new HedgingPolicy(new HedgingOptions().setHedgeDelay(Duration.ofMillis(50)));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        assertEquals(200, send(pipeline, HttpMethod.POST, SLOW_PATH).getStatusCode());
+        assertEquals(0, policy.getHedgeCount());
+    }
+
+    private HttpResponse send(HttpPipeline pipeline, HttpMethod method, String path) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final HttpResponse[] response = new HttpResponse[1];
+        final HttpRequest request = new HttpRequest(method, "http://localhost:" + this.server.port() + path);
+        pipeline.send(request, RequestContext.NONE, CancellationToken.NONE, new HttpCallback() {
+            @Override
+            public void onSuccess(HttpResponse httpResponse) {
+                response[0] = httpResponse;
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                latch.countDown();
+            }
+        });
+        try {
+            assertTrue(latch.await(30, TimeUnit.SECONDS), "The call to " + path + " did not complete.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return response[0];
+    }
+
+    private int countRequests(String path) {
+        return this.server.countRequestsMatching(getRequestedFor(urlEqualTo(path)).build()).getCount();
+    }
+}
@@ -0,0 +1,192 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.okhttp;
+
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpClient;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.util.CancellationToken;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OkHttpConnectionMetricsTests {
+    private WireMockServer server;
+
+    @BeforeEach
+    public void startWireMockServer() {
+        this.server = new WireMockServer(WireMockConfiguration.options().dynamicPort());
+        this.server.stubFor(get("/messages").willReturn(aResponse().withStatus(200).withBody("[]")));
+        this.server.start();
+    }
+
+    @AfterEach
+    public void stopWireMockServer() {
+        this.server.stop();
+    }
+
+    @Test
+    public void recordsPoolReuseAndConnectLatency() {
+        final OkHttpConnectionMetrics metrics = new OkHttpConnectionMetrics();
+        final HttpClient httpClient = new OkHttpAsyncHttpClientBuilder().setConnectionMetrics(metrics).build();
+        try {
+            assertEquals(200, send(httpClient, this.server.baseUrl() + "/messages").getStatusCode());
+            assertEquals(200, send(httpClient, this.server.baseUrl() + "/messages").getStatusCode());
+
+            final HostConnectionMetrics host = metrics.getSnapshot().get("localhost");
+            assertNotNull(host);
+            assertEquals(2, host.getAcquiredConnectionCount());
+            assertEquals(1, host.getNewConnectionCount());
+            assertEquals(1, host.getReusedConnectionCount());
+            assertEquals(0.5, host.getPoolReuseRatio());
+            assertEquals(0, host.getConnectFailureCount());
+            assertEquals(1, host.getDnsLatency().getCount());
+            assertEquals(1, host.getConnectLatency().getCount());
+            // Plain-text connections have no handshake.
+            assertEquals(0, host.getHandshakeLatency().getCount());
+        } finally {
+            httpClient.close();
+        }
+    }
+
+    @Test
+    public void recordsIdleEvictions() {
+        final OkHttpConnectionMetrics metrics = new OkHttpConnectionMetrics();
+        final OkHttpAsyncHttpClient httpClient = (OkHttpAsyncHttpClient) new OkHttpAsyncHttpClientBuilder()
+            .setConnectionMetrics(metrics)
+            .build();
+        try {
+            assertEquals(200, send(httpClient, this.server.baseUrl() + "/messages").getStatusCode());
+            assertEquals(0, metrics.getSnapshot().get("localhost").getIdleEvictionCount());
+
+            httpClient.getOkHttpClient().connectionPool().evictAll();
+            assertEquals(1, metrics.getSnapshot().get("localhost").getIdleEvictionCount());
+        } finally {
+            httpClient.close();
+        }
+    }
+
+    @Test
+    public void recordsConnectFailures() {
+        final OkHttpConnectionMetrics metrics = new OkHttpConnectionMetrics();
+        final HttpClient httpClient = new OkHttpAsyncHttpClientBuilder(new OkHttpClient.Builder()
+            .retryOnConnectionFailure(false)
+            .build())
+            .setConnectionMetrics(metrics)
+            .build();
+
+        // Port 1 is reserved, the connection is refused.
+        assertNull(send(httpClient, "http://localhost:1/messages"));
+
+        final HostConnectionMetrics host = metrics.getSnapshot().get("localhost");
+        assertTrue(host.getConnectFailureCount() >= 1);
+        assertEquals(0, host.getAcquiredConnectionCount());
+        assertEquals(0, host.getPoolReuseRatio());
+    }
+
+    @Test
+    public void forwardsEventsToTheOkHttpClientListener() {
+        final AtomicInteger callEnds = new AtomicInteger();
+        final OkHttpClient okHttpClient = new OkHttpClient.Builder()
+            .eventListener(new EventListener() {
+                @Override
+                public void callEnd(Call call) {
+                    callEnds.incrementAndGet();
+                }
+
+                @Override
+                public void callFailed(Call call, IOException ioe) {
+                    callEnds.incrementAndGet();
+                }
+            })
+            .build();
+        final OkHttpConnectionMetrics metrics = new OkHttpConnectionMetrics();
+        final HttpClient httpClient = new OkHttpAsyncHttpClientBuilder(okHttpClient)
+            .setConnectionMetrics(metrics)
+            .build();
+
+        assertEquals(200, send(httpClient, this.server.baseUrl() + "/messages").getStatusCode());
+        assertEquals(1, callEnds.get());
+        assertEquals(1, metrics.getSnapshot().get("localhost").getAcquiredConnectionCount());
+    }
+
+    @Test
+    public void snapshotIsEmptyWithoutCalls() {
+        final Map<String, HostConnectionMetrics> snapshot = new OkHttpConnectionMetrics().getSnapshot();
+        assertTrue(snapshot.isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.put("localhost", null));
+    }
+
+    @Test
+    public void histogramBucketsValues() {
+        final LatencyHistogram.Recorder recorder = new LatencyHistogram.Recorder();
+        recorder.record(TimeUnit.MICROSECONDS.toNanos(500));
+        recorder.record(TimeUnit.MILLISECONDS.toNanos(1));
+        recorder.record(TimeUnit.MICROSECONDS.toNanos(1500));
+        recorder.record(TimeUnit.MILLISECONDS.toNanos(40));
+        recorder.record(TimeUnit.SECONDS.toNanos(30));
+
+        final LatencyHistogram histogram = recorder.snapshot();
+        assertEquals(5, histogram.getCount());
+        assertEquals(histogram.getBucketUpperBoundsMillis().length + 1, histogram.getBucketCounts().length);
+        assertArrayEquals(new long[] {2, 1, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 1}, histogram.getBucketCounts());
+        assertEquals(30000, histogram.getMaxMillis());
+        assertEquals((0.5 + 1 + 1.5 + 40 + 30000) / 5, histogram.getMeanMillis(), 1e-9);
+        assertEquals(1, histogram.getPercentileMillis(40));
+        assertEquals(2, histogram.getPercentileMillis(60));
+        assertEquals(50, histogram.getPercentileMillis(80));
+        assertEquals(30000, histogram.getPercentileMillis(100));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentileMillis(101));
+    }
+
+    private static HttpResponse send(HttpClient httpClient, String url) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<HttpResponse> response = new AtomicReference<>();
+        httpClient.send(new HttpRequest(HttpMethod.GET, url), CancellationToken.NONE, new HttpCallback() {
+            @Override
+            public void onSuccess(HttpResponse httpResponse) {
+                response.set(httpResponse);
+                // Read the body, so the connection returns to the pool.
+                httpResponse.getBodyAsString();
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                latch.countDown();
+            }
+        });
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS), "The call did not complete.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return response.get();
+    }
+}
@@ -0,0 +1,122 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.okhttp;
+
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpClient;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.util.CancellationToken;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.head;
+import static com.github.tomakehurst.wiremock.client.WireMock.headRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OkHttpPrewarmTests {
+    private WireMockServer server;
+
+    @BeforeEach
+    public void startWireMockServer() {
+        this.server = new WireMockServer(WireMockConfiguration.options().dynamicPort());
+        this.server.stubFor(head(urlEqualTo("/")).willReturn(aResponse().withStatus(200)));
+        this.server.stubFor(get("/messages").willReturn(aResponse().withStatus(200).withBody("[]")));
+        this.server.start();
+    }
+
+    @AfterEach
+    public void stopWireMockServer() {
+        this.server.stop();
+    }
+
+    @Test
+    public void prewarmedConnectionIsReused() throws InterruptedException {
+        final AtomicInteger connects = new AtomicInteger();
+        final OkHttpClient okHttpClient = new OkHttpClient.Builder()
+            .eventListener(new EventListener() {
+                @Override
+                public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+                    connects.incrementAndGet();
+                }
+            })
+            .build();
+        final OkHttpAsyncHttpClient httpClient
+            = (OkHttpAsyncHttpClient) new OkHttpAsyncHttpClientBuilder(okHttpClient).build();
+
+        httpClient.prewarm(Collections.singletonList(this.server.baseUrl() + "/chat/threads?api-version=1"));
+        awaitIdleConnections(okHttpClient, 1);
+        this.server.verify(1, headRequestedFor(urlEqualTo("/")));
+
+        assertEquals(200, send(httpClient).getStatusCode());
+        assertEquals(1, connects.get());
+    }
+
+    @Test
+    public void invalidAndUnreachableEndpointsAreIgnored() throws InterruptedException {
+        final OkHttpClient okHttpClient = new OkHttpClient();
+        final HttpClient httpClient = new OkHttpAsyncHttpClientBuilder(okHttpClient).build();
+
+        // Port 1 is reserved, the connection is refused.
+        httpClient.prewarm(Arrays.asList("not a url", null, "http://localhost:1", this.server.baseUrl()));
+        awaitIdleConnections(okHttpClient, 1);
+
+        assertEquals(200, send(httpClient).getStatusCode());
+    }
+
+    private static void awaitIdleConnections(OkHttpClient okHttpClient, int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (okHttpClient.connectionPool().idleConnectionCount() < count) {
+            assertTrue(System.nanoTime() < deadline, "The connection was not prewarmed.");
+            Thread.sleep(10);
+        }
+    }
+
+    private HttpResponse send(HttpClient httpClient) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<HttpResponse> response = new AtomicReference<>();
+        httpClient.send(new HttpRequest(HttpMethod.GET, this.server.baseUrl() + "/messages"), CancellationToken.NONE,
+            new HttpCallback() {
+                @Override
+                public void onSuccess(HttpResponse httpResponse) {
+                    response.set(httpResponse);
+                    httpResponse.getBodyAsString();
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    latch.countDown();
+                }
+            });
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS), "The call did not complete.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return response.get();
+    }
+}
@@ -0,0 +1,119 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.okhttp;
+
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpClient;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.implementation.HttpClientProviders;
+import com.azure.android.core.util.CancellationToken;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that the default OkHttp clients share their connection pool and dispatcher.
+ */
+public class OkHttpSharedTransportTests {
+    private static final String KEY = OkHttpAsyncHttpClientBuilder.SHARED_TRANSPORT_KEY;
+
+    private WireMockServer server;
+
+    @BeforeEach
+    public void startWireMockServer() {
+        this.server = new WireMockServer(WireMockConfiguration.options().dynamicPort());
+        this.server.stubFor(get("/messages").willReturn(aResponse().withStatus(200).withBody("[]")));
+        this.server.start();
+    }
+
+    @AfterEach
+    public void stopWireMockServer() {
+        this.server.stop();
+    }
+
+    @Test
+    public void defaultClientsShareTheirConnections() {
+        final int references = HttpClientProviders.getSharedTransportReferenceCount(KEY);
+        final OkHttpAsyncHttpClient first = (OkHttpAsyncHttpClient) new OkHttpAsyncHttpClientBuilder().build();
+        final OkHttpAsyncHttpClient second = (OkHttpAsyncHttpClient) new OkHttpAsyncHttpClientBuilder().build();
+        try {
+            assertEquals(references + 2, HttpClientProviders.getSharedTransportReferenceCount(KEY));
+            assertSame(first.getOkHttpClient(), second.getOkHttpClient());
+            assertSame(first.getHttpCallDispatcher(), second.getHttpCallDispatcher());
+
+            first.getOkHttpClient().connectionPool().evictAll();
+            assertEquals(200, send(first).getStatusCode());
+            assertEquals(200, send(second).getStatusCode());
+            // The second client reused the connection opened by the first one.
+            assertEquals(1, first.getOkHttpClient().connectionPool().connectionCount());
+        } finally {
+            first.close();
+            second.close();
+            // Closing again doesn't release another reference.
+            first.close();
+        }
+        assertEquals(references, HttpClientProviders.getSharedTransportReferenceCount(KEY));
+    }
+
+    @Test
+    public void clientsCanOptOutOfSharing() {
+        final int references = HttpClientProviders.getSharedTransportReferenceCount(KEY);
+        final OkHttpAsyncHttpClient shared = (OkHttpAsyncHttpClient) new OkHttpAsyncHttpClientBuilder().build();
+        final OkHttpAsyncHttpClient dedicated = (OkHttpAsyncHttpClient) new OkHttpAsyncHttpClientBuilder()
+            .setSharedTransportEnabled(false)
+            .build();
+        try {
+            assertEquals(references + 1, HttpClientProviders.getSharedTransportReferenceCount(KEY));
+            assertNotSame(shared.getOkHttpClient().connectionPool(), dedicated.getOkHttpClient().connectionPool());
+            assertNotSame(shared.getHttpCallDispatcher(), dedicated.getHttpCallDispatcher());
+            assertEquals(200, send(dedicated).getStatusCode());
+        } finally {
+            shared.close();
+            dedicated.close();
+        }
+        assertEquals(references, HttpClientProviders.getSharedTransportReferenceCount(KEY));
+    }
+
+    private HttpResponse send(HttpClient httpClient) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<HttpResponse> response = new AtomicReference<>();
+        httpClient.send(new HttpRequest(HttpMethod.GET, this.server.baseUrl() + "/messages"), CancellationToken.NONE,
+            new HttpCallback() {
+                @Override
+                public void onSuccess(HttpResponse httpResponse) {
+                    response.set(httpResponse);
+                    // Read the body, so the connection returns to the pool.
+                    httpResponse.getBodyAsString();
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    latch.countDown();
+                }
+            });
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS), "The call did not complete.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return response.get();
+    }
+}
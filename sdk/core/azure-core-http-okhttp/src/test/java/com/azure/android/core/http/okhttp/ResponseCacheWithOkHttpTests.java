@@ -0,0 +1,180 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.okhttp;
+
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpClient;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipeline;
+import com.azure.android.core.http.HttpPipelineBuilder;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.policy.ResponseCacheOptions;
+import com.azure.android.core.http.policy.ResponseCachePolicy;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.threeten.bp.Clock;
+import org.threeten.bp.Instant;
+import org.threeten.bp.ZoneId;
+import org.threeten.bp.ZoneOffset;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.absent;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies the caching and conditional revalidation of responses served by WireMock.
+ */
+public class ResponseCacheWithOkHttpTests {
+    private static final String ETAG_PATH = "/etag";
+    private static final String LAST_MODIFIED_PATH = "/lastModified";
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Mon, 01 Jan 2024 00:00:00 GMT";
+
+    private WireMockServer server;
+
+    @BeforeEach
+    public void startWireMockServer() {
+        // Jetty rewrites the ETag of the responses it gzips, keep them as stubbed.
+        this.server = new WireMockServer(WireMockConfiguration.options().dynamicPort().gzipDisabled(true));
+        this.server.stubFor(get(ETAG_PATH)
+            .withHeader("If-None-Match", absent())
+            .willReturn(aResponse().withStatus(200)
+                .withHeader("Cache-Control", "max-age=60")
+                .withHeader("ETag", ETAG)
+                .withBody("{\"topic\":\"hello\"}")));
+        this.server.stubFor(get(ETAG_PATH)
+            .withHeader("If-None-Match", equalTo(ETAG))
+            .willReturn(aResponse().withStatus(304)
+                .withHeader("Cache-Control", "max-age=60")
+                .withHeader("ETag", ETAG)));
+        this.server.stubFor(get(LAST_MODIFIED_PATH)
+            .withHeader("If-Modified-Since", absent())
+            .willReturn(aResponse().withStatus(200)
+                .withHeader("Cache-Control", "no-cache")
+                .withHeader("Last-Modified", LAST_MODIFIED)
+                .withBody("participants")));
+        this.server.stubFor(get(LAST_MODIFIED_PATH)
+            .withHeader("If-Modified-Since", equalTo(LAST_MODIFIED))
+            .willReturn(aResponse().withStatus(304)));
+        this.server.start();
+    }
+
+    @AfterEach
+    public void shutdownWireMockServer() {
+        if (this.server != null) {
+            this.server.shutdown();
+        }
+    }
+
+    @Test
+    public void freshResponseIsServedFromCacheAndStaleOneRevalidated() {
+        final MutableClock clock = new MutableClock();
+        final HttpClient httpClient = new OkHttpAsyncHttpClientBuilder().build();
+        final ResponseCachePolicy policy = new ResponseCachePolicy(new ResponseCacheOptions().setClock(clock));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        assertEquals("{\"topic\":\"hello\"}", send(pipeline, ETAG_PATH).getBodyAsString());
+        clock.advanceSeconds(30);
+        assertEquals("{\"topic\":\"hello\"}", send(pipeline, ETAG_PATH).getBodyAsString());
+        assertEquals(1, countRequests(ETAG_PATH));
+
+        clock.advanceSeconds(31);
+        final HttpResponse revalidated = send(pipeline, ETAG_PATH);
+        assertEquals(200, revalidated.getStatusCode());
+        assertEquals("{\"topic\":\"hello\"}", revalidated.getBodyAsString());
+        assertEquals(2, countRequests(ETAG_PATH));
+        assertEquals(1, this.server.countRequestsMatching(getRequestedFor(urlEqualTo(ETAG_PATH))
+            .withHeader("If-None-Match", equalTo(ETAG)).build()).getCount());
+
+        assertEquals(1, policy.getHitCount());
+        assertEquals(1, policy.getConditionalHitCount());
+        assertEquals(2, policy.getNetworkCount());
+    }
+
+    @Test
+    public void noCacheResponseIsRevalidatedEveryTime() {
+        final HttpClient httpClient = new OkHttpAsyncHttpClientBuilder().build();
+        final ResponseCachePolicy policy = new ResponseCachePolicy(
+            new ResponseCacheOptions().setClock(new MutableClock()));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        for (int i = 0; i < 3; i++) {
+            final HttpResponse response = send(pipeline, LAST_MODIFIED_PATH);
+            assertEquals(200, response.getStatusCode());
+            assertEquals("participants", response.getBodyAsString());
+        }
+        assertEquals(3, countRequests(LAST_MODIFIED_PATH));
+        assertEquals(0, policy.getHitCount());
+        assertEquals(2, policy.getConditionalHitCount());
+    }
+
+    private HttpResponse send(HttpPipeline pipeline, String path) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final HttpResponse[] response = new HttpResponse[1];
+        final HttpRequest request = new HttpRequest(HttpMethod.GET, "http://localhost:" + this.server.port() + path);
+        pipeline.send(request, RequestContext.NONE, CancellationToken.NONE, new HttpCallback() {
+            @Override
+            public void onSuccess(HttpResponse httpResponse) {
+                response[0] = httpResponse;
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                latch.countDown();
+            }
+        });
+        try {
+            assertTrue(latch.await(30, TimeUnit.SECONDS), "The call to " + path + " did not complete.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return response[0];
+    }
+
+    private int countRequests(String path) {
+        return this.server.countRequestsMatching(getRequestedFor(urlEqualTo(path)).build()).getCount();
+    }
+
+    /**
+     * A clock the tests move forward explicitly, so responses expire deterministically.
+     */
+    private static final class MutableClock extends Clock {
+        private volatile Instant instant = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advanceSeconds(long seconds) {
+            this.instant = this.instant.plusSeconds(seconds);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return this.instant;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.okhttp;
+
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipeline;
+import com.azure.android.core.http.HttpPipelineBuilder;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.policy.FixedDelay;
+import com.azure.android.core.http.policy.RetryBudget;
+import com.azure.android.core.http.policy.RetryPolicy;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.http.Fault;
+
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.threeten.bp.Duration;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Injects failures with WireMock and verifies a shared {@link RetryBudget} bounds the retry traffic.
+ */
+public class RetryBudgetWithOkHttpTests {
+    private static final String UNAVAILABLE_PATH = "/unavailable";
+    private static final String DROPPED_PATH = "/dropped";
+    private static final String HEALTHY_PATH = "/healthy";
+    private static final int MAX_RETRIES = 3;
+
+    private static WireMockServer server;
+
+    @BeforeAll
+    public static void startWireMockServer() {
+        server = new WireMockServer(WireMockConfiguration.options().dynamicPort());
+        server.stubFor(get(UNAVAILABLE_PATH).willReturn(aResponse().withStatus(503)));
+        server.stubFor(get(DROPPED_PATH).willReturn(aResponse().withFault(Fault.EMPTY_RESPONSE)));
+        server.stubFor(get(HEALTHY_PATH).willReturn(aResponse().withStatus(200)));
+        server.start();
+    }
+
+    @AfterAll
+    public static void shutdownWireMockServer() {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    @BeforeEach
+    public void resetRequests() {
+        server.resetRequests();
+    }
+
+    @Test
+    public void retryBudgetBoundsRetriesDuringOutage() {
+        final int budgetTokens = 5;
+        final int callCount = 20;
+        final RetryBudget budget = new RetryBudget(budgetTokens, 0.1);
+        final HttpPipeline pipeline = createPipeline(budget);
+
+        for (int i = 0; i < callCount; i++) {
+            // Alternate between a failing status code and a dropped connection.
+            send(pipeline, i % 2 == 0 ? UNAVAILABLE_PATH : DROPPED_PATH);
+        }
+
+        final int serverRequests = countRequests(UNAVAILABLE_PATH) + countRequests(DROPPED_PATH);
+        assertEquals(callCount + budgetTokens, serverRequests);
+        assertEquals(budgetTokens, budget.getRetryCount());
+        // The first call spends 3 tokens and the second call 2, every call from then on has its retry rejected.
+        assertEquals(callCount - 1, budget.getRejectedRetryCount());
+        assertTrue(serverRequests < callCount * (MAX_RETRIES + 1));
+    }
+
+    @Test
+    public void retryBudgetRecoversAfterOutage() {
+        final RetryBudget budget = new RetryBudget(2, 0.5);
+        final HttpPipeline pipeline = createPipeline(budget);
+
+        // Drain the budget.
+        send(pipeline, UNAVAILABLE_PATH);
+        assertEquals(0, budget.getAvailableTokens());
+
+        // The service recovers, successful calls refill the bucket.
+        for (int i = 0; i < 4; i++) {
+            send(pipeline, HEALTHY_PATH);
+        }
+        assertEquals(2, budget.getAvailableTokens());
+
+        server.resetRequests();
+        send(pipeline, UNAVAILABLE_PATH);
+        assertEquals(3, countRequests(UNAVAILABLE_PATH));
+    }
+
+    private static HttpPipeline createPipeline(RetryBudget budget) {
+        return new HttpPipelineBuilder()
+            // Disable the transport level retry, so every attempt the server sees comes from RetryPolicy.
+            .httpClient(new OkHttpAsyncHttpClientBuilder(new OkHttpClient.Builder()
+                .retryOnConnectionFailure(false)
+                .build()).build())
+            .policies(new RetryPolicy(new FixedDelay(MAX_RETRIES, Duration.ZERO), budget))
+            .build();
+    }
+
+    private static void send(HttpPipeline pipeline, String path) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final HttpRequest request = new HttpRequest(HttpMethod.GET, "http://localhost:" + server.port() + path);
+        pipeline.send(request, RequestContext.NONE, CancellationToken.NONE, new HttpCallback() {
+            @Override
+            public void onSuccess(HttpResponse response) {
+                response.close();
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                latch.countDown();
+            }
+        });
+        try {
+            assertTrue(latch.await(30, TimeUnit.SECONDS), "The call to " + path + " did not complete.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static int countRequests(String path) {
+        return server.countRequestsMatching(getRequestedFor(urlEqualTo(path)).build()).getCount();
+    }
+}
@@ -0,0 +1,166 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.okhttp;
+
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipeline;
+import com.azure.android.core.http.HttpPipelineBuilder;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.NextPolicyCallback;
+import com.azure.android.core.http.PolicyCompleter;
+import com.azure.android.core.http.policy.FixedDelay;
+import com.azure.android.core.http.policy.RetryPolicy;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import com.github.tomakehurst.wiremock.stubbing.ServeEvent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.threeten.bp.Duration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that a throttled response holds the other calls to the same host, using a WireMock endpoint that
+ * throttles its first request.
+ */
+public class ThrottlingWithOkHttpTests {
+    private static final String THROTTLED_PATH = "/throttled";
+    private static final String SCENARIO = "throttling";
+    private static final String RECOVERED = "recovered";
+    private static final int RETRY_AFTER_MS = 1000;
+
+    private WireMockServer server;
+
+    @BeforeEach
+    public void startWireMockServer() {
+        this.server = new WireMockServer(WireMockConfiguration.options().dynamicPort());
+        this.server.stubFor(get(THROTTLED_PATH)
+            .inScenario(SCENARIO)
+            .whenScenarioStateIs(Scenario.STARTED)
+            .willReturn(aResponse()
+                .withStatus(429)
+                .withHeader("x-ms-retry-after-ms", String.valueOf(RETRY_AFTER_MS)))
+            .willSetStateTo(RECOVERED));
+        this.server.stubFor(get(THROTTLED_PATH)
+            .inScenario(SCENARIO)
+            .whenScenarioStateIs(RECOVERED)
+            .willReturn(aResponse().withStatus(200)));
+        this.server.start();
+    }
+
+    @AfterEach
+    public void shutdownWireMockServer() {
+        if (this.server != null) {
+            this.server.shutdown();
+        }
+    }
+
+    @Test
+    public void throttledResponseHoldsNewCalls() throws InterruptedException {
+        final CountDownLatch throttled = new CountDownLatch(1);
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new OkHttpAsyncHttpClientBuilder().build())
+            .policies(new RetryPolicy(new FixedDelay(3, Duration.ZERO)),
+                chain -> chain.processNextPolicy(chain.getRequest(), new NextPolicyCallback() {
+                    @Override
+                    public PolicyCompleter.CompletionState onSuccess(HttpResponse response,
+                                                                     PolicyCompleter completer) {
+                        if (response.getStatusCode() == 429) {
+                            throttled.countDown();
+                        }
+                        return completer.completed(response);
+                    }
+
+                    @Override
+                    public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
+                        return completer.completedError(error);
+                    }
+                }))
+            .build();
+
+        // The first call is throttled, and retried after the delay by the RetryPolicy.
+        final Calls first = new Calls(1);
+        send(pipeline, first);
+        assertTrue(throttled.await(10, TimeUnit.SECONDS));
+
+        // The calls made while the host is throttled are held by the dispatcher instead of collecting 429s.
+        final int followUpCount = 5;
+        final Calls followUps = new Calls(followUpCount);
+        for (int i = 0; i < followUpCount; i++) {
+            send(pipeline, followUps);
+        }
+
+        assertTrue(first.latch.await(30, TimeUnit.SECONDS));
+        assertTrue(followUps.latch.await(30, TimeUnit.SECONDS));
+
+        assertEquals(1, first.succeeded.get());
+        assertEquals(followUpCount, followUps.succeeded.get());
+        // Only the first request saw the throttled response, the server received no extra round-trips.
+        assertEquals(2 + followUpCount, countRequests());
+
+        // None of the other requests reached the server before the throttling delay elapsed.
+        final List<ServeEvent> serveEvents = new ArrayList<>(this.server.getAllServeEvents());
+        Collections.sort(serveEvents, (e1, e2) ->
+            e1.getRequest().getLoggedDate().compareTo(e2.getRequest().getLoggedDate()));
+        final long throttledAt = serveEvents.get(0).getRequest().getLoggedDate().getTime();
+        for (ServeEvent serveEvent : serveEvents.subList(1, serveEvents.size())) {
+            final long heldMillis = serveEvent.getRequest().getLoggedDate().getTime() - throttledAt;
+            // Allow for the coarse granularity of the logged dates.
+            assertTrue(heldMillis >= RETRY_AFTER_MS - 50,
+                "A request reached the server after " + heldMillis + " ms.");
+        }
+    }
+
+    private void send(HttpPipeline pipeline, Calls calls) {
+        final HttpRequest request = new HttpRequest(HttpMethod.GET,
+            "http://localhost:" + this.server.port() + THROTTLED_PATH);
+        pipeline.send(request, RequestContext.NONE, CancellationToken.NONE, new HttpCallback() {
+            @Override
+            public void onSuccess(HttpResponse response) {
+                if (response.getStatusCode() == 200) {
+                    calls.succeeded.incrementAndGet();
+                }
+                response.close();
+                calls.latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                calls.latch.countDown();
+            }
+        });
+    }
+
+    private int countRequests() {
+        return this.server.countRequestsMatching(getRequestedFor(urlEqualTo(THROTTLED_PATH)).build()).getCount();
+    }
+
+    private static final class Calls {
+        private final CountDownLatch latch;
+        private final AtomicInteger succeeded = new AtomicInteger();
+
+        private Calls(int count) {
+            this.latch = new CountDownLatch(count);
+        }
+    }
+}
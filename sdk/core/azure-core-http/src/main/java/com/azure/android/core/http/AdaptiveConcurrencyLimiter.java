@@ -0,0 +1,123 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The additive-increase/multiplicative-decrease limit on running calls of an {@link HttpCallDispatcher}, fed with
+ * the outcome and latency of the completed calls. Not thread-safe, the dispatcher calls it holding its lock.
+ *
+ * <p>
+ * The latency of a call is compared to the lowest recent latency of its host, so the calls to a host that is
+ * slower than the others are not taken for congestion.
+ * </p>
+ */
+final class AdaptiveConcurrencyLimiter {
+    // The number of recorded samples after which the lowest latency of the oldest window is forgotten, for the
+    // baseline to follow a network that got slower, e.g. after a switch from Wi-Fi to cellular.
+    private static final int BASELINE_WINDOW_SAMPLES = 100;
+    // The number of hosts whose baseline is kept, the least recently sampled host is forgotten first.
+    private static final int MAX_BASELINE_HOSTS = 64;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private double limit;
+    private final Map<String, LatencyBaseline> baselines =
+        new LinkedHashMap<String, LatencyBaseline>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LatencyBaseline> eldest) {
+                return this.size() > MAX_BASELINE_HOSTS;
+            }
+        };
+    // The System.nanoTime() of the last decrease; the calls started before it don't decrease the limit again.
+    private long lastDecreaseNanos;
+    private boolean decreased;
+
+    AdaptiveConcurrencyLimiter(AdaptiveConcurrencyOptions options) {
+        this.minLimit = options.getMinLimit();
+        this.maxLimit = options.getMaxLimit();
+        this.latencyTolerance = options.getLatencyTolerance();
+        this.backoffRatio = options.getBackoffRatio();
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, options.getInitialLimit()));
+    }
+
+    /**
+     * Gets the current limit.
+     *
+     * @return The maximum number of calls to run concurrently.
+     */
+    int getLimit() {
+        return (int) this.limit;
+    }
+
+    /**
+     * Records the outcome of a completed call.
+     *
+     * @param host The host the call was sent to.
+     * @param startNanos The System.nanoTime() the call was sent at.
+     * @param endNanos The System.nanoTime() the call completed at.
+     * @param failed Whether the call failed or was throttled.
+     * @param runningCalls The number of calls running when the call completed.
+     * @return true if the limit increased, for more waiting calls to be dispatched.
+     */
+    boolean onSample(String host, long startNanos, long endNanos, boolean failed, int runningCalls) {
+        final int previousLimit = getLimit();
+        final long latencyNanos = endNanos - startNanos;
+        LatencyBaseline baseline = this.baselines.get(host);
+        if (baseline == null) {
+            baseline = new LatencyBaseline();
+            this.baselines.put(host, baseline);
+        }
+        final long baselineNanos = baseline.getNanos();
+        final boolean congested = failed
+            || (baselineNanos != Long.MAX_VALUE && latencyNanos > baselineNanos * this.latencyTolerance);
+        // The latency of a congested call includes the queueing the limit is meant to avoid, recording it would
+        // drift the baseline up under sustained load; at the minimum limit it's the latency of the network itself.
+        if (!failed && (!congested || this.limit <= this.minLimit)) {
+            baseline.record(latencyNanos);
+        }
+
+        if (congested) {
+            // A burst of slow calls reflects a single congestion episode, only the calls sent after the last
+            // decrease decrease the limit again.
+            if (!this.decreased || startNanos - this.lastDecreaseNanos > 0) {
+                this.limit = Math.max(this.minLimit, this.limit * this.backoffRatio);
+                this.lastDecreaseNanos = endNanos;
+                this.decreased = true;
+            }
+        } else if (runningCalls * 2 >= previousLimit) {
+            // The limit only grows while it's what holds the calls back.
+            this.limit = Math.min(this.maxLimit, this.limit + 1 / this.limit);
+        }
+        return getLimit() > previousLimit;
+    }
+
+    /**
+     * The lowest recent latency of the calls to a host.
+     */
+    private static final class LatencyBaseline {
+        private long windowMinLatencyNanos = Long.MAX_VALUE;
+        private long previousWindowMinLatencyNanos = Long.MAX_VALUE;
+        private int windowSamples;
+
+        long getNanos() {
+            return Math.min(this.windowMinLatencyNanos, this.previousWindowMinLatencyNanos);
+        }
+
+        void record(long latencyNanos) {
+            if (latencyNanos < this.windowMinLatencyNanos) {
+                this.windowMinLatencyNanos = latencyNanos;
+            }
+            if (++this.windowSamples >= BASELINE_WINDOW_SAMPLES) {
+                this.previousWindowMinLatencyNanos = this.windowMinLatencyNanos;
+                this.windowMinLatencyNanos = Long.MAX_VALUE;
+                this.windowSamples = 0;
+            }
+        }
+    }
+}
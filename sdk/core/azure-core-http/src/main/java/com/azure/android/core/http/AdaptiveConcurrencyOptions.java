@@ -0,0 +1,166 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http;
+
+import com.azure.android.core.logging.ClientLogger;
+
+/**
+ * The configurations of the adaptive limit on running calls of an {@link HttpCallDispatcher}, see
+ * {@link HttpCallDispatcher#setAdaptiveConcurrency(AdaptiveConcurrencyOptions)}.
+ *
+ * <p>
+ * The limit follows additive-increase/multiplicative-decrease: it grows by one call per limit's worth of timely
+ * responses while the dispatcher uses at least half of it, and shrinks by the backoff ratio when a call fails,
+ * is throttled (429 or 503) or takes longer than the latency tolerance times the lowest latency observed recently.
+ * </p>
+ */
+public class AdaptiveConcurrencyOptions {
+    private static final int DEFAULT_MIN_LIMIT = 4;
+    private static final int DEFAULT_MAX_LIMIT = 64;
+    private static final int DEFAULT_INITIAL_LIMIT = 16;
+    private static final double DEFAULT_LATENCY_TOLERANCE = 2.0;
+    private static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+    private final ClientLogger logger = new ClientLogger(AdaptiveConcurrencyOptions.class);
+
+    private int minLimit = DEFAULT_MIN_LIMIT;
+    private int maxLimit = DEFAULT_MAX_LIMIT;
+    private int initialLimit = DEFAULT_INITIAL_LIMIT;
+    private double latencyTolerance = DEFAULT_LATENCY_TOLERANCE;
+    private double backoffRatio = DEFAULT_BACKOFF_RATIO;
+
+    /**
+     * Creates a new instance with the default configurations.
+     *
+     * <p>
+     * By default, the limit starts at 16 running calls and stays between 4 and 64, a response taking more than twice
+     * the lowest recent latency counts as congestion, and congestion shrinks the limit by 10%.
+     * </p>
+     */
+    public AdaptiveConcurrencyOptions() {
+    }
+
+    /**
+     * Gets the lowest value the limit can shrink to.
+     *
+     * @return The minimum limit.
+     */
+    public int getMinLimit() {
+        return this.minLimit;
+    }
+
+    /**
+     * Sets the lowest value the limit can shrink to.
+     *
+     * @param minLimit The minimum limit.
+     * @return The updated AdaptiveConcurrencyOptions object.
+     * @throws IllegalArgumentException If {@code minLimit} is less than 1.
+     */
+    public AdaptiveConcurrencyOptions setMinLimit(int minLimit) {
+        if (minLimit < 1) {
+            throw logger.logExceptionAsError(new IllegalArgumentException("'minLimit' cannot be less than 1."));
+        }
+        this.minLimit = minLimit;
+        return this;
+    }
+
+    /**
+     * Gets the highest value the limit can grow to.
+     *
+     * @return The maximum limit.
+     */
+    public int getMaxLimit() {
+        return this.maxLimit;
+    }
+
+    /**
+     * Sets the highest value the limit can grow to.
+     *
+     * @param maxLimit The maximum limit.
+     * @return The updated AdaptiveConcurrencyOptions object.
+     * @throws IllegalArgumentException If {@code maxLimit} is less than 1.
+     */
+    public AdaptiveConcurrencyOptions setMaxLimit(int maxLimit) {
+        if (maxLimit < 1) {
+            throw logger.logExceptionAsError(new IllegalArgumentException("'maxLimit' cannot be less than 1."));
+        }
+        this.maxLimit = maxLimit;
+        return this;
+    }
+
+    /**
+     * Gets the limit before any call completed.
+     *
+     * @return The initial limit.
+     */
+    public int getInitialLimit() {
+        return this.initialLimit;
+    }
+
+    /**
+     * Sets the limit before any call completed; it's brought within the minimum and maximum limits.
+     *
+     * @param initialLimit The initial limit.
+     * @return The updated AdaptiveConcurrencyOptions object.
+     * @throws IllegalArgumentException If {@code initialLimit} is less than 1.
+     */
+    public AdaptiveConcurrencyOptions setInitialLimit(int initialLimit) {
+        if (initialLimit < 1) {
+            throw logger.logExceptionAsError(new IllegalArgumentException("'initialLimit' cannot be less than 1."));
+        }
+        this.initialLimit = initialLimit;
+        return this;
+    }
+
+    /**
+     * Gets the multiple of the lowest recent latency above which a response counts as congestion.
+     *
+     * @return The latency tolerance.
+     */
+    public double getLatencyTolerance() {
+        return this.latencyTolerance;
+    }
+
+    /**
+     * Sets the multiple of the lowest recent latency above which a response counts as congestion. Calls whose
+     * latency varies a lot by nature, e.g. downloads of various sizes, need a higher tolerance.
+     *
+     * @param latencyTolerance The latency tolerance.
+     * @return The updated AdaptiveConcurrencyOptions object.
+     * @throws IllegalArgumentException If {@code latencyTolerance} is not greater than 1.
+     */
+    public AdaptiveConcurrencyOptions setLatencyTolerance(double latencyTolerance) {
+        if (!(latencyTolerance > 1)) {
+            throw logger.logExceptionAsError(new IllegalArgumentException(
+                "'latencyTolerance' must be greater than 1, provided:" + latencyTolerance));
+        }
+        this.latencyTolerance = latencyTolerance;
+        return this;
+    }
+
+    /**
+     * Gets the ratio the limit is multiplied by on congestion.
+     *
+     * @return The backoff ratio.
+     */
+    public double getBackoffRatio() {
+        return this.backoffRatio;
+    }
+
+    /**
+     * Sets the ratio the limit is multiplied by on congestion.
+     *
+     * @param backoffRatio The backoff ratio.
+     * @return The updated AdaptiveConcurrencyOptions object.
+     * @throws IllegalArgumentException If {@code backoffRatio} is not in the range [0.5, 1).
+     */
+    public AdaptiveConcurrencyOptions setBackoffRatio(double backoffRatio) {
+        if (!(backoffRatio >= 0.5 && backoffRatio < 1)) {
+            throw logger.logExceptionAsError(new IllegalArgumentException(
+                "'backoffRatio' must be in the range [0.5, 1), provided:" + backoffRatio));
+        }
+        this.backoffRatio = backoffRatio;
+        return this;
+    }
+}
@@ -3,20 +3,28 @@
 
 package com.azure.android.core.http;
 
+import com.azure.android.core.http.exception.HttpCallSupersededException;
 import com.azure.android.core.http.implementation.Util;
 import com.azure.android.core.util.CancellationToken;
 import com.azure.android.core.util.RequestContext;
 import com.azure.android.core.logging.ClientLogger;
 
+import org.threeten.bp.Duration;
+import org.threeten.bp.OffsetDateTime;
+import org.threeten.bp.format.DateTimeFormatter;
+
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.net.URL;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -24,35 +32,102 @@ import java.util.concurrent.atomic.AtomicBoolean;
 /**
  * The dispatcher to dispatch async HTTP calls send through the pipeline. Additionally, an HttpClient
  * that does not have native async support can also use the dispatcher to enable async HTTP calls.
+ *
+ * <p>
+ * When a response to a pipeline call is throttled (429 or 503) and tells how long to wait through the
+ * "x-ms-retry-after-ms", "retry-after-ms" or "Retry-After" header, the dispatcher holds new calls to the same host
+ * until that delay elapses, so the calls sharing the dispatcher back off together instead of each one collecting
+ * its own throttled response.
+ * </p>
+ *
+ * <p>
+ * The limit on running calls is fixed, see {@link #setMaxRunningCalls(int)}, or adapts to the latency and failures
+ * of the calls, see {@link #setAdaptiveConcurrency(AdaptiveConcurrencyOptions)}.
+ * </p>
+ *
+ * <p>
+ * A pipeline call whose {@link RequestContext} holds a coalescing key under {@link #COALESCING_KEY} supersedes the
+ * call with the same key still waiting to run, if any: the waiting call completes with
+ * {@link HttpCallSupersededException} without being sent and the newer call takes its place in the queue.
+ * </p>
+ *
+ * <p>
+ * The calls run on the executor of an {@link HttpCallExecutorStrategy}: a cached thread pool by default, a bounded
+ * pool, virtual threads or an executor of the caller. {@link #shutdown()} stops the dispatcher from accepting new
+ * calls, lets the accepted ones complete and then shuts down the executors the dispatcher owns.
+ * </p>
  */
 public final class HttpCallDispatcher {
+    /**
+     * The key of the {@link RequestContext} data holding the coalescing key of a pipeline call, for calls whose
+     * result only matters for the latest one, e.g. a typing notification or a topic update. Coalescing keys are
+     * compared with {@code equals} across all the pipelines sharing the dispatcher, so they should identify both
+     * the operation and its target, e.g. "typing:" followed by a thread id.
+     */
+    public static final String COALESCING_KEY = "azure-http-call-coalescing-key";
+
+    // Upper bound on how long a throttled response can hold new calls to a host.
+    private static final long MAX_THROTTLE_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
     private final ClientLogger logger = new ClientLogger(HttpCallDispatcher.class);
 
     private int maxRunningCalls = 64;
+    private final HttpCallExecutorStrategy executorStrategy;
     private final ExecutorService executorService;
     private ScheduledExecutorService scheduledExecutorService;
+    // Whether the dispatcher created scheduledExecutorService, and shuts it down on termination.
+    private boolean ownsScheduledExecutorService;
     private final Deque<RootDispatchableCall> waitingRootDispatchableCalls = new ArrayDeque<>();
-    private final Deque<RootDispatchableCall> runningRootDispatchableCalls = new ArrayDeque<>();
+    // The running calls: the RootDispatchableCall of a pipeline run in "running-mode", and each NestedDispatchableCall
+    // that resumed a pipeline run while an attempt of that run may still be in flight, e.g. a hedged request.
+    private final Deque<DispatchableCall> runningDispatchableCalls = new ArrayDeque<>();
     private final Deque<NestedDispatchableCall> waitingNestedDispatchableCalls = new ArrayDeque<>();
+    // The waiting RootDispatchableCall calls with a coalescing key, mapped by their key.
+    private final Map<Object, RootDispatchableCall> waitingCoalescedCalls = new HashMap<>();
+    // The throttled hosts, mapped to the System.nanoTime() before which no new call to the host is dispatched.
+    private final Map<String, Long> throttledHosts = new HashMap<>();
+    // The System.nanoTime() of the pending re-dispatch of the calls held for throttled hosts, 0 if none.
+    private long throttleWakeupNanos;
+    // The adaptive limit on running calls, null if the limit is maxRunningCalls.
+    private AdaptiveConcurrencyLimiter adaptiveLimiter;
+    // The nested calls scheduled to be handed over to the waiting queue, they keep a shut down dispatcher alive.
+    private int scheduledNestedCallCount;
+    // The number of calls the executor rejected.
+    private long rejectedCallCount;
+    // Written while holding the dispatcher lock, volatile for tryTerminate() to skip the lock while running.
+    private volatile boolean shutdown;
+    private boolean terminated;
 
     /**
-     * Creates an HttpCallDispatcher with an ExecutorService with default settings to execute HTTP calls.
+     * Creates an HttpCallDispatcher with an ExecutorService with default settings to execute HTTP calls,
+     * see {@link HttpCallExecutorStrategy#cachedThreadPool()}.
      */
     public HttpCallDispatcher() {
-        // The ThreadPoolExecutor by design creates the core threads only when new tasks arrive,
-        // essentially lazy by default.
-        this.executorService = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
-            new SynchronousQueue<>());
-        this.scheduledExecutorService = null;
+        this(HttpCallExecutorStrategy.cachedThreadPool());
     }
 
     /**
      * Creates an HttpCallDispatcher that uses the given {@code executorService} to execute HTTP calls.
      *
+     * <p>
+     * The dispatcher doesn't shut down {@code executorService}, use
+     * {@link HttpCallExecutorStrategy#fromExecutor(ExecutorService, boolean)} for it to.
+     * </p>
+     *
      * @param executorService The executor service.
      */
     public HttpCallDispatcher(ExecutorService executorService) {
-        this.executorService = Util.requireNonNull(executorService, "'executorService' is required.");
+        this(HttpCallExecutorStrategy.fromExecutor(executorService, false));
+    }
+
+    /**
+     * Creates an HttpCallDispatcher that executes HTTP calls as the given {@code executorStrategy} does.
+     *
+     * @param executorStrategy The executor strategy.
+     */
+    public HttpCallDispatcher(HttpCallExecutorStrategy executorStrategy) {
+        this.executorStrategy = Util.requireNonNull(executorStrategy, "'executorStrategy' is required.");
+        this.executorService = executorStrategy.getExecutorService();
         this.scheduledExecutorService = null;
     }
 
@@ -66,7 +141,8 @@ public final class HttpCallDispatcher {
      */
     public HttpCallDispatcher(ExecutorService executorService,
                               ScheduledExecutorService scheduledExecutorService) {
-        this.executorService = Util.requireNonNull(executorService, "'executorService' is required.");
+        this.executorStrategy = HttpCallExecutorStrategy.fromExecutor(executorService, false);
+        this.executorService = executorService;
         this.scheduledExecutorService = Util.requireNonNull(scheduledExecutorService,
             "'scheduledExecutorService' is required.");
     }
@@ -75,7 +151,8 @@ public final class HttpCallDispatcher {
      * Sets the maximum number of HTTP calls to run concurrently.
      *
      * <p>
-     * Calls beyond this value will be stored in-memory queue waiting for running calls to complete.
+     * Calls beyond this value will be stored in-memory queue waiting for running calls to complete. The value
+     * doesn't apply while the adaptive limit is enabled.
      * </p>
      *
      * @param maxCalls The maximum number of HTTP calls to run concurrently.
@@ -104,6 +181,121 @@ public final class HttpCallDispatcher {
         }
     }
 
+    /**
+     * Sets the limit on running calls to adapt to the latency and failures of the calls sent through the pipelines
+     * using the dispatcher, instead of the fixed {@link #getMaxRunningCalls() maximum running calls}.
+     *
+     * <p>
+     * The limit shrinks when calls fail, are throttled or slow down compared to the lowest recent latency, which
+     * happens when the network or the service gets congested, and grows back while calls complete timely.
+     * </p>
+     *
+     * @param options The configurations of the adaptive limit, null to go back to the fixed limit.
+     * @throws IllegalArgumentException if the minimum limit of {@code options} is greater than its maximum limit.
+     */
+    public void setAdaptiveConcurrency(AdaptiveConcurrencyOptions options) {
+        if (options != null && options.getMinLimit() > options.getMaxLimit()) {
+            throw logger.logExceptionAsError(new IllegalArgumentException("The minimum limit " + options.getMinLimit()
+                + " of the adaptive concurrency is greater than its maximum limit " + options.getMaxLimit() + "."));
+        }
+        synchronized (this) {
+            this.adaptiveLimiter = options == null ? null : new AdaptiveConcurrencyLimiter(options);
+        }
+        this.dispatchCalls();
+    }
+
+    /**
+     * Gets a snapshot of the running and waiting calls, and of the current limit on running calls.
+     *
+     * @return The dispatcher metrics.
+     */
+    public HttpCallDispatcherMetrics getMetrics() {
+        int executorThreadCount = -1;
+        int executorActiveThreadCount = -1;
+        int executorQueuedCallCount = -1;
+        if (this.executorService instanceof ThreadPoolExecutor) {
+            final ThreadPoolExecutor threadPool = (ThreadPoolExecutor) this.executorService;
+            executorThreadCount = threadPool.getPoolSize();
+            executorActiveThreadCount = threadPool.getActiveCount();
+            executorQueuedCallCount = threadPool.getQueue().size();
+        }
+        synchronized (this) {
+            return new HttpCallDispatcherMetrics(this.runningDispatchableCalls.size(),
+                this.waitingRootDispatchableCalls.size() + this.waitingNestedDispatchableCalls.size(),
+                this.getRunningCallLimit(),
+                this.adaptiveLimiter != null,
+                executorThreadCount,
+                executorActiveThreadCount,
+                executorQueuedCallCount,
+                this.rejectedCallCount);
+        }
+    }
+
+    /**
+     * Gets the strategy the dispatcher executes the HTTP calls with.
+     *
+     * @return The executor strategy.
+     */
+    public HttpCallExecutorStrategy getExecutorStrategy() {
+        return this.executorStrategy;
+    }
+
+    /**
+     * Initiates an orderly shutdown: the dispatcher rejects the new calls, completing them with an
+     * {@link InterruptedIOException}, and keeps running the calls already enqueued, including their retries.
+     * Once they all completed, the dispatcher shuts down the executors it owns: the executor of its
+     * {@link HttpCallExecutorStrategy} if {@link HttpCallExecutorStrategy#isShutdownWithDispatcher()} and the
+     * scheduled executor it created. Invoking it more than once has no additional effect.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            this.shutdown = true;
+        }
+        this.tryTerminate();
+    }
+
+    /**
+     * Gets whether {@link #shutdown()} was called.
+     *
+     * @return true if the dispatcher is shut down.
+     */
+    public boolean isShutdown() {
+        synchronized (this) {
+            return this.shutdown;
+        }
+    }
+
+    /**
+     * Blocks until all the calls completed after a {@link #shutdown()} and the executors the dispatcher owns
+     * terminated, or the timeout elapses, whichever happens first.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit The time unit of the {@code timeout}.
+     * @return true if the dispatcher terminated, false if the timeout elapsed before.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        final ScheduledExecutorService ownedScheduledExecutorService;
+        synchronized (this) {
+            long remainingNanos;
+            while (!this.terminated) {
+                remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+            }
+            ownedScheduledExecutorService = this.ownsScheduledExecutorService ? this.scheduledExecutorService : null;
+        }
+        if (this.executorStrategy.isShutdownWithDispatcher()
+            && !this.executorService.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+        return ownedScheduledExecutorService == null
+            || ownedScheduledExecutorService.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
     /**
      * Enqueue a function to perform the HTTP call on the dispatcher thread.
      *
@@ -118,6 +310,28 @@ public final class HttpCallDispatcher {
                         HttpRequest httpRequest,
                         CancellationToken cancellationToken,
                         HttpCallback httpCallback) {
+        this.enqueue(httpCallFunction, httpRequest, cancellationToken, httpCallback, null);
+    }
+
+    /**
+     * package-private.
+     *
+     * Enqueue a function to perform the HTTP call on the dispatcher thread, superseding the waiting call with the
+     * same coalescing key if any.
+     *
+     * @param httpCallFunction The function that perform the HTTP call when invoked.
+     * @param httpRequest The HTTP request to be given to {@code httpCallFunction} when the function
+     *     is invoked.
+     * @param cancellationToken The cancellation token for dispatcher to check whether the function is cancelled.
+     * @param httpCallback The HTTP callback to be given to {@code httpCallFunction} to notify the
+     *     result of the HTTP call.
+     * @param coalescingKey The coalescing key of the call, null if the call never supersedes another one.
+     */
+    void enqueue(HttpCallFunction httpCallFunction,
+                 HttpRequest httpRequest,
+                 CancellationToken cancellationToken,
+                 HttpCallback httpCallback,
+                 Object coalescingKey) {
         Util.requireNonNull(httpCallFunction, "'httpCallFunction' is required.");
         Util.requireNonNull(httpRequest, "'httpRequest' is required.");
         Util.requireNonNull(cancellationToken, "'cancellationToken' is required.");
@@ -134,15 +348,54 @@ public final class HttpCallDispatcher {
         // is called RootDispatchableCall.
         //
 
+        // Parse the URL here rather than under the lock, where a malformed URL would throw out of dispatchCalls().
+        final String hostKey;
+        try {
+            hostKey = getHostKey(httpRequest.getUrl());
+        } catch (IllegalArgumentException e) {
+            httpCallback.onError(e);
+            return;
+        }
+
         final RootDispatchableCall rootDispatchableCall = new RootDispatchableCall(this,
             httpCallFunction,
             httpRequest,
             cancellationToken,
-            httpCallback);
+            httpCallback,
+            coalescingKey,
+            hostKey);
 
-        // Enqueue the 'RootDispatchableCall' for this.executorService to execute.
+        // Enqueue the 'RootDispatchableCall' for this.executorService to execute. The shutdown check and the
+        // insertion share the lock, so that no call is queued after the termination was reported.
+        boolean rejected = false;
+        RootDispatchableCall supersededCall = null;
         synchronized (this) {
-            this.waitingRootDispatchableCalls.add(rootDispatchableCall);
+            if (this.shutdown) {
+                rejected = true;
+            } else {
+                final RootDispatchableCall queuedCall = coalescingKey == null
+                    ? null
+                    : this.waitingCoalescedCalls.get(coalescingKey);
+                if (queuedCall == null) {
+                    this.waitingRootDispatchableCalls.add(rootDispatchableCall);
+                    if (coalescingKey != null) {
+                        this.waitingCoalescedCalls.put(coalescingKey, rootDispatchableCall);
+                    }
+                } else {
+                    // The newer call takes the place of the superseded one in the queue, so that a steady flow of
+                    // updates is not pushed back indefinitely.
+                    supersededCall = queuedCall.getLatestCall();
+                    queuedCall.supersedingCall = rootDispatchableCall;
+                }
+            }
+        }
+        if (rejected) {
+            rootDispatchableCall.onRejected(new InterruptedIOException("dispatcher shut down"));
+            return;
+        }
+        if (supersededCall != null) {
+            supersededCall.onSuperseded();
+            return;
         }
         this.dispatchCalls();
     }
@@ -169,12 +422,16 @@ public final class HttpCallDispatcher {
      * won't be holding a thread.
      *
      * Since chain.processNextPolicy() call is scheduled from a running call, we refer such scheduled
-     * call as Nested-call.
+     * call as Nested-call. A running Nested-call is tracked by itself rather than by the RootDispatchableCall,
+     * until the callback of the scheduled chain.processNextPolicy() call returns, even if the pipeline run
+     * completed meanwhile. A policy may schedule several calls before pausing, e.g. to send concurrent attempts
+     * of a request; each of them then runs as a call of its own and counts as running until it ends.
      * </p>
      *
      * @param chain The chain to invoke {@code processNextPolicy} call on.
      * @param httpRequest The HTTP request parameter for the scheduled {@code processNextPolicy} call.
      * @param requestContext The context parameter for the scheduled {@code processNextPolicy} call.
+     * @param cancellationToken The cancellation token for the scheduled {@code processNextPolicy} call.
      * @param callback The HTTP callback parameter for the scheduled {@code processNextPolicy} call.
      * @param delay The time from now to delay the execution of the {@code processNextPolicy} call.
      * @param timeUnit The time unit of the {@code delay}.
@@ -182,21 +439,29 @@ public final class HttpCallDispatcher {
     void scheduleProcessNextPolicy(HttpPipelinePolicyChainImpl chain,
                                    HttpRequest httpRequest,
                                    RequestContext requestContext,
+                                   CancellationToken cancellationToken,
                                    NextPolicyCallback callback,
                                    long delay,
                                    TimeUnit timeUnit) {
         Util.requireNonNull(chain, "'chain' is required.");
         Util.requireNonNull(httpRequest, "'httpRequest' is required.");
         Util.requireNonNull(requestContext, "'context' is required.");
+        Util.requireNonNull(cancellationToken, "'cancellationToken' is required.");
         Util.requireNonNull(callback, "'httpCallback' is required.");
         Util.requireNonNull(timeUnit, "'timeUnit' is required.");
 
         final RootDispatchableCall rootDispatchableCall = this.getRootDispatchableCall(chain);
-        final NestedDispatchableCall nestedDispatchableCall = new NestedDispatchableCall(rootDispatchableCall,
+        final DispatchableCall pausedCall = (DispatchableCall) chain.dispatchableCall;
+        final NestedDispatchableCall nestedDispatchableCall = new NestedDispatchableCall(this,
+            rootDispatchableCall,
             chain,
             httpRequest,
+            cancellationToken,
             callback);
         boolean scheduled = false;
+        synchronized (this) {
+            this.scheduledNestedCallCount++;
+        }
         try {
             this.getScheduledExecutorService().schedule(() -> {
                 synchronized (HttpCallDispatcher.this) {
@@ -204,27 +469,102 @@ public final class HttpCallDispatcher {
                     // and 'NestedDispatchableCall' calls.
                     // Using HttpCallDispatcher::scheduledExecutorService to hand over
                     // the 'NestedDispatchableCall' to HttpCallDispatcher::executorService.
+                    HttpCallDispatcher.this.scheduledNestedCallCount--;
                     HttpCallDispatcher.this.waitingNestedDispatchableCalls.add(nestedDispatchableCall);
                 }
                 HttpCallDispatcher.this.dispatchCalls();
             }, delay, timeUnit);
             scheduled = true;
         } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                this.scheduledNestedCallCount--;
+            }
             nestedDispatchableCall
                 .onError(new InterruptedIOException("scheduled executor rejected").initCause(e));
         } catch (Throwable t) {
             // The ScheduledExecutorService::execute() is not supposed to throw any exception
             // other than RejectedExecutionException, but if it ever throws other exceptions,
             // let's do the cleanup and then rethrow.
-            rootDispatchableCall.markNotRunning(1);
+            synchronized (this) {
+                this.scheduledNestedCallCount--;
+            }
+            pausedCall.markNotRunning(1);
             throw logger.logExceptionAsError(new RuntimeException("ScheduledExecutorService::schedule failed.", t));
         }
 
         if (scheduled) {
             // Once scheduled successfully, pipeline is in "pause-mode", yield the thread to other
             // executable calls waiting to run.
-            rootDispatchableCall.markNotRunning(2);
+            pausedCall.markNotRunning(2);
+        }
+    }
+
+    /**
+     * package-private.
+     *
+     * Inspect a response received by a pipeline run: record its latency for the adaptive limit and, if the service
+     * throttled the request with a delay, hold new calls to the request host until the delay elapses.
+     *
+     * @param httpRequest The HTTP request sent.
+     * @param httpResponse The HTTP response received for the request.
+     * @param startNanos The System.nanoTime() the request was sent at.
+     */
+    void onResponse(HttpRequest httpRequest, HttpResponse httpResponse, long startNanos) {
+        final String host = getHostKey(httpRequest.getUrl());
+        final int statusCode = httpResponse.getStatusCode();
+        this.onCallCompleted(host, startNanos, statusCode == 429 || statusCode == 503);
+
+        final long delayMillis = getThrottlingDelayMillis(httpResponse);
+        if (delayMillis <= 0) {
+            return;
+        }
+        final long deadline = System.nanoTime()
+            + TimeUnit.MILLISECONDS.toNanos(Math.min(delayMillis, MAX_THROTTLE_DELAY_MILLIS));
+        synchronized (this) {
+            final Long currentDeadline = this.throttledHosts.get(host);
+            if (currentDeadline == null || deadline - currentDeadline > 0) {
+                this.throttledHosts.put(host, deadline);
+            }
         }
+        logger.info("Host '{}' throttled the calls, holding new calls to it for {} ms.", host, delayMillis);
+    }
+
+    /**
+     * package-private.
+     *
+     * Record a request of a pipeline run that failed, for the adaptive limit.
+     *
+     * @param httpRequest The HTTP request sent.
+     * @param startNanos The System.nanoTime() the request was sent at.
+     * @param cancellationToken The cancellation token of the call, a canceled call doesn't tell about congestion.
+     */
+    void onError(HttpRequest httpRequest, long startNanos, CancellationToken cancellationToken) {
+        if (!cancellationToken.isCancellationRequested()) {
+            this.onCallCompleted(getHostKey(httpRequest.getUrl()), startNanos, true);
+        }
+    }
+
+    private void onCallCompleted(String host, long startNanos, boolean failed) {
+        final boolean increased;
+        synchronized (this) {
+            if (this.adaptiveLimiter == null) {
+                return;
+            }
+            increased = this.adaptiveLimiter.onSample(host, startNanos, System.nanoTime(), failed,
+                this.runningDispatchableCalls.size());
+        }
+        if (increased) {
+            this.dispatchCalls();
+        }
+    }
+
+    /**
+     * Gets the limit on running calls. Must be called while holding the dispatcher lock.
+     *
+     * @return The adaptive limit if enabled, the maximum running calls otherwise.
+     */
+    private int getRunningCallLimit() {
+        return this.adaptiveLimiter != null ? this.adaptiveLimiter.getLimit() : this.maxRunningCalls;
     }
 
     /**
@@ -248,7 +588,11 @@ public final class HttpCallDispatcher {
                 // release the one pooled thread, then recreate when needed and repeat the
                 // heuristic.
                 //
-                this.scheduledExecutorService = new ScheduledThreadPoolExecutor(1);
+                final ScheduledThreadPoolExecutor scheduledThreadPool = new ScheduledThreadPoolExecutor(1);
+                // A pending re-dispatch of throttled calls must not hold the termination of the dispatcher.
+                scheduledThreadPool.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+                this.scheduledExecutorService = scheduledThreadPool;
+                this.ownsScheduledExecutorService = true;
             }
             return this.scheduledExecutorService;
         }
@@ -259,27 +603,43 @@ public final class HttpCallDispatcher {
      */
     private void dispatchCalls() {
         Deque<DispatchableCall> executableCalls = new ArrayDeque<>();
+        long throttleWakeupDelayNanos = 0;
         synchronized (this) {
             // Collects the calls to dispatch.
+            final int runningCallLimit = this.getRunningCallLimit();
 
             // 1. Collects the executable NestedDispatchableCall calls.
             //    Note: Collecting NestedDispatchableCall calls first to have them in front of executable queue.
-            while (this.runningRootDispatchableCalls.size() < this.maxRunningCalls
+            while (this.runningDispatchableCalls.size() < runningCallLimit
                 && !this.waitingNestedDispatchableCalls.isEmpty()) {
                 final NestedDispatchableCall nestedCall = this.waitingNestedDispatchableCalls.poll();
-                this.runningRootDispatchableCalls.add(nestedCall.rootDispatchableCall);
+                if (nestedCall.chain.isCompleted()) {
+                    // The policy that scheduled the call completed meanwhile, e.g. with a hedged attempt that
+                    // answered first, nothing waits for the call.
+                    continue;
+                }
+                this.runningDispatchableCalls.add(nestedCall);
                 executableCalls.add(nestedCall);
             }
 
             // 2. Collects the executable RootDispatchableCall calls.
-            while (this.runningRootDispatchableCalls.size() < this.maxRunningCalls
-                && !this.waitingRootDispatchableCalls.isEmpty()) {
-                final RootDispatchableCall rootCall = this.waitingRootDispatchableCalls.poll();
-                this.runningRootDispatchableCalls.add(rootCall);
-                executableCalls.add(rootCall);
+            if (this.throttledHosts.isEmpty()) {
+                while (this.runningDispatchableCalls.size() < runningCallLimit
+                    && !this.waitingRootDispatchableCalls.isEmpty()) {
+                    final RootDispatchableCall rootCall
+                        = this.dequeueCoalescedCall(this.waitingRootDispatchableCalls.poll());
+                    this.runningDispatchableCalls.add(rootCall);
+                    executableCalls.add(rootCall);
+                }
+            } else {
+                throttleWakeupDelayNanos = this.collectUnthrottledRootCalls(executableCalls, runningCallLimit);
             }
         }
 
+        if (throttleWakeupDelayNanos > 0) {
+            this.scheduleThrottleWakeup(throttleWakeupDelayNanos);
+        }
+
         // Dispatch the collected calls on dispatcher threads.
         // Dispatching must be done outside sync-block since calling into user-code while holding
         // lock is prohibited.
@@ -289,6 +649,9 @@ public final class HttpCallDispatcher {
             try {
                 this.executorService.execute(call);
             } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    this.rejectedCallCount++;
+                }
                 call.onError(new InterruptedIOException("executor rejected").initCause(e));
             } catch (Throwable t) {
                 // The ExecutorService::execute() is not supposed to throw any exception other than
@@ -298,6 +661,164 @@ public final class HttpCallDispatcher {
                 throw logger.logExceptionAsError(new RuntimeException("ExecutorService::schedule failed.", t));
             }
         }
+
+        this.tryTerminate();
+    }
+
+    /**
+     * Terminates a shut down dispatcher once it has no call left: shuts down the executors it owns and wakes up
+     * the threads awaiting its termination.
+     */
+    private void tryTerminate() {
+        if (!this.shutdown) {
+            return;
+        }
+        final ScheduledExecutorService ownedScheduledExecutorService;
+        synchronized (this) {
+            if (this.terminated
+                || !this.runningDispatchableCalls.isEmpty()
+                || !this.waitingRootDispatchableCalls.isEmpty()
+                || !this.waitingNestedDispatchableCalls.isEmpty()
+                || this.scheduledNestedCallCount > 0) {
+                return;
+            }
+            this.terminated = true;
+            this.throttledHosts.clear();
+            ownedScheduledExecutorService = this.ownsScheduledExecutorService ? this.scheduledExecutorService : null;
+            this.notifyAll();
+        }
+        if (this.executorStrategy.isShutdownWithDispatcher()) {
+            this.executorService.shutdown();
+        }
+        if (ownedScheduledExecutorService != null) {
+            ownedScheduledExecutorService.shutdown();
+        }
+    }
+
+    /**
+     * Collects the waiting RootDispatchableCall calls to hosts that are not throttled, leaving the calls to
+     * throttled hosts in the waiting queue in their order. Must be called while holding the dispatcher lock.
+     *
+     * @param executableCalls The queue to add the collected calls to.
+     * @param runningCallLimit The limit on running calls.
+     * @return The time in nanoseconds until the earliest throttle of a host with held calls expires,
+     *     0 if no call is held or a re-dispatch is already scheduled by then.
+     */
+    private long collectUnthrottledRootCalls(Deque<DispatchableCall> executableCalls, int runningCallLimit) {
+        final long now = System.nanoTime();
+        final Iterator<Map.Entry<String, Long>> throttles = this.throttledHosts.entrySet().iterator();
+        while (throttles.hasNext()) {
+            if (throttles.next().getValue() - now <= 0) {
+                throttles.remove();
+            }
+        }
+
+        boolean hasHeldCalls = false;
+        long earliestDeadline = 0;
+        final Iterator<RootDispatchableCall> waitingCalls = this.waitingRootDispatchableCalls.iterator();
+        while (this.runningDispatchableCalls.size() < runningCallLimit && waitingCalls.hasNext()) {
+            final RootDispatchableCall queuedCall = waitingCalls.next();
+            if (!this.throttledHosts.isEmpty()) {
+                final Long deadline = this.throttledHosts.get(queuedCall.getLatestCall().hostKey);
+                if (deadline != null) {
+                    if (!hasHeldCalls || deadline - earliestDeadline < 0) {
+                        earliestDeadline = deadline;
+                    }
+                    hasHeldCalls = true;
+                    continue;
+                }
+            }
+            waitingCalls.remove();
+            final RootDispatchableCall rootCall = this.dequeueCoalescedCall(queuedCall);
+            this.runningDispatchableCalls.add(rootCall);
+            executableCalls.add(rootCall);
+        }
+
+        if (!hasHeldCalls
+            || (this.throttleWakeupNanos != 0 && this.throttleWakeupNanos - earliestDeadline <= 0)) {
+            return 0;
+        }
+        this.throttleWakeupNanos = earliestDeadline;
+        return Math.max(1, earliestDeadline - now);
+    }
+
+    /**
+     * Gets the call to run for a call removed from the waiting queue: the latest call that superseded it, if any.
+     * Must be called while holding the dispatcher lock.
+     *
+     * @param queuedCall The call removed from the waiting queue.
+     * @return The call to run.
+     */
+    private RootDispatchableCall dequeueCoalescedCall(RootDispatchableCall queuedCall) {
+        if (queuedCall.coalescingKey == null) {
+            return queuedCall;
+        }
+        this.waitingCoalescedCalls.remove(queuedCall.coalescingKey);
+        return queuedCall.getLatestCall();
+    }
+
+    /**
+     * Schedules a re-dispatch of the calls held for throttled hosts.
+     *
+     * @param delayNanos The delay in nanoseconds before the re-dispatch.
+     */
+    private void scheduleThrottleWakeup(long delayNanos) {
+        try {
+            this.getScheduledExecutorService().schedule(() -> {
+                synchronized (HttpCallDispatcher.this) {
+                    HttpCallDispatcher.this.throttleWakeupNanos = 0;
+                }
+                HttpCallDispatcher.this.dispatchCalls();
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Without a re-dispatch the held calls could wait indefinitely, stop holding them.
+            logger.warning("Scheduled executor rejected the re-dispatch of throttled calls.");
+            synchronized (this) {
+                this.throttledHosts.clear();
+                this.throttleWakeupNanos = 0;
+            }
+            this.dispatchCalls();
+        }
+    }
+
+    /**
+     * Gets the delay a throttled response asks the client to wait before sending requests again.
+     *
+     * @param response The HTTP response.
+     * @return The delay in milliseconds, 0 if the response is not throttled or doesn't have a valid delay.
+     */
+    private static long getThrottlingDelayMillis(HttpResponse response) {
+        final int code = response.getStatusCode();
+        if (code != 429 && code != 503) {
+            return 0;
+        }
+        try {
+            String retryAfter = response.getHeaderValue("x-ms-retry-after-ms");
+            if (retryAfter == null) {
+                retryAfter = response.getHeaderValue("retry-after-ms");
+            }
+            if (retryAfter != null) {
+                return Long.parseLong(retryAfter.trim());
+            }
+            retryAfter = response.getHeaderValue("Retry-After");
+            if (retryAfter == null) {
+                return 0;
+            }
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+            } catch (NumberFormatException ignored) {
+                return Duration.between(OffsetDateTime.now(),
+                    OffsetDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME)).toMillis();
+            }
+        } catch (RuntimeException ignored) {
+            // An invalid header doesn't throttle the host.
+            return 0;
+        }
+    }
+
+    private static String getHostKey(URL url) {
+        final int port = url.getPort();
+        return port == -1 ? url.getHost() : url.getHost() + ":" + port;
     }
 
     /**
@@ -355,9 +876,18 @@ public final class HttpCallDispatcher {
          *   <li>callerId:0 Caller is dispatcher's RootDispatchableCall</li>
          *   <li>callerId:1 Call was due to executor service rejecting work submission</li>
          *   <li>callerId:2 Caller is the schedule(..) after successful scheduling of NestedDispatchableCall</li>
+         *   <li>callerId:3 Caller is the NestedDispatchableCall, once its scheduled call delivered the result
+         *   or was dropped</li>
          * </ul>
          */
         void markNotRunning(int callerId);
+
+        /**
+         * Gets the RootDispatchableCall of the pipeline run this call belongs to.
+         *
+         * @return The RootDispatchableCall.
+         */
+        RootDispatchableCall getRootDispatchableCall();
     }
 
     /**
@@ -376,18 +906,56 @@ public final class HttpCallDispatcher {
         private final HttpRequest httpRequest;
         private final CancellationToken cancellationToken;
         private final HttpCallback httpCallback;
+        private final Object coalescingKey;
+        // The host and port of the request, parsed once when the call is enqueued.
+        private final String hostKey;
+        // The latest call that superseded this one while it was in the waiting queue, guarded by the dispatcher lock.
+        private RootDispatchableCall supersedingCall;
         private String callerIdTrace = "Code:";
 
         RootDispatchableCall(HttpCallDispatcher httpCallDispatcher,
                              HttpCallFunction httpCallFunction,
                              HttpRequest httpRequest,
                              CancellationToken cancellationToken,
-                             HttpCallback httpCallback) {
+                             HttpCallback httpCallback,
+                             Object coalescingKey,
+                             String hostKey) {
             this.httpCallDispatcher = httpCallDispatcher;
             this.httpCallFunction = httpCallFunction;
             this.httpRequest = httpRequest;
             this.cancellationToken = cancellationToken;
             this.httpCallback = httpCallback;
+            this.coalescingKey = coalescingKey;
+            this.hostKey = hostKey;
+        }
+
+        /**
+         * Gets the call to run in place of this queued call. Must be called while holding the dispatcher lock.
+         *
+         * @return The latest call that superseded this one, this call if none did.
+         */
+        RootDispatchableCall getLatestCall() {
+            return this.supersedingCall != null ? this.supersedingCall : this;
+        }
+
+        /**
+         * Completes the call that a newer call superseded while it was waiting to run, i.e. it never ran and
+         * it's not one of the running calls.
+         */
+        void onSuperseded() {
+            this.onRejected(new HttpCallSupersededException("The call was superseded by a newer call"
+                + " with the same coalescing key before it was sent.", this.httpRequest, this.coalescingKey));
+        }
+
+        /**
+         * Completes a call that never ran and is not one of the running calls with an error.
+         *
+         * @param error The error.
+         */
+        void onRejected(Throwable error) {
+            if (this.compareAndSet(false, true)) {
+                this.httpCallback.onError(error);
+            }
         }
 
         @Override
@@ -406,8 +974,8 @@ public final class HttpCallDispatcher {
                 if (isFirstDelivery) {
                     this.httpCallback.onSuccess(response);
                 } else {
-                    throw this.httpCallDispatcher
-                        .logger.logExceptionAsError(new IllegalStateException(MULTI_DELIVERY_ERROR_STR));
+                    throw this.httpCallDispatcher.logger.logExceptionAsError(
+                        new IllegalStateException(MULTI_DELIVERY_ERROR_STR + this.callerIdTrace));
                 }
             } finally {
                 if (isFirstDelivery) {
@@ -423,8 +991,8 @@ public final class HttpCallDispatcher {
                 if (isFirstDelivery) {
                     this.httpCallback.onError(error);
                 } else {
-                    throw this.httpCallDispatcher
-                        .logger.logExceptionAsError(new IllegalStateException(MULTI_DELIVERY_ERROR_STR, error));
+                    throw this.httpCallDispatcher.logger.logExceptionAsError(
+                        new IllegalStateException(MULTI_DELIVERY_ERROR_STR + this.callerIdTrace, error));
                 }
             } finally {
                 if (isFirstDelivery) {
@@ -437,26 +1005,46 @@ public final class HttpCallDispatcher {
         public void markNotRunning(int callerId) {
             synchronized (this.httpCallDispatcher) {
                 callerIdTrace += callerId;
-                boolean wasRunning = this.httpCallDispatcher.runningRootDispatchableCalls.remove(this);
-                if (!wasRunning) {
-                    throw this.httpCallDispatcher
-                        .logger.logExceptionAsError(
-                            new IllegalStateException(INCORRECT_POLICY_IMPL_ERROR_STR + callerIdTrace));
+                // The pipeline may already be paused, e.g. when a policy schedules a call from the callback
+                // of a previously scheduled call.
+                boolean wasRunning = this.httpCallDispatcher.runningDispatchableCalls.remove(this);
+                if (callerId == 0 && !wasRunning) {
+                    // The pipeline run completed from a scheduled call, which is still running until its callback
+                    // returns. The other calls of the run, e.g. a hedged attempt still in flight, keep counting
+                    // as running until they end.
+                    for (DispatchableCall runningCall : this.httpCallDispatcher.runningDispatchableCalls) {
+                        if (runningCall.getRootDispatchableCall() == this) {
+                            wasRunning = true;
+                            break;
+                        }
+                    }
+                    if (!wasRunning) {
+                        throw this.httpCallDispatcher
+                            .logger.logExceptionAsError(
+                                new IllegalStateException(INCORRECT_POLICY_IMPL_ERROR_STR + callerIdTrace));
+                    }
                 }
             }
             // Attempt to dispatch other waiting calls since this call is no-longer-running.
             // no-longer-running = executor-rejected-call-execution | call-paused | call-completed.
             this.httpCallDispatcher.dispatchCalls();
         }
+
+        @Override
+        public RootDispatchableCall getRootDispatchableCall() {
+            return this;
+        }
     }
 
     /**
      * a DispatchableCall that when executes invokes a scheduled chain.processNextPolicy(..) call
      */
     private static class NestedDispatchableCall implements DispatchableCall {
+        private final HttpCallDispatcher httpCallDispatcher;
         private final RootDispatchableCall rootDispatchableCall;
         private final HttpPipelinePolicyChainImpl chain;
         private final HttpRequest httpRequest;
+        private final CancellationToken cancellationToken;
         private final NextPolicyCallback callback;
 
         /**
@@ -469,40 +1057,87 @@ public final class HttpCallDispatcher {
          * when the scheduled chain.processNextPolicy(..) call executes.
          * </p>
          *
+         * @param httpCallDispatcher The dispatcher.
          * @param rootDispatchableCall The RootDispatchableCall that initiate the pipeline run that this
          *     nested call belongs to.
          * @param chain The chain to invoke {@code processNextPolicy} call on.
          * @param httpRequest The HTTP request parameter for the scheduled {@code processNextPolicy} call.
+         * @param cancellationToken The cancellation token for the scheduled {@code processNextPolicy} call.
          * @param callback The callback parameter for the scheduled {@code processNextPolicy} call.
          */
-        NestedDispatchableCall(RootDispatchableCall rootDispatchableCall,
+        NestedDispatchableCall(HttpCallDispatcher httpCallDispatcher,
+                               RootDispatchableCall rootDispatchableCall,
                                HttpPipelinePolicyChainImpl chain,
                                HttpRequest httpRequest,
+                               CancellationToken cancellationToken,
                                NextPolicyCallback callback) {
+            this.httpCallDispatcher = httpCallDispatcher;
             this.rootDispatchableCall = rootDispatchableCall;
             this.chain = chain;
             this.httpRequest = httpRequest;
+            this.cancellationToken = cancellationToken;
             this.callback = callback;
         }
 
         @Override
         public void run() {
-            this.chain.processNextPolicy(this.httpRequest, this.callback);
+            if (this.chain.isCompleted()) {
+                this.markNotRunning(3);
+                return;
+            }
+            this.chain.processScheduledNextPolicy(this.httpRequest, this.cancellationToken, new NextPolicyCallback() {
+                @Override
+                public PolicyCompleter.CompletionState onSuccess(HttpResponse response, PolicyCompleter completer) {
+                    try {
+                        return NestedDispatchableCall.this.callback.onSuccess(response, completer);
+                    } finally {
+                        NestedDispatchableCall.this.markNotRunning(3);
+                    }
+                }
+
+                @Override
+                public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
+                    try {
+                        return NestedDispatchableCall.this.callback.onError(error, completer);
+                    } finally {
+                        NestedDispatchableCall.this.markNotRunning(3);
+                    }
+                }
+            }, this);
         }
 
         @Override
         public void onSuccess(HttpResponse response) {
-            this.callback.onSuccess(response, new PolicyCompleter(this.chain.prevChain));
+            try {
+                this.callback.onSuccess(response, new PolicyCompleter(this.chain.prevChain));
+            } finally {
+                this.markNotRunning(3);
+            }
         }
 
         @Override
         public void onError(Throwable error) {
-            this.callback.onError(error, new PolicyCompleter(this.chain.prevChain));
+            try {
+                this.callback.onError(error, new PolicyCompleter(this.chain.prevChain));
+            } finally {
+                this.markNotRunning(3);
+            }
         }
 
         @Override
         public void markNotRunning(int i) {
-            // NOP
+            final boolean wasRunning;
+            synchronized (this.httpCallDispatcher) {
+                wasRunning = this.httpCallDispatcher.runningDispatchableCalls.remove(this);
+            }
+            if (wasRunning) {
+                this.httpCallDispatcher.dispatchCalls();
+            }
+        }
+
+        @Override
+        public RootDispatchableCall getRootDispatchableCall() {
+            return this.rootDispatchableCall;
         }
     }
 }
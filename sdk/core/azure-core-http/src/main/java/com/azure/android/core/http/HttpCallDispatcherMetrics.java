@@ -0,0 +1,112 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http;
+
+/**
+ * A snapshot of the state of an {@link HttpCallDispatcher}, see {@link HttpCallDispatcher#getMetrics()}.
+ */
+public final class HttpCallDispatcherMetrics {
+    private final int runningCallCount;
+    private final int waitingCallCount;
+    private final int runningCallLimit;
+    private final boolean adaptiveLimitEnabled;
+    private final int executorThreadCount;
+    private final int executorActiveThreadCount;
+    private final int executorQueuedCallCount;
+    private final long executorRejectedCallCount;
+
+    HttpCallDispatcherMetrics(int runningCallCount,
+                              int waitingCallCount,
+                              int runningCallLimit,
+                              boolean adaptiveLimitEnabled,
+                              int executorThreadCount,
+                              int executorActiveThreadCount,
+                              int executorQueuedCallCount,
+                              long executorRejectedCallCount) {
+        this.runningCallCount = runningCallCount;
+        this.waitingCallCount = waitingCallCount;
+        this.runningCallLimit = runningCallLimit;
+        this.adaptiveLimitEnabled = adaptiveLimitEnabled;
+        this.executorThreadCount = executorThreadCount;
+        this.executorActiveThreadCount = executorActiveThreadCount;
+        this.executorQueuedCallCount = executorQueuedCallCount;
+        this.executorRejectedCallCount = executorRejectedCallCount;
+    }
+
+    /**
+     * Gets the number of calls running, including the ones waiting on the network.
+     *
+     * @return The number of running calls.
+     */
+    public int getRunningCallCount() {
+        return this.runningCallCount;
+    }
+
+    /**
+     * Gets the number of calls waiting for a running call to complete.
+     *
+     * @return The number of waiting calls.
+     */
+    public int getWaitingCallCount() {
+        return this.waitingCallCount;
+    }
+
+    /**
+     * Gets the maximum number of calls the dispatcher runs concurrently at the time of the snapshot: the adaptive
+     * limit if enabled, the {@link HttpCallDispatcher#getMaxRunningCalls() maximum running calls} otherwise.
+     *
+     * @return The running call limit.
+     */
+    public int getRunningCallLimit() {
+        return this.runningCallLimit;
+    }
+
+    /**
+     * Gets whether the running call limit adapts to the observed latency and failures.
+     *
+     * @return true if the adaptive limit is enabled.
+     */
+    public boolean isAdaptiveLimitEnabled() {
+        return this.adaptiveLimitEnabled;
+    }
+
+    /**
+     * Gets the number of threads of the executor, if it's a {@link java.util.concurrent.ThreadPoolExecutor}.
+     *
+     * @return The number of threads in the pool, -1 if the executor doesn't tell, e.g. for virtual threads.
+     */
+    public int getExecutorThreadCount() {
+        return this.executorThreadCount;
+    }
+
+    /**
+     * Gets the number of threads of the executor executing a call, if it's a
+     * {@link java.util.concurrent.ThreadPoolExecutor}.
+     *
+     * @return The approximate number of busy threads, -1 if the executor doesn't tell.
+     */
+    public int getExecutorActiveThreadCount() {
+        return this.executorActiveThreadCount;
+    }
+
+    /**
+     * Gets the number of calls the dispatcher handed over to the executor that wait for one of its threads, if
+     * it's a {@link java.util.concurrent.ThreadPoolExecutor}. Only a bounded pool queues calls.
+     *
+     * @return The number of queued calls, -1 if the executor doesn't tell.
+     */
+    public int getExecutorQueuedCallCount() {
+        return this.executorQueuedCallCount;
+    }
+
+    /**
+     * Gets the number of calls the executor rejected since the dispatcher was created, the rejected calls
+     * complete with an {@link java.io.InterruptedIOException}.
+     *
+     * @return The number of rejected calls.
+     */
+    public long getExecutorRejectedCallCount() {
+        return this.executorRejectedCallCount;
+    }
+}
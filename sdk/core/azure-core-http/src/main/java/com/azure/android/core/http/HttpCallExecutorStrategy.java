@@ -0,0 +1,186 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http;
+
+import com.azure.android.core.http.implementation.Util;
+import com.azure.android.core.logging.ClientLogger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The strategy an {@link HttpCallDispatcher} uses to execute the HTTP calls, see
+ * {@link HttpCallDispatcher#HttpCallDispatcher(HttpCallExecutorStrategy)}.
+ *
+ * <p>
+ * The dispatcher shuts down the executor it was given on {@link HttpCallDispatcher#shutdown()} if the strategy
+ * owns the executor, which is the case for all the strategies but {@link #fromExecutor(ExecutorService, boolean)}
+ * with {@code shutdownWithDispatcher} false.
+ * </p>
+ */
+public final class HttpCallExecutorStrategy {
+    private static final ClientLogger LOGGER = new ClientLogger(HttpCallExecutorStrategy.class);
+    // Resolved once, Executors.newVirtualThreadPerTaskExecutor() exists on JDK 21 and later only.
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadPerTaskExecutorFactory();
+
+    private final ExecutorService executorService;
+    private final boolean ownsExecutorService;
+    private final boolean virtualThreads;
+
+    private HttpCallExecutorStrategy(ExecutorService executorService,
+                                     boolean ownsExecutorService,
+                                     boolean virtualThreads) {
+        this.executorService = executorService;
+        this.ownsExecutorService = ownsExecutorService;
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Creates a strategy executing the calls on a pool that starts a thread whenever all its threads are busy and
+     * stops the threads idle for 60 seconds, which is the default of {@link HttpCallDispatcher}.
+     *
+     * <p>
+     * The number of threads is only bounded by the limit on running calls of the dispatcher, a burst of calls
+     * starts as many threads.
+     * </p>
+     *
+     * @return The strategy.
+     */
+    public static HttpCallExecutorStrategy cachedThreadPool() {
+        // The ThreadPoolExecutor by design creates the core threads only when new tasks arrive,
+        // essentially lazy by default.
+        return new HttpCallExecutorStrategy(new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), new DispatcherThreadFactory("azure-http-dispatcher-")), true, false);
+    }
+
+    /**
+     * Creates a strategy executing the calls on a pool of at most {@code maxThreads} threads, the calls beyond
+     * queue until a thread is available. The threads idle for 60 seconds stop.
+     *
+     * <p>
+     * The queue holds at most the limit on running calls of the dispatcher minus {@code maxThreads}, since the
+     * dispatcher holds the calls beyond its limit. With a transport blocking a thread per call, e.g.
+     * HttpURLConnection, {@code maxThreads} bounds the calls on the network.
+     * </p>
+     *
+     * @param maxThreads The maximum number of threads.
+     * @return The strategy.
+     * @throws IllegalArgumentException If {@code maxThreads} is less than 1.
+     */
+    public static HttpCallExecutorStrategy boundedThreadPool(int maxThreads) {
+        if (maxThreads < 1) {
+            throw LOGGER.logExceptionAsError(new IllegalArgumentException("'maxThreads' cannot be less than 1."));
+        }
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), new DispatcherThreadFactory("azure-http-dispatcher-"));
+        executor.allowCoreThreadTimeOut(true);
+        return new HttpCallExecutorStrategy(executor, true, false);
+    }
+
+    /**
+     * Creates a strategy executing each call on a new virtual thread when the runtime supports them (JDK 21 and
+     * later), on a {@link #cachedThreadPool() cached pool} otherwise, e.g. on Android.
+     *
+     * <p>
+     * Virtual threads are cheap to start and park on blocking I/O without holding a platform thread, which suits
+     * transports blocking a thread per call on JVM services sending many concurrent calls.
+     * </p>
+     *
+     * @return The strategy.
+     * @see #isVirtualThreadSupported()
+     */
+    public static HttpCallExecutorStrategy virtualThreadPerTask() {
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null) {
+            try {
+                return new HttpCallExecutorStrategy(
+                    (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null), true, true);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOGGER.warning("Failed to create a virtual thread executor, using a cached thread pool.", e);
+            }
+        }
+        return cachedThreadPool();
+    }
+
+    /**
+     * Creates a strategy executing the calls on the given executor.
+     *
+     * @param executorService The executor.
+     * @param shutdownWithDispatcher Whether {@link HttpCallDispatcher#shutdown()} shuts down the executor, false if
+     *     the caller manages its lifecycle, e.g. to share it.
+     * @return The strategy.
+     * @throws NullPointerException If {@code executorService} is null.
+     */
+    public static HttpCallExecutorStrategy fromExecutor(ExecutorService executorService,
+                                                        boolean shutdownWithDispatcher) {
+        Util.requireNonNull(executorService, "'executorService' is required.");
+        return new HttpCallExecutorStrategy(executorService, shutdownWithDispatcher, false);
+    }
+
+    /**
+     * Gets whether the runtime supports virtual threads, i.e. whether {@link #virtualThreadPerTask()} uses them.
+     *
+     * @return true if virtual threads are supported.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Gets whether the strategy executes each call on a new virtual thread.
+     *
+     * @return true if the calls run on virtual threads.
+     */
+    public boolean isVirtualThreads() {
+        return this.virtualThreads;
+    }
+
+    /**
+     * Gets whether the dispatcher shuts down the executor when it is shut down.
+     *
+     * @return true if the executor shuts down with the dispatcher.
+     */
+    public boolean isShutdownWithDispatcher() {
+        return this.ownsExecutorService;
+    }
+
+    ExecutorService getExecutorService() {
+        return this.executorService;
+    }
+
+    private static Method findVirtualThreadPerTaskExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Names the threads of the pools, for them to be told apart in thread dumps.
+     */
+    private static final class DispatcherThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCount = new AtomicInteger();
+        private final String namePrefix;
+
+        private DispatcherThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            // Like the threads of Executors.defaultThreadFactory(), the threads keep the JVM alive while they run.
+            final Thread thread = new Thread(runnable, this.namePrefix + this.threadCount.incrementAndGet());
+            thread.setDaemon(false);
+            thread.setPriority(Thread.NORM_PRIORITY);
+            return thread;
+        }
+    }
+}
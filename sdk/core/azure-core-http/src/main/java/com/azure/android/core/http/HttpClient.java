@@ -6,6 +6,8 @@ package com.azure.android.core.http;
 import com.azure.android.core.http.implementation.HttpClientProviders;
 import com.azure.android.core.util.CancellationToken;
 
+import java.util.List;
+
 /**
  * A generic interface for sending HTTP requests and getting responses.
  */
@@ -34,9 +36,41 @@ public interface HttpClient {
               CancellationToken cancellationToken,
               HttpCallback httpCallback);
 
+    /**
+     * Resolves the hosts of the given endpoints and opens connections to them in the background, so that the first
+     * calls to these endpoints don't wait for the DNS lookups and the TCP and TLS handshakes.
+     *
+     * <p>
+     * Only the scheme, host and port of the endpoints are used, the connections are opened with a HEAD request to
+     * the root of each endpoint and kept in the connection pool of the client. Failures are logged and otherwise
+     * ignored, the calls to an endpoint that couldn't be warmed up open their connection as usual. The default
+     * implementation does nothing.
+     * </p>
+     *
+     * @param endpoints The URLs of the endpoints.
+     */
+    default void prewarm(List<String> endpoints) {
+    }
+
+    /**
+     * Releases the resources held by the client.
+     *
+     * <p>
+     * The default HTTP clients share their connection pool and threads with the other default clients of the process,
+     * closing such a client releases its reference to them, and they are released once all the clients sharing them
+     * are closed. The client must not be used after it is closed. The default implementation does nothing.
+     * </p>
+     */
+    default void close() {
+    }
+
     /**
      * Create default {@link HttpClient} instance.
      *
+     * <p>
+     * The default clients share a connection pool and the threads running the calls.
+     * </p>
+     *
      * @return A new instance of the {@link HttpClient}.
      */
     static HttpClient createDefault() {
@@ -14,8 +14,12 @@ public interface HttpClientProvider {
      * Creates a new instance of the {@link com.azure.android.core.http.HttpClient} that this HttpClientProvider
      * is configured to create.
      *
-     * @return A new {@link com.azure.android.core.http.HttpClient} instance, entirely unrelated to all other instances
-     * that were created previously.
+     * <p>
+     * The instances may share their transport, such as their connection pool, with the other instances created by
+     * the provider, see {@link com.azure.android.core.http.HttpClient#close()}.
+     * </p>
+     *
+     * @return A new {@link com.azure.android.core.http.HttpClient} instance.
      */
     HttpClient createInstance();
 }
@@ -3,6 +3,7 @@
 
 package com.azure.android.core.http;
 
+import com.azure.android.core.http.exception.DeadlineExceededException;
 import com.azure.android.core.http.implementation.Util;
 import com.azure.android.core.util.CancellationToken;
 import com.azure.android.core.util.RequestContext;
@@ -46,15 +47,30 @@ public final class HttpPipeline {
                 // Indicate the HttpClient to prefer the calling thread for sending request.
                 chain.getRequest().getTags().put("prefer-running-http-in-calling-thread", null);
 
+                final RequestDeadline deadline = RequestDeadline.fromContext(chain.getContext());
+                if (deadline != null) {
+                    if (deadline.isExpired()) {
+                        chain.completedError(new DeadlineExceededException(
+                            "The deadline of the call passed before the request was sent.", chain.getRequest()));
+                        return;
+                    }
+                    // Let the HttpClient bound its timeouts by the time left.
+                    chain.getRequest().getTags().put(RequestDeadline.CONTEXT_KEY, deadline);
+                }
+
+                final long startNanos = System.nanoTime();
                 HttpPipeline.this.httpClient.send(chain.getRequest(), chain.getCancellationToken(),
                     new HttpCallback() {
                         @Override
                         public void onSuccess(HttpResponse response) {
+                            HttpPipeline.this.httpCallDispatcher.onResponse(chain.getRequest(), response, startNanos);
                             chain.completed(response);
                         }
 
                         @Override
                         public void onError(Throwable error) {
+                            HttpPipeline.this.httpCallDispatcher.onError(chain.getRequest(), startNanos,
+                                chain.getCancellationToken());
                             chain.completedError(error);
                         }
                     });
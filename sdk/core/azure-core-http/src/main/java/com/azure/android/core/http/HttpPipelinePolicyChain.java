@@ -101,6 +101,42 @@ public interface HttpPipelinePolicyChain {
      */
     void processNextPolicy(HttpRequest request, NextPolicyCallback callback, long delay, TimeUnit timeUnit);
 
+    /**
+     * Signal that the pipeline can proceed with the execution of the next policy, under a cancellation token
+     * other than the one of the pipeline run.
+     *
+     * <p>
+     * The next policies, and the HTTP client, observe {@code cancellationToken} instead of
+     * {@link #getCancellationToken()}. A policy that sends more than one request down the pipeline for a call
+     * uses this to cancel one of them without cancelling the call; the policy is responsible for cancelling
+     * {@code cancellationToken} when the token of the pipeline run is cancelled.
+     * </p>
+     *
+     * @param request The HTTP Request.
+     * @param cancellationToken The cancellation token for the next policies.
+     * @param callback The callback to receive the {@link HttpResponse} or the error from
+     *     the next policy once its completes the execution.
+     */
+    void processNextPolicy(HttpRequest request, CancellationToken cancellationToken, NextPolicyCallback callback);
+
+    /**
+     * Signal that, after the specified delay the pipeline can proceed with the execution of the next policy,
+     * under a cancellation token other than the one of the pipeline run.
+     *
+     * <p>
+     * See {@link #processNextPolicy(HttpRequest, CancellationToken, NextPolicyCallback)}.
+     * </p>
+     *
+     * @param request The HTTP Request.
+     * @param cancellationToken The cancellation token for the next policies.
+     * @param callback The callback to receive the {@link HttpResponse} or the error from
+     *     the next policy once its completes the execution.
+     * @param delay The time from now to delay the execution of next policy.
+     * @param timeUnit The time unit of the {@code delay}.
+     */
+    void processNextPolicy(HttpRequest request, CancellationToken cancellationToken, NextPolicyCallback callback,
+                           long delay, TimeUnit timeUnit);
+
     /**
      * Signal that the policy execution is successfully completed.
      *
@@ -7,6 +7,7 @@ import android.util.Log;
 
 import com.azure.android.core.http.implementation.Util;
 import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.Option;
 import com.azure.android.core.util.RequestContext;
 import com.azure.android.core.logging.ClientLogger;
 
@@ -26,8 +27,10 @@ final class HttpPipelinePolicyChainImpl implements HttpPipelinePolicyChain {
     private final CancellationToken cancellationToken;
     private final NextPolicyCallback prevPolicyCallback;
     private volatile boolean reportedBypassedError;
+    private volatile boolean isCompleted;
     // package private final var.
     final HttpCallback rootHttpCallback;
+    final HttpCallback dispatchableCall;
     final HttpPipelinePolicyChainImpl prevChain;
 
     /**
@@ -57,6 +60,7 @@ final class HttpPipelinePolicyChainImpl implements HttpPipelinePolicyChain {
                 httpPipeline,
                 request,
                 rootHttpCallback,
+                rootHttpCallback,
                 requestContext,
                 cancellationToken,
                 null,
@@ -77,13 +81,17 @@ final class HttpPipelinePolicyChainImpl implements HttpPipelinePolicyChain {
 
             rootChain.processNextPolicyIntern(rootChain.httpRequest,
                 rootChain.context,
-                rootChain.prevPolicyCallback);
+                rootChain.cancellationToken,
+                rootChain.prevPolicyCallback,
+                rootChain.dispatchableCall);
         };
 
+        final Option<Object> coalescingKey = requestContext.getData(HttpCallDispatcher.COALESCING_KEY);
         httpPipeline.httpCallDispatcher.enqueue(httpCallFunction,
             httpRequest,
             cancellationToken,
-            pipelineSendCallback);
+            pipelineSendCallback,
+            coalescingKey.isInitialized() ? coalescingKey.getValue() : null);
     }
 
     /**
@@ -100,8 +108,11 @@ final class HttpPipelinePolicyChainImpl implements HttpPipelinePolicyChain {
      * @param httpPipeline The HTTP Pipeline.
      * @param httpRequest The HTTP request to flow through the pipeline.
      * @param rootHttpCallback The Root HttpCallback from the dispatcher.
+     * @param dispatchableCall The dispatcher call running the policy, the one that began the pipeline run
+     *     or the one that resumed it to run a scheduled {@code processNextPolicy(..)} call.
      * @param requestContext The context to flow through the pipeline.
-     * @param cancellationToken cancellationToken for the pipeline run this chain belongs to.
+     * @param cancellationToken cancellationToken for the policy that uses this chain; the token of the pipeline
+     *     run this chain belongs to, unless a previous policy gave the next policies a token of its own.
      * @param prevChain The reference to previous chain (chain for the policy at {@code index - 1}).
      * @param prevPolicyCallback The reference to the callback provided to the {@code proceed(..)} method
      *     of the previous policy.
@@ -110,6 +121,7 @@ final class HttpPipelinePolicyChainImpl implements HttpPipelinePolicyChain {
                                         HttpPipeline httpPipeline,
                                         HttpRequest httpRequest,
                                         HttpCallback rootHttpCallback,
+                                        HttpCallback dispatchableCall,
                                         RequestContext requestContext,
                                         CancellationToken cancellationToken,
                                         HttpPipelinePolicyChainImpl prevChain,
@@ -118,6 +130,7 @@ final class HttpPipelinePolicyChainImpl implements HttpPipelinePolicyChain {
         assert (httpPipeline != null
             && httpRequest != null
             && rootHttpCallback != null
+            && dispatchableCall != null
             && requestContext != null
             && cancellationToken != null
             && (prevChain != null || prevPolicyCallback != null));
@@ -126,6 +139,7 @@ final class HttpPipelinePolicyChainImpl implements HttpPipelinePolicyChain {
         this.httpPipeline = httpPipeline;
         this.httpRequest = httpRequest;
         this.rootHttpCallback = rootHttpCallback;
+        this.dispatchableCall = dispatchableCall;
         this.context = requestContext;
         this.cancellationToken = cancellationToken;
         this.prevChain = prevChain;
@@ -150,25 +164,43 @@ final class HttpPipelinePolicyChainImpl implements HttpPipelinePolicyChain {
     @Override
     public void processNextPolicy(HttpRequest httpRequest) {
         Util.requireNonNull(httpRequest, "'httpRequest' is required.");
-        this.processNextPolicyIntern(httpRequest, this.context, null);
+        this.processNextPolicyIntern(httpRequest, this.context, this.cancellationToken, null, this.dispatchableCall);
     }
 
     @Override
     public void processNextPolicy(HttpRequest httpRequest, NextPolicyCallback callback) {
         Util.requireNonNull(httpRequest, "'httpRequest' is required.");
         Util.requireNonNull(callback, "'callback' is required.");
-        this.processNextPolicyIntern(httpRequest, this.context, callback);
+        this.processNextPolicyIntern(httpRequest, this.context, this.cancellationToken, callback,
+            this.dispatchableCall);
     }
 
     @Override
     public void processNextPolicy(HttpRequest httpRequest, NextPolicyCallback callback,
                                   long delay, TimeUnit timeUnit) {
+        this.processNextPolicy(httpRequest, this.cancellationToken, callback, delay, timeUnit);
+    }
+
+    @Override
+    public void processNextPolicy(HttpRequest httpRequest, CancellationToken cancellationToken,
+                                  NextPolicyCallback callback) {
+        Util.requireNonNull(httpRequest, "'httpRequest' is required.");
+        Util.requireNonNull(cancellationToken, "'cancellationToken' is required.");
+        Util.requireNonNull(callback, "'callback' is required.");
+        this.processNextPolicyIntern(httpRequest, this.context, cancellationToken, callback, this.dispatchableCall);
+    }
+
+    @Override
+    public void processNextPolicy(HttpRequest httpRequest, CancellationToken cancellationToken,
+                                  NextPolicyCallback callback, long delay, TimeUnit timeUnit) {
         Util.requireNonNull(httpRequest, "'httpRequest' is required.");
+        Util.requireNonNull(cancellationToken, "'cancellationToken' is required.");
         Util.requireNonNull(callback, "'callback' is required.");
         Util.requireNonNull(timeUnit, "'timeUnit' is required.");
         this.httpPipeline.httpCallDispatcher.scheduleProcessNextPolicy(this,
             httpRequest,
             this.context,
+            cancellationToken,
             callback,
             delay,
             timeUnit);
@@ -178,6 +210,7 @@ final class HttpPipelinePolicyChainImpl implements HttpPipelinePolicyChain {
     public void completed(HttpResponse httpResponse) {
         Util.requireNonNull(httpResponse, "'httpResponse' is required.");
         assert (this.prevChain != null);
+        this.isCompleted = true;
         if (this.prevPolicyCallback != null) {
             try {
                 this.prevPolicyCallback.onSuccess(httpResponse,
@@ -197,6 +230,7 @@ final class HttpPipelinePolicyChainImpl implements HttpPipelinePolicyChain {
     @Override
     public void completedError(Throwable error) {
         Util.requireNonNull(error, "'throwable' is required.");
+        this.isCompleted = true;
         if (this.prevPolicyCallback != null) {
             try {
                 this.prevPolicyCallback.onError(error,
@@ -209,6 +243,33 @@ final class HttpPipelinePolicyChainImpl implements HttpPipelinePolicyChain {
         }
     }
 
+    /**
+     * package-private.
+     *
+     * Run a scheduled {@code processNextPolicy(..)} call, once the dispatcher resumed the pipeline for it.
+     *
+     * @param httpRequest The HTTP request for the next policy.
+     * @param cancellationToken The cancellation token for the next policies.
+     * @param callback The current policy's callback that next policy notify results to.
+     * @param dispatchableCall The dispatcher call that resumed the pipeline.
+     */
+    void processScheduledNextPolicy(HttpRequest httpRequest, CancellationToken cancellationToken,
+                                    NextPolicyCallback callback, HttpCallback dispatchableCall) {
+        this.processNextPolicyIntern(httpRequest, this.context, cancellationToken, callback, dispatchableCall);
+    }
+
+    /**
+     * package-private.
+     *
+     * Gets whether the policy using this chain completed its execution, i.e. called
+     * {@code completed(..)} or {@code completedError(..)}.
+     *
+     * @return true if the policy completed.
+     */
+    boolean isCompleted() {
+        return this.isCompleted;
+    }
+
     /**
      * Proceed with execution of policy at {@code index + 1}.
      * <p>
@@ -218,11 +279,14 @@ final class HttpPipelinePolicyChainImpl implements HttpPipelinePolicyChain {
      *
      * @param httpRequest The HTTP request for the next policy.
      * @param requestContext The HTTP context for the next policy.
+     * @param cancellationToken The cancellation token for the next policy.
      * @param proceedCallback The current policy's callback (policy at {@code index})
      *     that next policy notify results to.
+     * @param dispatchableCall The dispatcher call running the next policy.
      */
     private void processNextPolicyIntern(HttpRequest httpRequest, RequestContext requestContext,
-                                         NextPolicyCallback proceedCallback) {
+                                         CancellationToken cancellationToken, NextPolicyCallback proceedCallback,
+                                         HttpCallback dispatchableCall) {
         final int nextIndex = this.index + 1;
         assert nextIndex >= 0;
 
@@ -231,8 +295,9 @@ final class HttpPipelinePolicyChainImpl implements HttpPipelinePolicyChain {
             this.httpPipeline,
             httpRequest,
             this.rootHttpCallback,
+            dispatchableCall,
             requestContext,
-            this.cancellationToken,
+            cancellationToken,
             this,
             proceedCallback);
 
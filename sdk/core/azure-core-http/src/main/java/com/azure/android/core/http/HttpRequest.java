@@ -17,12 +17,15 @@ import java.util.Map;
  * {@code url}, {@link HttpHeader} and request body.
  */
 public class HttpRequest {
-    private final ClientLogger logger = new ClientLogger(HttpRequest.class);
+    private static final ClientLogger LOGGER = new ClientLogger(HttpRequest.class);
 
     private HttpMethod httpMethod;
-    private URL url;
+    // The URL is parsed on first use, and the parsed URL is shared with the copies of the request.
+    private String urlString;
+    private volatile URL url;
     private HttpHeaders headers;
     private byte[] body;
+    // Created on first use.
     private Map<Object, Object> tags;
 
     /**
@@ -30,19 +33,14 @@ public class HttpRequest {
      *
      * @param httpMethod The HTTP request method.
      * @param url The target address to send the request to.
-     * @throws IllegalArgumentException if the url is malformed.
+     * @throws IllegalArgumentException if the url has no scheme.
      */
     public HttpRequest(HttpMethod httpMethod,
                        String url) {
         this.httpMethod = Util.requireNonNull(httpMethod, "'httpMethod' is required.");
         Util.requireNonNull(url, "'url' is required.");
-        try {
-            this.url = new URL(url);
-        } catch (MalformedURLException ex) {
-            throw logger.logExceptionAsWarning(new IllegalArgumentException("'url' must be a valid URL", ex));
-        }
+        this.urlString = checkUrl(url);
         this.headers = new HttpHeaders();
-        this.tags = new HashMap<>(0);
     }
 
     /**
@@ -52,7 +50,7 @@ public class HttpRequest {
      * @param url The target address to send the request to.
      * @param headers The HTTP headers to use with this request.
      * @param body The request content.
-     * @throws IllegalArgumentException if the url is malformed.
+     * @throws IllegalArgumentException if the url has no scheme.
      */
     public HttpRequest(HttpMethod httpMethod,
                        String url,
@@ -60,14 +58,9 @@ public class HttpRequest {
                        byte[] body) {
         this.httpMethod = Util.requireNonNull(httpMethod, "'httpMethod' is required.");
         Util.requireNonNull(url, "'url' is required.");
-        try {
-            this.url = new URL(url);
-        } catch (MalformedURLException ex) {
-            throw logger.logExceptionAsWarning(new IllegalArgumentException("'url' must be a valid URL", ex));
-        }
+        this.urlString = checkUrl(url);
         this.headers = Util.requireNonNull(headers, "'headers' is required.");
         this.body = Util.requireNonNull(body, "'body' is required.");
-        this.tags = new HashMap<>(0);
     }
 
     /**
@@ -93,9 +86,24 @@ public class HttpRequest {
     /**
      * Get the target address.
      *
+     * <p>
+     * The address is parsed on the first call, parsing it is skipped for requests that are only copied or whose
+     * address is replaced before being sent.
+     * </p>
+     *
      * @return the target address
+     * @throws IllegalArgumentException if the url is malformed.
      */
     public URL getUrl() {
+        URL url = this.url;
+        if (url == null) {
+            try {
+                url = new URL(this.urlString);
+            } catch (MalformedURLException ex) {
+                throw LOGGER.logExceptionAsWarning(new IllegalArgumentException("'url' must be a valid URL", ex));
+            }
+            this.url = url;
+        }
         return url;
     }
 
@@ -104,14 +112,11 @@ public class HttpRequest {
      *
      * @param url target address.
      * @return this HttpRequest
-     * @throws IllegalArgumentException if the url is malformed.
+     * @throws IllegalArgumentException if the url has no scheme.
      */
     public HttpRequest setUrl(String url) {
-        try {
-            this.url = new URL(url);
-        } catch (MalformedURLException ex) {
-            throw logger.logExceptionAsWarning(new IllegalArgumentException("'url' must be a valid URL", ex));
-        }
+        this.urlString = checkUrl(url);
+        this.url = null;
         return this;
     }
 
@@ -193,6 +198,9 @@ public class HttpRequest {
      * @return The tags.
      */
     public Map<Object, Object> getTags() {
+        if (this.tags == null) {
+            this.tags = new HashMap<>(0);
+        }
         return this.tags;
     }
 
@@ -206,12 +214,42 @@ public class HttpRequest {
      * @return a new HTTP request instance with cloned instances of all mutable properties.
      */
     public HttpRequest copy() {
-        HttpRequest requestCopy = new HttpRequest(this.httpMethod,
-            this.url.toString(),
-            new HttpHeaders(this.headers),
-            this.body);
+        HttpRequest requestCopy = new HttpRequest(this.httpMethod, this.urlString, this.url,
+            new HttpHeaders(this.headers));
+        // the body may be unset, e.g. for GET requests.
+        requestCopy.body = this.body;
         // shallow-copy the tags.
-        requestCopy.tags = new HashMap<>(this.tags);
+        if (this.tags != null && !this.tags.isEmpty()) {
+            requestCopy.tags = new HashMap<>(this.tags);
+        }
         return requestCopy;
     }
+
+    private HttpRequest(HttpMethod httpMethod, String urlString, URL url, HttpHeaders headers) {
+        // The URL string was checked by the request copied, and the parsed URL is immutable.
+        this.httpMethod = httpMethod;
+        this.urlString = urlString;
+        this.url = url;
+        this.headers = headers;
+    }
+
+    /**
+     * Checks that the url starts with a scheme, the rest of it is only validated when it is parsed by getUrl().
+     */
+    private static String checkUrl(String url) {
+        final int colon = url == null ? -1 : url.indexOf(':');
+        boolean valid = colon > 0 && isAsciiLetter(url.charAt(0));
+        for (int i = 1; valid && i < colon; i++) {
+            final char c = url.charAt(i);
+            valid = isAsciiLetter(c) || (c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.';
+        }
+        if (!valid) {
+            throw LOGGER.logExceptionAsWarning(new IllegalArgumentException("'url' must be a valid URL"));
+        }
+        return url;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
 }
@@ -0,0 +1,125 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http;
+
+import com.azure.android.core.http.implementation.Util;
+import com.azure.android.core.logging.ClientLogger;
+import com.azure.android.core.util.Option;
+import com.azure.android.core.util.RequestContext;
+
+import org.threeten.bp.Duration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The point in time by which a call must complete, including all its attempts.
+ *
+ * <p>
+ * A deadline added to the {@link RequestContext} of a call under {@link #CONTEXT_KEY} is honored by the pipeline:
+ * the {@link com.azure.android.core.http.policy.RetryPolicy} doesn't start an attempt that can't complete in time,
+ * a call whose deadline passed fails with {@link com.azure.android.core.http.exception.DeadlineExceededException}
+ * before reaching the network, and the transports bound their connect and read timeouts by the remaining time.
+ * </p>
+ *
+ * <pre>
+ * RequestContext requestContext = RequestContext.NONE
+ *     .addData(RequestDeadline.CONTEXT_KEY, RequestDeadline.after(Duration.ofSeconds(10)));
+ * </pre>
+ */
+public final class RequestDeadline {
+    /**
+     * The key of the {@link RequestContext} data holding the deadline of a call. The pipeline also tags the
+     * request sent to the transport with the deadline under this key.
+     */
+    public static final String CONTEXT_KEY = "azure-request-deadline";
+
+    private static final ClientLogger LOGGER = new ClientLogger(RequestDeadline.class);
+
+    // The System.nanoTime() of the deadline.
+    private final long deadlineNanos;
+
+    private RequestDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Creates a deadline the given time from now.
+     *
+     * @param timeout The time from now to the deadline.
+     * @return The deadline.
+     * @throws NullPointerException If {@code timeout} is null.
+     * @throws IllegalArgumentException If {@code timeout} is negative.
+     */
+    public static RequestDeadline after(Duration timeout) {
+        Util.requireNonNull(timeout, "'timeout' is required.");
+        if (timeout.isNegative()) {
+            throw LOGGER.logExceptionAsError(new IllegalArgumentException("'timeout' cannot be negative."));
+        }
+        return new RequestDeadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * Gets the deadline of a call from its context.
+     *
+     * @param requestContext The context of the call.
+     * @return The deadline, null if the call has none.
+     */
+    public static RequestDeadline fromContext(RequestContext requestContext) {
+        final Option<Object> deadline = requestContext.getData(CONTEXT_KEY);
+        return deadline.isInitialized() && deadline.getValue() instanceof RequestDeadline
+            ? (RequestDeadline) deadline.getValue()
+            : null;
+    }
+
+    /**
+     * Gets the deadline of a request from its tags, for a transport to bound its timeouts.
+     *
+     * @param httpRequest The request.
+     * @return The deadline, null if the request has none.
+     */
+    public static RequestDeadline fromRequest(HttpRequest httpRequest) {
+        final Object deadline = httpRequest.getTags().get(CONTEXT_KEY);
+        return deadline instanceof RequestDeadline ? (RequestDeadline) deadline : null;
+    }
+
+    /**
+     * Gets the time left until the deadline.
+     *
+     * @return The remaining time in nanoseconds, zero or negative if the deadline passed.
+     */
+    public long getRemainingNanos() {
+        return this.deadlineNanos - System.nanoTime();
+    }
+
+    /**
+     * Gets the time left until the deadline.
+     *
+     * @return The remaining time, zero if the deadline passed.
+     */
+    public Duration getRemaining() {
+        return Duration.ofNanos(Math.max(0, getRemainingNanos()));
+    }
+
+    /**
+     * Gets whether the deadline passed.
+     *
+     * @return true if the deadline passed.
+     */
+    public boolean isExpired() {
+        return getRemainingNanos() <= 0;
+    }
+
+    /**
+     * Bounds a timeout by the time left until the deadline.
+     *
+     * @param timeout The timeout, zero or negative for no timeout.
+     * @param unit The time unit of {@code timeout} and of the returned timeout.
+     * @return The lower of {@code timeout} and the remaining time, at least 1 for a deadline that passed, since
+     *     0 usually means no timeout.
+     */
+    public long boundTimeout(long timeout, TimeUnit unit) {
+        final long remaining = Math.max(1, unit.convert(getRemainingNanos(), TimeUnit.NANOSECONDS));
+        return timeout <= 0 ? remaining : Math.min(timeout, remaining);
+    }
+}
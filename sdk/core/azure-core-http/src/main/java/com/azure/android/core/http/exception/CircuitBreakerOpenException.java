@@ -0,0 +1,47 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.exception;
+
+import com.azure.android.core.http.HttpRequest;
+
+import org.threeten.bp.Duration;
+
+/**
+ * The exception thrown when a request is rejected without being sent, because the circuit breaker
+ * for the target host is open.
+ */
+public class CircuitBreakerOpenException extends HttpRequestException {
+    private final String host;
+    private final Duration retryAfter;
+
+    /**
+     * Initializes a new instance of the CircuitBreakerOpenException class.
+     *
+     * @param message The exception message.
+     * @param request The {@link HttpRequest} that was rejected.
+     * @param host The host whose circuit is open.
+     * @param retryAfter The remaining time before the circuit admits requests again.
+     */
+    public CircuitBreakerOpenException(final String message, final HttpRequest request, final String host,
+                                       final Duration retryAfter) {
+        super(message, request);
+        this.host = host;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return The host whose circuit is open.
+     */
+    public String getHost() {
+        return this.host;
+    }
+
+    /**
+     * @return The remaining time before the circuit admits requests again, zero if the circuit is
+     * already admitting a limited number of probe requests.
+     */
+    public Duration getRetryAfter() {
+        return this.retryAfter;
+    }
+}
@@ -0,0 +1,22 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.exception;
+
+import com.azure.android.core.http.HttpRequest;
+
+/**
+ * The exception a call fails with when its {@link com.azure.android.core.http.RequestDeadline deadline} passed
+ * before the request could be sent.
+ */
+public class DeadlineExceededException extends HttpRequestException {
+    /**
+     * Initializes a new instance of the DeadlineExceededException class.
+     *
+     * @param message The exception message.
+     * @param request The {@link HttpRequest} that was not sent.
+     */
+    public DeadlineExceededException(final String message, final HttpRequest request) {
+        super(message, request);
+    }
+}
@@ -0,0 +1,36 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.exception;
+
+import com.azure.android.core.http.HttpRequest;
+
+/**
+ * The exception a call completes with when it is dropped without being sent, because a newer call with the same
+ * coalescing key was enqueued while it was waiting to run.
+ *
+ * @see com.azure.android.core.http.HttpCallDispatcher#COALESCING_KEY
+ */
+public class HttpCallSupersededException extends HttpRequestException {
+    private final transient Object coalescingKey;
+
+    /**
+     * Initializes a new instance of the HttpCallSupersededException class.
+     *
+     * @param message The exception message.
+     * @param request The {@link HttpRequest} that was dropped.
+     * @param coalescingKey The coalescing key shared by the dropped call and the newer call.
+     */
+    public HttpCallSupersededException(final String message, final HttpRequest request,
+                                       final Object coalescingKey) {
+        super(message, request);
+        this.coalescingKey = coalescingKey;
+    }
+
+    /**
+     * @return The coalescing key shared by the dropped call and the newer call.
+     */
+    public Object getCoalescingKey() {
+        return this.coalescingKey;
+    }
+}
@@ -0,0 +1,254 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.implementation;
+
+import com.azure.android.core.credential.AccessToken;
+import com.azure.android.core.credential.TokenCredential;
+import com.azure.android.core.credential.TokenRequestContext;
+import com.azure.android.core.logging.ClientLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache of the access token retrieved from a {@link TokenCredential}.
+ *
+ * <p>
+ * The cache guarantees that at most one token retrieval is in flight at any time; callers arriving while
+ * a retrieval is in progress are queued and notified once it completes. A token that is about to expire
+ * is still served while a replacement is retrieved on a background thread; such refreshes are attempted at most
+ * once every 30 seconds, whether the previous one succeeded or not, so a credential returning tokens
+ * that are already about to expire is not called for every request.
+ * </p>
+ */
+public final class AccessTokenCache {
+    private static final long REFRESH_OFFSET_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long MIN_REFRESH_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final ClientLogger logger = new ClientLogger(AccessTokenCache.class);
+
+    private final TokenCredential credential;
+    private final TokenRequestContext tokenRequestContext;
+    private final long minRefreshIntervalMillis;
+    private volatile CachedToken cachedToken;
+    // The fields below are guarded by 'this'.
+    private List<TokenCredential.TokenCredentialCallback> waitingCallbacks = new ArrayList<>();
+    private boolean refreshInFlight;
+    private long nextRefreshAttemptAt;
+
+    /**
+     * Creates an AccessTokenCache.
+     *
+     * @param credential The credential to retrieve the token from.
+     * @param tokenRequestContext The context describing the token to retrieve.
+     */
+    public AccessTokenCache(TokenCredential credential, TokenRequestContext tokenRequestContext) {
+        this(credential, tokenRequestContext, MIN_REFRESH_INTERVAL_MILLIS);
+    }
+
+    // package-private for the tests.
+    AccessTokenCache(TokenCredential credential, TokenRequestContext tokenRequestContext,
+                     long minRefreshIntervalMillis) {
+        this.credential = Util.requireNonNull(credential, "'credential' cannot be null.");
+        this.tokenRequestContext = Util.requireNonNull(tokenRequestContext, "'tokenRequestContext' cannot be null.");
+        this.minRefreshIntervalMillis = minRefreshIntervalMillis;
+    }
+
+    /**
+     * Gets the cached token if it has not expired.
+     *
+     * <p>
+     * If the token is within the refresh window, it is returned as is and a background refresh is started,
+     * unless one is already in flight or the previous one was attempted too recently.
+     * </p>
+     *
+     * @return The cached token, or null if there is no valid token in the cache.
+     */
+    public AccessToken getCachedToken() {
+        final CachedToken current = this.cachedToken;
+        if (current == null) {
+            return null;
+        }
+        final long now = System.currentTimeMillis();
+        if (now >= current.expiresAt) {
+            return null;
+        }
+        if (now >= current.refreshAt) {
+            this.refreshInBackground(now);
+        }
+        return current.accessToken;
+    }
+
+    /**
+     * Gets a valid token.
+     *
+     * <p>
+     * The {@code callback} is invoked synchronously if the cache holds a valid token, otherwise it is invoked
+     * once the in-flight retrieval (started by this call or an earlier one) completes.
+     * </p>
+     *
+     * @param callback The callback to notify the token or the retrieval error.
+     */
+    public void getToken(TokenCredential.TokenCredentialCallback callback) {
+        Util.requireNonNull(callback, "'callback' cannot be null.");
+        final AccessToken token = this.getCachedToken();
+        if (token != null) {
+            callback.onSuccess(token);
+            return;
+        }
+
+        final boolean startRefresh;
+        final CachedToken current;
+        synchronized (this) {
+            final CachedToken latest = this.cachedToken;
+            if (latest == null || System.currentTimeMillis() >= latest.expiresAt) {
+                this.waitingCallbacks.add(callback);
+                startRefresh = !this.refreshInFlight;
+                this.refreshInFlight = true;
+                current = null;
+            } else {
+                // A retrieval completed between the unsynchronized check and acquiring the lock.
+                startRefresh = false;
+                current = latest;
+            }
+        }
+
+        if (current != null) {
+            callback.onSuccess(current.accessToken);
+        } else if (startRefresh) {
+            this.refresh();
+        }
+    }
+
+    /**
+     * Removes the given token from the cache, so that the next {@code getToken} call retrieves a new one.
+     * The call has no effect if the cache already moved on to a different token.
+     *
+     * @param token The token to invalidate, typically the one that the service rejected.
+     */
+    public void invalidate(AccessToken token) {
+        synchronized (this) {
+            final CachedToken current = this.cachedToken;
+            if (current != null && current.accessToken == token) {
+                this.cachedToken = null;
+            }
+        }
+    }
+
+    private void refreshInBackground(long now) {
+        synchronized (this) {
+            if (this.refreshInFlight || now < this.nextRefreshAttemptAt) {
+                return;
+            }
+            this.refreshInFlight = true;
+        }
+        try {
+            Refresher.EXECUTOR.execute(this::refresh);
+        } catch (RejectedExecutionException e) {
+            this.refresh();
+        }
+    }
+
+    private void refresh() {
+        final RefreshCallback refreshCallback = new RefreshCallback();
+        try {
+            this.credential.getToken(this.tokenRequestContext, refreshCallback);
+        } catch (Throwable t) {
+            refreshCallback.onError(t);
+        }
+    }
+
+    private void onRefreshCompleted(AccessToken token, Throwable error) {
+        final List<TokenCredential.TokenCredentialCallback> callbacks;
+        synchronized (this) {
+            if (token != null) {
+                this.cachedToken = new CachedToken(token);
+            }
+            // Also after a success, the new token may be inside the refresh window already.
+            this.nextRefreshAttemptAt = System.currentTimeMillis() + this.minRefreshIntervalMillis;
+            this.refreshInFlight = false;
+            callbacks = this.waitingCallbacks;
+            this.waitingCallbacks = new ArrayList<>();
+        }
+
+        if (token == null) {
+            logger.warning("Failed to retrieve the access token.", error);
+        }
+        for (TokenCredential.TokenCredentialCallback callback : callbacks) {
+            if (token != null) {
+                callback.onSuccess(token);
+            } else {
+                callback.onError(error);
+            }
+        }
+    }
+
+    private final class RefreshCallback implements TokenCredential.TokenCredentialCallback {
+        private boolean completed;
+
+        @Override
+        public void onSuccess(AccessToken accessToken) {
+            if (this.markCompleted()) {
+                if (accessToken == null) {
+                    onRefreshCompleted(null,
+                        new IllegalStateException("The credential returned a null access token."));
+                } else {
+                    onRefreshCompleted(accessToken, null);
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (this.markCompleted()) {
+                onRefreshCompleted(null, throwable);
+            }
+        }
+
+        private synchronized boolean markCompleted() {
+            // Guard against credentials that signal more than once.
+            if (this.completed) {
+                return false;
+            }
+            this.completed = true;
+            return true;
+        }
+    }
+
+    /**
+     * Holds the executor running the background refreshes, created on the first one.
+     */
+    private static final class Refresher {
+        static final ExecutorService EXECUTOR = createExecutor();
+
+        private static ExecutorService createExecutor() {
+            // A thread per refresh in flight, a credential may block while it retrieves the token.
+            return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), runnable -> {
+                    final Thread thread = new Thread(runnable, "azure-token-refresher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        }
+    }
+
+    private static final class CachedToken {
+        private final AccessToken accessToken;
+        private final long expiresAt;
+        private final long refreshAt;
+
+        private CachedToken(AccessToken accessToken) {
+            this.accessToken = accessToken;
+            this.expiresAt = accessToken.getExpiresAt() == null
+                ? Long.MAX_VALUE
+                : accessToken.getExpiresAt().toInstant().toEpochMilli();
+            this.refreshAt = this.expiresAt - REFRESH_OFFSET_MILLIS;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.implementation;
+
+import com.azure.android.core.logging.ClientLogger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Formats and writes log records on a single background thread, shared by the whole process.
+ *
+ * <p>
+ * Records are handed over through a {@link BoundedRingBuffer}, so submitting one never blocks and the memory held
+ * by pending records is bounded. Records submitted while the buffer is full are dropped and counted; the count is
+ * logged once the writer catches up.
+ * </p>
+ */
+public final class AsyncLogWriter {
+    private static final int BUFFER_CAPACITY = 1024;
+
+    private final ClientLogger logger = new ClientLogger(AsyncLogWriter.class);
+
+    private final BoundedRingBuffer<Record> buffer = new BoundedRingBuffer<>(BUFFER_CAPACITY);
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean parked;
+
+    private AsyncLogWriter() {
+        this.thread = new Thread(this::drain, "azure-http-log-writer");
+        // Pending records must not keep the process alive.
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Gets the writer, starting its thread on the first call.
+     *
+     * @return The writer.
+     */
+    public static AsyncLogWriter getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Submits a record to be written on the background thread.
+     *
+     * @param record The record.
+     * @return false if the buffer is full and the record was dropped.
+     */
+    public boolean submit(Record record) {
+        if (!this.buffer.offer(record)) {
+            this.droppedCount.incrementAndGet();
+            return false;
+        }
+        if (this.parked) {
+            LockSupport.unpark(this.thread);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of records dropped because the buffer was full.
+     *
+     * @return The dropped record count.
+     */
+    public long getDroppedCount() {
+        return this.droppedCount.get();
+    }
+
+    private void drain() {
+        long reportedDroppedCount = 0;
+        while (true) {
+            Record record = this.buffer.poll();
+            if (record == null) {
+                final long dropped = this.droppedCount.get();
+                if (dropped != reportedDroppedCount) {
+                    logger.warning("{} log records were dropped because the log buffer was full.",
+                        dropped - reportedDroppedCount);
+                    reportedDroppedCount = dropped;
+                }
+                this.parked = true;
+                // A record submitted before 'parked' was set is seen by this poll, a later one unparks the thread.
+                record = this.buffer.poll();
+                if (record == null) {
+                    LockSupport.park(this);
+                    this.parked = false;
+                    continue;
+                }
+                this.parked = false;
+            }
+            try {
+                record.write();
+            } catch (RuntimeException e) {
+                logger.warning("Failed to write a log record.", e);
+            }
+        }
+    }
+
+    /**
+     * A log record, formatted and written when {@link #write()} is called on the background thread.
+     */
+    public interface Record {
+        /**
+         * Formats and writes the record.
+         */
+        void write();
+    }
+
+    private static final class Holder {
+        static final AsyncLogWriter INSTANCE = new AsyncLogWriter();
+    }
+}
@@ -0,0 +1,95 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.implementation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free bounded queue for many producers and a single consumer, backed by a fixed ring of slots.
+ *
+ * <p>
+ * Each slot carries a sequence number telling whether it is free for the producer of a given position or filled
+ * for the consumer of that position, so producers only contend on a compare-and-set of the tail. An offer to a full
+ * buffer fails instead of blocking or growing the buffer.
+ * </p>
+ *
+ * @param <T> The type of the items.
+ */
+public final class BoundedRingBuffer<T> {
+    private final int mask;
+    private final AtomicReferenceArray<T> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // Accessed by the consumer only.
+    private long head;
+
+    /**
+     * Creates a BoundedRingBuffer.
+     *
+     * @param capacity The maximum number of items, rounded up to a power of two.
+     * @throws IllegalArgumentException If {@code capacity} is not positive.
+     */
+    public BoundedRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("'capacity' must be between 1 and 2^30.");
+        }
+        final int size = Integer.highestOneBit(capacity) == capacity
+            ? capacity
+            : Integer.highestOneBit(capacity) << 1;
+        this.mask = size - 1;
+        this.items = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an item to the buffer, from any thread.
+     *
+     * @param item The item.
+     * @return false if the buffer is full and the item was not added.
+     */
+    public boolean offer(T item) {
+        Util.requireNonNull(item, "'item' cannot be null.");
+        while (true) {
+            final long position = this.tail.get();
+            final int index = (int) position & this.mask;
+            final long difference = this.sequences.get(index) - position;
+            if (difference == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    this.items.set(index, item);
+                    // Publishes the item to the consumer.
+                    this.sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                // The slot still holds the item of the previous lap, the buffer is full.
+                return false;
+            }
+            // Another producer took the position, retry with the new tail.
+        }
+    }
+
+    /**
+     * Removes the oldest item of the buffer. Must only be called from the single consumer thread.
+     *
+     * @return The item, or null if the buffer is empty or the oldest item is not published yet.
+     */
+    public T poll() {
+        final long position = this.head;
+        final int index = (int) position & this.mask;
+        if (this.sequences.get(index) != position + 1) {
+            return null;
+        }
+        final T item = this.items.get(index);
+        this.items.set(index, null);
+        // Frees the slot for the producer of the next lap.
+        this.sequences.set(index, position + this.mask + 1);
+        this.head = position + 1;
+        return item;
+    }
+}
@@ -0,0 +1,72 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.implementation;
+
+import com.azure.android.core.http.HttpHeaders;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * HTTP response whose body is held in memory, so it can be read any number of times.
+ */
+public final class ByteArrayHttpResponse extends HttpResponse {
+    private final int statusCode;
+    private final HttpHeaders headers;
+    private final byte[] body;
+
+    /**
+     * Creates an HTTP response with an in-memory body.
+     *
+     * @param request The request which resulted in this response.
+     * @param statusCode The status code of the response.
+     * @param headers The headers of the response.
+     * @param body The body of the response, which must not be modified afterwards.
+     */
+    public ByteArrayHttpResponse(HttpRequest request, int statusCode, HttpHeaders headers, byte[] body) {
+        super(request);
+        this.statusCode = statusCode;
+        this.headers = Util.requireNonNull(headers, "'headers' cannot be null.");
+        this.body = Util.requireNonNull(body, "'body' cannot be null.");
+    }
+
+    @Override
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    @Override
+    public String getHeaderValue(String name) {
+        return this.headers.getValue(name);
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return this.headers;
+    }
+
+    @Override
+    public InputStream getBody() {
+        return new ByteArrayInputStream(this.body);
+    }
+
+    @Override
+    public byte[] getBodyAsByteArray() {
+        return this.body.clone();
+    }
+
+    @Override
+    public String getBodyAsString() {
+        // Decode the same way as a buffered response does.
+        return new BufferedHttpResponse(this).getBodyAsString();
+    }
+
+    @Override
+    public String getBodyAsString(Charset charset) {
+        return new String(this.body, charset);
+    }
+}
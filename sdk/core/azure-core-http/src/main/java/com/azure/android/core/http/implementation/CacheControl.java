@@ -0,0 +1,137 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.implementation;
+
+import java.util.Locale;
+
+/**
+ * The directives of a {@code Cache-Control} header that matter to a private cache.
+ */
+public final class CacheControl {
+    private static final CacheControl EMPTY = new CacheControl(false, false, -1, -1, -1, false);
+
+    private final boolean noStore;
+    private final boolean noCache;
+    private final long maxAgeSeconds;
+    private final long maxStaleSeconds;
+    private final long minFreshSeconds;
+    private final boolean mustRevalidate;
+
+    private CacheControl(boolean noStore, boolean noCache, long maxAgeSeconds, long maxStaleSeconds,
+                         long minFreshSeconds, boolean mustRevalidate) {
+        this.noStore = noStore;
+        this.noCache = noCache;
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.maxStaleSeconds = maxStaleSeconds;
+        this.minFreshSeconds = minFreshSeconds;
+        this.mustRevalidate = mustRevalidate;
+    }
+
+    /**
+     * Parses a {@code Cache-Control} header value, ignoring unknown and malformed directives.
+     *
+     * @param headerValue The header value, may be null.
+     * @return The parsed directives.
+     */
+    public static CacheControl parse(String headerValue) {
+        if (headerValue == null || headerValue.isEmpty()) {
+            return EMPTY;
+        }
+        boolean noStore = false;
+        boolean noCache = false;
+        long maxAgeSeconds = -1;
+        long maxStaleSeconds = -1;
+        long minFreshSeconds = -1;
+        boolean mustRevalidate = false;
+        for (String directive : headerValue.split(",")) {
+            final int equalsIndex = directive.indexOf('=');
+            final String name = (equalsIndex < 0 ? directive : directive.substring(0, equalsIndex))
+                .trim()
+                .toLowerCase(Locale.ROOT);
+            final String value = equalsIndex < 0 ? null : directive.substring(equalsIndex + 1).trim();
+            switch (name) {
+                case "no-store":
+                    noStore = true;
+                    break;
+                case "no-cache":
+                    noCache = true;
+                    break;
+                case "max-age":
+                    maxAgeSeconds = parseSeconds(value);
+                    break;
+                case "max-stale":
+                    // A max-stale without a value accepts a response of any staleness.
+                    maxStaleSeconds = value == null ? Long.MAX_VALUE : parseSeconds(value);
+                    break;
+                case "min-fresh":
+                    minFreshSeconds = parseSeconds(value);
+                    break;
+                case "must-revalidate":
+                    mustRevalidate = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return new CacheControl(noStore, noCache, maxAgeSeconds, maxStaleSeconds, minFreshSeconds, mustRevalidate);
+    }
+
+    /**
+     * @return Whether the {@code no-store} directive is present.
+     */
+    public boolean isNoStore() {
+        return this.noStore;
+    }
+
+    /**
+     * @return Whether the {@code no-cache} directive is present.
+     */
+    public boolean isNoCache() {
+        return this.noCache;
+    }
+
+    /**
+     * @return The {@code max-age} in seconds, or -1 if absent.
+     */
+    public long getMaxAgeSeconds() {
+        return this.maxAgeSeconds;
+    }
+
+    /**
+     * @return The {@code max-stale} in seconds, or -1 if absent.
+     */
+    public long getMaxStaleSeconds() {
+        return this.maxStaleSeconds;
+    }
+
+    /**
+     * @return The {@code min-fresh} in seconds, or -1 if absent.
+     */
+    public long getMinFreshSeconds() {
+        return this.minFreshSeconds;
+    }
+
+    /**
+     * @return Whether the {@code must-revalidate} directive is present.
+     */
+    public boolean isMustRevalidate() {
+        return this.mustRevalidate;
+    }
+
+    private static long parseSeconds(String value) {
+        if (value == null) {
+            return -1;
+        }
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            value = value.substring(1, value.length() - 1);
+        }
+        try {
+            final long seconds = Long.parseLong(value);
+            return seconds < 0 ? -1 : seconds;
+        } catch (NumberFormatException e) {
+            // Delta-seconds too large for a long are treated as infinite.
+            return value.matches("\\d+") ? Long.MAX_VALUE : -1;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.implementation;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Process-wide pools of {@link Inflater} and {@link Deflater} instances, and gzip encoding on top of them.
+ *
+ * <p>
+ * Each codec holds native memory that is only freed by {@code end()} or finalization, so creating one per call
+ * is costly. The pools keep a bounded number of idle codecs; codecs released when a pool is full are ended.
+ * </p>
+ */
+public final class CompressionCodecs {
+    private static final int MAX_IDLE_CODECS = 8;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final CodecPool<Inflater> RAW_INFLATERS = new CodecPool<>();
+    private static final CodecPool<Inflater> ZLIB_INFLATERS = new CodecPool<>();
+    private static final CodecPool<Deflater> RAW_DEFLATERS = new CodecPool<>();
+
+    private CompressionCodecs() {
+    }
+
+    /**
+     * Gets an idle inflater from the pool, or creates one if the pool is empty.
+     *
+     * @param nowrap true for an inflater of raw deflate data, as in gzip, false for zlib wrapped data.
+     * @return The inflater, to be given back with {@link #releaseInflater(Inflater, boolean)}.
+     */
+    public static Inflater acquireInflater(boolean nowrap) {
+        final Inflater inflater = (nowrap ? RAW_INFLATERS : ZLIB_INFLATERS).poll();
+        return inflater != null ? inflater : new Inflater(nowrap);
+    }
+
+    /**
+     * Gives an inflater back to the pool. The inflater must not be used afterwards.
+     *
+     * @param inflater The inflater.
+     * @param nowrap The {@code nowrap} the inflater was acquired with.
+     */
+    public static void releaseInflater(Inflater inflater, boolean nowrap) {
+        inflater.reset();
+        if (!(nowrap ? RAW_INFLATERS : ZLIB_INFLATERS).offer(inflater)) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Compresses the given bytes in the gzip format, with a pooled deflater.
+     *
+     * @param bytes The bytes to compress.
+     * @return The gzip encoded bytes.
+     */
+    public static byte[] gzip(byte[] bytes) {
+        Deflater deflater = RAW_DEFLATERS.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+        try {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+            // The gzip header: magic, deflate method, no flags, no modification time, no extra flags, unknown OS.
+            output.write(GZIP_MAGIC & 0xFF);
+            output.write(GZIP_MAGIC >> 8);
+            output.write(Deflater.DEFLATED);
+            for (int i = 0; i < 6; i++) {
+                output.write(0);
+            }
+            output.write(0xFF);
+
+            deflater.setInput(bytes);
+            deflater.finish();
+            final byte[] buffer = new byte[Math.min(BUFFER_SIZE, Math.max(64, bytes.length))];
+            while (!deflater.finished()) {
+                final int count = deflater.deflate(buffer);
+                output.write(buffer, 0, count);
+            }
+
+            final CRC32 crc = new CRC32();
+            crc.update(bytes);
+            writeIntLittleEndian(output, crc.getValue());
+            writeIntLittleEndian(output, bytes.length);
+            return output.toByteArray();
+        } finally {
+            deflater.reset();
+            if (!RAW_DEFLATERS.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    private static void writeIntLittleEndian(ByteArrayOutputStream output, long value) {
+        output.write((int) (value & 0xFF));
+        output.write((int) ((value >> 8) & 0xFF));
+        output.write((int) ((value >> 16) & 0xFF));
+        output.write((int) ((value >> 24) & 0xFF));
+    }
+
+    /**
+     * A bounded pool of idle codecs.
+     */
+    private static final class CodecPool<T> {
+        private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+
+        T poll() {
+            final T codec = this.idle.poll();
+            if (codec != null) {
+                this.idleCount.decrementAndGet();
+            }
+            return codec;
+        }
+
+        boolean offer(T codec) {
+            if (this.idleCount.incrementAndGet() > MAX_IDLE_CODECS) {
+                this.idleCount.decrementAndGet();
+                return false;
+            }
+            this.idle.offer(codec);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.implementation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache evicting the least recently used entries, split into independently locked segments.
+ *
+ * <p>
+ * A key always maps to the same segment, and each segment is an access ordered map with its own share of the
+ * capacity, so threads working on keys of different segments never contend and no operation locks the whole cache.
+ * The eviction order is least recently used per segment, which approximates it over the whole cache.
+ * </p>
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+public final class ConcurrentLruCache<K, V> {
+    private static final int MAX_SEGMENT_COUNT = 16;
+
+    private final Segment<K, V>[] segments;
+    private final int segmentMask;
+
+    /**
+     * Creates a ConcurrentLruCache.
+     *
+     * @param maxSize The maximum number of entries.
+     * @throws IllegalArgumentException If {@code maxSize} is not positive.
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLruCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("'maxSize' must be positive.");
+        }
+        // Keep at least a few entries per segment, so small caches still evict close to LRU order.
+        final int segmentCount = Math.min(MAX_SEGMENT_COUNT, Math.max(1, Integer.highestOneBit(maxSize / 4)));
+        this.segments = new Segment[segmentCount];
+        // Spread the remainder over the first segments, so the capacities add up to exactly maxSize.
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment<>(maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0));
+        }
+        this.segmentMask = segmentCount - 1;
+    }
+
+    /**
+     * Gets the value cached for the given key, marking it as the most recently used entry.
+     *
+     * @param key The key.
+     * @return The value, or null if none is cached.
+     */
+    public V get(K key) {
+        final Segment<K, V> segment = this.segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    /**
+     * Caches a value for the given key, evicting the least recently used entry of its segment if it is full.
+     *
+     * @param key The key.
+     * @param value The value.
+     */
+    public void put(K key, V value) {
+        final Segment<K, V> segment = this.segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    /**
+     * Gets the number of cached entries.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        final int hash = key.hashCode();
+        // Spread the high bits, String hashes of similar keys mostly differ in the low ones.
+        return this.segments[(hash ^ (hash >>> 16)) & this.segmentMask];
+    }
+
+    /**
+     * An access ordered map bounded to its capacity, guarded by its own lock.
+     */
+    private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return this.size() > this.capacity;
+        }
+    }
+}
@@ -0,0 +1,553 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.implementation;
+
+import com.azure.android.core.logging.ClientLogger;
+
+import org.threeten.bp.Clock;
+import org.threeten.bp.OffsetDateTime;
+import org.threeten.bp.format.DateTimeFormatter;
+import org.threeten.bp.format.DateTimeParseException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The storage of HTTP cookies (RFC 6265), indexed by domain and then by path.
+ *
+ * <p>
+ * The cookies of a request are found by looking up the request host and its parent domains, then matching the paths
+ * stored under each domain. A jar without cookies answers without looking anything up, so hosts that never set
+ * cookies pay nothing.
+ * </p>
+ *
+ * <p>
+ * When a file is given, the persistent cookies (those with {@code Expires} or {@code Max-Age}) are loaded from it on
+ * first use and written back to it after a delay, so a burst of changes is written once. Session cookies are kept in
+ * memory only.
+ * </p>
+ */
+public final class CookieJar {
+    private static final int FILE_FORMAT_VERSION = 1;
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final ClientLogger logger = new ClientLogger(CookieJar.class);
+
+    private final File file;
+    private final long writeDelayMillis;
+    private final Clock clock;
+    private final ConcurrentHashMap<String, DomainCookies> domains = new ConcurrentHashMap<>();
+    private final AtomicInteger cookieCount = new AtomicInteger();
+    private final Object fileLock = new Object();
+    private volatile boolean loaded;
+    // Guarded by 'fileLock'.
+    private boolean writeScheduled;
+    private boolean dirty;
+
+    /**
+     * Creates a CookieJar.
+     *
+     * @param file The file storing the persistent cookies, or null to keep the cookies in memory only.
+     * @param writeDelayMillis The delay in milliseconds between a change to the persistent cookies and its write.
+     * @param clock The clock to check the expiry of the cookies against.
+     */
+    public CookieJar(File file, long writeDelayMillis, Clock clock) {
+        this.file = file;
+        this.writeDelayMillis = writeDelayMillis;
+        this.clock = Util.requireNonNull(clock, "'clock' cannot be null.");
+        // Without a file there is nothing to load.
+        this.loaded = file == null;
+    }
+
+    /**
+     * Gets the value of the {@code Cookie} header to send with a request.
+     *
+     * @param host The request host.
+     * @param path The request path.
+     * @param secure true if the request is sent over a secure channel.
+     * @return The header value, or null if no cookie applies.
+     */
+    public String getCookieHeader(String host, String path, boolean secure) {
+        if (this.loaded && this.cookieCount.get() == 0) {
+            return null;
+        }
+        this.ensureLoaded();
+        final String requestHost = host.toLowerCase(Locale.ROOT);
+        final String requestPath = path == null || path.isEmpty() ? "/" : path;
+        final long nowMillis = this.clock.millis();
+
+        List<Cookie> matches = null;
+        int start = 0;
+        while (start >= 0) {
+            final DomainCookies domainCookies =
+                this.domains.get(start == 0 ? requestHost : requestHost.substring(start));
+            if (domainCookies != null) {
+                matches = domainCookies.collect(requestHost, requestPath, secure, nowMillis, matches);
+            }
+            final int dot = requestHost.indexOf('.', start);
+            start = dot < 0 ? -1 : dot + 1;
+        }
+        if (matches == null) {
+            return null;
+        }
+
+        // RFC 6265 5.4: cookies with longer paths first, then the earlier created ones.
+        Collections.sort(matches, (first, second) -> {
+            final int byPath = second.path.length() - first.path.length();
+            return byPath != 0 ? byPath : Long.compare(first.creationMillis, second.creationMillis);
+        });
+        final StringBuilder header = new StringBuilder();
+        for (Cookie cookie : matches) {
+            if (header.length() > 0) {
+                header.append("; ");
+            }
+            header.append(cookie.name).append('=').append(cookie.value);
+        }
+        return header.toString();
+    }
+
+    /**
+     * Stores the cookies of a {@code Set-Cookie} response header. Cookies that are malformed or whose domain doesn't
+     * match the request host are ignored; a cookie that is already expired removes the cookie it replaces.
+     *
+     * @param host The request host.
+     * @param path The request path.
+     * @param setCookie The {@code Set-Cookie} header value, possibly holding several comma-separated cookies.
+     */
+    public void setCookies(String host, String path, String setCookie) {
+        this.ensureLoaded();
+        final String requestHost = host.toLowerCase(Locale.ROOT);
+        final long nowMillis = this.clock.millis();
+        for (String value : splitSetCookie(setCookie)) {
+            final Cookie cookie = parse(value, requestHost, path, nowMillis);
+            if (cookie != null) {
+                this.store(cookie, nowMillis);
+            }
+        }
+    }
+
+    /**
+     * Writes the pending changes to the persistent cookies now, rather than when the write delay elapses.
+     */
+    public void flush() {
+        if (this.file == null) {
+            return;
+        }
+        synchronized (this.fileLock) {
+            if (this.dirty) {
+                this.write();
+            }
+        }
+    }
+
+    private void store(Cookie cookie, long nowMillis) {
+        DomainCookies domainCookies = this.domains.get(cookie.domain);
+        if (domainCookies == null) {
+            final DomainCookies created = new DomainCookies();
+            domainCookies = this.domains.putIfAbsent(cookie.domain, created);
+            if (domainCookies == null) {
+                domainCookies = created;
+            }
+        }
+        final Cookie replaced;
+        synchronized (domainCookies) {
+            Map<String, Cookie> byName = domainCookies.byPath.get(cookie.path);
+            if (byName == null) {
+                byName = new LinkedHashMap<>();
+                domainCookies.byPath.put(cookie.path, byName);
+            }
+            if (cookie.isExpired(nowMillis)) {
+                replaced = byName.remove(cookie.name);
+            } else {
+                replaced = byName.put(cookie.name, cookie);
+                if (replaced != null) {
+                    // RFC 6265 5.3 step 11: the replacement keeps the creation time of the old cookie.
+                    cookie.creationMillis = replaced.creationMillis;
+                } else {
+                    this.cookieCount.incrementAndGet();
+                }
+            }
+            if (replaced != null && cookie.isExpired(nowMillis)) {
+                this.cookieCount.decrementAndGet();
+            }
+            if (byName.isEmpty()) {
+                domainCookies.byPath.remove(cookie.path);
+            }
+        }
+        if ((replaced != null && replaced.persistent) || (cookie.persistent && !cookie.isExpired(nowMillis))) {
+            this.scheduleWrite();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (this.loaded) {
+            return;
+        }
+        synchronized (this.fileLock) {
+            if (this.loaded) {
+                return;
+            }
+            if (this.file.isFile()) {
+                final long nowMillis = this.clock.millis();
+                try (DataInputStream input =
+                         new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+                    if (input.readInt() != FILE_FORMAT_VERSION) {
+                        throw new IOException("Unsupported cookie file format.");
+                    }
+                    final int count = input.readInt();
+                    for (int i = 0; i < count; i++) {
+                        final Cookie cookie = readCookie(input);
+                        if (!cookie.isExpired(nowMillis)) {
+                            this.store(cookie, nowMillis);
+                        }
+                    }
+                } catch (IOException e) {
+                    logger.warning("Failed to read cookie file " + this.file, e);
+                }
+                // Loading doesn't change what is on disk.
+                this.dirty = false;
+            }
+            this.loaded = true;
+        }
+    }
+
+    private void scheduleWrite() {
+        if (this.file == null) {
+            return;
+        }
+        synchronized (this.fileLock) {
+            this.dirty = true;
+            if (this.writeScheduled || !this.loaded) {
+                return;
+            }
+            this.writeScheduled = true;
+        }
+        Writer.EXECUTOR.schedule(() -> {
+            synchronized (this.fileLock) {
+                this.writeScheduled = false;
+                if (this.dirty) {
+                    this.write();
+                }
+            }
+        }, this.writeDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Called while holding 'fileLock'.
+    private void write() {
+        this.dirty = false;
+        final long nowMillis = this.clock.millis();
+        final List<Cookie> persistentCookies = new ArrayList<>();
+        for (DomainCookies domainCookies : this.domains.values()) {
+            synchronized (domainCookies) {
+                for (Map<String, Cookie> byName : domainCookies.byPath.values()) {
+                    for (Cookie cookie : byName.values()) {
+                        if (cookie.persistent && !cookie.isExpired(nowMillis)) {
+                            persistentCookies.add(cookie);
+                        }
+                    }
+                }
+            }
+        }
+
+        final File parent = this.file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            logger.warning("Failed to create cookie directory " + parent);
+            return;
+        }
+        final File tempFile = new File(this.file.getPath() + TEMP_FILE_SUFFIX);
+        try {
+            try (DataOutputStream output =
+                     new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                output.writeInt(FILE_FORMAT_VERSION);
+                output.writeInt(persistentCookies.size());
+                for (Cookie cookie : persistentCookies) {
+                    writeCookie(output, cookie);
+                }
+            }
+            if (!tempFile.renameTo(this.file)) {
+                throw new IOException("Failed to rename " + tempFile + " to " + this.file);
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to write cookie file " + this.file, e);
+            if (tempFile.exists() && !tempFile.delete()) {
+                logger.warning("Failed to delete " + tempFile);
+            }
+        }
+    }
+
+    /**
+     * Splits a header value holding several comma-separated cookies, as some transports join repeated headers,
+     * without splitting the comma inside an {@code Expires} date.
+     */
+    static List<String> splitSetCookie(String setCookie) {
+        final List<String> values = new ArrayList<>(1);
+        int start = 0;
+        int attributeStart = 0;
+        for (int i = 0; i < setCookie.length(); i++) {
+            final char c = setCookie.charAt(i);
+            if (c == ';') {
+                attributeStart = i + 1;
+            } else if (c == ',' && !isExpiresDate(setCookie, attributeStart, i)) {
+                values.add(setCookie.substring(start, i));
+                start = i + 1;
+                attributeStart = start;
+            }
+        }
+        values.add(setCookie.substring(start));
+        return values;
+    }
+
+    private static boolean isExpiresDate(String setCookie, int attributeStart, int comma) {
+        final String attribute = setCookie.substring(attributeStart, comma).trim();
+        // The only comma of an RFC 1123 date follows the day of the week.
+        return attribute.regionMatches(true, 0, "expires=", 0, 8) && attribute.indexOf(',') < 0;
+    }
+
+    /**
+     * Parses a single {@code Set-Cookie} value as described in RFC 6265 5.2 and 5.3.
+     *
+     * @return The cookie, or null if it must be ignored.
+     */
+    static Cookie parse(String setCookie, String requestHost, String requestPath, long nowMillis) {
+        final String[] parts = setCookie.split(";");
+        final int equals = parts[0].indexOf('=');
+        if (equals <= 0) {
+            return null;
+        }
+        final String name = parts[0].substring(0, equals).trim();
+        final String value = parts[0].substring(equals + 1).trim();
+        if (name.isEmpty()) {
+            return null;
+        }
+
+        String domain = null;
+        String path = null;
+        long maxAgeExpiresAtMillis = Long.MIN_VALUE;
+        long expiresAtMillis = Long.MIN_VALUE;
+        boolean secure = false;
+        boolean httpOnly = false;
+        for (int i = 1; i < parts.length; i++) {
+            final String part = parts[i].trim();
+            final int separator = part.indexOf('=');
+            final String attributeName = (separator < 0 ? part : part.substring(0, separator)).trim();
+            final String attributeValue = separator < 0 ? "" : part.substring(separator + 1).trim();
+            if (attributeName.equalsIgnoreCase("domain")) {
+                domain = attributeValue;
+            } else if (attributeName.equalsIgnoreCase("path")) {
+                path = attributeValue;
+            } else if (attributeName.equalsIgnoreCase("max-age")) {
+                try {
+                    final long seconds = Long.parseLong(attributeValue);
+                    maxAgeExpiresAtMillis = seconds <= 0
+                        ? Long.MIN_VALUE + 1
+                        : nowMillis + Math.min(seconds, Long.MAX_VALUE / 2000) * 1000;
+                } catch (NumberFormatException ignored) {
+                    // An invalid Max-Age is ignored.
+                }
+            } else if (attributeName.equalsIgnoreCase("expires")) {
+                try {
+                    expiresAtMillis = OffsetDateTime.parse(attributeValue, DateTimeFormatter.RFC_1123_DATE_TIME)
+                        .toInstant()
+                        .toEpochMilli();
+                } catch (DateTimeParseException ignored) {
+                    // An invalid Expires is ignored.
+                }
+            } else if (attributeName.equalsIgnoreCase("secure")) {
+                secure = true;
+            } else if (attributeName.equalsIgnoreCase("httponly")) {
+                httpOnly = true;
+            }
+        }
+
+        final boolean hostOnly;
+        if (domain == null || domain.isEmpty()) {
+            hostOnly = true;
+            domain = requestHost;
+        } else {
+            hostOnly = false;
+            domain = domain.toLowerCase(Locale.ROOT);
+            if (domain.startsWith(".")) {
+                domain = domain.substring(1);
+            }
+            // Reject cookies for top-level domains and for domains the request host isn't part of.
+            if (domain.indexOf('.') < 0 || !domainMatches(requestHost, domain)) {
+                return null;
+            }
+        }
+        if (path == null || !path.startsWith("/")) {
+            path = defaultPath(requestPath);
+        }
+
+        final long expiry = maxAgeExpiresAtMillis != Long.MIN_VALUE ? maxAgeExpiresAtMillis : expiresAtMillis;
+        final boolean persistent = expiry != Long.MIN_VALUE;
+        return new Cookie(name, value, domain, path, persistent ? expiry : Long.MAX_VALUE, nowMillis, persistent,
+            hostOnly, secure, httpOnly);
+    }
+
+    private static boolean domainMatches(String host, String domain) {
+        return host.equals(domain)
+            || (host.endsWith(domain) && host.charAt(host.length() - domain.length() - 1) == '.');
+    }
+
+    private static boolean pathMatches(String requestPath, String cookiePath) {
+        if (!requestPath.startsWith(cookiePath)) {
+            return false;
+        }
+        return requestPath.length() == cookiePath.length()
+            || cookiePath.endsWith("/")
+            || requestPath.charAt(cookiePath.length()) == '/';
+    }
+
+    private static String defaultPath(String requestPath) {
+        if (requestPath == null || !requestPath.startsWith("/")) {
+            return "/";
+        }
+        final int lastSlash = requestPath.lastIndexOf('/');
+        return lastSlash == 0 ? "/" : requestPath.substring(0, lastSlash);
+    }
+
+    private static void writeCookie(DataOutputStream output, Cookie cookie) throws IOException {
+        output.writeUTF(cookie.name);
+        output.writeUTF(cookie.value);
+        output.writeUTF(cookie.domain);
+        output.writeUTF(cookie.path);
+        output.writeLong(cookie.expiresAtMillis);
+        output.writeLong(cookie.creationMillis);
+        output.writeBoolean(cookie.hostOnly);
+        output.writeBoolean(cookie.secure);
+        output.writeBoolean(cookie.httpOnly);
+    }
+
+    private static Cookie readCookie(DataInputStream input) throws IOException {
+        final String name = input.readUTF();
+        final String value = input.readUTF();
+        final String domain = input.readUTF();
+        final String path = input.readUTF();
+        final long expiresAtMillis = input.readLong();
+        final long creationMillis = input.readLong();
+        final boolean hostOnly = input.readBoolean();
+        final boolean secure = input.readBoolean();
+        final boolean httpOnly = input.readBoolean();
+        return new Cookie(name, value, domain, path, expiresAtMillis, creationMillis, true, hostOnly, secure,
+            httpOnly);
+    }
+
+    /**
+     * The cookies of a domain, by path and then by name.
+     */
+    private final class DomainCookies {
+        // Guarded by 'this'.
+        private final Map<String, Map<String, Cookie>> byPath = new HashMap<>(4);
+
+        List<Cookie> collect(String requestHost, String requestPath, boolean secure, long nowMillis,
+                             List<Cookie> matches) {
+            boolean persistentRemoved = false;
+            synchronized (this) {
+                final Iterator<Map.Entry<String, Map<String, Cookie>>> paths = this.byPath.entrySet().iterator();
+                while (paths.hasNext()) {
+                    final Map.Entry<String, Map<String, Cookie>> pathEntry = paths.next();
+                    if (!pathMatches(requestPath, pathEntry.getKey())) {
+                        continue;
+                    }
+                    final Iterator<Cookie> cookies = pathEntry.getValue().values().iterator();
+                    while (cookies.hasNext()) {
+                        final Cookie cookie = cookies.next();
+                        if (cookie.isExpired(nowMillis)) {
+                            cookies.remove();
+                            cookieCount.decrementAndGet();
+                            persistentRemoved |= cookie.persistent;
+                            continue;
+                        }
+                        if ((cookie.hostOnly && !cookie.domain.equals(requestHost)) || (cookie.secure && !secure)) {
+                            continue;
+                        }
+                        if (matches == null) {
+                            matches = new ArrayList<>(4);
+                        }
+                        matches.add(cookie);
+                    }
+                    if (pathEntry.getValue().isEmpty()) {
+                        paths.remove();
+                    }
+                }
+            }
+            if (persistentRemoved) {
+                scheduleWrite();
+            }
+            return matches;
+        }
+    }
+
+    /**
+     * A stored cookie.
+     */
+    static final class Cookie {
+        final String name;
+        final String value;
+        final String domain;
+        final String path;
+        final long expiresAtMillis;
+        final boolean persistent;
+        final boolean hostOnly;
+        final boolean secure;
+        final boolean httpOnly;
+        long creationMillis;
+
+        Cookie(String name, String value, String domain, String path, long expiresAtMillis, long creationMillis,
+               boolean persistent, boolean hostOnly, boolean secure, boolean httpOnly) {
+            this.name = name;
+            this.value = value;
+            this.domain = domain;
+            this.path = path;
+            this.expiresAtMillis = expiresAtMillis;
+            this.creationMillis = creationMillis;
+            this.persistent = persistent;
+            this.hostOnly = hostOnly;
+            this.secure = secure;
+            this.httpOnly = httpOnly;
+        }
+
+        boolean isExpired(long nowMillis) {
+            return this.expiresAtMillis <= nowMillis;
+        }
+    }
+
+    /**
+     * Holds the executor writing the cookie files, created on the first write.
+     */
+    private static final class Writer {
+        static final ScheduledExecutorService EXECUTOR = createExecutor();
+
+        private static ScheduledExecutorService createExecutor() {
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, "azure-cookie-writer");
+                // Pending writes must not keep the process alive, flush() writes them synchronously.
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setKeepAliveTime(30, TimeUnit.SECONDS);
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.implementation;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * An input stream that decodes a {@code gzip} or {@code deflate} encoded body as it is read, with a pooled
+ * {@link Inflater}.
+ *
+ * <p>
+ * The inflater is acquired on the first read and given back to the pool once the end of the body is reached or the
+ * stream is closed, whichever comes first. An empty body decodes to an empty stream, as servers sometimes set
+ * {@code Content-Encoding} on responses without a body.
+ * </p>
+ */
+public final class DecodingInputStream extends InputStream {
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final InputStream in;
+    private final boolean gzip;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final byte[] singleByte = new byte[1];
+    private final CRC32 crc;
+    private int bufferPosition;
+    private int bufferLength;
+    private Inflater inflater;
+    private boolean nowrap;
+    private boolean started;
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * Creates a DecodingInputStream.
+     *
+     * @param in The encoded stream.
+     * @param gzip true if the stream is {@code gzip} encoded, false if it is {@code deflate} encoded.
+     */
+    public DecodingInputStream(InputStream in, boolean gzip) {
+        this.in = Util.requireNonNull(in, "'in' cannot be null.");
+        this.gzip = gzip;
+        this.crc = gzip ? new CRC32() : null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return this.read(this.singleByte, 0, 1) == -1 ? -1 : this.singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream closed.");
+        }
+        if (this.finished) {
+            return -1;
+        }
+        if (length == 0) {
+            return 0;
+        }
+        if (!this.started) {
+            this.started = true;
+            if (!this.start()) {
+                this.finished = true;
+                return -1;
+            }
+        }
+        try {
+            while (true) {
+                final int count = this.inflater.inflate(bytes, offset, length);
+                if (count > 0) {
+                    if (this.crc != null) {
+                        this.crc.update(bytes, offset, count);
+                    }
+                    return count;
+                }
+                if (this.inflater.finished()) {
+                    this.finish();
+                    return -1;
+                }
+                if (this.inflater.needsDictionary()) {
+                    throw new IOException("Deflate body requires a preset dictionary.");
+                }
+                if (this.inflater.needsInput()) {
+                    if (!this.fill()) {
+                        throw new EOFException("Unexpected end of the encoded body.");
+                    }
+                    this.inflater.setInput(this.buffer, this.bufferPosition, this.bufferLength - this.bufferPosition);
+                    this.bufferPosition = this.bufferLength;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid encoded body.", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!this.closed) {
+            this.closed = true;
+            this.releaseInflater();
+            this.in.close();
+        }
+    }
+
+    private boolean start() throws IOException {
+        if (!this.ensureAvailable(1)) {
+            return false;
+        }
+        if (this.gzip) {
+            this.readGzipHeader();
+            this.nowrap = true;
+        } else {
+            // Some servers send raw deflate data instead of the zlib format the encoding calls for.
+            if (this.ensureAvailable(2)) {
+                final int cmf = this.buffer[this.bufferPosition] & 0xFF;
+                final int flg = this.buffer[this.bufferPosition + 1] & 0xFF;
+                this.nowrap = (cmf & 0x0F) != 8 || ((cmf << 8) | flg) % 31 != 0;
+            } else {
+                this.nowrap = true;
+            }
+        }
+        this.inflater = CompressionCodecs.acquireInflater(this.nowrap);
+        this.inflater.setInput(this.buffer, this.bufferPosition, this.bufferLength - this.bufferPosition);
+        this.bufferPosition = this.bufferLength;
+        return true;
+    }
+
+    private void readGzipHeader() throws IOException {
+        if (this.readUnsignedShort() != GZIP_MAGIC) {
+            throw new IOException("Not in gzip format.");
+        }
+        if (this.readUnsignedByte() != 8) {
+            throw new IOException("Unsupported gzip compression method.");
+        }
+        final int flags = this.readUnsignedByte();
+        // Modification time, extra flags and operating system.
+        this.skipBytes(6);
+        if ((flags & FEXTRA) != 0) {
+            this.skipBytes(this.readUnsignedShort());
+        }
+        if ((flags & FNAME) != 0) {
+            while (this.readUnsignedByte() != 0) {
+                continue;
+            }
+        }
+        if ((flags & FCOMMENT) != 0) {
+            while (this.readUnsignedByte() != 0) {
+                continue;
+            }
+        }
+        if ((flags & FHCRC) != 0) {
+            this.skipBytes(2);
+        }
+    }
+
+    private void finish() throws IOException {
+        if (this.gzip) {
+            // The trailer follows the deflate data, part of it may still be in the buffer.
+            this.bufferPosition = this.bufferLength - this.inflater.getRemaining();
+            final long expectedCrc = this.readUnsignedInt();
+            final long expectedSize = this.readUnsignedInt();
+            if (expectedCrc != this.crc.getValue()) {
+                throw new IOException("Corrupt gzip body, CRC mismatch.");
+            }
+            if (expectedSize != (this.inflater.getBytesWritten() & 0xFFFFFFFFL)) {
+                throw new IOException("Corrupt gzip body, size mismatch.");
+            }
+        }
+        this.finished = true;
+        this.releaseInflater();
+    }
+
+    private void releaseInflater() {
+        if (this.inflater != null) {
+            CompressionCodecs.releaseInflater(this.inflater, this.nowrap);
+            this.inflater = null;
+        }
+    }
+
+    private int readUnsignedByte() throws IOException {
+        if (!this.ensureAvailable(1)) {
+            throw new EOFException("Unexpected end of the encoded body.");
+        }
+        return this.buffer[this.bufferPosition++] & 0xFF;
+    }
+
+    private int readUnsignedShort() throws IOException {
+        return this.readUnsignedByte() | (this.readUnsignedByte() << 8);
+    }
+
+    private long readUnsignedInt() throws IOException {
+        return ((long) this.readUnsignedShort()) | ((long) this.readUnsignedShort() << 16);
+    }
+
+    private void skipBytes(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            this.readUnsignedByte();
+        }
+    }
+
+    private boolean ensureAvailable(int count) throws IOException {
+        while (this.bufferLength - this.bufferPosition < count) {
+            if (!this.fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads more bytes into the buffer, keeping the unread ones.
+     *
+     * @return false if the end of the stream is reached.
+     */
+    private boolean fill() throws IOException {
+        final int unread = this.bufferLength - this.bufferPosition;
+        if (unread > 0 && this.bufferPosition > 0) {
+            System.arraycopy(this.buffer, this.bufferPosition, this.buffer, 0, unread);
+        }
+        this.bufferPosition = 0;
+        this.bufferLength = unread;
+        final int count = this.in.read(this.buffer, unread, this.buffer.length - unread);
+        if (count == -1) {
+            return false;
+        }
+        this.bufferLength += count;
+        return true;
+    }
+}
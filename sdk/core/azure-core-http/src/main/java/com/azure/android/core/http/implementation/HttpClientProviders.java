@@ -6,11 +6,14 @@ import com.azure.android.core.http.HttpClient;
 import com.azure.android.core.http.HttpClientProvider;
 import com.azure.android.core.logging.ClientLogger;
 
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.ServiceLoader;
 
 /**
- * This class handles loading available HTTP clients
+ * This class handles loading available HTTP clients, and holds the transports shared by the HTTP clients of the
+ * process.
  */
 public final class HttpClientProviders {
     private static HttpClientProvider defaultProvider;
@@ -22,6 +25,9 @@ public final class HttpClientProviders {
 
     private static final ClientLogger LOGGER = new ClientLogger(HttpClientProviders.class);
 
+    // The shared transports by configuration key, guarded by the map.
+    private static final Map<Object, SharedTransport<?>> SHARED_TRANSPORTS = new HashMap<>();
+
     static {
         // Use as classloader to load provider-configuration files and provider classes the classloader
         // that loaded this class. In most cases this will be the System classloader.
@@ -54,4 +60,114 @@ public final class HttpClientProviders {
         }
         return defaultProvider.createInstance();
     }
+
+    /**
+     * Acquires a reference to the transport shared by the HTTP clients with the given configuration, creating it if
+     * no client holds a reference to it.
+     *
+     * <p>
+     * A transport holds the resources that are worth sharing across the HTTP clients of the process, such as a
+     * connection pool and the threads running the calls. Each reference must be released once through
+     * {@link #releaseSharedTransport(Object)}, the transport is disposed when the last one is released.
+     * </p>
+     *
+     * @param key The configuration of the transport, clients acquiring equal keys share the same transport.
+     * @param factory The factory creating the transport if it doesn't exist, and disposing it.
+     * @param <T> The type of the transport.
+     * @return The shared transport.
+     * @throws NullPointerException if {@code key} or {@code factory} is null.
+     * @throws IllegalStateException if the transport shared under {@code key} was created by another factory.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T acquireSharedTransport(Object key, SharedTransportFactory<T> factory) {
+        Util.requireNonNull(key, "'key' is required.");
+        Util.requireNonNull(factory, "'factory' is required.");
+        synchronized (SHARED_TRANSPORTS) {
+            SharedTransport<?> sharedTransport = SHARED_TRANSPORTS.get(key);
+            if (sharedTransport == null) {
+                sharedTransport = new SharedTransport<>(factory, factory.create());
+                SHARED_TRANSPORTS.put(key, sharedTransport);
+                LOGGER.verbose("Created the shared HTTP transport {}.", key);
+            } else if (sharedTransport.factory != factory) {
+                throw LOGGER.logExceptionAsError(new IllegalStateException("The HTTP transport shared under '" + key
+                    + "' was created by another factory."));
+            }
+            sharedTransport.referenceCount++;
+            return (T) sharedTransport.transport;
+        }
+    }
+
+    /**
+     * Releases a reference to the transport shared under the given key, disposing it if it was the last one.
+     *
+     * @param key The configuration of the transport.
+     * @throws IllegalStateException if there is no transport shared under {@code key}.
+     */
+    public static void releaseSharedTransport(Object key) {
+        final SharedTransport<?> disposedTransport;
+        synchronized (SHARED_TRANSPORTS) {
+            final SharedTransport<?> sharedTransport = SHARED_TRANSPORTS.get(key);
+            if (sharedTransport == null) {
+                throw LOGGER.logExceptionAsError(new IllegalStateException("There is no HTTP transport shared under '"
+                    + key + "'."));
+            }
+            if (--sharedTransport.referenceCount > 0) {
+                return;
+            }
+            SHARED_TRANSPORTS.remove(key);
+            disposedTransport = sharedTransport;
+        }
+        // Dispose outside of the lock, closing connections may block.
+        LOGGER.verbose("Disposing the shared HTTP transport {}.", key);
+        disposedTransport.dispose();
+    }
+
+    /**
+     * Gets the number of references to the transport shared under the given key.
+     *
+     * @param key The configuration of the transport.
+     * @return The number of references, 0 if there is no transport shared under {@code key}.
+     */
+    public static int getSharedTransportReferenceCount(Object key) {
+        synchronized (SHARED_TRANSPORTS) {
+            final SharedTransport<?> sharedTransport = SHARED_TRANSPORTS.get(key);
+            return sharedTransport == null ? 0 : sharedTransport.referenceCount;
+        }
+    }
+
+    /**
+     * Creates and disposes a transport shared by HTTP clients.
+     *
+     * @param <T> The type of the transport.
+     */
+    public interface SharedTransportFactory<T> {
+        /**
+         * Creates the transport.
+         *
+         * @return The transport.
+         */
+        T create();
+
+        /**
+         * Disposes the transport, once no client references it.
+         *
+         * @param transport The transport.
+         */
+        void dispose(T transport);
+    }
+
+    private static final class SharedTransport<T> {
+        private final SharedTransportFactory<T> factory;
+        private final T transport;
+        private int referenceCount;
+
+        SharedTransport(SharedTransportFactory<T> factory, T transport) {
+            this.factory = factory;
+            this.transport = transport;
+        }
+
+        void dispose() {
+            this.factory.dispose(this.transport);
+        }
+    }
 }
@@ -0,0 +1,454 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.implementation;
+
+import com.azure.android.core.http.HttpHeader;
+import com.azure.android.core.http.HttpHeaders;
+import com.azure.android.core.logging.ClientLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The storage of cached responses: a memory tier bounded in bytes, backed by an optional disk tier bounded in bytes.
+ *
+ * <p>
+ * Both tiers evict the least recently used entries first. Entries are written through to the disk tier, and entries
+ * read from the disk tier are promoted to the memory tier. A disk entry that cannot be read is deleted.
+ * </p>
+ *
+ * <p>
+ * Each entry has a file of its own. The disk tier is updated on a background thread, and the entries not written yet
+ * are served from memory meanwhile; reads go straight to the entry file, which a write replaces atomically, without
+ * waiting for the writes of other entries.
+ * </p>
+ */
+public final class ResponseCacheStore {
+    private static final int DISK_FORMAT_VERSION = 2;
+    private static final String ENTRY_FILE_SUFFIX = ".entry";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final ClientLogger logger = new ClientLogger(ResponseCacheStore.class);
+
+    private final long maxMemorySize;
+    private final File directory;
+    private final long maxDiskSize;
+    // Guarded by 'memoryEntries'.
+    private final LinkedHashMap<String, Entry> memoryEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memorySize;
+    // The disk changes not applied yet by key: the entry to write, or a removal marker.
+    private final ConcurrentMap<String, Object> pendingDiskChanges = new ConcurrentHashMap<>();
+    // Accessed on the writer thread only; the size of each entry file by key hash, in least recently used order.
+    private LinkedHashMap<String, Long> diskIndex;
+    private long diskSize;
+
+    /**
+     * Creates a ResponseCacheStore.
+     *
+     * @param maxMemorySize The maximum size in bytes of the entries kept in memory.
+     * @param directory The directory of the disk tier, or null to keep the entries in memory only.
+     * @param maxDiskSize The maximum size in bytes of the entry files in the disk tier.
+     */
+    public ResponseCacheStore(long maxMemorySize, File directory, long maxDiskSize) {
+        this.maxMemorySize = maxMemorySize;
+        this.directory = directory;
+        this.maxDiskSize = maxDiskSize;
+    }
+
+    /**
+     * Gets the entry stored for the given key.
+     *
+     * @param key The key.
+     * @return The entry, or null if there is none.
+     */
+    public Entry get(String key) {
+        synchronized (this.memoryEntries) {
+            final Entry entry = this.memoryEntries.get(key);
+            if (entry != null || this.directory == null) {
+                return entry;
+            }
+        }
+        final Object pendingChange = this.pendingDiskChanges.get(key);
+        final Entry entry = pendingChange != null
+            ? (pendingChange instanceof Entry ? (Entry) pendingChange : null)
+            : this.readFromDisk(key);
+        if (entry != null) {
+            this.putInMemory(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the entry for the given key, replacing any previous entry.
+     *
+     * @param key The key.
+     * @param entry The entry.
+     */
+    public void put(String key, Entry entry) {
+        this.putInMemory(key, entry);
+        if (this.directory != null) {
+            this.pendingDiskChanges.put(key, entry);
+            Writer.EXECUTOR.execute(() -> {
+                this.writeToDisk(key, entry);
+                this.pendingDiskChanges.remove(key, entry);
+            });
+        }
+    }
+
+    /**
+     * Removes the entry stored for the given key, if any.
+     *
+     * @param key The key.
+     */
+    public void remove(String key) {
+        synchronized (this.memoryEntries) {
+            final Entry entry = this.memoryEntries.remove(key);
+            if (entry != null) {
+                this.memorySize -= entry.getSize();
+            }
+        }
+        if (this.directory != null) {
+            final Object removal = new Object();
+            this.pendingDiskChanges.put(key, removal);
+            Writer.EXECUTOR.execute(() -> {
+                this.deleteFromDisk(this.getFileName(key));
+                this.pendingDiskChanges.remove(key, removal);
+            });
+        }
+    }
+
+    private void putInMemory(String key, Entry entry) {
+        synchronized (this.memoryEntries) {
+            final Entry previous = this.memoryEntries.put(key, entry);
+            if (previous != null) {
+                this.memorySize -= previous.getSize();
+            }
+            this.memorySize += entry.getSize();
+            final Iterator<Entry> iterator = this.memoryEntries.values().iterator();
+            while (this.memorySize > this.maxMemorySize && iterator.hasNext()) {
+                this.memorySize -= iterator.next().getSize();
+                iterator.remove();
+            }
+        }
+    }
+
+    private Entry readFromDisk(String key) {
+        final String fileName = this.getFileName(key);
+        final File file = new File(this.directory, fileName);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            final Entry entry = readEntry(input);
+            if (!key.equals(entry.key)) {
+                // A hash collision, the file belongs to another key.
+                return null;
+            }
+            // Mark the file as recently used.
+            Writer.EXECUTOR.execute(() -> this.getDiskIndex().get(fileName));
+            return entry;
+        } catch (FileNotFoundException e) {
+            // Evicted meanwhile.
+            return null;
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Deleting unreadable cache entry " + file, e);
+            Writer.EXECUTOR.execute(() -> this.deleteFromDisk(fileName));
+            return null;
+        }
+    }
+
+    // Called on the writer thread.
+    private void writeToDisk(String key, Entry entry) {
+        final String fileName = this.getFileName(key);
+        final Map<String, Long> index = this.getDiskIndex();
+        final File file = new File(this.directory, fileName);
+        final File tempFile = new File(this.directory, fileName + TEMP_FILE_SUFFIX);
+        try {
+            try (DataOutputStream output =
+                     new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                writeEntry(output, key, entry);
+            }
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Failed to rename " + tempFile + " to " + file);
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to write cache entry " + file, e);
+            deleteFile(tempFile);
+            return;
+        }
+        final Long previousSize = index.put(fileName, file.length());
+        this.diskSize += file.length() - (previousSize == null ? 0 : previousSize);
+        final Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+        while (this.diskSize > this.maxDiskSize && iterator.hasNext()) {
+            final Map.Entry<String, Long> eldest = iterator.next();
+            this.diskSize -= eldest.getValue();
+            iterator.remove();
+            deleteFile(new File(this.directory, eldest.getKey()));
+        }
+    }
+
+    // Called on the writer thread.
+    private void deleteFromDisk(String fileName) {
+        final Long size = this.getDiskIndex().remove(fileName);
+        if (size != null) {
+            this.diskSize -= size;
+        }
+        deleteFile(new File(this.directory, fileName));
+    }
+
+    // Called on the writer thread.
+    private LinkedHashMap<String, Long> getDiskIndex() {
+        if (this.diskIndex == null) {
+            // Lazily scan the directory, so creating the store doesn't touch the disk.
+            this.diskIndex = new LinkedHashMap<>(16, 0.75f, true);
+            if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+                logger.warning("Failed to create the cache directory " + this.directory);
+            }
+            final File[] files = this.directory.listFiles();
+            if (files != null) {
+                final Map<File, Long> lastModified = new HashMap<>();
+                for (File file : files) {
+                    lastModified.put(file, file.lastModified());
+                }
+                Arrays.sort(files, new Comparator<File>() {
+                    @Override
+                    public int compare(File left, File right) {
+                        final long leftModified = lastModified.get(left);
+                        final long rightModified = lastModified.get(right);
+                        return leftModified < rightModified ? -1 : (leftModified == rightModified ? 0 : 1);
+                    }
+                });
+                for (File file : files) {
+                    if (file.getName().endsWith(ENTRY_FILE_SUFFIX)) {
+                        this.diskIndex.put(file.getName(), file.length());
+                        this.diskSize += file.length();
+                    } else if (file.getName().endsWith(TEMP_FILE_SUFFIX)) {
+                        // Left over from an interrupted write.
+                        deleteFile(file);
+                    }
+                }
+            }
+        }
+        return this.diskIndex;
+    }
+
+    private String getFileName(String key) {
+        return hash(key) + ENTRY_FILE_SUFFIX;
+    }
+
+    /**
+     * Gets the SHA-256 hash of the given value, in hexadecimal.
+     *
+     * @param value The value.
+     * @return The hash.
+     */
+    public static String hash(String value) {
+        try {
+            final byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(UTF_8));
+            final char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                hex[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new ClientLogger(ResponseCacheStore.class).logExceptionAsError(new IllegalStateException(e));
+        }
+    }
+
+    private static void writeEntry(DataOutputStream output, String key, Entry entry) throws IOException {
+        output.writeInt(DISK_FORMAT_VERSION);
+        output.writeUTF(key);
+        output.writeInt(entry.statusCode);
+        output.writeLong(entry.requestTimeMillis);
+        output.writeLong(entry.responseTimeMillis);
+        writeHeaders(output, entry.headers);
+        output.writeInt(entry.varyHeaders.size());
+        for (Map.Entry<String, String> varyHeader : entry.varyHeaders.entrySet()) {
+            output.writeUTF(varyHeader.getKey());
+            output.writeBoolean(varyHeader.getValue() != null);
+            if (varyHeader.getValue() != null) {
+                output.writeUTF(varyHeader.getValue());
+            }
+        }
+        output.writeInt(entry.body.length);
+        output.write(entry.body);
+    }
+
+    private static Entry readEntry(DataInputStream input) throws IOException {
+        if (input.readInt() != DISK_FORMAT_VERSION) {
+            throw new IOException("Unsupported cache entry format.");
+        }
+        final String key = input.readUTF();
+        final int statusCode = input.readInt();
+        final long requestTimeMillis = input.readLong();
+        final long responseTimeMillis = input.readLong();
+        final HttpHeaders headers = readHeaders(input);
+        final int varyHeaderCount = input.readInt();
+        final Map<String, String> varyHeaders = new HashMap<>();
+        for (int i = 0; i < varyHeaderCount; i++) {
+            final String name = input.readUTF();
+            varyHeaders.put(name, input.readBoolean() ? input.readUTF() : null);
+        }
+        final byte[] body = new byte[input.readInt()];
+        input.readFully(body);
+        final Entry entry = new Entry(statusCode, headers, body, varyHeaders, requestTimeMillis, responseTimeMillis);
+        entry.key = key;
+        return entry;
+    }
+
+    private static void writeHeaders(DataOutputStream output, HttpHeaders headers) throws IOException {
+        output.writeInt(headers.getSize());
+        for (HttpHeader header : headers) {
+            output.writeUTF(header.getName());
+            output.writeUTF(header.getValue());
+        }
+    }
+
+    private static HttpHeaders readHeaders(DataInputStream input) throws IOException {
+        final HttpHeaders headers = new HttpHeaders();
+        final int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            headers.put(input.readUTF(), input.readUTF());
+        }
+        return headers;
+    }
+
+    private void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            logger.warning("Failed to delete " + file);
+        }
+    }
+
+    /**
+     * Holds the executor updating the disk tiers, created on the first update.
+     */
+    private static final class Writer {
+        static final ExecutorService EXECUTOR = createExecutor();
+
+        private static ExecutorService createExecutor() {
+            // A single thread, so the updates of an entry are applied in order.
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), runnable -> {
+                    final Thread thread = new Thread(runnable, "azure-response-cache-writer");
+                    // Pending updates must not keep the process alive, the cache can do without them.
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    /**
+     * A cached response.
+     */
+    public static final class Entry {
+        private final int statusCode;
+        private final HttpHeaders headers;
+        private final byte[] body;
+        private final Map<String, String> varyHeaders;
+        private final long requestTimeMillis;
+        private final long responseTimeMillis;
+        private final long size;
+        // Set only for the entries read from the disk, to detect hash collisions.
+        private String key;
+
+        /**
+         * Creates an Entry.
+         *
+         * @param statusCode The status code of the response.
+         * @param headers The headers of the response, which must not be modified afterwards.
+         * @param body The body of the response, which must not be modified afterwards.
+         * @param varyHeaders The values of the request headers named by the response's {@code Vary} header.
+         * @param requestTimeMillis The time the request was sent at.
+         * @param responseTimeMillis The time the response was received at.
+         */
+        public Entry(int statusCode, HttpHeaders headers, byte[] body, Map<String, String> varyHeaders,
+                     long requestTimeMillis, long responseTimeMillis) {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body;
+            this.varyHeaders = Collections.unmodifiableMap(new HashMap<>(varyHeaders));
+            this.requestTimeMillis = requestTimeMillis;
+            this.responseTimeMillis = responseTimeMillis;
+            long headersSize = 0;
+            for (HttpHeader header : headers) {
+                headersSize += 2L * (header.getName().length() + header.getValue().length());
+            }
+            this.size = body.length + headersSize;
+        }
+
+        /**
+         * @return The status code of the response.
+         */
+        public int getStatusCode() {
+            return this.statusCode;
+        }
+
+        /**
+         * @return The headers of the response, which must not be modified.
+         */
+        public HttpHeaders getHeaders() {
+            return this.headers;
+        }
+
+        /**
+         * @return The body of the response, which must not be modified.
+         */
+        public byte[] getBody() {
+            return this.body;
+        }
+
+        /**
+         * @return The values of the request headers named by the response's {@code Vary} header.
+         */
+        public Map<String, String> getVaryHeaders() {
+            return this.varyHeaders;
+        }
+
+        /**
+         * @return The time the request was sent at, in milliseconds since the epoch.
+         */
+        public long getRequestTimeMillis() {
+            return this.requestTimeMillis;
+        }
+
+        /**
+         * @return The time the response was received at, in milliseconds since the epoch.
+         */
+        public long getResponseTimeMillis() {
+            return this.responseTimeMillis;
+        }
+
+        long getSize() {
+            return this.size;
+        }
+    }
+}
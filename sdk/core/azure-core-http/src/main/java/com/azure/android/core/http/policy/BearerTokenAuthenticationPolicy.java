@@ -8,19 +8,31 @@ import com.azure.android.core.credential.TokenCredential;
 import com.azure.android.core.credential.TokenRequestContext;
 import com.azure.android.core.http.HttpPipelinePolicyChain;
 import com.azure.android.core.http.HttpPipelinePolicy;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.NextPolicyCallback;
+import com.azure.android.core.http.PolicyCompleter;
+import com.azure.android.core.http.implementation.AccessTokenCache;
 import com.azure.android.core.http.implementation.Util;
 
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+
 /**
  * The pipeline policy that applies a token credential to an HTTP request
  * with "Bearer" scheme.
+ *
+ * <p>
+ * The token is cached and proactively refreshed shortly before it expires, so requests are authorized
+ * synchronously as long as the cache holds a valid token. If the service rejects the token with a 401 response,
+ * the token is evicted from the cache and the request is retried once with a newly retrieved token.
+ * </p>
  */
 public class BearerTokenAuthenticationPolicy implements HttpPipelinePolicy {
     private static final String AUTHORIZATION_HEADER = "Authorization";
     private static final String BEARER = "Bearer";
 
-    private final TokenCredential credential;
-    private final String[] scopes;
-    // private final SimpleTokenCache cache; // TODO: anuchan: enable callback cache
+    private final AccessTokenCache cache;
 
     /**
      * Creates BearerTokenAuthenticationPolicy.
@@ -32,8 +44,7 @@ public class BearerTokenAuthenticationPolicy implements HttpPipelinePolicy {
         Util.requireNonNull(credential, "'credential' cannot be null.");
         Util.requireNonNull(scopes, "'scopes' cannot be null.");
         assert scopes.length > 0;
-        this.credential = credential;
-        this.scopes = scopes;
+        this.cache = new AccessTokenCache(credential, new TokenRequestContext().addScopes(scopes));
     }
 
     @Override
@@ -41,28 +52,79 @@ public class BearerTokenAuthenticationPolicy implements HttpPipelinePolicy {
         if ("http".equals(chain.getRequest().getUrl().getProtocol())) {
             chain.completedError(
                 new IllegalStateException("Token credentials require HTTPS to prevent leaking the key."));
+            return;
+        }
+
+        final AccessToken cachedToken = this.cache.getCachedToken();
+        if (cachedToken != null) {
+            // Fast path, the request proceeds on the current thread.
+            authorizeRequest(chain, cachedToken);
+            chain.processNextPolicy(chain.getRequest(), new ChallengeCallback(chain, cachedToken, false));
         } else {
-            this.credential.getToken(new TokenRequestContext().addScopes(scopes),
-                new TokenCredentialCallback(chain));
+            this.cache.getToken(new TokenCredential.TokenCredentialCallback() {
+                @Override
+                public void onSuccess(AccessToken token) {
+                    authorizeRequest(chain, token);
+                    // The token may be delivered on a credential thread; resume the pipeline on a
+                    // dispatcher thread instead.
+                    chain.processNextPolicy(chain.getRequest(), new ChallengeCallback(chain, token, false),
+                        0, TimeUnit.MILLISECONDS);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    chain.completedError(error);
+                }
+            });
         }
     }
 
-    private static final class TokenCredentialCallback implements TokenCredential.TokenCredentialCallback {
+    private static void authorizeRequest(HttpPipelinePolicyChain chain, AccessToken token) {
+        chain.getRequest().getHeaders().put(AUTHORIZATION_HEADER, BEARER + " " + token.getToken());
+    }
+
+    private final class ChallengeCallback implements NextPolicyCallback {
         private final HttpPipelinePolicyChain chain;
+        private final AccessToken token;
+        private final boolean isRetry;
 
-        private TokenCredentialCallback(HttpPipelinePolicyChain chain) {
+        private ChallengeCallback(HttpPipelinePolicyChain chain, AccessToken token, boolean isRetry) {
             this.chain = chain;
+            this.token = token;
+            this.isRetry = isRetry;
         }
 
         @Override
-        public void onSuccess(AccessToken token) {
-            chain.getRequest().getHeaders().put(AUTHORIZATION_HEADER, BEARER + " " + token.getToken());
-            chain.processNextPolicy(chain.getRequest());
+        public PolicyCompleter.CompletionState onSuccess(HttpResponse response, PolicyCompleter completer) {
+            if (response.getStatusCode() != HttpURLConnection.HTTP_UNAUTHORIZED || this.isRetry) {
+                return completer.completed(response);
+            }
+
+            response.close();
+            cache.invalidate(this.token);
+            if (this.chain.getCancellationToken().isCancellationRequested()) {
+                return completer.completedError(new IOException("Canceled."));
+            }
+
+            cache.getToken(new TokenCredential.TokenCredentialCallback() {
+                @Override
+                public void onSuccess(AccessToken token) {
+                    authorizeRequest(chain, token);
+                    chain.processNextPolicy(chain.getRequest(), new ChallengeCallback(chain, token, true),
+                        0, TimeUnit.MILLISECONDS);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    completer.completedError(error);
+                }
+            });
+            return completer.defer();
         }
 
         @Override
-        public void onError(Throwable error) {
-            chain.completedError(error);
+        public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
+            return completer.completedError(error);
         }
     }
 }
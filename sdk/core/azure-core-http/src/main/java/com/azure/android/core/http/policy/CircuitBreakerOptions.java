@@ -0,0 +1,233 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.implementation.Util;
+import com.azure.android.core.logging.ClientLogger;
+
+import org.threeten.bp.Duration;
+
+/**
+ * The configurations for {@link CircuitBreakerPolicy}.
+ */
+public class CircuitBreakerOptions {
+    private static final float DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+    private static final float DEFAULT_SLOW_CALL_RATE_THRESHOLD = 100;
+    private static final Duration DEFAULT_SLOW_CALL_DURATION_THRESHOLD = Duration.ofSeconds(60);
+    private static final int DEFAULT_SLIDING_WINDOW_SIZE = 100;
+    private static final int DEFAULT_MINIMUM_NUMBER_OF_CALLS = 10;
+    private static final Duration DEFAULT_OPEN_STATE_DURATION = Duration.ofSeconds(30);
+    private static final int DEFAULT_PERMITTED_CALLS_IN_HALF_OPEN_STATE = 3;
+
+    private final ClientLogger logger = new ClientLogger(CircuitBreakerOptions.class);
+
+    private float failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+    private float slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+    private Duration slowCallDurationThreshold = DEFAULT_SLOW_CALL_DURATION_THRESHOLD;
+    private int slidingWindowSize = DEFAULT_SLIDING_WINDOW_SIZE;
+    private int minimumNumberOfCalls = DEFAULT_MINIMUM_NUMBER_OF_CALLS;
+    private Duration openStateDuration = DEFAULT_OPEN_STATE_DURATION;
+    private int permittedCallsInHalfOpenState = DEFAULT_PERMITTED_CALLS_IN_HALF_OPEN_STATE;
+
+    /**
+     * Creates a new instance with the default configurations.
+     *
+     * <p>
+     * By default, the circuit of a host opens when at least half of the last 100 calls (and at least 10 calls)
+     * failed, or when all of them were slower than 60 seconds. It stays open for 30 seconds and then admits
+     * 3 probe calls.
+     * </p>
+     */
+    public CircuitBreakerOptions() {
+    }
+
+    /**
+     * Gets the failure rate threshold, in percentage.
+     *
+     * @return The failure rate threshold.
+     */
+    public float getFailureRateThreshold() {
+        return this.failureRateThreshold;
+    }
+
+    /**
+     * Sets the failure rate threshold, in percentage. The circuit opens when the percentage of failed
+     * calls in the sliding window is equal to or greater than the threshold.
+     *
+     * <p>
+     * A call fails when the request could not be sent or a response was not received (an {@link java.io.IOException}
+     * or {@link java.util.concurrent.TimeoutException}), or when the response status code is 408 or 5XX,
+     * other than 501 and 505.
+     * </p>
+     *
+     * @param failureRateThreshold The failure rate threshold.
+     * @return The updated CircuitBreakerOptions object.
+     * @throws IllegalArgumentException If {@code failureRateThreshold} is not in the range (0, 100].
+     */
+    public CircuitBreakerOptions setFailureRateThreshold(float failureRateThreshold) {
+        this.failureRateThreshold = validatePercentage(failureRateThreshold, "failureRateThreshold");
+        return this;
+    }
+
+    /**
+     * Gets the slow call rate threshold, in percentage.
+     *
+     * @return The slow call rate threshold.
+     */
+    public float getSlowCallRateThreshold() {
+        return this.slowCallRateThreshold;
+    }
+
+    /**
+     * Sets the slow call rate threshold, in percentage. The circuit opens when the percentage of calls
+     * in the sliding window that took at least {@link #getSlowCallDurationThreshold()} is equal to or
+     * greater than the threshold.
+     *
+     * @param slowCallRateThreshold The slow call rate threshold.
+     * @return The updated CircuitBreakerOptions object.
+     * @throws IllegalArgumentException If {@code slowCallRateThreshold} is not in the range (0, 100].
+     */
+    public CircuitBreakerOptions setSlowCallRateThreshold(float slowCallRateThreshold) {
+        this.slowCallRateThreshold = validatePercentage(slowCallRateThreshold, "slowCallRateThreshold");
+        return this;
+    }
+
+    /**
+     * Gets the duration above which a call is considered slow.
+     *
+     * @return The slow call duration threshold.
+     */
+    public Duration getSlowCallDurationThreshold() {
+        return this.slowCallDurationThreshold;
+    }
+
+    /**
+     * Sets the duration above which a call is considered slow. The duration of a call is measured from the
+     * time it passes the policy until its response or error is received.
+     *
+     * @param slowCallDurationThreshold The slow call duration threshold.
+     * @return The updated CircuitBreakerOptions object.
+     * @throws NullPointerException If {@code slowCallDurationThreshold} is {@code null}.
+     * @throws IllegalArgumentException If {@code slowCallDurationThreshold} is not positive.
+     */
+    public CircuitBreakerOptions setSlowCallDurationThreshold(Duration slowCallDurationThreshold) {
+        this.slowCallDurationThreshold = validateDuration(slowCallDurationThreshold, "slowCallDurationThreshold");
+        return this;
+    }
+
+    /**
+     * Gets the number of most recent calls per host the rates are calculated over.
+     *
+     * @return The sliding window size.
+     */
+    public int getSlidingWindowSize() {
+        return this.slidingWindowSize;
+    }
+
+    /**
+     * Sets the number of most recent calls per host the rates are calculated over.
+     *
+     * @param slidingWindowSize The sliding window size.
+     * @return The updated CircuitBreakerOptions object.
+     * @throws IllegalArgumentException If {@code slidingWindowSize} is less than 1.
+     */
+    public CircuitBreakerOptions setSlidingWindowSize(int slidingWindowSize) {
+        if (slidingWindowSize < 1) {
+            throw logger.logExceptionAsError(
+                new IllegalArgumentException("'slidingWindowSize' cannot be less than 1."));
+        }
+        this.slidingWindowSize = slidingWindowSize;
+        return this;
+    }
+
+    /**
+     * Gets the minimum number of calls the sliding window must hold before the rates are evaluated.
+     *
+     * @return The minimum number of calls.
+     */
+    public int getMinimumNumberOfCalls() {
+        return this.minimumNumberOfCalls;
+    }
+
+    /**
+     * Sets the minimum number of calls the sliding window must hold before the rates are evaluated.
+     * Values greater than the sliding window size are capped to it.
+     *
+     * @param minimumNumberOfCalls The minimum number of calls.
+     * @return The updated CircuitBreakerOptions object.
+     * @throws IllegalArgumentException If {@code minimumNumberOfCalls} is less than 1.
+     */
+    public CircuitBreakerOptions setMinimumNumberOfCalls(int minimumNumberOfCalls) {
+        if (minimumNumberOfCalls < 1) {
+            throw logger.logExceptionAsError(
+                new IllegalArgumentException("'minimumNumberOfCalls' cannot be less than 1."));
+        }
+        this.minimumNumberOfCalls = minimumNumberOfCalls;
+        return this;
+    }
+
+    /**
+     * Gets the duration the circuit of a host stays open before admitting probe calls.
+     *
+     * @return The open state duration.
+     */
+    public Duration getOpenStateDuration() {
+        return this.openStateDuration;
+    }
+
+    /**
+     * Sets the duration the circuit of a host stays open before admitting probe calls.
+     *
+     * @param openStateDuration The open state duration.
+     * @return The updated CircuitBreakerOptions object.
+     * @throws NullPointerException If {@code openStateDuration} is {@code null}.
+     * @throws IllegalArgumentException If {@code openStateDuration} is not positive.
+     */
+    public CircuitBreakerOptions setOpenStateDuration(Duration openStateDuration) {
+        this.openStateDuration = validateDuration(openStateDuration, "openStateDuration");
+        return this;
+    }
+
+    /**
+     * Gets the number of probe calls admitted in the half-open state.
+     *
+     * @return The number of permitted calls in the half-open state.
+     */
+    public int getPermittedCallsInHalfOpenState() {
+        return this.permittedCallsInHalfOpenState;
+    }
+
+    /**
+     * Sets the number of probe calls admitted in the half-open state. Once all of them complete, the
+     * circuit closes if their failure and slow call rates are below the thresholds, otherwise it opens again.
+     *
+     * @param permittedCallsInHalfOpenState The number of permitted calls in the half-open state.
+     * @return The updated CircuitBreakerOptions object.
+     * @throws IllegalArgumentException If {@code permittedCallsInHalfOpenState} is less than 1.
+     */
+    public CircuitBreakerOptions setPermittedCallsInHalfOpenState(int permittedCallsInHalfOpenState) {
+        if (permittedCallsInHalfOpenState < 1) {
+            throw logger.logExceptionAsError(
+                new IllegalArgumentException("'permittedCallsInHalfOpenState' cannot be less than 1."));
+        }
+        this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+        return this;
+    }
+
+    private float validatePercentage(float percentage, String name) {
+        if (!(percentage > 0 && percentage <= 100)) {
+            throw logger.logExceptionAsError(
+                new IllegalArgumentException("'" + name + "' must be in the range (0, 100], provided:" + percentage));
+        }
+        return percentage;
+    }
+
+    private Duration validateDuration(Duration duration, String name) {
+        Util.requireNonNull(duration, "'" + name + "' cannot be null.");
+        if (duration.isZero() || duration.isNegative()) {
+            throw logger.logExceptionAsError(new IllegalArgumentException("'" + name + "' must be positive."));
+        }
+        return duration;
+    }
+}
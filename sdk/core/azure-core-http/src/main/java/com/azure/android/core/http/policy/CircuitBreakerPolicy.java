@@ -0,0 +1,364 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.HttpPipelinePolicy;
+import com.azure.android.core.http.HttpPipelinePolicyChain;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.NextPolicyCallback;
+import com.azure.android.core.http.PolicyCompleter;
+import com.azure.android.core.http.exception.CircuitBreakerOpenException;
+import com.azure.android.core.http.implementation.Util;
+import com.azure.android.core.logging.ClientLogger;
+
+import org.threeten.bp.Duration;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The pipeline policy that stops sending requests to a host that is consistently failing or slow.
+ *
+ * <p>
+ * The policy keeps a circuit per host. While the circuit is {@link CircuitBreakerState#CLOSED closed}, the outcome
+ * of every call is recorded in a sliding window; when the failure rate or the slow call rate over the window reaches
+ * its threshold, the circuit {@link CircuitBreakerState#OPEN opens} and requests to the host fail immediately with
+ * {@link CircuitBreakerOpenException}. After the open state duration the circuit turns
+ * {@link CircuitBreakerState#HALF_OPEN half-open} and admits a limited number of probe requests, whose outcomes
+ * decide whether the circuit closes again or reopens.
+ * </p>
+ *
+ * <p>
+ * Place the policy after {@link RetryPolicy} in the pipeline, so every attempt is accounted for and an open circuit
+ * ends the retries. {@link CircuitBreakerOpenException} is not an {@link IOException}, so the default retry
+ * strategies don't retry it.
+ * </p>
+ */
+public class CircuitBreakerPolicy implements HttpPipelinePolicy {
+    private final ClientLogger logger = new ClientLogger(CircuitBreakerPolicy.class);
+
+    private final float failureRateThreshold;
+    private final float slowCallRateThreshold;
+    private final long slowCallDurationThresholdNanos;
+    private final int slidingWindowSize;
+    private final int minimumNumberOfCalls;
+    private final long openStateDurationNanos;
+    private final int permittedCallsInHalfOpenState;
+    private final ConcurrentHashMap<String, HostCircuit> circuits = new ConcurrentHashMap<>();
+
+    /**
+     * Creates {@link CircuitBreakerPolicy} with the default {@link CircuitBreakerOptions}.
+     */
+    public CircuitBreakerPolicy() {
+        this(new CircuitBreakerOptions());
+    }
+
+    /**
+     * Creates {@link CircuitBreakerPolicy}.
+     *
+     * @param options The circuit breaker configurations, later changes to {@code options} don't affect the policy.
+     * @throws NullPointerException If {@code options} is {@code null}.
+     */
+    public CircuitBreakerPolicy(CircuitBreakerOptions options) {
+        Util.requireNonNull(options, "'options' cannot be null.");
+        this.failureRateThreshold = options.getFailureRateThreshold();
+        this.slowCallRateThreshold = options.getSlowCallRateThreshold();
+        this.slowCallDurationThresholdNanos = options.getSlowCallDurationThreshold().toNanos();
+        this.slidingWindowSize = options.getSlidingWindowSize();
+        this.minimumNumberOfCalls = Math.min(options.getMinimumNumberOfCalls(), options.getSlidingWindowSize());
+        this.openStateDurationNanos = options.getOpenStateDuration().toNanos();
+        this.permittedCallsInHalfOpenState = options.getPermittedCallsInHalfOpenState();
+    }
+
+    /**
+     * Gets the state of the circuit for a host.
+     *
+     * @param host The host, followed by ":" and the port if the request URLs to the host specify one.
+     * @return The state of the circuit, {@link CircuitBreakerState#CLOSED} if no request was sent to the host.
+     */
+    public CircuitBreakerState getState(String host) {
+        final HostCircuit circuit = this.circuits.get(host);
+        return circuit == null ? CircuitBreakerState.CLOSED : circuit.getState(System.nanoTime());
+    }
+
+    @Override
+    public void process(HttpPipelinePolicyChain chain) {
+        final HttpRequest request = chain.getRequest();
+        final String host = getHostKey(request.getUrl());
+        HostCircuit circuit = this.circuits.get(host);
+        if (circuit == null) {
+            final HostCircuit newCircuit = new HostCircuit(host);
+            circuit = this.circuits.putIfAbsent(host, newCircuit);
+            if (circuit == null) {
+                circuit = newCircuit;
+            }
+        }
+
+        final long startNanos = System.nanoTime();
+        final CircuitPhase phase = circuit.tryAcquirePermission(startNanos);
+        if (!phase.isPermitted) {
+            // A half-open circuit already admits probes, the rejected call may be retried once they complete.
+            final long retryAfterNanos = phase.state == CircuitBreakerState.OPEN
+                ? Math.max(0, phase.openUntilNanos - startNanos)
+                : 0;
+            chain.completedError(new CircuitBreakerOpenException("The circuit for host '" + host
+                + "' is open, the request was not sent.", request, host, Duration.ofNanos(retryAfterNanos)));
+            return;
+        }
+
+        final HostCircuit admittingCircuit = circuit;
+        chain.processNextPolicy(request, new NextPolicyCallback() {
+            @Override
+            public PolicyCompleter.CompletionState onSuccess(HttpResponse response, PolicyCompleter completer) {
+                admittingCircuit.onResult(phase, isFailure(response), isSlow(startNanos));
+                return completer.completed(response);
+            }
+
+            @Override
+            public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
+                if (chain.getCancellationToken().isCancellationRequested()) {
+                    // A canceled call says nothing about the health of the host.
+                    admittingCircuit.onIgnored(phase);
+                } else {
+                    admittingCircuit.onResult(phase, isFailure(error), isSlow(startNanos));
+                }
+                return completer.completedError(error);
+            }
+        });
+    }
+
+    private boolean isSlow(long startNanos) {
+        return System.nanoTime() - startNanos >= this.slowCallDurationThresholdNanos;
+    }
+
+    private static boolean isFailure(HttpResponse response) {
+        final int code = response.getStatusCode();
+        return code == HttpURLConnection.HTTP_CLIENT_TIMEOUT
+            || (code >= HttpURLConnection.HTTP_INTERNAL_ERROR
+            && code != HttpURLConnection.HTTP_NOT_IMPLEMENTED
+            && code != HttpURLConnection.HTTP_VERSION);
+    }
+
+    private static boolean isFailure(Throwable error) {
+        return error instanceof IOException || error instanceof TimeoutException;
+    }
+
+    private static String getHostKey(URL url) {
+        final int port = url.getPort();
+        return port == -1 ? url.getHost() : url.getHost() + ":" + port;
+    }
+
+    /**
+     * The circuit of one host. The current phase is held in an {@link AtomicReference} and replaced on every
+     * state transition; admitting and recording a call in the closed phase takes no locks.
+     */
+    private final class HostCircuit {
+        private final String host;
+        private final AtomicReference<CircuitPhase> phase;
+
+        HostCircuit(String host) {
+            this.host = host;
+            this.phase = new AtomicReference<>(CircuitPhase.closed(slidingWindowSize));
+        }
+
+        CircuitBreakerState getState(long nowNanos) {
+            final CircuitPhase current = this.phase.get();
+            if (current.state == CircuitBreakerState.OPEN && nowNanos - current.openUntilNanos >= 0) {
+                return CircuitBreakerState.HALF_OPEN;
+            }
+            return current.state;
+        }
+
+        /**
+         * Returns the phase the call is admitted in, or a rejecting phase (see {@link CircuitPhase#isPermitted}).
+         */
+        CircuitPhase tryAcquirePermission(long nowNanos) {
+            while (true) {
+                final CircuitPhase current = this.phase.get();
+                switch (current.state) {
+                    case CLOSED:
+                        return current;
+                    case OPEN:
+                        if (nowNanos - current.openUntilNanos < 0) {
+                            return current;
+                        }
+                        this.transition(current, CircuitPhase.halfOpen(permittedCallsInHalfOpenState));
+                        break;
+                    default:
+                        if (current.tryAcquireProbe()) {
+                            return current.permitted();
+                        }
+                        return current;
+                }
+            }
+        }
+
+        void onResult(CircuitPhase admittedIn, boolean isFailure, boolean isSlow) {
+            final CircuitPhase admittedPhase = admittedIn.source();
+            if (this.phase.get() != admittedPhase) {
+                // The circuit moved on since the call was admitted.
+                return;
+            }
+            if (admittedPhase.state == CircuitBreakerState.CLOSED) {
+                final SlidingWindow window = admittedPhase.window;
+                window.record(isFailure, isSlow);
+                if (window.getTotalCalls() >= minimumNumberOfCalls && exceedsThresholds(window)) {
+                    this.transition(admittedPhase, CircuitPhase.open(System.nanoTime() + openStateDurationNanos));
+                }
+            } else if (admittedPhase.state == CircuitBreakerState.HALF_OPEN) {
+                final SlidingWindow window = admittedPhase.window;
+                window.record(isFailure, isSlow);
+                if (window.getTotalCalls() >= permittedCallsInHalfOpenState) {
+                    this.transition(admittedPhase, exceedsThresholds(window)
+                        ? CircuitPhase.open(System.nanoTime() + openStateDurationNanos)
+                        : CircuitPhase.closed(slidingWindowSize));
+                }
+            }
+        }
+
+        void onIgnored(CircuitPhase admittedIn) {
+            final CircuitPhase admittedPhase = admittedIn.source();
+            if (admittedPhase.state == CircuitBreakerState.HALF_OPEN && this.phase.get() == admittedPhase) {
+                admittedPhase.releaseProbe();
+            }
+        }
+
+        private boolean exceedsThresholds(SlidingWindow window) {
+            final int total = window.getTotalCalls();
+            return window.getFailedCalls() * 100f >= failureRateThreshold * total
+                || window.getSlowCalls() * 100f >= slowCallRateThreshold * total;
+        }
+
+        private void transition(CircuitPhase from, CircuitPhase to) {
+            if (this.phase.compareAndSet(from, to)) {
+                if (to.state == CircuitBreakerState.OPEN) {
+                    logger.warning("The circuit for host '{}' transitioned from {} to OPEN.", this.host, from.state);
+                } else {
+                    logger.info("The circuit for host '{}' transitioned from {} to {}.", this.host, from.state,
+                        to.state);
+                }
+            }
+        }
+    }
+
+    /**
+     * An immutable snapshot of a circuit state, with the mutable counters that belong to that state.
+     */
+    private static final class CircuitPhase {
+        private final CircuitBreakerState state;
+        private final long openUntilNanos;
+        private final SlidingWindow window;
+        private final AtomicInteger availableProbes;
+        // Set on the views handed out to admitted probe calls; points to the shared phase.
+        private final CircuitPhase source;
+        private final boolean isPermitted;
+
+        private CircuitPhase(CircuitBreakerState state, long openUntilNanos, SlidingWindow window,
+                             AtomicInteger availableProbes, CircuitPhase source, boolean isPermitted) {
+            this.state = state;
+            this.openUntilNanos = openUntilNanos;
+            this.window = window;
+            this.availableProbes = availableProbes;
+            this.source = source;
+            this.isPermitted = isPermitted;
+        }
+
+        static CircuitPhase closed(int windowSize) {
+            return new CircuitPhase(CircuitBreakerState.CLOSED, 0, new SlidingWindow(windowSize), null, null, true);
+        }
+
+        static CircuitPhase open(long openUntilNanos) {
+            return new CircuitPhase(CircuitBreakerState.OPEN, openUntilNanos, null, null, null, false);
+        }
+
+        static CircuitPhase halfOpen(int permittedCalls) {
+            return new CircuitPhase(CircuitBreakerState.HALF_OPEN, 0, new SlidingWindow(permittedCalls),
+                new AtomicInteger(permittedCalls), null, false);
+        }
+
+        CircuitPhase permitted() {
+            return new CircuitPhase(this.state, this.openUntilNanos, this.window, this.availableProbes, this, true);
+        }
+
+        CircuitPhase source() {
+            return this.source == null ? this : this.source;
+        }
+
+        boolean tryAcquireProbe() {
+            while (true) {
+                final int available = this.availableProbes.get();
+                if (available <= 0) {
+                    return false;
+                }
+                if (this.availableProbes.compareAndSet(available, available - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void releaseProbe() {
+            this.availableProbes.incrementAndGet();
+        }
+    }
+
+    /**
+     * A count based sliding window over the outcomes of the most recent calls.
+     *
+     * <p>
+     * Each slot of a ring holds the outcome of one call; recording a call replaces the oldest slot and adjusts
+     * the aggregate counters by the difference, using only atomic operations.
+     * </p>
+     */
+    private static final class SlidingWindow {
+        private static final int RECORDED = 1;
+        private static final int FAILED = 1 << 1;
+        private static final int SLOW = 1 << 2;
+
+        private final AtomicIntegerArray outcomes;
+        private final AtomicLong cursor = new AtomicLong();
+        private final AtomicInteger totalCalls = new AtomicInteger();
+        private final AtomicInteger failedCalls = new AtomicInteger();
+        private final AtomicInteger slowCalls = new AtomicInteger();
+
+        SlidingWindow(int size) {
+            this.outcomes = new AtomicIntegerArray(size);
+        }
+
+        void record(boolean isFailure, boolean isSlow) {
+            final int outcome = RECORDED | (isFailure ? FAILED : 0) | (isSlow ? SLOW : 0);
+            final int index = (int) (this.cursor.getAndIncrement() % this.outcomes.length());
+            final int evicted = this.outcomes.getAndSet(index, outcome);
+            adjust(this.totalCalls, evicted, outcome, RECORDED);
+            adjust(this.failedCalls, evicted, outcome, FAILED);
+            adjust(this.slowCalls, evicted, outcome, SLOW);
+        }
+
+        int getTotalCalls() {
+            return this.totalCalls.get();
+        }
+
+        int getFailedCalls() {
+            return this.failedCalls.get();
+        }
+
+        int getSlowCalls() {
+            return this.slowCalls.get();
+        }
+
+        private static void adjust(AtomicInteger counter, int evicted, int recorded, int flag) {
+            final int delta = ((recorded & flag) != 0 ? 1 : 0) - ((evicted & flag) != 0 ? 1 : 0);
+            if (delta != 0) {
+                counter.addAndGet(delta);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+/**
+ * The state of the circuit {@link CircuitBreakerPolicy} keeps for a host.
+ */
+public enum CircuitBreakerState {
+    /**
+     * Requests are sent and their outcomes are recorded in the sliding window.
+     */
+    CLOSED,
+
+    /**
+     * Requests are rejected without being sent, until the open state duration elapses.
+     */
+    OPEN,
+
+    /**
+     * A limited number of probe requests are sent, their outcomes decide whether the circuit closes
+     * or opens again. Other requests are rejected.
+     */
+    HALF_OPEN
+}
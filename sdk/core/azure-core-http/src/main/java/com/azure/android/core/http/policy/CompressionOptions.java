@@ -0,0 +1,110 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.implementation.Util;
+import com.azure.android.core.logging.ClientLogger;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The configurations for {@link CompressionPolicy}.
+ */
+public class CompressionOptions {
+    private static final int DEFAULT_REQUEST_COMPRESSION_THRESHOLD = 1024;
+
+    private final ClientLogger logger = new ClientLogger(CompressionOptions.class);
+
+    private boolean responseDecompressionEnabled = true;
+    private Set<String> requestCompressionHosts = Collections.emptySet();
+    private int requestCompressionThreshold = DEFAULT_REQUEST_COMPRESSION_THRESHOLD;
+
+    /**
+     * Creates a new instance with the default configurations.
+     *
+     * <p>
+     * By default, gzip and deflate encoded responses are accepted and decoded, and request bodies are not compressed.
+     * </p>
+     */
+    public CompressionOptions() {
+    }
+
+    /**
+     * Gets whether compressed responses are accepted and decoded.
+     *
+     * @return true if the response decompression is enabled.
+     */
+    public boolean isResponseDecompressionEnabled() {
+        return this.responseDecompressionEnabled;
+    }
+
+    /**
+     * Sets whether compressed responses are accepted and decoded. When enabled, requests that don't set
+     * {@code Accept-Encoding} are sent with {@code Accept-Encoding: gzip, deflate}.
+     *
+     * @param responseDecompressionEnabled true to enable the response decompression.
+     * @return The updated CompressionOptions object.
+     */
+    public CompressionOptions setResponseDecompressionEnabled(boolean responseDecompressionEnabled) {
+        this.responseDecompressionEnabled = responseDecompressionEnabled;
+        return this;
+    }
+
+    /**
+     * Gets the hosts whose endpoints accept gzip encoded request bodies.
+     *
+     * @return The request compression hosts.
+     */
+    public Set<String> getRequestCompressionHosts() {
+        return this.requestCompressionHosts;
+    }
+
+    /**
+     * Sets the hosts whose endpoints accept gzip encoded request bodies. Request bodies are compressed only for
+     * these hosts, since a service that doesn't support it rejects or misreads compressed bodies.
+     *
+     * @param hosts The request compression hosts, for example "contoso.communication.azure.com".
+     * @return The updated CompressionOptions object.
+     * @throws NullPointerException If {@code hosts} is {@code null}.
+     */
+    public CompressionOptions setRequestCompressionHosts(String... hosts) {
+        Util.requireNonNull(hosts, "'hosts' cannot be null.");
+        final Set<String> hostSet = new HashSet<>();
+        for (String host : Arrays.asList(hosts)) {
+            hostSet.add(Util.requireNonNull(host, "'hosts' cannot contain null.").toLowerCase(Locale.ROOT));
+        }
+        this.requestCompressionHosts = Collections.unmodifiableSet(hostSet);
+        return this;
+    }
+
+    /**
+     * Gets the minimum size in bytes of a request body to compress.
+     *
+     * @return The request compression threshold.
+     */
+    public int getRequestCompressionThreshold() {
+        return this.requestCompressionThreshold;
+    }
+
+    /**
+     * Sets the minimum size in bytes of a request body to compress; smaller bodies don't gain enough to be
+     * worth the compression.
+     *
+     * @param requestCompressionThreshold The request compression threshold.
+     * @return The updated CompressionOptions object.
+     * @throws IllegalArgumentException If {@code requestCompressionThreshold} is negative.
+     */
+    public CompressionOptions setRequestCompressionThreshold(int requestCompressionThreshold) {
+        if (requestCompressionThreshold < 0) {
+            throw logger.logExceptionAsError(
+                new IllegalArgumentException("'requestCompressionThreshold' cannot be negative."));
+        }
+        this.requestCompressionThreshold = requestCompressionThreshold;
+        return this;
+    }
+}
@@ -0,0 +1,225 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.HttpHeaders;
+import com.azure.android.core.http.HttpPipelinePolicy;
+import com.azure.android.core.http.HttpPipelinePolicyChain;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.NextPolicyCallback;
+import com.azure.android.core.http.PolicyCompleter;
+import com.azure.android.core.http.implementation.ByteArrayHttpResponse;
+import com.azure.android.core.http.implementation.CompressionCodecs;
+import com.azure.android.core.http.implementation.DecodingInputStream;
+import com.azure.android.core.http.implementation.Util;
+import com.azure.android.core.logging.ClientLogger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The pipeline policy that compresses request bodies and decodes compressed response bodies.
+ *
+ * <p>
+ * Requests that don't set {@code Accept-Encoding} are sent with {@code Accept-Encoding: gzip, deflate}, and the
+ * bodies of their {@code gzip} or {@code deflate} encoded responses are decoded as they are read; the responses
+ * carry neither {@code Content-Encoding} nor {@code Content-Length}. Requests that set {@code Accept-Encoding}
+ * themselves get the responses as received.
+ * </p>
+ *
+ * <p>
+ * Request bodies at least as large as the {@link CompressionOptions#getRequestCompressionThreshold() threshold}
+ * are gzip encoded for the {@link CompressionOptions#getRequestCompressionHosts() hosts} configured to accept them.
+ * </p>
+ *
+ * <p>
+ * The {@link java.util.zip.Inflater} and {@link java.util.zip.Deflater} instances are pooled across calls. A decoded
+ * response gives its inflater back once its body is read to the end or the response is closed.
+ * </p>
+ */
+public class CompressionPolicy implements HttpPipelinePolicy {
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String CONTENT_LENGTH = "Content-Length";
+
+    private final boolean responseDecompressionEnabled;
+    private final Set<String> requestCompressionHosts;
+    private final int requestCompressionThreshold;
+
+    /**
+     * Creates {@link CompressionPolicy} with the default {@link CompressionOptions}.
+     */
+    public CompressionPolicy() {
+        this(new CompressionOptions());
+    }
+
+    /**
+     * Creates {@link CompressionPolicy}.
+     *
+     * @param options The compression configurations, later changes to {@code options} don't affect the policy.
+     * @throws NullPointerException If {@code options} is {@code null}.
+     */
+    public CompressionPolicy(CompressionOptions options) {
+        Util.requireNonNull(options, "'options' cannot be null.");
+        this.responseDecompressionEnabled = options.isResponseDecompressionEnabled();
+        this.requestCompressionHosts = options.getRequestCompressionHosts();
+        this.requestCompressionThreshold = options.getRequestCompressionThreshold();
+    }
+
+    @Override
+    public void process(HttpPipelinePolicyChain chain) {
+        HttpRequest request = chain.getRequest();
+        final byte[] body = request.getBody();
+        if (body != null
+            && body.length >= this.requestCompressionThreshold
+            && request.getHeaders().getValue(CONTENT_ENCODING) == null
+            && this.requestCompressionHosts.contains(request.getUrl().getHost().toLowerCase(Locale.ROOT))) {
+            // Leave the caller's request untouched, so a retry doesn't compress the body twice.
+            request = request.copy();
+            request.setBody(CompressionCodecs.gzip(body));
+            request.setHeader(CONTENT_ENCODING, "gzip");
+        }
+
+        if (!this.responseDecompressionEnabled || request.getHeaders().getValue(ACCEPT_ENCODING) != null) {
+            chain.processNextPolicy(request);
+            return;
+        }
+        if (request == chain.getRequest()) {
+            request = request.copy();
+        }
+        request.setHeader(ACCEPT_ENCODING, "gzip, deflate");
+        chain.processNextPolicy(request, new NextPolicyCallback() {
+            @Override
+            public PolicyCompleter.CompletionState onSuccess(HttpResponse response, PolicyCompleter completer) {
+                final String contentEncoding = response.getHeaderValue(CONTENT_ENCODING);
+                if (contentEncoding == null) {
+                    return completer.completed(response);
+                }
+                final String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+                if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+                    return completer.completed(new DecodedHttpResponse(response, true));
+                } else if (encoding.equals("deflate")) {
+                    return completer.completed(new DecodedHttpResponse(response, false));
+                }
+                return completer.completed(response);
+            }
+
+            @Override
+            public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
+                return completer.completedError(error);
+            }
+        });
+    }
+
+    /**
+     * A response whose body is decoded as it is read.
+     */
+    private static final class DecodedHttpResponse extends HttpResponse {
+        private final ClientLogger logger = new ClientLogger(DecodedHttpResponse.class);
+
+        private final HttpResponse innerHttpResponse;
+        private final boolean gzip;
+        private final HttpHeaders headers;
+        private DecodingInputStream body;
+        private byte[] bufferedBody;
+
+        DecodedHttpResponse(HttpResponse innerHttpResponse, boolean gzip) {
+            super(innerHttpResponse.getRequest());
+            this.innerHttpResponse = innerHttpResponse;
+            this.gzip = gzip;
+            // The encoding and length describe the encoded body, not the one this response exposes.
+            this.headers = new HttpHeaders(innerHttpResponse.getHeaders());
+            this.headers.remove(CONTENT_ENCODING);
+            this.headers.remove(CONTENT_LENGTH);
+        }
+
+        @Override
+        public int getStatusCode() {
+            return this.innerHttpResponse.getStatusCode();
+        }
+
+        @Override
+        public String getHeaderValue(String name) {
+            return this.headers.getValue(name);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return this.headers;
+        }
+
+        @Override
+        public synchronized InputStream getBody() {
+            if (this.bufferedBody != null) {
+                return new ByteArrayInputStream(this.bufferedBody);
+            }
+            if (this.body == null) {
+                final InputStream innerBody = this.innerHttpResponse.getBody();
+                if (innerBody == null) {
+                    return null;
+                }
+                this.body = new DecodingInputStream(innerBody, this.gzip);
+            }
+            return this.body;
+        }
+
+        @Override
+        public synchronized byte[] getBodyAsByteArray() {
+            if (this.bufferedBody == null) {
+                final InputStream decodedBody = this.getBody();
+                if (decodedBody == null) {
+                    return null;
+                }
+                final ByteArrayOutputStream output = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[4096];
+                try {
+                    int count;
+                    while ((count = decodedBody.read(buffer)) != -1) {
+                        output.write(buffer, 0, count);
+                    }
+                    decodedBody.close();
+                } catch (IOException e) {
+                    throw logger.logExceptionAsError(new RuntimeException(e));
+                }
+                this.bufferedBody = output.toByteArray();
+            }
+            return this.bufferedBody;
+        }
+
+        @Override
+        public String getBodyAsString() {
+            final byte[] bytes = this.getBodyAsByteArray();
+            return bytes == null
+                ? null
+                : new ByteArrayHttpResponse(this.getRequest(), this.getStatusCode(), this.headers, bytes)
+                    .getBodyAsString();
+        }
+
+        @Override
+        public String getBodyAsString(Charset charset) {
+            final byte[] bytes = this.getBodyAsByteArray();
+            return bytes == null ? null : new String(bytes, charset);
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (this.body != null) {
+                    try {
+                        this.body.close();
+                    } catch (IOException ignored) {
+                        // The inner response is closed below.
+                    }
+                }
+            }
+            this.innerHttpResponse.close();
+        }
+    }
+}
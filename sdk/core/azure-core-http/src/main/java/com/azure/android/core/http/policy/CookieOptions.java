@@ -0,0 +1,106 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.implementation.Util;
+import com.azure.android.core.logging.ClientLogger;
+
+import org.threeten.bp.Clock;
+import org.threeten.bp.Duration;
+
+import java.io.File;
+
+/**
+ * The configurations for {@link CookiePolicy}.
+ */
+public class CookieOptions {
+    private static final Duration DEFAULT_PERSISTENCE_WRITE_DELAY = Duration.ofSeconds(1);
+
+    private final ClientLogger logger = new ClientLogger(CookieOptions.class);
+
+    private File persistenceFile;
+    private Duration persistenceWriteDelay = DEFAULT_PERSISTENCE_WRITE_DELAY;
+    private Clock clock = Clock.systemUTC();
+
+    /**
+     * Creates a new instance with the default configurations.
+     *
+     * <p>
+     * By default, cookies are kept in memory only.
+     * </p>
+     */
+    public CookieOptions() {
+    }
+
+    /**
+     * Gets the file the persistent cookies are stored in.
+     *
+     * @return The persistence file, or null if the cookies are kept in memory only.
+     */
+    public File getPersistenceFile() {
+        return this.persistenceFile;
+    }
+
+    /**
+     * Sets the file the persistent cookies, those with an {@code Expires} or {@code Max-Age} attribute, are stored
+     * in, so they survive the application restarts. The file is read on the first request.
+     *
+     * @param persistenceFile The persistence file, or null to keep the cookies in memory only.
+     * @return The updated CookieOptions object.
+     */
+    public CookieOptions setPersistenceFile(File persistenceFile) {
+        this.persistenceFile = persistenceFile;
+        return this;
+    }
+
+    /**
+     * Gets the delay between a change to the persistent cookies and its write to the persistence file.
+     *
+     * @return The persistence write delay.
+     */
+    public Duration getPersistenceWriteDelay() {
+        return this.persistenceWriteDelay;
+    }
+
+    /**
+     * Sets the delay between a change to the persistent cookies and its write to the persistence file. The changes
+     * made during the delay are written together; {@link CookiePolicy#flush()} writes them right away.
+     *
+     * @param persistenceWriteDelay The persistence write delay.
+     * @return The updated CookieOptions object.
+     * @throws NullPointerException If {@code persistenceWriteDelay} is {@code null}.
+     * @throws IllegalArgumentException If {@code persistenceWriteDelay} is negative.
+     */
+    public CookieOptions setPersistenceWriteDelay(Duration persistenceWriteDelay) {
+        Util.requireNonNull(persistenceWriteDelay, "'persistenceWriteDelay' cannot be null.");
+        if (persistenceWriteDelay.isNegative()) {
+            throw logger.logExceptionAsError(
+                new IllegalArgumentException("'persistenceWriteDelay' cannot be negative."));
+        }
+        this.persistenceWriteDelay = persistenceWriteDelay;
+        return this;
+    }
+
+    /**
+     * Gets the clock the expiry of the cookies is checked against.
+     *
+     * @return The clock.
+     */
+    public Clock getClock() {
+        return this.clock;
+    }
+
+    /**
+     * Sets the clock the expiry of the cookies is checked against. This is mainly useful in tests, to expire the
+     * cookies deterministically.
+     *
+     * @param clock The clock.
+     * @return The updated CookieOptions object.
+     * @throws NullPointerException If {@code clock} is {@code null}.
+     */
+    public CookieOptions setClock(Clock clock) {
+        this.clock = Util.requireNonNull(clock, "'clock' cannot be null.");
+        return this;
+    }
+}
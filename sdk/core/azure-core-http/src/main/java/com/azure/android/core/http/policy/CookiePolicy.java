@@ -3,75 +3,75 @@
 
 package com.azure.android.core.http.policy;
 
-import android.text.TextUtils;
-
-import com.azure.android.core.http.HttpHeader;
 import com.azure.android.core.http.HttpPipelinePolicy;
 import com.azure.android.core.http.HttpPipelinePolicyChain;
 import com.azure.android.core.http.HttpRequest;
 import com.azure.android.core.http.HttpResponse;
 import com.azure.android.core.http.NextPolicyCallback;
 import com.azure.android.core.http.PolicyCompleter;
+import com.azure.android.core.http.implementation.CookieJar;
+import com.azure.android.core.http.implementation.Util;
 
-import java.io.IOException;
-import java.net.CookieHandler;
-import java.net.CookieManager;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.net.URL;
 
 /**
  * The pipeline policy that which stores cookies based on the response "Set-Cookie" header and adds cookies to requests.
+ *
+ * <p>
+ * The cookies are indexed by domain and path, so requests to hosts without cookies are sent as they are. The
+ * persistent cookies can be stored in a file through {@link CookieOptions#setPersistenceFile(java.io.File)}.
+ * </p>
  */
 public class CookiePolicy implements HttpPipelinePolicy {
-    private final CookieHandler cookies = new CookieManager();
+    private static final String COOKIE = "Cookie";
+    private static final String SET_COOKIE = "Set-Cookie";
 
-    @Override
-    public void process(HttpPipelinePolicyChain chain) {
-        HttpRequest httpRequest = chain.getRequest();
+    private final CookieJar cookies;
 
-        final URI uri;
-        try {
-            uri = httpRequest.getUrl().toURI();
-        } catch (URISyntaxException error) {
-            chain.completedError(error);
-            return;
-        }
+    /**
+     * Creates {@link CookiePolicy} that keeps the cookies in memory only.
+     */
+    public CookiePolicy() {
+        this(new CookieOptions());
+    }
 
-        Map<String, List<String>> cookieHeaders = new HashMap<>();
-        for (HttpHeader header : httpRequest.getHeaders()) {
-            cookieHeaders.put(header.getName(), Arrays.asList(chain.getRequest().getHeaders()
-                .getValues(header.getName())));
-        }
+    /**
+     * Creates {@link CookiePolicy}.
+     *
+     * @param options The cookie configurations, later changes to {@code options} don't affect the policy.
+     * @throws NullPointerException If {@code options} is {@code null}.
+     */
+    public CookiePolicy(CookieOptions options) {
+        Util.requireNonNull(options, "'options' cannot be null.");
+        this.cookies = new CookieJar(options.getPersistenceFile(), options.getPersistenceWriteDelay().toMillis(),
+            options.getClock());
+    }
 
-        final Map<String, List<String>> requestCookies;
-        try {
-            requestCookies = cookies.get(uri, cookieHeaders);
-        } catch (IOException error) {
-            chain.completedError(error);
-            return;
-        }
+    /**
+     * Writes the pending changes to the persistent cookies to the persistence file now, for example when the
+     * application goes to the background.
+     */
+    public void flush() {
+        this.cookies.flush();
+    }
 
-        for (Map.Entry<String, List<String>> entry : requestCookies.entrySet()) {
-            httpRequest.getHeaders().put(entry.getKey(), TextUtils.join(",", entry.getValue()));
+    @Override
+    public void process(HttpPipelinePolicyChain chain) {
+        final HttpRequest httpRequest = chain.getRequest();
+        final URL url = httpRequest.getUrl();
+
+        final String cookieHeader = cookies.getCookieHeader(url.getHost(), url.getPath(),
+            "https".equalsIgnoreCase(url.getProtocol()));
+        if (cookieHeader != null) {
+            httpRequest.getHeaders().put(COOKIE, cookieHeader);
         }
 
         chain.processNextPolicy(httpRequest, new NextPolicyCallback() {
             @Override
             public PolicyCompleter.CompletionState onSuccess(HttpResponse response, PolicyCompleter completer) {
-                Map<String, List<String>> responseHeaders = new HashMap<>();
-                for (HttpHeader header : response.getHeaders()) {
-                    responseHeaders.put(header.getName(), Collections.singletonList(header.getValue()));
-                }
-
-                try {
-                    cookies.put(uri, responseHeaders);
-                } catch (IOException error) {
-                    return completer.completedError(error);
+                final String setCookie = response.getHeaderValue(SET_COOKIE);
+                if (setCookie != null) {
+                    cookies.setCookies(url.getHost(), url.getPath(), setCookie);
                 }
                 return completer.completed(response);
             }
@@ -0,0 +1,165 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.implementation.Util;
+import com.azure.android.core.logging.ClientLogger;
+
+import org.threeten.bp.Duration;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The configurations for {@link HedgingPolicy}.
+ */
+public class HedgingOptions {
+    private static final Duration DEFAULT_HEDGE_DELAY = Duration.ofMillis(500);
+    private static final float DEFAULT_MAX_HEDGE_PERCENTAGE = 5;
+    private static final int DEFAULT_MAX_HEDGE_BURST = 5;
+
+    private final ClientLogger logger = new ClientLogger(HedgingOptions.class);
+
+    private Duration hedgeDelay = DEFAULT_HEDGE_DELAY;
+    private boolean useObservedLatency;
+    private float maxHedgePercentage = DEFAULT_MAX_HEDGE_PERCENTAGE;
+    private int maxHedgeBurst = DEFAULT_MAX_HEDGE_BURST;
+    private Set<HttpMethod> idempotentMethods = EnumSet.of(HttpMethod.GET, HttpMethod.HEAD);
+
+    /**
+     * Creates a new instance with the default configurations.
+     *
+     * <p>
+     * By default, GET and HEAD requests that got no response within 500 milliseconds are hedged, and hedges are
+     * limited to 5% of the requests, with bursts of up to 5 hedges.
+     * </p>
+     */
+    public HedgingOptions() {
+    }
+
+    /**
+     * Gets the delay after which a request that got no response is hedged.
+     *
+     * @return The hedge delay.
+     */
+    public Duration getHedgeDelay() {
+        return this.hedgeDelay;
+    }
+
+    /**
+     * Sets the delay after which a request that got no response is hedged. When observed latency is used,
+     * this is the delay until enough latencies are observed.
+     *
+     * @param hedgeDelay The hedge delay.
+     * @return The updated HedgingOptions object.
+     * @throws NullPointerException If {@code hedgeDelay} is {@code null}.
+     * @throws IllegalArgumentException If {@code hedgeDelay} is negative.
+     */
+    public HedgingOptions setHedgeDelay(Duration hedgeDelay) {
+        Util.requireNonNull(hedgeDelay, "'hedgeDelay' cannot be null.");
+        if (hedgeDelay.isNegative()) {
+            throw logger.logExceptionAsError(new IllegalArgumentException("'hedgeDelay' cannot be negative."));
+        }
+        this.hedgeDelay = hedgeDelay;
+        return this;
+    }
+
+    /**
+     * Gets whether the hedge delay follows the observed 95th percentile latency.
+     *
+     * @return true if the observed latency is used, false if the fixed hedge delay is used.
+     */
+    public boolean isUseObservedLatency() {
+        return this.useObservedLatency;
+    }
+
+    /**
+     * Sets whether the hedge delay follows the 95th percentile latency observed over the recent responses,
+     * instead of the fixed {@link #getHedgeDelay() hedge delay}.
+     *
+     * @param useObservedLatency true to use the observed latency.
+     * @return The updated HedgingOptions object.
+     */
+    public HedgingOptions setUseObservedLatency(boolean useObservedLatency) {
+        this.useObservedLatency = useObservedLatency;
+        return this;
+    }
+
+    /**
+     * Gets the maximum percentage of requests that can be hedged.
+     *
+     * @return The maximum hedge percentage.
+     */
+    public float getMaxHedgePercentage() {
+        return this.maxHedgePercentage;
+    }
+
+    /**
+     * Sets the maximum percentage of requests that can be hedged, which bounds the extra load hedging puts on
+     * the service.
+     *
+     * @param maxHedgePercentage The maximum hedge percentage.
+     * @return The updated HedgingOptions object.
+     * @throws IllegalArgumentException If {@code maxHedgePercentage} is not in the range (0, 100].
+     */
+    public HedgingOptions setMaxHedgePercentage(float maxHedgePercentage) {
+        if (!(maxHedgePercentage > 0 && maxHedgePercentage <= 100)) {
+            throw logger.logExceptionAsError(new IllegalArgumentException(
+                "'maxHedgePercentage' must be in the range (0, 100], provided:" + maxHedgePercentage));
+        }
+        this.maxHedgePercentage = maxHedgePercentage;
+        return this;
+    }
+
+    /**
+     * Gets the maximum number of hedges that can be made in a burst.
+     *
+     * @return The maximum hedge burst.
+     */
+    public int getMaxHedgeBurst() {
+        return this.maxHedgeBurst;
+    }
+
+    /**
+     * Sets the maximum number of hedges that can be made in a burst, before the hedge percentage applies.
+     *
+     * @param maxHedgeBurst The maximum hedge burst.
+     * @return The updated HedgingOptions object.
+     * @throws IllegalArgumentException If {@code maxHedgeBurst} is less than 1.
+     */
+    public HedgingOptions setMaxHedgeBurst(int maxHedgeBurst) {
+        if (maxHedgeBurst < 1) {
+            throw logger.logExceptionAsError(new IllegalArgumentException("'maxHedgeBurst' cannot be less than 1."));
+        }
+        this.maxHedgeBurst = maxHedgeBurst;
+        return this;
+    }
+
+    /**
+     * Gets the HTTP methods whose requests can be hedged.
+     *
+     * @return The idempotent HTTP methods.
+     */
+    public Set<HttpMethod> getIdempotentMethods() {
+        return this.idempotentMethods;
+    }
+
+    /**
+     * Sets the HTTP methods whose requests can be hedged. Only methods whose requests are safe to send twice
+     * should be set.
+     *
+     * @param idempotentMethods The idempotent HTTP methods.
+     * @return The updated HedgingOptions object.
+     * @throws NullPointerException If {@code idempotentMethods} is {@code null}.
+     */
+    public HedgingOptions setIdempotentMethods(HttpMethod... idempotentMethods) {
+        Util.requireNonNull(idempotentMethods, "'idempotentMethods' cannot be null.");
+        this.idempotentMethods = idempotentMethods.length == 0
+            ? EnumSet.noneOf(HttpMethod.class)
+            : EnumSet.copyOf(Arrays.asList(idempotentMethods));
+        return this;
+    }
+}
@@ -0,0 +1,299 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipelinePolicy;
+import com.azure.android.core.http.HttpPipelinePolicyChain;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.NextPolicyCallback;
+import com.azure.android.core.http.PolicyCompleter;
+import com.azure.android.core.http.implementation.Util;
+import com.azure.android.core.logging.ClientLogger;
+import com.azure.android.core.util.CancellationToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The pipeline policy that hedges slow idempotent requests.
+ *
+ * <p>
+ * When a request with one of the {@link HedgingOptions#getIdempotentMethods() idempotent methods} got no response
+ * within the hedge delay, the policy sends a second attempt of the request and completes with whichever attempt
+ * answers first; the response of the other attempt is closed once it arrives. The hedge delay is either fixed or
+ * follows the 95th percentile latency observed over the recent responses. A token bucket bounds the hedges to a
+ * small percentage of the requests, so hedging never more than slightly increases the load on the service.
+ * </p>
+ *
+ * <p>
+ * Both attempts proceed through the rest of the pipeline, each on a dispatcher thread of its own and under a
+ * cancellation token of its own. Once an attempt answers, the token of the other attempt is cancelled so that the
+ * HTTP client can abort it; cancelling the call cancels both attempts. Requests with other methods proceed through
+ * the pipeline as usual.
+ * </p>
+ */
+public class HedgingPolicy implements HttpPipelinePolicy {
+    // Tokens are stored scaled, so fractional refills can be tracked with integer arithmetic.
+    private static final int TOKEN_SCALE = 1000;
+    private static final int LATENCY_SAMPLES = 128;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    // The observed percentile is recomputed once per this many responses.
+    private static final int PERCENTILE_REFRESH_INTERVAL = 16;
+    // Source of the ids that hedged calls register their on-cancel callbacks with.
+    private static final AtomicLong ON_CANCEL_ID_SEQUENCE = new AtomicLong();
+
+    private final ClientLogger logger = new ClientLogger(HedgingPolicy.class);
+
+    private final long hedgeDelayNanos;
+    private final boolean useObservedLatency;
+    private final Set<HttpMethod> idempotentMethods;
+    private final int maxTokens;
+    private final int tokensPerRequest;
+    private final AtomicInteger tokens;
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_SAMPLES);
+    private final AtomicLong latencyCursor = new AtomicLong();
+    private volatile long observedP95Nanos = -1;
+
+    /**
+     * Creates {@link HedgingPolicy} with the default {@link HedgingOptions}.
+     */
+    public HedgingPolicy() {
+        this(new HedgingOptions());
+    }
+
+    /**
+     * Creates {@link HedgingPolicy}.
+     *
+     * @param options The hedging configurations, later changes to {@code options} don't affect the policy.
+     * @throws NullPointerException If {@code options} is {@code null}.
+     */
+    public HedgingPolicy(HedgingOptions options) {
+        Util.requireNonNull(options, "'options' cannot be null.");
+        this.hedgeDelayNanos = options.getHedgeDelay().toNanos();
+        this.useObservedLatency = options.isUseObservedLatency();
+        this.idempotentMethods = options.getIdempotentMethods().isEmpty()
+            ? EnumSet.noneOf(HttpMethod.class)
+            : EnumSet.copyOf(options.getIdempotentMethods());
+        this.maxTokens = options.getMaxHedgeBurst() * TOKEN_SCALE;
+        this.tokensPerRequest = Math.max(1, Math.round(options.getMaxHedgePercentage() / 100 * TOKEN_SCALE));
+        this.tokens = new AtomicInteger(this.maxTokens);
+    }
+
+    /**
+     * Gets the number of hedges sent so far, a hedge is counted once it answers.
+     *
+     * @return The number of hedges.
+     */
+    public long getHedgeCount() {
+        return this.hedgeCount.get();
+    }
+
+    /**
+     * Gets the number of hedges that answered before the attempt they hedged.
+     *
+     * @return The number of hedges that won.
+     */
+    public long getHedgeWinCount() {
+        return this.hedgeWinCount.get();
+    }
+
+    @Override
+    public void process(HttpPipelinePolicyChain chain) {
+        final HttpRequest request = chain.getRequest();
+        if (!this.idempotentMethods.contains(request.getHttpMethod())) {
+            chain.processNextPolicy(request);
+            return;
+        }
+        if (chain.getCancellationToken().isCancellationRequested()) {
+            chain.completedError(new IOException("Canceled."));
+            return;
+        }
+        this.refillTokens();
+        new HedgedCall(chain).start();
+    }
+
+    private long getHedgeDelayNanos() {
+        final long observed = this.observedP95Nanos;
+        return (this.useObservedLatency && observed >= 0) ? observed : this.hedgeDelayNanos;
+    }
+
+    private void recordLatency(long latencyNanos) {
+        final long count = this.latencyCursor.getAndIncrement() + 1;
+        this.latencies.set((int) ((count - 1) % LATENCY_SAMPLES), latencyNanos);
+        if (this.useObservedLatency && count >= MIN_LATENCY_SAMPLES && count % PERCENTILE_REFRESH_INTERVAL == 0) {
+            final long[] samples = new long[(int) Math.min(count, LATENCY_SAMPLES)];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = this.latencies.get(i);
+            }
+            Arrays.sort(samples);
+            this.observedP95Nanos = samples[(int) Math.ceil(samples.length * 0.95) - 1];
+        }
+    }
+
+    private void refillTokens() {
+        while (true) {
+            final int current = this.tokens.get();
+            if (current >= this.maxTokens) {
+                return;
+            }
+            if (this.tokens.compareAndSet(current, Math.min(this.maxTokens, current + this.tokensPerRequest))) {
+                return;
+            }
+        }
+    }
+
+    private boolean tryAcquireHedgeToken() {
+        while (true) {
+            final int current = this.tokens.get();
+            if (current < TOKEN_SCALE) {
+                return false;
+            }
+            if (this.tokens.compareAndSet(current, current - TOKEN_SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    private void releaseHedgeToken() {
+        while (true) {
+            final int current = this.tokens.get();
+            if (this.tokens.compareAndSet(current, Math.min(this.maxTokens, current + TOKEN_SCALE))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * A request sent as up to two attempts, completed by the first attempt to answer.
+     */
+    private final class HedgedCall {
+        private final HttpPipelinePolicyChain chain;
+        private final long startNanos = System.nanoTime();
+        private final long hedgeDelayNanos = getHedgeDelayNanos();
+        private final AtomicBoolean isCompleted = new AtomicBoolean();
+        // The attempts sent or scheduled and not yet failed.
+        private final AtomicInteger pendingAttempts = new AtomicInteger(1);
+        private boolean isHedged;
+        private CancellationToken primaryToken;
+        private CancellationToken hedgeToken;
+        private String onCancelId;
+
+        HedgedCall(HttpPipelinePolicyChain chain) {
+            this.chain = chain;
+        }
+
+        void start() {
+            if (!tryAcquireHedgeToken()) {
+                logger.verbose("The hedge budget is exhausted, the request is not hedged.");
+                this.chain.processNextPolicy(this.chain.getRequest(), new AttemptCallback(this, false));
+                return;
+            }
+            this.isHedged = true;
+            this.pendingAttempts.set(2);
+            this.primaryToken = new CancellationToken();
+            this.hedgeToken = new CancellationToken();
+            this.onCancelId = "hedge-" + ON_CANCEL_ID_SEQUENCE.incrementAndGet();
+            this.chain.getCancellationToken().registerOnCancel(this.onCancelId, () -> {
+                this.primaryToken.cancel();
+                this.hedgeToken.cancel();
+            });
+            // Copied before the primary attempt runs, the policies down the pipeline may update the request.
+            final HttpRequest hedgeRequest = this.chain.getRequest().copy();
+            // Scheduling a call pauses the pipeline run, so the primary attempt is scheduled as well rather than
+            // sent right away: each attempt then holds a running call of the dispatcher while it runs. The
+            // dispatcher drops the hedge if the call completes before the hedge delay elapses.
+            this.chain.processNextPolicy(this.chain.getRequest(), this.primaryToken, new AttemptCallback(this, false),
+                0, TimeUnit.NANOSECONDS);
+            this.chain.processNextPolicy(hedgeRequest, this.hedgeToken, new AttemptCallback(this, true),
+                this.hedgeDelayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        PolicyCompleter.CompletionState onAttemptSuccess(boolean isHedge,
+                                                         HttpResponse response,
+                                                         PolicyCompleter completer) {
+            if (isHedge) {
+                hedgeCount.incrementAndGet();
+            }
+            if (!this.isCompleted.compareAndSet(false, true)) {
+                // The other attempt already answered.
+                response.close();
+                return completer.defer();
+            }
+            final long elapsedNanos = System.nanoTime() - this.startNanos;
+            recordLatency(isHedge ? elapsedNanos - this.hedgeDelayNanos : elapsedNanos);
+            if (isHedge) {
+                hedgeWinCount.incrementAndGet();
+            }
+            this.releaseUnusedHedgeToken(elapsedNanos);
+            this.cancelOtherAttempt(isHedge);
+            return completer.completed(response);
+        }
+
+        PolicyCompleter.CompletionState onAttemptError(boolean isHedge,
+                                                       Throwable error,
+                                                       PolicyCompleter completer) {
+            if (isHedge) {
+                hedgeCount.incrementAndGet();
+            }
+            final long elapsedNanos = System.nanoTime() - this.startNanos;
+            // Wait for the other attempt, if any, to answer. A hedge not due yet is not waited for, so that a call
+            // whose attempt failed is not revived by its hedge.
+            final boolean isHedgeDue = this.isHedged && elapsedNanos >= this.hedgeDelayNanos;
+            if ((this.pendingAttempts.decrementAndGet() == 0 || !isHedgeDue)
+                && this.isCompleted.compareAndSet(false, true)) {
+                this.releaseUnusedHedgeToken(elapsedNanos);
+                this.cancelOtherAttempt(isHedge);
+                return completer.completedError(error);
+            }
+            return completer.defer();
+        }
+
+        private void cancelOtherAttempt(boolean isHedge) {
+            if (this.isHedged) {
+                this.chain.getCancellationToken().unregisterOnCancel(this.onCancelId);
+                (isHedge ? this.primaryToken : this.hedgeToken).cancel();
+            }
+        }
+
+        private void releaseUnusedHedgeToken(long elapsedNanos) {
+            if (this.isHedged && elapsedNanos < this.hedgeDelayNanos) {
+                releaseHedgeToken();
+            }
+        }
+    }
+
+    /**
+     * The callback receiving the result of one attempt of a hedged call.
+     */
+    private final class AttemptCallback implements NextPolicyCallback {
+        private final HedgedCall call;
+        private final boolean isHedge;
+
+        AttemptCallback(HedgedCall call, boolean isHedge) {
+            this.call = call;
+            this.isHedge = isHedge;
+        }
+
+        @Override
+        public PolicyCompleter.CompletionState onSuccess(HttpResponse response, PolicyCompleter completer) {
+            return this.call.onAttemptSuccess(this.isHedge, response, completer);
+        }
+
+        @Override
+        public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
+            return this.call.onAttemptError(this.isHedge, error, completer);
+        }
+    }
+}
@@ -4,20 +4,34 @@
 package com.azure.android.core.http.policy;
 
 import com.azure.android.core.http.implementation.Util;
+import com.azure.android.core.logging.ClientLogger;
+
+import org.threeten.bp.Duration;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * The log configurations for HTTP messages.
  */
 public class HttpLogOptions {
+    private final ClientLogger logger = new ClientLogger(HttpLogOptions.class);
+
     private HttpLogDetailLevel logLevel;
     private Set<String> allowedHeaderNames;
     private Set<String> allowedQueryParamNames;
     private boolean prettyPrintBody;
+    private boolean asyncLoggingEnabled;
+    private double sampleRate = 1.0;
+    private final Map<String, Double> hostSampleRates = new HashMap<>();
+    private boolean alwaysLogErrors = true;
+    private Duration slowCallThreshold;
 
     private static final List<String> DEFAULT_HEADERS_WHITELIST = Arrays.asList(
         "x-ms-client-request-id",
@@ -169,4 +183,133 @@ public class HttpLogOptions {
         this.prettyPrintBody = prettyPrintBody;
         return this;
     }
+
+    /**
+     * Gets whether HTTP messages are logged asynchronously.
+     *
+     * @return true if asynchronous logging is enabled.
+     */
+    public boolean isAsyncLoggingEnabled() {
+        return asyncLoggingEnabled;
+    }
+
+    /**
+     * Sets whether HTTP messages are logged asynchronously. When enabled, the log records are formatted and written
+     * on a background thread rather than on the thread processing the call, and response bodies are logged as the
+     * caller reads them instead of being buffered before the response is returned. Records are dropped if the
+     * background thread falls too far behind.
+     *
+     * @param asyncLoggingEnabled true to enable asynchronous logging.
+     * @return The updated HttpLogOptions object.
+     */
+    public HttpLogOptions setAsyncLoggingEnabled(boolean asyncLoggingEnabled) {
+        this.asyncLoggingEnabled = asyncLoggingEnabled;
+        return this;
+    }
+
+    /**
+     * Gets the fraction of the calls that are logged.
+     *
+     * @return The sample rate, between 0 and 1.
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Sets the fraction of the calls that are logged, for example 0.01 to log one call in a hundred. The calls that
+     * are not sampled are still logged if they fail and {@link #setAlwaysLogErrors(boolean) always log errors} is
+     * enabled, or if they are slower than the {@link #setSlowCallThreshold(Duration) slow call threshold}.
+     *
+     * <p>
+     * The decision is made before any log message is formatted, so the calls that are not logged cost next to
+     * nothing. The default sample rate of 1 logs every call.
+     * </p>
+     *
+     * @param sampleRate The sample rate, between 0 and 1.
+     * @return The updated HttpLogOptions object.
+     * @throws IllegalArgumentException If {@code sampleRate} is not between 0 and 1.
+     */
+    public HttpLogOptions setSampleRate(double sampleRate) {
+        this.sampleRate = validateSampleRate(sampleRate);
+        return this;
+    }
+
+    /**
+     * Gets the sample rates that replace the {@link #getSampleRate() sample rate} for specific hosts.
+     *
+     * @return The sample rates by host name, in lower case.
+     */
+    public Map<String, Double> getHostSampleRates() {
+        return Collections.unmodifiableMap(hostSampleRates);
+    }
+
+    /**
+     * Sets the sample rate of the calls to the given host, replacing the {@link #getSampleRate() sample rate} for
+     * that host, for example to log every call to a service being investigated.
+     *
+     * @param host The host name, for example "contoso.communication.azure.com".
+     * @param sampleRate The sample rate of the calls to the host, between 0 and 1.
+     * @return The updated HttpLogOptions object.
+     * @throws NullPointerException If {@code host} is {@code null}.
+     * @throws IllegalArgumentException If {@code sampleRate} is not between 0 and 1.
+     */
+    public HttpLogOptions setHostSampleRate(String host, double sampleRate) {
+        Util.requireNonNull(host, "'host' cannot be null.");
+        hostSampleRates.put(host.toLowerCase(Locale.ROOT), validateSampleRate(sampleRate));
+        return this;
+    }
+
+    /**
+     * Gets whether the failed calls are logged even if they are not sampled.
+     *
+     * @return true if the failed calls are always logged.
+     */
+    public boolean isAlwaysLogErrors() {
+        return alwaysLogErrors;
+    }
+
+    /**
+     * Sets whether the failed calls, those that end with an error or a response with a status code of 400 or above,
+     * are logged even if they are not sampled. Enabled by default.
+     *
+     * @param alwaysLogErrors true to always log the failed calls.
+     * @return The updated HttpLogOptions object.
+     */
+    public HttpLogOptions setAlwaysLogErrors(boolean alwaysLogErrors) {
+        this.alwaysLogErrors = alwaysLogErrors;
+        return this;
+    }
+
+    /**
+     * Gets the duration above which calls are logged even if they are not sampled.
+     *
+     * @return The slow call threshold, or null if slow calls are not always logged.
+     */
+    public Duration getSlowCallThreshold() {
+        return slowCallThreshold;
+    }
+
+    /**
+     * Sets the duration above which calls are logged even if they are not sampled, measured from the time the
+     * request reaches {@link HttpLoggingPolicy} to the time its response or error comes back.
+     *
+     * @param slowCallThreshold The slow call threshold, or null to not always log slow calls.
+     * @return The updated HttpLogOptions object.
+     * @throws IllegalArgumentException If {@code slowCallThreshold} is negative.
+     */
+    public HttpLogOptions setSlowCallThreshold(Duration slowCallThreshold) {
+        if (slowCallThreshold != null && slowCallThreshold.isNegative()) {
+            throw logger.logExceptionAsError(new IllegalArgumentException("'slowCallThreshold' cannot be negative."));
+        }
+        this.slowCallThreshold = slowCallThreshold;
+        return this;
+    }
+
+    private double validateSampleRate(double sampleRate) {
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw logger.logExceptionAsError(new IllegalArgumentException("'sampleRate' must be between 0 and 1."));
+        }
+        return sampleRate;
+    }
 }
@@ -5,37 +5,67 @@ package com.azure.android.core.http.policy;
 
 import com.azure.android.core.http.HttpHeader;
 import com.azure.android.core.http.HttpHeaders;
+import com.azure.android.core.http.HttpMethod;
 import com.azure.android.core.http.HttpPipelinePolicy;
 import com.azure.android.core.http.HttpPipelinePolicyChain;
 import com.azure.android.core.http.HttpRequest;
 import com.azure.android.core.http.HttpResponse;
 import com.azure.android.core.http.NextPolicyCallback;
 import com.azure.android.core.http.PolicyCompleter;
+import com.azure.android.core.http.implementation.AsyncLogWriter;
+import com.azure.android.core.http.implementation.ByteArrayHttpResponse;
 import com.azure.android.core.http.util.UrlBuilder;
 import com.azure.android.core.util.RequestContext;
 import com.azure.android.core.logging.ClientLogger;
 import com.azure.android.core.logging.LogLevel;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The pipeline policy that handles logging of HTTP requests and responses.
+ *
+ * <p>
+ * Calls can be sampled through {@link HttpLogOptions#setSampleRate(double)}, per host through
+ * {@link HttpLogOptions#setHostSampleRate(String, double)}. The calls that are not sampled are logged only if they
+ * fail or are slow, as configured in {@link HttpLogOptions}; nothing is formatted for the others.
+ * </p>
  */
 public class HttpLoggingPolicy implements HttpPipelinePolicy {
     private static final int MAX_BODY_LOG_SIZE = 1024 * 16;
     private static final String REDACTED_PLACEHOLDER = "REDACTED";
     private static final String LINE_SEPARATOR;
+    private static final int BODY_NOT_LOGGED = 0;
+    private static final int BODY_LOGGED = 1;
+    private static final int BODY_TEED = 2;
+    // The increment of the SplitMix64 generator sampling the calls.
+    private static final long SAMPLE_SEED_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final ClientLogger logger = new ClientLogger(HttpLoggingPolicy.class);
 
     private final HttpLogDetailLevel httpLogDetailLevel;
+    private final boolean asyncLoggingEnabled;
     private final Set<String> allowedHeaderNames;
     private final Set<String> allowedQueryParameterNames;
+    private final double sampleRate;
+    private final Map<String, Double> hostSampleRates;
+    private final boolean alwaysLogErrors;
+    private final long slowCallThresholdNs;
+    private final AtomicLong sampleSeed = new AtomicLong(System.nanoTime());
 
     static {
         final String lineSeparator = System.getProperty("line.separator");
@@ -59,10 +89,16 @@ public class HttpLoggingPolicy implements HttpPipelinePolicy {
     public HttpLoggingPolicy(HttpLogOptions httpLogOptions) {
         if (httpLogOptions == null) {
             this.httpLogDetailLevel = HttpLogDetailLevel.NONE;
+            this.asyncLoggingEnabled = false;
             this.allowedHeaderNames = Collections.emptySet();
             this.allowedQueryParameterNames = Collections.emptySet();
+            this.sampleRate = 1.0;
+            this.hostSampleRates = Collections.emptyMap();
+            this.alwaysLogErrors = true;
+            this.slowCallThresholdNs = -1;
         } else {
             this.httpLogDetailLevel = httpLogOptions.getLogLevel();
+            this.asyncLoggingEnabled = httpLogOptions.isAsyncLoggingEnabled();
             this.allowedHeaderNames = new HashSet<>(httpLogOptions.getAllowedHeaderNames().size());
             final Iterator<String> headerItr = httpLogOptions.getAllowedHeaderNames().iterator();
             while (headerItr.hasNext()) {
@@ -74,6 +110,12 @@ public class HttpLoggingPolicy implements HttpPipelinePolicy {
                 this.allowedQueryParameterNames.add(queryItr.next().toLowerCase(Locale.ROOT));
             }
             // this.prettyPrintBody = httpLogOptions.isPrettyPrintBody();
+            this.sampleRate = httpLogOptions.getSampleRate();
+            this.hostSampleRates = new HashMap<>(httpLogOptions.getHostSampleRates());
+            this.alwaysLogErrors = httpLogOptions.isAlwaysLogErrors();
+            this.slowCallThresholdNs = httpLogOptions.getSlowCallThreshold() == null
+                ? -1
+                : httpLogOptions.getSlowCallThreshold().toNanos();
         }
     }
 
@@ -85,125 +127,126 @@ public class HttpLoggingPolicy implements HttpPipelinePolicy {
             return;
         }
 
-        // final ClientLogger logger = new ClientLogger((String) context.getData("caller-method").orElse(""));
-        final ClientLogger logger = new ClientLogger((String) "caller-method"); // TODO: bring context ^
         if (!logger.canLogAtLevel(LogLevel.INFORMATIONAL)) {
             chain.processNextPolicy(chain.getRequest());
             return;
         }
 
-        final long startNs = System.nanoTime();
         final HttpRequest httpRequest = chain.getRequest();
-        // final Integer retryCount = context.getData(RETRY_COUNT_CONTEXT);
-        // final Integer retryCount = null; // TODO: bring context ^
-
-        StringBuilder requestLogMessage = new StringBuilder();
-        if (httpLogDetailLevel.shouldLogUrl()) {
-            requestLogMessage.append("--> ")
-                .append(httpRequest.getHttpMethod())
-                .append(" ")
-                .append(this.getRedactedUrl(httpRequest.getUrl()))
-                .append(LINE_SEPARATOR);
-
-            // if (retryCount != null) {
-            //     requestLogMessage.append(retryCount).append(LINE_SEPARATOR);
-            // }
+        // Decide before formatting anything; an unsampled call is logged only if it turns out to fail or be slow.
+        final boolean sampled = this.isSampled(httpRequest.getUrl().getHost());
+        if (!sampled && !alwaysLogErrors && slowCallThresholdNs < 0) {
+            chain.processNextPolicy(httpRequest);
+            return;
         }
 
-        this.appendHeaders(logger, httpRequest.getHeaders(), requestLogMessage);
-
-        if (httpLogDetailLevel.shouldLogBody()) {
-            if (httpRequest.getBody() == null) {
-                requestLogMessage.append("(empty body)")
-                    .append(LINE_SEPARATOR)
-                    .append("--> END ")
-                    .append(httpRequest.getHttpMethod())
-                    .append(LINE_SEPARATOR);
-            } else {
-                final String requestContentType = httpRequest.getHeaders().getValue("Content-Type");
-                final long requestContentLength = this.getContentLength(logger, httpRequest.getHeaders());
-                if (this.isContentLoggable(requestContentType, requestContentLength)) {
-                    final String content = this.convertBytesToString(httpRequest.getBody(), logger);
-                    requestLogMessage.append(requestContentLength)
-                        .append("-byte body:")
-                        .append(LINE_SEPARATOR)
-                        .append(content)
-                        .append(LINE_SEPARATOR)
-                        .append("--> END ")
-                        .append(httpRequest.getHttpMethod())
-                        .append(LINE_SEPARATOR);
-                } else {
-                    requestLogMessage.append(requestContentLength)
-                        .append("-byte body: (content not logged)")
-                        .append(LINE_SEPARATOR)
-                        .append("--> END ")
-                        .append(httpRequest.getHttpMethod())
-                        .append(LINE_SEPARATOR);
-                }
-            }
+        final long startNs = System.nanoTime();
+        final boolean logHeaders = httpLogDetailLevel.shouldLogHeaders() && logger.canLogAtLevel(LogLevel.VERBOSE);
+        // A record written later must not see the changes the next policies make to the request headers. The
+        // record of an unsampled call is only written once the call completes, with the headers as they were sent.
+        final HttpHeaders requestHeaders = asyncLoggingEnabled && sampled
+            ? new HttpHeaders(httpRequest.getHeaders())
+            : httpRequest.getHeaders();
+        final RequestRecord requestRecord = new RequestRecord(httpRequest.getHttpMethod(), httpRequest.getUrl(),
+            logHeaders ? requestHeaders : null, requestHeaders.getValue("Content-Type"),
+            requestHeaders.getValue("Content-Length"), httpRequest.getBody());
+        if (sampled) {
+            this.log(requestRecord);
         }
 
-        logger.info(requestLogMessage.toString());
-
         chain.processNextPolicy(httpRequest, new NextPolicyCallback() {
             @Override
             public PolicyCompleter.CompletionState onSuccess(HttpResponse response, PolicyCompleter completer) {
-                long tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
-
-                final String contentLengthHeaderValue = response.getHeaderValue("Content-Length");
-                final String contentLengthMessage
-                    = (contentLengthHeaderValue == null || contentLengthHeaderValue.length() == 0)
-                    ? "unknown-length body"
-                    : contentLengthHeaderValue + "-byte body";
-
-                StringBuilder responseLogMessage = new StringBuilder();
-                if (httpLogDetailLevel.shouldLogUrl()) {
-                    responseLogMessage.append("<-- ")
-                        .append(response.getStatusCode())
-                        .append(" ")
-                        .append(getRedactedUrl(response.getRequest().getUrl()))
-                        .append(" (")
-                        .append(tookMs)
-                        .append(" ms, ")
-                        .append(contentLengthMessage)
-                        .append(")")
-                        .append(LINE_SEPARATOR);
+                final long tookNs = System.nanoTime() - startNs;
+                if (!sampled) {
+                    if (!(alwaysLogErrors && response.getStatusCode() >= 400) && !isSlow(tookNs)) {
+                        return completer.completed(response);
+                    }
+                    log(requestRecord);
                 }
 
-                appendHeaders(logger, response.getHeaders(), responseLogMessage);
+                final long tookMs = TimeUnit.NANOSECONDS.toMillis(tookNs);
+                final ResponseRecord responseRecord = new ResponseRecord(response, tookMs,
+                    logHeaders ? response.getHeaders() : null);
 
                 HttpResponse httpResponse = response;
                 if (httpLogDetailLevel.shouldLogBody()) {
-                    final String responseContentType = response.getHeaderValue("Content-Type");
-                    final long responseContentLength = getContentLength(logger, response.getHeaders());
-                    if (isContentLoggable(responseContentType, responseContentLength)) {
-                        httpResponse = response.buffer();
-                        final String content = convertBytesToString(httpResponse.getBodyAsByteArray(), logger);
-                        responseLogMessage.append("Response body:")
-                            .append(LINE_SEPARATOR)
-                            .append(content)
-                            .append(LINE_SEPARATOR)
-                            .append("<-- END HTTP");
+                    final long responseContentLength = getContentLength(response.getHeaders());
+                    if (isContentLoggable(response.getHeaderValue("Content-Type"), responseContentLength)) {
+                        if (asyncLoggingEnabled) {
+                            // Log the body as the caller reads it, rather than reading it all before returning.
+                            responseRecord.bodyState = BODY_TEED;
+                            httpResponse = new TeeHttpResponse(response, (int) responseContentLength);
+                        } else {
+                            httpResponse = response.buffer();
+                            responseRecord.body = httpResponse.getBodyAsByteArray();
+                            responseRecord.bodyState = BODY_LOGGED;
+                        }
                     } else {
-                        responseLogMessage.append("(body content not logged)")
-                            .append(LINE_SEPARATOR)
-                            .append("<-- END HTTP");
+                        responseRecord.bodyState = BODY_NOT_LOGGED;
                     }
-                } else {
-                    responseLogMessage.append("<-- END HTTP");
                 }
-                logger.info(responseLogMessage.toString());
+                log(responseRecord);
                 return completer.completed(httpResponse);
             }
 
             @Override
             public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
-                logger.warning("<-- HTTP FAILED: ", error);
+                if (!sampled) {
+                    if (!alwaysLogErrors && !isSlow(System.nanoTime() - startNs)) {
+                        return completer.completedError(error);
+                    }
+                    log(requestRecord);
+                }
+                log(new ErrorRecord(error));
                 return completer.completedError(error);
             }
         });
     }
 
+    /*
+     * Determines whether a call to the given host is sampled.
+     *
+     * @param host The host of the request.
+     * @return true if the call is logged regardless of its outcome.
+     */
+    private boolean isSampled(String host) {
+        double rate = sampleRate;
+        if (!hostSampleRates.isEmpty()) {
+            final Double hostRate = hostSampleRates.get(host.toLowerCase(Locale.ROOT));
+            if (hostRate != null) {
+                rate = hostRate;
+            }
+        }
+        if (rate >= 1) {
+            return true;
+        }
+        if (rate <= 0) {
+            return false;
+        }
+        // SplitMix64: a lock-free, well distributed random value in [0, 1) from a shared seed.
+        long z = sampleSeed.addAndGet(SAMPLE_SEED_GAMMA);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53 < rate;
+    }
+
+    private boolean isSlow(long tookNs) {
+        return slowCallThresholdNs >= 0 && tookNs >= slowCallThresholdNs;
+    }
+
+    /*
+     * Writes the record now, or hands it to the background writer if asynchronous logging is enabled.
+     */
+    private void log(AsyncLogWriter.Record record) {
+        if (asyncLoggingEnabled) {
+            AsyncLogWriter.getInstance().submit(record);
+        } else {
+            record.write();
+        }
+    }
+
     /*
      * Generates the redacted URL for logging.
      *
@@ -253,13 +296,12 @@ public class HttpLoggingPolicy implements HttpPipelinePolicy {
     /*
      * Adds HTTP headers into the StringBuilder that is generating the log message.
      *
-     * @param headers HTTP headers on the request or response.
-     * @param sb StringBuilder that is generating the log message.
-     * @param logLevel Log level the environment is configured to use.
+     * @param headers HTTP headers on the request or response, or null if headers are not logged.
+     * @param logMessage StringBuilder that is generating the log message.
      */
-    private void appendHeaders(ClientLogger logger, HttpHeaders headers, StringBuilder logMessage) {
+    private void appendHeaders(HttpHeaders headers, StringBuilder logMessage) {
         // Either headers shouldn't be logged or the logging level isn't set to VERBOSE, don't add headers.
-        if (!httpLogDetailLevel.shouldLogHeaders() || !logger.canLogAtLevel(LogLevel.VERBOSE)) {
+        if (headers == null) {
             return;
         }
 
@@ -278,14 +320,22 @@ public class HttpLoggingPolicy implements HttpPipelinePolicy {
     /*
      * Attempts to retrieve and parse the Content-Length header into a numeric representation.
      *
-     * @param logger Logger used to log a warning if the Content-Length header is an invalid number.
      * @param headers HTTP headers that are checked for containing Content-Length.
      * @return The retrieved content length.
      */
-    private long getContentLength(ClientLogger logger, HttpHeaders headers) {
+    private long getContentLength(HttpHeaders headers) {
+        return getContentLength(headers.getValue("Content-Length"));
+    }
+
+    /*
+     * Attempts to parse a Content-Length header value into a numeric representation.
+     *
+     * @param contentLengthString The Content-Length header value.
+     * @return The parsed content length, or 0 if the header is not set or invalid.
+     */
+    private long getContentLength(String contentLengthString) {
         long contentLength = 0;
 
-        String contentLengthString = headers.getValue("Content-Length");
         if (contentLengthString == null || contentLengthString.length() == 0) {
             return contentLength;
         }
@@ -293,8 +343,7 @@ public class HttpLoggingPolicy implements HttpPipelinePolicy {
         try {
             contentLength = Long.parseLong(contentLengthString);
         } catch (NumberFormatException | NullPointerException e) {
-            logger.warning("Could not parse the HTTP header content-length: '{}'.",
-                headers.getValue("content-length"), e);
+            logger.warning("Could not parse the HTTP header content-length: '{}'.", contentLengthString, e);
         }
 
         return contentLength;
@@ -320,15 +369,348 @@ public class HttpLoggingPolicy implements HttpPipelinePolicy {
      * Converts a byte array to a String.
      *
      * @param bytes The bytes to convert.
-     * @param logger The logger to log if conversion fails.
+     * @param length The number of bytes to convert.
      * @return The byte array as string.
      *
      */
-    private String convertBytesToString(byte[] bytes, ClientLogger logger) {
+    private String convertBytesToString(byte[] bytes, int length) {
         try {
-            return new String(bytes, "UTF-8");
+            return new String(bytes, 0, length, "UTF-8");
         } catch (UnsupportedEncodingException ex) {
             throw logger.logExceptionAsError(new RuntimeException(ex));
         }
     }
+
+    /**
+     * The log record of a request.
+     */
+    private final class RequestRecord implements AsyncLogWriter.Record {
+        private final HttpMethod httpMethod;
+        private final URL url;
+        private final HttpHeaders headers;
+        private final String contentType;
+        private final String contentLength;
+        private final byte[] body;
+
+        RequestRecord(HttpMethod httpMethod, URL url, HttpHeaders headers, String contentType, String contentLength,
+                      byte[] body) {
+            this.httpMethod = httpMethod;
+            this.url = url;
+            this.headers = headers;
+            this.contentType = contentType;
+            this.contentLength = contentLength;
+            this.body = body;
+        }
+
+        @Override
+        public void write() {
+            StringBuilder requestLogMessage = new StringBuilder();
+            if (httpLogDetailLevel.shouldLogUrl()) {
+                requestLogMessage.append("--> ")
+                    .append(httpMethod)
+                    .append(" ")
+                    .append(getRedactedUrl(url))
+                    .append(LINE_SEPARATOR);
+            }
+
+            appendHeaders(headers, requestLogMessage);
+
+            if (httpLogDetailLevel.shouldLogBody()) {
+                if (body == null) {
+                    requestLogMessage.append("(empty body)")
+                        .append(LINE_SEPARATOR)
+                        .append("--> END ")
+                        .append(httpMethod)
+                        .append(LINE_SEPARATOR);
+                } else {
+                    final long requestContentLength = getContentLength(contentLength);
+                    if (isContentLoggable(contentType, requestContentLength)) {
+                        final String content = convertBytesToString(body, body.length);
+                        requestLogMessage.append(requestContentLength)
+                            .append("-byte body:")
+                            .append(LINE_SEPARATOR)
+                            .append(content)
+                            .append(LINE_SEPARATOR)
+                            .append("--> END ")
+                            .append(httpMethod)
+                            .append(LINE_SEPARATOR);
+                    } else {
+                        requestLogMessage.append(requestContentLength)
+                            .append("-byte body: (content not logged)")
+                            .append(LINE_SEPARATOR)
+                            .append("--> END ")
+                            .append(httpMethod)
+                            .append(LINE_SEPARATOR);
+                    }
+                }
+            }
+
+            logger.info(requestLogMessage.toString());
+        }
+    }
+
+    /**
+     * The log record of a response, and of its body unless the body is teed.
+     */
+    private final class ResponseRecord implements AsyncLogWriter.Record {
+        private final int statusCode;
+        private final URL url;
+        private final long tookMs;
+        private final String contentLength;
+        private final HttpHeaders headers;
+        private int bodyState = -1;
+        private byte[] body;
+
+        ResponseRecord(HttpResponse response, long tookMs, HttpHeaders headers) {
+            this.statusCode = response.getStatusCode();
+            this.url = response.getRequest().getUrl();
+            this.tookMs = tookMs;
+            this.contentLength = response.getHeaderValue("Content-Length");
+            this.headers = headers;
+        }
+
+        @Override
+        public void write() {
+            final String contentLengthMessage = (contentLength == null || contentLength.length() == 0)
+                ? "unknown-length body"
+                : contentLength + "-byte body";
+
+            StringBuilder responseLogMessage = new StringBuilder();
+            if (httpLogDetailLevel.shouldLogUrl()) {
+                responseLogMessage.append("<-- ")
+                    .append(statusCode)
+                    .append(" ")
+                    .append(getRedactedUrl(url))
+                    .append(" (")
+                    .append(tookMs)
+                    .append(" ms, ")
+                    .append(contentLengthMessage)
+                    .append(")")
+                    .append(LINE_SEPARATOR);
+            }
+
+            appendHeaders(headers, responseLogMessage);
+
+            if (bodyState == BODY_LOGGED) {
+                responseLogMessage.append("Response body:")
+                    .append(LINE_SEPARATOR)
+                    .append(convertBytesToString(body, body.length))
+                    .append(LINE_SEPARATOR)
+                    .append("<-- END HTTP");
+            } else if (bodyState == BODY_TEED) {
+                responseLogMessage.append("(body content logged as it is read)")
+                    .append(LINE_SEPARATOR)
+                    .append("<-- END HTTP");
+            } else if (bodyState == BODY_NOT_LOGGED) {
+                responseLogMessage.append("(body content not logged)")
+                    .append(LINE_SEPARATOR)
+                    .append("<-- END HTTP");
+            } else {
+                responseLogMessage.append("<-- END HTTP");
+            }
+            logger.info(responseLogMessage.toString());
+        }
+    }
+
+    /**
+     * The log record of a response body teed as the caller read it.
+     */
+    private final class ResponseBodyRecord implements AsyncLogWriter.Record {
+        private final int statusCode;
+        private final URL url;
+        private final byte[] body;
+        private final int length;
+
+        ResponseBodyRecord(int statusCode, URL url, byte[] body, int length) {
+            this.statusCode = statusCode;
+            this.url = url;
+            this.body = body;
+            this.length = length;
+        }
+
+        @Override
+        public void write() {
+            logger.info(new StringBuilder()
+                .append("<-- ")
+                .append(statusCode)
+                .append(" ")
+                .append(getRedactedUrl(url))
+                .append(" response body:")
+                .append(LINE_SEPARATOR)
+                .append(convertBytesToString(body, length))
+                .append(LINE_SEPARATOR)
+                .append("<-- END HTTP")
+                .toString());
+        }
+    }
+
+    /**
+     * The log record of a failed call.
+     */
+    private final class ErrorRecord implements AsyncLogWriter.Record {
+        private final Throwable error;
+
+        ErrorRecord(Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void write() {
+            logger.warning("<-- HTTP FAILED: ", error);
+        }
+    }
+
+    /**
+     * A response whose body bytes are copied to a log record, up to the announced content length, as the caller
+     * reads them. The record is submitted once the body is read to the end or the response is closed.
+     */
+    private final class TeeHttpResponse extends HttpResponse {
+        private final HttpResponse innerHttpResponse;
+        private final byte[] teedBody;
+        private final AtomicBoolean isLogged = new AtomicBoolean();
+        private int teedLength;
+        private InputStream body;
+
+        TeeHttpResponse(HttpResponse innerHttpResponse, int contentLength) {
+            super(innerHttpResponse.getRequest());
+            this.innerHttpResponse = innerHttpResponse;
+            this.teedBody = new byte[contentLength];
+        }
+
+        @Override
+        public int getStatusCode() {
+            return innerHttpResponse.getStatusCode();
+        }
+
+        @Override
+        public String getHeaderValue(String name) {
+            return innerHttpResponse.getHeaderValue(name);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return innerHttpResponse.getHeaders();
+        }
+
+        @Override
+        public synchronized InputStream getBody() {
+            if (body == null) {
+                final InputStream innerBody = innerHttpResponse.getBody();
+                if (innerBody == null) {
+                    logBody();
+                    return null;
+                }
+                body = new TeeInputStream(innerBody);
+            }
+            return body;
+        }
+
+        @Override
+        public byte[] getBodyAsByteArray() {
+            final byte[] bytes = innerHttpResponse.getBodyAsByteArray();
+            if (bytes != null) {
+                synchronized (this) {
+                    tee(bytes, 0, bytes.length);
+                }
+            }
+            logBody();
+            return bytes;
+        }
+
+        @Override
+        public String getBodyAsString() {
+            final byte[] bytes = getBodyAsByteArray();
+            return bytes == null
+                ? null
+                : new ByteArrayHttpResponse(getRequest(), getStatusCode(), getHeaders(), bytes).getBodyAsString();
+        }
+
+        @Override
+        public String getBodyAsString(Charset charset) {
+            final byte[] bytes = getBodyAsByteArray();
+            return bytes == null ? null : new String(bytes, charset);
+        }
+
+        @Override
+        public void close() {
+            logBody();
+            innerHttpResponse.close();
+        }
+
+        // Called while holding the lock on 'this'.
+        private void tee(byte[] bytes, int offset, int length) {
+            final int count = Math.min(length, teedBody.length - teedLength);
+            if (count > 0) {
+                System.arraycopy(bytes, offset, teedBody, teedLength, count);
+                teedLength += count;
+            }
+        }
+
+        private void logBody() {
+            if (isLogged.compareAndSet(false, true)) {
+                final int length;
+                synchronized (this) {
+                    length = teedLength;
+                }
+                // The teed bytes are no longer written once the record is submitted.
+                log(new ResponseBodyRecord(getStatusCode(), getRequest().getUrl(), teedBody, length));
+            }
+        }
+
+        /**
+         * Copies the bytes read by the caller to the response's teed body.
+         */
+        private final class TeeInputStream extends FilterInputStream {
+            TeeInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                final int value = super.read();
+                if (value == -1) {
+                    logBody();
+                } else if (!isLogged.get()) {
+                    synchronized (TeeHttpResponse.this) {
+                        if (teedLength < teedBody.length) {
+                            teedBody[teedLength++] = (byte) value;
+                        }
+                    }
+                }
+                return value;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                final int count = super.read(bytes, offset, length);
+                if (count == -1) {
+                    logBody();
+                } else if (count > 0 && !isLogged.get()) {
+                    synchronized (TeeHttpResponse.this) {
+                        tee(bytes, offset, count);
+                    }
+                }
+                return count;
+            }
+
+            @Override
+            public long skip(long count) throws IOException {
+                // The skipped bytes are not logged, read them instead so the teed body stays contiguous.
+                final byte[] buffer = new byte[(int) Math.min(count, 4096)];
+                final int read = read(buffer, 0, buffer.length);
+                return Math.max(read, 0);
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+
+            @Override
+            public void close() throws IOException {
+                logBody();
+                super.close();
+            }
+        }
+    }
 }
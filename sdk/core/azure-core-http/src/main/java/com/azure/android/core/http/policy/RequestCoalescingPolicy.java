@@ -0,0 +1,314 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.HttpHeaders;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipelinePolicy;
+import com.azure.android.core.http.HttpPipelinePolicyChain;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.NextPolicyCallback;
+import com.azure.android.core.http.PolicyCompleter;
+import com.azure.android.core.http.implementation.ByteArrayHttpResponse;
+import com.azure.android.core.http.implementation.Util;
+import com.azure.android.core.util.CancellationToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The pipeline policy that coalesces identical concurrent GET and HEAD requests into a single network call.
+ *
+ * <p>
+ * Requests are identical when they have the same method, URL and values of the key headers; by default the
+ * {@code Authorization} and {@code Accept} headers, so requests made on behalf of different identities are never
+ * coalesced. A request identical to one in flight waits for the response of that call instead of making its own.
+ * When more than one request waits for the response, its body is buffered and each request receives its own
+ * replayable copy of the response.
+ * </p>
+ *
+ * <p>
+ * The shared call proceeds through the rest of the pipeline of the request that made it, under a cancellation token
+ * of its own. Cancelling a request completes it with an error and leaves the call to the other requests; the call
+ * itself is cancelled once no request waits for it anymore. Since the call runs in the pipeline of the request that
+ * made it, that request completes when the call ends if it was cancelled meanwhile.
+ * </p>
+ */
+public class RequestCoalescingPolicy implements HttpPipelinePolicy {
+    private static final String[] DEFAULT_KEY_HEADER_NAMES = { "Authorization", "Accept" };
+
+    private final String[] keyHeaderNames;
+    private final ConcurrentMap<String, SharedCall> inFlightCalls = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedRequestCount = new AtomicLong();
+
+    /**
+     * Creates {@link RequestCoalescingPolicy} that uses the {@code Authorization} and {@code Accept} headers as key
+     * headers.
+     */
+    public RequestCoalescingPolicy() {
+        this(DEFAULT_KEY_HEADER_NAMES);
+    }
+
+    /**
+     * Creates {@link RequestCoalescingPolicy}.
+     *
+     * @param keyHeaderNames The names of the headers whose values must match for requests to be coalesced.
+     * Any header whose value changes the response should be included.
+     * @throws NullPointerException If {@code keyHeaderNames} is {@code null}.
+     */
+    public RequestCoalescingPolicy(String... keyHeaderNames) {
+        Util.requireNonNull(keyHeaderNames, "'keyHeaderNames' cannot be null.");
+        this.keyHeaderNames = keyHeaderNames.clone();
+    }
+
+    /**
+     * Gets the number of requests that were completed with the response of a call made for another request.
+     *
+     * @return The number of coalesced requests.
+     */
+    public long getCoalescedRequestCount() {
+        return this.coalescedRequestCount.get();
+    }
+
+    @Override
+    public void process(HttpPipelinePolicyChain chain) {
+        final HttpRequest request = chain.getRequest();
+        final HttpMethod method = request.getHttpMethod();
+        if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+            chain.processNextPolicy(request);
+            return;
+        }
+        if (chain.getCancellationToken().isCancellationRequested()) {
+            chain.completedError(new IOException("Canceled."));
+            return;
+        }
+
+        final String key = this.getKey(request);
+        final Waiter waiter = new Waiter(chain);
+        while (true) {
+            final SharedCall inFlightCall = this.inFlightCalls.get(key);
+            if (inFlightCall != null) {
+                if (inFlightCall.tryJoin(waiter)) {
+                    this.coalescedRequestCount.incrementAndGet();
+                    return;
+                }
+                // The call is completing, it is removed from the map shortly.
+                this.inFlightCalls.remove(key, inFlightCall);
+                continue;
+            }
+            final SharedCall sharedCall = new SharedCall(key, waiter);
+            if (this.inFlightCalls.putIfAbsent(key, sharedCall) == null) {
+                sharedCall.start();
+                return;
+            }
+        }
+    }
+
+    private String getKey(HttpRequest request) {
+        final StringBuilder key = new StringBuilder()
+            .append(request.getHttpMethod())
+            .append(' ')
+            .append(request.getUrl());
+        final HttpHeaders headers = request.getHeaders();
+        for (String name : this.keyHeaderNames) {
+            final String value = headers.getValue(name);
+            key.append('\n').append(name).append(':');
+            if (value != null) {
+                key.append(value);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * A network call shared by the identical requests waiting for its response.
+     */
+    private final class SharedCall {
+        private final String key;
+        private final Waiter sender;
+        private final CancellationToken cancellationToken = new CancellationToken();
+        // Guarded by 'this'; a completed call accepts no more waiters.
+        private final List<Waiter> waiters = new ArrayList<>(2);
+        private boolean isCompleted;
+
+        SharedCall(String key, Waiter waiter) {
+            this.key = key;
+            this.sender = waiter;
+            this.waiters.add(waiter);
+        }
+
+        void start() {
+            this.sender.registerOnCancel(this);
+            synchronized (this) {
+                if (this.isCompleted) {
+                    // Cancelled on registration.
+                    this.sender.chain.completedError(new IOException("Canceled."));
+                    return;
+                }
+            }
+            this.sender.chain.processNextPolicy(this.sender.chain.getRequest(), this.cancellationToken,
+                new NextPolicyCallback() {
+                    @Override
+                    public PolicyCompleter.CompletionState onSuccess(HttpResponse response,
+                                                                     PolicyCompleter completer) {
+                        return SharedCall.this.onSuccess(response, completer);
+                    }
+
+                    @Override
+                    public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
+                        return SharedCall.this.onError(error, completer);
+                    }
+                });
+        }
+
+        boolean tryJoin(Waiter waiter) {
+            synchronized (this) {
+                if (this.isCompleted) {
+                    return false;
+                }
+                this.waiters.add(waiter);
+            }
+            waiter.registerOnCancel(this);
+            return true;
+        }
+
+        void onWaiterCancelled(Waiter waiter) {
+            final boolean isLastWaiter;
+            synchronized (this) {
+                if (this.isCompleted || !this.waiters.remove(waiter)) {
+                    return;
+                }
+                isLastWaiter = this.waiters.isEmpty();
+                if (isLastWaiter) {
+                    this.isCompleted = true;
+                }
+            }
+            if (isLastWaiter) {
+                inFlightCalls.remove(this.key, this);
+                this.cancellationToken.cancel();
+            }
+            // The call runs in the pipeline of the request that made it, that request completes once the call ends.
+            if (waiter != this.sender) {
+                waiter.chain.completedError(new IOException("Canceled."));
+            }
+        }
+
+        private PolicyCompleter.CompletionState onSuccess(HttpResponse response, PolicyCompleter completer) {
+            final List<Waiter> completedWaiters = this.complete();
+            if (completedWaiters == null) {
+                // All the waiters cancelled.
+                response.close();
+                return completer.completedError(new IOException("Canceled."));
+            }
+            if (completedWaiters.size() == 1) {
+                // No other request waits for the call, hand over the response without buffering it.
+                final Waiter waiter = completedWaiters.get(0);
+                if (waiter == this.sender) {
+                    return completer.completed(response);
+                }
+                waiter.chain.completed(response);
+                return completer.completedError(new IOException("Canceled."));
+            }
+
+            byte[] body;
+            try {
+                body = response.getBodyAsByteArray();
+                if (body == null) {
+                    body = new byte[0];
+                }
+            } catch (RuntimeException e) {
+                return completeError(this.sender, completedWaiters, e, completer);
+            } finally {
+                response.close();
+            }
+            PolicyCompleter.CompletionState completionState = null;
+            for (Waiter waiter : completedWaiters) {
+                final HttpResponse copy = new ByteArrayHttpResponse(waiter.chain.getRequest(),
+                    response.getStatusCode(), new HttpHeaders(response.getHeaders()), body);
+                if (waiter == this.sender) {
+                    completionState = completer.completed(copy);
+                } else {
+                    waiter.chain.completed(copy);
+                }
+            }
+            return completionState != null ? completionState : completer.completedError(new IOException("Canceled."));
+        }
+
+        private PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
+            final List<Waiter> completedWaiters = this.complete();
+            return completedWaiters == null
+                ? completer.completedError(new IOException("Canceled."))
+                : completeError(this.sender, completedWaiters, error, completer);
+        }
+
+        private List<Waiter> complete() {
+            final List<Waiter> completedWaiters;
+            synchronized (this) {
+                if (this.isCompleted) {
+                    return null;
+                }
+                this.isCompleted = true;
+                completedWaiters = new ArrayList<>(this.waiters);
+                this.waiters.clear();
+            }
+            inFlightCalls.remove(this.key, this);
+            for (Waiter waiter : completedWaiters) {
+                waiter.unregisterOnCancel();
+            }
+            return completedWaiters;
+        }
+    }
+
+    private static PolicyCompleter.CompletionState completeError(Waiter sender,
+                                                                 List<Waiter> waiters,
+                                                                 Throwable error,
+                                                                 PolicyCompleter completer) {
+        PolicyCompleter.CompletionState completionState = null;
+        for (Waiter waiter : waiters) {
+            if (waiter == sender) {
+                completionState = completer.completedError(error);
+            } else {
+                waiter.chain.completedError(error);
+            }
+        }
+        // The sender is not among the waiters if it was cancelled.
+        return completionState != null ? completionState : completer.completedError(new IOException("Canceled."));
+    }
+
+    /**
+     * A request waiting for the response of a shared call.
+     */
+    private static final class Waiter {
+        // Source of the ids that waiters register their on-cancel callbacks with.
+        private static final AtomicLong ON_CANCEL_ID_SEQUENCE = new AtomicLong();
+
+        private final HttpPipelinePolicyChain chain;
+        private final String onCancelId;
+
+        Waiter(HttpPipelinePolicyChain chain) {
+            this.chain = chain;
+            this.onCancelId = chain.getCancellationToken() == CancellationToken.NONE
+                ? null
+                : "coalesced-" + ON_CANCEL_ID_SEQUENCE.incrementAndGet();
+        }
+
+        void registerOnCancel(final SharedCall sharedCall) {
+            if (this.onCancelId != null) {
+                this.chain.getCancellationToken().registerOnCancel(this.onCancelId,
+                    () -> sharedCall.onWaiterCancelled(Waiter.this));
+            }
+        }
+
+        void unregisterOnCancel() {
+            if (this.onCancelId != null) {
+                this.chain.getCancellationToken().unregisterOnCancel(this.onCancelId);
+            }
+        }
+    }
+}
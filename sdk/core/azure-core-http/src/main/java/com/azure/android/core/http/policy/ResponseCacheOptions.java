@@ -0,0 +1,180 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.implementation.Util;
+import com.azure.android.core.logging.ClientLogger;
+
+import org.threeten.bp.Clock;
+
+import java.io.File;
+
+/**
+ * The configurations for {@link ResponseCachePolicy}.
+ */
+public class ResponseCacheOptions {
+    private static final long DEFAULT_MAX_MEMORY_SIZE = 4 * 1024 * 1024;
+    private static final long DEFAULT_MAX_DISK_SIZE = 20 * 1024 * 1024;
+    private static final long DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+
+    private final ClientLogger logger = new ClientLogger(ResponseCacheOptions.class);
+
+    private long maxMemorySize = DEFAULT_MAX_MEMORY_SIZE;
+    private File diskDirectory;
+    private long maxDiskSize = DEFAULT_MAX_DISK_SIZE;
+    private long maxEntrySize = DEFAULT_MAX_ENTRY_SIZE;
+    private Clock clock = Clock.systemUTC();
+    private boolean heuristicFreshnessEnabled;
+
+    /**
+     * Creates a new instance with the default configurations.
+     *
+     * <p>
+     * By default, responses of up to 1 MiB are cached in memory only, up to 4 MiB in total.
+     * </p>
+     */
+    public ResponseCacheOptions() {
+    }
+
+    /**
+     * Gets the maximum size in bytes of the responses kept in memory.
+     *
+     * @return The maximum memory size.
+     */
+    public long getMaxMemorySize() {
+        return this.maxMemorySize;
+    }
+
+    /**
+     * Sets the maximum size in bytes of the responses kept in memory. The least recently used responses are
+     * evicted first.
+     *
+     * @param maxMemorySize The maximum memory size.
+     * @return The updated ResponseCacheOptions object.
+     * @throws IllegalArgumentException If {@code maxMemorySize} is negative.
+     */
+    public ResponseCacheOptions setMaxMemorySize(long maxMemorySize) {
+        if (maxMemorySize < 0) {
+            throw logger.logExceptionAsError(new IllegalArgumentException("'maxMemorySize' cannot be negative."));
+        }
+        this.maxMemorySize = maxMemorySize;
+        return this;
+    }
+
+    /**
+     * Gets the directory the responses are persisted in.
+     *
+     * @return The disk directory, or null if the responses are cached in memory only.
+     */
+    public File getDiskDirectory() {
+        return this.diskDirectory;
+    }
+
+    /**
+     * Sets the directory the responses are persisted in, so they survive the application restarts. The directory
+     * should be dedicated to the cache, for example a sub-directory of the application's cache directory.
+     *
+     * @param diskDirectory The disk directory, or null to cache the responses in memory only.
+     * @return The updated ResponseCacheOptions object.
+     */
+    public ResponseCacheOptions setDiskDirectory(File diskDirectory) {
+        this.diskDirectory = diskDirectory;
+        return this;
+    }
+
+    /**
+     * Gets the maximum size in bytes of the responses persisted in the disk directory.
+     *
+     * @return The maximum disk size.
+     */
+    public long getMaxDiskSize() {
+        return this.maxDiskSize;
+    }
+
+    /**
+     * Sets the maximum size in bytes of the responses persisted in the disk directory. The least recently used
+     * responses are evicted first.
+     *
+     * @param maxDiskSize The maximum disk size.
+     * @return The updated ResponseCacheOptions object.
+     * @throws IllegalArgumentException If {@code maxDiskSize} is negative.
+     */
+    public ResponseCacheOptions setMaxDiskSize(long maxDiskSize) {
+        if (maxDiskSize < 0) {
+            throw logger.logExceptionAsError(new IllegalArgumentException("'maxDiskSize' cannot be negative."));
+        }
+        this.maxDiskSize = maxDiskSize;
+        return this;
+    }
+
+    /**
+     * Gets the maximum size in bytes of a response body to cache.
+     *
+     * @return The maximum entry size.
+     */
+    public long getMaxEntrySize() {
+        return this.maxEntrySize;
+    }
+
+    /**
+     * Sets the maximum size in bytes of a response body to cache. Larger responses are not buffered nor cached.
+     *
+     * @param maxEntrySize The maximum entry size.
+     * @return The updated ResponseCacheOptions object.
+     * @throws IllegalArgumentException If {@code maxEntrySize} is negative.
+     */
+    public ResponseCacheOptions setMaxEntrySize(long maxEntrySize) {
+        if (maxEntrySize < 0) {
+            throw logger.logExceptionAsError(new IllegalArgumentException("'maxEntrySize' cannot be negative."));
+        }
+        this.maxEntrySize = maxEntrySize;
+        return this;
+    }
+
+    /**
+     * Gets the clock the age and freshness of the responses are computed with.
+     *
+     * @return The clock.
+     */
+    public Clock getClock() {
+        return this.clock;
+    }
+
+    /**
+     * Sets the clock the age and freshness of the responses are computed with. This is mainly useful in tests,
+     * to expire the responses deterministically.
+     *
+     * @param clock The clock.
+     * @return The updated ResponseCacheOptions object.
+     * @throws NullPointerException If {@code clock} is {@code null}.
+     */
+    public ResponseCacheOptions setClock(Clock clock) {
+        this.clock = Util.requireNonNull(clock, "'clock' cannot be null.");
+        return this;
+    }
+
+    /**
+     * Gets whether the responses without an explicit freshness lifetime are considered fresh for a heuristic
+     * lifetime derived from their {@code Last-Modified} header.
+     *
+     * @return true if the heuristic freshness is enabled.
+     */
+    public boolean isHeuristicFreshnessEnabled() {
+        return this.heuristicFreshnessEnabled;
+    }
+
+    /**
+     * Sets whether the responses without an explicit freshness lifetime ({@code max-age} or {@code Expires}) are
+     * considered fresh for 10% of the time elapsed since their {@code Last-Modified} date, as RFC 7234 allows for
+     * the status codes cacheable by default. This is disabled by default: such responses are revalidated with
+     * {@code If-Modified-Since} on each request, so a changed resource is never served from the cache.
+     *
+     * @param heuristicFreshnessEnabled true to enable the heuristic freshness.
+     * @return The updated ResponseCacheOptions object.
+     */
+    public ResponseCacheOptions setHeuristicFreshnessEnabled(boolean heuristicFreshnessEnabled) {
+        this.heuristicFreshnessEnabled = heuristicFreshnessEnabled;
+        return this;
+    }
+}
@@ -0,0 +1,452 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.HttpHeader;
+import com.azure.android.core.http.HttpHeaders;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipelinePolicy;
+import com.azure.android.core.http.HttpPipelinePolicyChain;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.NextPolicyCallback;
+import com.azure.android.core.http.PolicyCompleter;
+import com.azure.android.core.http.implementation.ByteArrayHttpResponse;
+import com.azure.android.core.http.implementation.CacheControl;
+import com.azure.android.core.http.implementation.ResponseCacheStore;
+import com.azure.android.core.http.implementation.Util;
+
+import org.threeten.bp.Clock;
+import org.threeten.bp.OffsetDateTime;
+import org.threeten.bp.format.DateTimeFormatter;
+import org.threeten.bp.format.DateTimeParseException;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The pipeline policy that caches GET responses following the HTTP caching rules of a private cache.
+ *
+ * <p>
+ * Successful responses are cached when their {@code Cache-Control} doesn't forbid it and they carry either an
+ * explicit freshness lifetime ({@code max-age} or {@code Expires}) or a validator ({@code ETag} or
+ * {@code Last-Modified}). A request for a fresh cached response completes from the cache without a network call.
+ * A response without an explicit freshness lifetime is stale right away, unless the heuristic freshness is enabled
+ * through {@link ResponseCacheOptions#setHeuristicFreshnessEnabled(boolean)}.
+ * A request for a stale cached response that has a validator is sent as a conditional request with
+ * {@code If-None-Match} or {@code If-Modified-Since}; a 304 response refreshes the cached response, and the request
+ * completes with it. Successful POST, PUT, PATCH and DELETE requests evict the cached response of their URL.
+ * </p>
+ *
+ * <p>
+ * Responses are cached per URL, the request headers named by their {@code Vary} header and the
+ * {@code Authorization} header of the request, in a memory tier and, if configured, a disk tier; see
+ * {@link ResponseCacheOptions}. A response is then only served to requests made with the credentials it was
+ * received for. The cache stores a hash of the {@code Authorization} value rather than the value itself, and doesn't
+ * store {@code Set-Cookie} headers. The policy should be added before the {@link RetryPolicy}, so requests completed
+ * from the cache are not retried.
+ * </p>
+ */
+public class ResponseCachePolicy implements HttpPipelinePolicy {
+    private static final String CACHE_CONTROL = "Cache-Control";
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+    // Lower case, like the names of the vary headers.
+    private static final String AUTHORIZATION = "authorization";
+    private static final String SET_COOKIE = "Set-Cookie";
+    // Headers of a 304 response that describe its (empty) body, not the cached response.
+    private static final String[] BODY_HEADERS = { "Content-Length", "Content-Encoding", "Transfer-Encoding" };
+
+    private final ResponseCacheStore store;
+    private final Clock clock;
+    private final long maxEntrySize;
+    private final boolean heuristicFreshnessEnabled;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong conditionalHitCount = new AtomicLong();
+    private final AtomicLong networkCount = new AtomicLong();
+
+    /**
+     * Creates {@link ResponseCachePolicy} that caches the responses in memory, with the default
+     * {@link ResponseCacheOptions}.
+     */
+    public ResponseCachePolicy() {
+        this(new ResponseCacheOptions());
+    }
+
+    /**
+     * Creates {@link ResponseCachePolicy}.
+     *
+     * @param options The cache configurations, later changes to {@code options} don't affect the policy.
+     * @throws NullPointerException If {@code options} is {@code null}.
+     */
+    public ResponseCachePolicy(ResponseCacheOptions options) {
+        Util.requireNonNull(options, "'options' cannot be null.");
+        this.store = new ResponseCacheStore(options.getMaxMemorySize(), options.getDiskDirectory(),
+            options.getMaxDiskSize());
+        this.clock = options.getClock();
+        this.maxEntrySize = options.getMaxEntrySize();
+        this.heuristicFreshnessEnabled = options.isHeuristicFreshnessEnabled();
+    }
+
+    /**
+     * Gets the number of requests completed from the cache without a network call.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * Gets the number of requests completed from the cache after the service confirmed with a 304 response
+     * that the cached response is still valid.
+     *
+     * @return The number of conditional cache hits.
+     */
+    public long getConditionalHitCount() {
+        return this.conditionalHitCount.get();
+    }
+
+    /**
+     * Gets the number of GET requests that were sent to the service, including the conditional ones.
+     *
+     * @return The number of network requests.
+     */
+    public long getNetworkCount() {
+        return this.networkCount.get();
+    }
+
+    @Override
+    public void process(HttpPipelinePolicyChain chain) {
+        final HttpRequest request = chain.getRequest();
+        final HttpMethod method = request.getHttpMethod();
+        if (method == HttpMethod.POST || method == HttpMethod.PUT
+            || method == HttpMethod.PATCH || method == HttpMethod.DELETE) {
+            this.processUnsafeRequest(chain);
+            return;
+        }
+        final HttpHeaders requestHeaders = request.getHeaders();
+        final CacheControl requestCacheControl = CacheControl.parse(requestHeaders.getValue(CACHE_CONTROL));
+        if (method != HttpMethod.GET
+            || requestCacheControl.isNoStore()
+            || requestHeaders.getValue("If-None-Match") != null
+            || requestHeaders.getValue("If-Modified-Since") != null
+            || requestHeaders.getValue("Range") != null) {
+            // Requests the caller made conditional or partial are not served from the cache.
+            chain.processNextPolicy(request);
+            return;
+        }
+
+        final String key = request.getUrl().toString();
+        ResponseCacheStore.Entry entry = this.store.get(key);
+        if (entry != null && !varyHeadersMatch(entry, requestHeaders)) {
+            entry = null;
+        }
+        final long nowMillis = this.clock.millis();
+        final boolean noCacheRequested = requestCacheControl.isNoCache()
+            || "no-cache".equalsIgnoreCase(requestHeaders.getValue("Pragma"));
+        if (entry != null && !noCacheRequested && isFresh(entry, requestCacheControl, nowMillis)) {
+            this.hitCount.incrementAndGet();
+            chain.completed(toResponse(request, entry));
+            return;
+        }
+
+        HttpRequest networkRequest = request;
+        ResponseCacheStore.Entry revalidatedEntry = null;
+        if (entry != null) {
+            final String etag = entry.getHeaders().getValue(ETAG);
+            final String lastModified = entry.getHeaders().getValue(LAST_MODIFIED);
+            if (etag != null || lastModified != null) {
+                // Leave the caller's request untouched, it may be sent again without the conditions.
+                networkRequest = request.copy();
+                if (etag != null) {
+                    networkRequest.setHeader("If-None-Match", etag);
+                }
+                if (lastModified != null) {
+                    networkRequest.setHeader("If-Modified-Since", lastModified);
+                }
+                revalidatedEntry = entry;
+            }
+        }
+        this.networkCount.incrementAndGet();
+        chain.processNextPolicy(networkRequest, new CachingCallback(request, key, revalidatedEntry, nowMillis));
+    }
+
+    private void processUnsafeRequest(HttpPipelinePolicyChain chain) {
+        final String key = chain.getRequest().getUrl().toString();
+        chain.processNextPolicy(chain.getRequest(), new NextPolicyCallback() {
+            @Override
+            public PolicyCompleter.CompletionState onSuccess(HttpResponse response, PolicyCompleter completer) {
+                if (response.getStatusCode() < 400) {
+                    // The resource changed, its cached response is no longer valid.
+                    store.remove(key);
+                }
+                return completer.completed(response);
+            }
+
+            @Override
+            public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
+                return completer.completedError(error);
+            }
+        });
+    }
+
+    /**
+     * Caches the response of a request that could not be completed from the cache.
+     */
+    private final class CachingCallback implements NextPolicyCallback {
+        private final HttpRequest request;
+        private final String key;
+        private final ResponseCacheStore.Entry revalidatedEntry;
+        private final long requestTimeMillis;
+
+        CachingCallback(HttpRequest request, String key, ResponseCacheStore.Entry revalidatedEntry,
+                        long requestTimeMillis) {
+            this.request = request;
+            this.key = key;
+            this.revalidatedEntry = revalidatedEntry;
+            this.requestTimeMillis = requestTimeMillis;
+        }
+
+        @Override
+        public PolicyCompleter.CompletionState onSuccess(HttpResponse response, PolicyCompleter completer) {
+            final long responseTimeMillis = clock.millis();
+            if (response.getStatusCode() == 304 && this.revalidatedEntry != null) {
+                final HttpHeaders headers = new HttpHeaders(this.revalidatedEntry.getHeaders());
+                for (HttpHeader header : response.getHeaders()) {
+                    if (!isBodyHeader(header.getName()) && !SET_COOKIE.equalsIgnoreCase(header.getName())) {
+                        headers.put(header.getName(), header.getValue());
+                    }
+                }
+                final String setCookie = response.getHeaderValue(SET_COOKIE);
+                response.close();
+                final ResponseCacheStore.Entry refreshedEntry = new ResponseCacheStore.Entry(
+                    this.revalidatedEntry.getStatusCode(), headers, this.revalidatedEntry.getBody(),
+                    this.revalidatedEntry.getVaryHeaders(), this.requestTimeMillis, responseTimeMillis);
+                store.put(this.key, refreshedEntry);
+                conditionalHitCount.incrementAndGet();
+                final HttpResponse refreshedResponse = toResponse(this.request, refreshedEntry);
+                if (setCookie != null) {
+                    refreshedResponse.getHeaders().put(SET_COOKIE, setCookie);
+                }
+                return completer.completed(refreshedResponse);
+            }
+            if (!isCacheable(response)) {
+                if (response.getStatusCode() < 500) {
+                    // Don't keep serving a response the service no longer returns.
+                    store.remove(this.key);
+                }
+                return completer.completed(response);
+            }
+            final String contentLength = response.getHeaderValue("Content-Length");
+            if (contentLength != null && parseLong(contentLength) > maxEntrySize) {
+                return completer.completed(response);
+            }
+
+            byte[] body;
+            try {
+                body = response.getBodyAsByteArray();
+            } catch (RuntimeException e) {
+                response.close();
+                return completer.completedError(e);
+            }
+            if (body == null) {
+                body = new byte[0];
+            }
+            response.close();
+            if (body.length <= maxEntrySize) {
+                // The cookies are for the caller to handle, not to be replayed from the cache.
+                final HttpHeaders headers = new HttpHeaders(response.getHeaders());
+                headers.remove(SET_COOKIE);
+                store.put(this.key, new ResponseCacheStore.Entry(response.getStatusCode(), headers, body,
+                    getVaryHeaders(response, this.request), this.requestTimeMillis, responseTimeMillis));
+            }
+            return completer.completed(new ByteArrayHttpResponse(this.request, response.getStatusCode(),
+                new HttpHeaders(response.getHeaders()), body));
+        }
+
+        @Override
+        public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
+            return completer.completedError(error);
+        }
+    }
+
+    private static boolean isCacheable(HttpResponse response) {
+        if (response.getStatusCode() != 200) {
+            return false;
+        }
+        final CacheControl cacheControl = CacheControl.parse(response.getHeaderValue(CACHE_CONTROL));
+        if (cacheControl.isNoStore() || "*".equals(trim(response.getHeaderValue("Vary")))) {
+            return false;
+        }
+        // Without a freshness lifetime nor a validator, the response could never be reused.
+        return cacheControl.getMaxAgeSeconds() >= 0
+            || response.getHeaderValue("Expires") != null
+            || response.getHeaderValue(ETAG) != null
+            || response.getHeaderValue(LAST_MODIFIED) != null;
+    }
+
+    private boolean isFresh(ResponseCacheStore.Entry entry, CacheControl requestCacheControl, long nowMillis) {
+        final HttpHeaders headers = entry.getHeaders();
+        final CacheControl responseCacheControl = CacheControl.parse(headers.getValue(CACHE_CONTROL));
+        if (responseCacheControl.isNoCache()) {
+            return false;
+        }
+
+        // The age and freshness lifetime as defined in RFC 7234, section 4.2.
+        final long dateMillis = parseDateMillis(headers.getValue("Date"));
+        final long apparentAgeMillis = dateMillis < 0
+            ? 0
+            : Math.max(0, entry.getResponseTimeMillis() - dateMillis);
+        final long ageValueMillis = TimeUnit.SECONDS.toMillis(Math.max(0, parseLong(headers.getValue("Age"))));
+        final long responseDelayMillis = entry.getResponseTimeMillis() - entry.getRequestTimeMillis();
+        final long correctedInitialAgeMillis = Math.max(apparentAgeMillis, ageValueMillis + responseDelayMillis);
+        final long residentMillis = Math.max(0, nowMillis - entry.getResponseTimeMillis());
+        final long currentAgeMillis = correctedInitialAgeMillis + residentMillis;
+
+        long freshnessLifetimeMillis = getFreshnessLifetimeMillis(entry, responseCacheControl, dateMillis);
+        if (requestCacheControl.getMaxAgeSeconds() >= 0) {
+            freshnessLifetimeMillis = Math.min(freshnessLifetimeMillis,
+                toMillis(requestCacheControl.getMaxAgeSeconds()));
+        }
+        final long minFreshMillis = requestCacheControl.getMinFreshSeconds() < 0
+            ? 0
+            : toMillis(requestCacheControl.getMinFreshSeconds());
+        final long maxStaleMillis = requestCacheControl.getMaxStaleSeconds() < 0
+            || responseCacheControl.isMustRevalidate()
+            ? 0
+            : toMillis(requestCacheControl.getMaxStaleSeconds());
+        return saturatedAdd(currentAgeMillis, minFreshMillis) < saturatedAdd(freshnessLifetimeMillis, maxStaleMillis);
+    }
+
+    private long getFreshnessLifetimeMillis(ResponseCacheStore.Entry entry, CacheControl cacheControl,
+                                            long dateMillis) {
+        if (cacheControl.getMaxAgeSeconds() >= 0) {
+            return toMillis(cacheControl.getMaxAgeSeconds());
+        }
+        final HttpHeaders headers = entry.getHeaders();
+        final String expires = headers.getValue("Expires");
+        final long servedMillis = dateMillis < 0 ? entry.getResponseTimeMillis() : dateMillis;
+        if (expires != null) {
+            // An invalid Expires value means the response is already expired.
+            final long expiresMillis = parseDateMillis(expires);
+            return expiresMillis < 0 ? 0 : Math.max(0, expiresMillis - servedMillis);
+        }
+        if (!this.heuristicFreshnessEnabled || !isHeuristicallyCacheable(entry.getStatusCode())) {
+            // Stale right away, the response is revalidated with its validator.
+            return 0;
+        }
+        final long lastModifiedMillis = parseDateMillis(headers.getValue(LAST_MODIFIED));
+        if (lastModifiedMillis >= 0) {
+            // The heuristic freshness suggested by RFC 7234, section 4.2.2.
+            return Math.max(0, (servedMillis - lastModifiedMillis) / 10);
+        }
+        return 0;
+    }
+
+    // The status codes RFC 7231, section 6.1, defines as cacheable by default.
+    private static boolean isHeuristicallyCacheable(int statusCode) {
+        switch (statusCode) {
+            case 200:
+            case 203:
+            case 204:
+            case 206:
+            case 300:
+            case 301:
+            case 404:
+            case 405:
+            case 410:
+            case 414:
+            case 501:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean varyHeadersMatch(ResponseCacheStore.Entry entry, HttpHeaders requestHeaders) {
+        for (Map.Entry<String, String> varyHeader : entry.getVaryHeaders().entrySet()) {
+            final String value = getVaryHeaderValue(requestHeaders, varyHeader.getKey());
+            if (value == null ? varyHeader.getValue() != null : !value.equals(varyHeader.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, String> getVaryHeaders(HttpResponse response, HttpRequest request) {
+        final String vary = response.getHeaderValue("Vary");
+        final Map<String, String> varyHeaders = new HashMap<>();
+        if (vary != null) {
+            for (String name : vary.split(",")) {
+                final String trimmedName = name.trim().toLowerCase(Locale.ROOT);
+                if (!trimmedName.isEmpty()) {
+                    varyHeaders.put(trimmedName, getVaryHeaderValue(request.getHeaders(), trimmedName));
+                }
+            }
+        }
+        // A response to a request with credentials is served only to requests with the same credentials.
+        varyHeaders.put(AUTHORIZATION, getVaryHeaderValue(request.getHeaders(), AUTHORIZATION));
+        return varyHeaders;
+    }
+
+    private static String getVaryHeaderValue(HttpHeaders requestHeaders, String name) {
+        final String value = requestHeaders.getValue(name);
+        // Don't keep the credentials in the cache, only a hash to match them.
+        return value != null && AUTHORIZATION.equals(name) ? ResponseCacheStore.hash(value) : value;
+    }
+
+    private static HttpResponse toResponse(HttpRequest request, ResponseCacheStore.Entry entry) {
+        // Each caller gets its own headers, the body is shared but never modified.
+        return new ByteArrayHttpResponse(request, entry.getStatusCode(), new HttpHeaders(entry.getHeaders()),
+            entry.getBody());
+    }
+
+    private static boolean isBodyHeader(String name) {
+        for (String bodyHeader : BODY_HEADERS) {
+            if (bodyHeader.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long parseDateMillis(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return OffsetDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long toMillis(long seconds) {
+        return seconds >= Long.MAX_VALUE / 1000 ? Long.MAX_VALUE : seconds * 1000;
+    }
+
+    private static long saturatedAdd(long left, long right) {
+        final long sum = left + right;
+        return (sum < 0 && left > 0 && right > 0) ? Long.MAX_VALUE : sum;
+    }
+
+    private static String trim(String value) {
+        return value == null ? null : value.trim();
+    }
+}
@@ -0,0 +1,135 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.logging.ClientLogger;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket that limits the number of retries {@link RetryPolicy} can make.
+ *
+ * <p>
+ * Every retry takes one token from the bucket and every successful response puts a fraction of a token back,
+ * up to the bucket capacity. When the bucket is empty, {@link RetryPolicy} stops retrying and returns the
+ * original response or error. Share a single instance among the {@link RetryPolicy} instances of a client
+ * (or a set of clients) to bound the extra load retries put on a service during an outage.
+ * </p>
+ */
+public final class RetryBudget {
+    private static final int DEFAULT_MAX_TOKENS = 10;
+    private static final double DEFAULT_TOKENS_PER_SUCCESS = 0.1;
+    // Tokens are stored scaled, so fractional refills can be tracked with integer arithmetic.
+    private static final int TOKEN_SCALE = 1000;
+
+    private final ClientLogger logger = new ClientLogger(RetryBudget.class);
+
+    private final int maxTokens;
+    private final int tokensPerSuccess;
+    private final AtomicInteger tokens;
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong rejectedRetryCount = new AtomicLong();
+
+    /**
+     * Creates a {@link RetryBudget} with default settings.
+     *
+     * <p>
+     * The default bucket holds 10 tokens and every successful response refills 0.1 token, allowing
+     * roughly one retry per ten successful calls once the initial tokens are spent.
+     * </p>
+     */
+    public RetryBudget() {
+        this(DEFAULT_MAX_TOKENS, DEFAULT_TOKENS_PER_SUCCESS);
+    }
+
+    /**
+     * Creates a {@link RetryBudget}.
+     *
+     * @param maxTokens The capacity of the bucket, which is also the number of tokens it starts with.
+     * @param tokensPerSuccess The number of tokens (may be fractional) put back for every successful response.
+     * @throws IllegalArgumentException if {@code maxTokens} is less than 1 or {@code tokensPerSuccess} is negative
+     *     or greater than {@code maxTokens}.
+     */
+    public RetryBudget(int maxTokens, double tokensPerSuccess) {
+        if (maxTokens < 1 || maxTokens > Integer.MAX_VALUE / TOKEN_SCALE) {
+            throw logger.logExceptionAsError(new IllegalArgumentException("'maxTokens' must be in the range [1, "
+                + (Integer.MAX_VALUE / TOKEN_SCALE) + "], provided:" + maxTokens));
+        }
+        if (tokensPerSuccess < 0 || tokensPerSuccess > maxTokens) {
+            throw logger.logExceptionAsError(
+                new IllegalArgumentException("'tokensPerSuccess' must be in the range [0, maxTokens], provided:"
+                    + tokensPerSuccess));
+        }
+        this.maxTokens = maxTokens * TOKEN_SCALE;
+        this.tokensPerSuccess = (int) Math.round(tokensPerSuccess * TOKEN_SCALE);
+        this.tokens = new AtomicInteger(this.maxTokens);
+    }
+
+    /**
+     * Gets the number of whole tokens currently in the bucket.
+     *
+     * @return The number of available tokens.
+     */
+    public int getAvailableTokens() {
+        return this.tokens.get() / TOKEN_SCALE;
+    }
+
+    /**
+     * Gets the number of retries the budget allowed so far.
+     *
+     * @return The number of allowed retries.
+     */
+    public long getRetryCount() {
+        return this.retryCount.get();
+    }
+
+    /**
+     * Gets the number of retries that were not made because the budget was exhausted.
+     *
+     * @return The number of rejected retries.
+     */
+    public long getRejectedRetryCount() {
+        return this.rejectedRetryCount.get();
+    }
+
+    /**
+     * Attempts to take a token from the bucket for a retry.
+     *
+     * @return true if the retry can be made, false if the budget is exhausted.
+     */
+    boolean tryAcquire() {
+        while (true) {
+            final int current = this.tokens.get();
+            if (current < TOKEN_SCALE) {
+                this.rejectedRetryCount.incrementAndGet();
+                logger.verbose("The retry budget is exhausted, the retry is skipped.");
+                return false;
+            }
+            if (this.tokens.compareAndSet(current, current - TOKEN_SCALE)) {
+                this.retryCount.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Puts tokens back into the bucket for a successful response.
+     */
+    void onSuccess() {
+        if (this.tokensPerSuccess == 0) {
+            return;
+        }
+        while (true) {
+            final int current = this.tokens.get();
+            if (current >= this.maxTokens) {
+                return;
+            }
+            final int updated = Math.min(this.maxTokens, current + this.tokensPerSuccess);
+            if (this.tokens.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+}
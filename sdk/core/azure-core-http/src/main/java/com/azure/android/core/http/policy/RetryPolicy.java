@@ -8,6 +8,7 @@ import com.azure.android.core.http.HttpPipelinePolicyChain;
 import com.azure.android.core.http.HttpResponse;
 import com.azure.android.core.http.NextPolicyCallback;
 import com.azure.android.core.http.PolicyCompleter;
+import com.azure.android.core.http.RequestDeadline;
 
 import org.threeten.bp.Duration;
 import org.threeten.bp.OffsetDateTime;
@@ -19,9 +20,17 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * Pipeline interceptor that retries when a recoverable exception or HTTP error occurs.
+ *
+ * <p>
+ * When the {@link com.azure.android.core.util.RequestContext} of the call holds a {@link RequestDeadline}, the
+ * policy doesn't retry if the time left can't fit another attempt as long as the last one, and shortens the delay
+ * before a retry to half the time to spare. A throttled response (429 or 503) asking for a longer delay is returned
+ * as is.
+ * </p>
  */
 public class RetryPolicy implements HttpPipelinePolicy {
     private final RetryStrategy retryStrategy;
+    private final RetryBudget retryBudget;
 
     /**
      * Creates {@link RetryPolicy} with the provided {@link RetryStrategy}.
@@ -29,7 +38,26 @@ public class RetryPolicy implements HttpPipelinePolicy {
      * @param retryStrategy The {@link RetryStrategy} used for retries.
      */
     public RetryPolicy(RetryStrategy retryStrategy) {
+        this(retryStrategy, null);
+    }
+
+    /**
+     * Creates {@link RetryPolicy} with the provided {@link RetryStrategy} whose retries are limited
+     * by the provided {@link RetryBudget}.
+     *
+     * <p>
+     * The {@code retryBudget} can be shared with other {@link RetryPolicy} instances, in which case
+     * their retries draw from the same budget. When the budget is exhausted, the policy returns the
+     * response or error of the last attempt without retrying.
+     * </p>
+     *
+     * @param retryStrategy The {@link RetryStrategy} used for retries.
+     * @param retryBudget The {@link RetryBudget} limiting the retries, null for no limit other than
+     *     the maximum retries of the {@code retryStrategy}.
+     */
+    public RetryPolicy(RetryStrategy retryStrategy, RetryBudget retryBudget) {
         this.retryStrategy = retryStrategy;
+        this.retryBudget = retryBudget;
     }
 
     /**
@@ -81,15 +109,16 @@ public class RetryPolicy implements HttpPipelinePolicy {
             chain.completedError(new IOException("Canceled."));
             return;
         }
+        final long attemptStartNanos = System.nanoTime();
         chain.processNextPolicy(chain.getRequest(), new NextPolicyCallback() {
             @Override
             public PolicyCompleter.CompletionState onSuccess(HttpResponse response, PolicyCompleter completer) {
-                return retryIfRequired(chain, response, null, completer, 0);
+                return retryIfRequired(chain, response, null, completer, 0, attemptStartNanos);
             }
 
             @Override
             public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
-                return retryIfRequired(chain, null, error, completer, 0);
+                return retryIfRequired(chain, null, error, completer, 0, attemptStartNanos);
             }
         });
     }
@@ -98,7 +127,8 @@ public class RetryPolicy implements HttpPipelinePolicy {
                                  HttpResponse response,
                                  Throwable error,
                                  PolicyCompleter completer,
-                                 final int retryAttempts) {
+                                 final int retryAttempts,
+                                 final long attemptStartNanos) {
         if (chain.getCancellationToken().isCancellationRequested()) {
             if (response != null) {
                 response.close();
@@ -108,6 +138,9 @@ public class RetryPolicy implements HttpPipelinePolicy {
 
         if (!shouldRetry(response, error, retryAttempts)) {
             if (response != null) {
+                if (this.retryBudget != null && !this.retryStrategy.shouldRetry(response, null, retryAttempts)) {
+                    this.retryBudget.onSuccess();
+                }
                 return completer.completed(response);
             } else {
                 if (retryAttempts >= this.retryStrategy.getMaxRetries()) {
@@ -123,37 +156,71 @@ public class RetryPolicy implements HttpPipelinePolicy {
                 }
             }
         } else {
-            Duration delay = null;
-            Throwable userError = null;
+            Duration delay;
             try {
-                delay = calculateRetryDelay(response, null, retryAttempts);
+                delay = calculateRetryDelay(response, error, retryAttempts);
             } catch (Throwable e) {
-                userError = e;
-            } finally {
                 if (response != null) {
                     response.close();
                 }
+                return completer.completedError(e);
             }
 
-            if (userError != null) {
-                return completer.completedError(userError);
-            } else {
-                chain.processNextPolicy(chain.getRequest(), new NextPolicyCallback() {
-                    @Override
-                    public PolicyCompleter.CompletionState onSuccess(HttpResponse response, PolicyCompleter completer) {
-                        return retryIfRequired(chain, response, null, completer, retryAttempts + 1);
-                    }
+            final RequestDeadline deadline = RequestDeadline.fromContext(chain.getContext());
+            if (deadline != null) {
+                // Expect the next attempt to take as long as the last one. The delay gets at most half of the time
+                // left beyond that, the other half is the margin for a slower attempt.
+                final long spareNanos = deadline.getRemainingNanos() - (System.nanoTime() - attemptStartNanos);
+                final long maxDelayNanos = spareNanos / 2;
+                if (spareNanos <= 0 || (delay.toNanos() > maxDelayNanos && isThrottled(response))) {
+                    // The retry can't complete in time, surface the outcome of the last attempt as is.
+                    return surface(response, error, completer);
+                }
+                if (delay.toNanos() > maxDelayNanos) {
+                    delay = Duration.ofNanos(maxDelayNanos);
+                }
+            }
 
-                    @Override
-                    public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
-                        return retryIfRequired(chain, null, error, completer, retryAttempts + 1);
-                    }
-                }, delay.toMillis(), TimeUnit.MILLISECONDS);
-                return completer.defer();
+            if (this.retryBudget != null && !this.retryBudget.tryAcquire()) {
+                // Budget exhausted, surface the outcome of the last attempt as is.
+                return surface(response, error, completer);
             }
+
+            if (response != null) {
+                response.close();
+            }
+            final long delayNanos = Math.max(0, delay.toNanos());
+            final long nextAttemptStartNanos = System.nanoTime() + delayNanos;
+            chain.processNextPolicy(chain.getRequest(), new NextPolicyCallback() {
+                @Override
+                public PolicyCompleter.CompletionState onSuccess(HttpResponse response, PolicyCompleter completer) {
+                    return retryIfRequired(chain, response, null, completer, retryAttempts + 1,
+                        nextAttemptStartNanos);
+                }
+
+                @Override
+                public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
+                    return retryIfRequired(chain, null, error, completer, retryAttempts + 1, nextAttemptStartNanos);
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+            return completer.defer();
         }
     }
 
+    private static PolicyCompleter.CompletionState surface(HttpResponse response,
+                                                          Throwable error,
+                                                          PolicyCompleter completer) {
+        if (response != null) {
+            return completer.completed(response);
+        } else {
+            return completer.completedError(error);
+        }
+    }
+
+    private static boolean isThrottled(HttpResponse response) {
+        return response != null && (response.getStatusCode() == 429 || response.getStatusCode() == 503);
+    }
+
     /**
      * Determines the delay duration that should be waited before retrying.
      *
@@ -3,9 +3,10 @@
 
 package com.azure.android.core.http.util;
 
+import com.azure.android.core.http.implementation.ConcurrentLruCache;
+
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -13,17 +14,35 @@ import java.util.Map;
  * A builder class that is used to create URLs.
  */
 public final class UrlBuilder {
-    private static final Map<String, UrlBuilder> PARSED_URLS = new HashMap<>();
     private static final int MAX_CACHE_SIZE = 10000;
-    private static final Object PARSED_URLS_LOCK = new Object();
+    private static final ConcurrentLruCache<String, UrlBuilder> PARSED_URLS = new ConcurrentLruCache<>(MAX_CACHE_SIZE);
 
     private String scheme;
     private String host;
     private String port;
     private String path;
 
-    // LinkedHashMap preserves insertion order
-    private final Map<String, String> query = new LinkedHashMap<>();
+    // LinkedHashMap preserves insertion order, created on first use.
+    private Map<String, String> query;
+
+    /*
+     * A UrlBuilder parsed from a string keeps that string and the ranges of its components instead of copying them,
+     * see parse(String). Query parameters set afterwards are kept as edits applied when the URL string is built, any
+     * other change first copies the components to the fields above and drops the source.
+     */
+    private String source;
+    private int schemeEnd;
+    private int hostStart;
+    private int hostEnd;
+    private int portStart;
+    private int portEnd;
+    private int pathStart;
+    private int pathEnd;
+    // The index of the '?' starting the query, or -1 if there is none.
+    private int queryStart;
+    // The names and values of the query parameters set on the source, alternating.
+    private String[] queryEdits;
+    private int queryEditCount;
 
     /**
      * Set the scheme/protocol that will be used to build the final URL.
@@ -32,6 +51,7 @@ public final class UrlBuilder {
      * @return This UrlBuilder so that multiple setters can be chained together.
      */
     public UrlBuilder setScheme(String scheme) {
+        materialize();
         if (scheme == null || scheme.isEmpty()) {
             this.scheme = null;
         } else {
@@ -46,6 +66,9 @@ public final class UrlBuilder {
      * @return the scheme/protocol that has been assigned to this UrlBuilder.
      */
     public String getScheme() {
+        if (source != null) {
+            return sourcePart(0, schemeEnd);
+        }
         return scheme;
     }
 
@@ -56,6 +79,7 @@ public final class UrlBuilder {
      * @return This UrlBuilder so that multiple setters can be chained together.
      */
     public UrlBuilder setHost(String host) {
+        materialize();
         if (host == null || host.isEmpty()) {
             this.host = null;
         } else {
@@ -70,6 +94,9 @@ public final class UrlBuilder {
      * @return the host that has been assigned to this UrlBuilder.
      */
     public String getHost() {
+        if (source != null) {
+            return sourcePart(hostStart, hostEnd);
+        }
         return host;
     }
 
@@ -80,6 +107,7 @@ public final class UrlBuilder {
      * @return This UrlBuilder so that multiple setters can be chained together.
      */
     public UrlBuilder setPort(String port) {
+        materialize();
         if (port == null || port.isEmpty()) {
             this.port = null;
         } else {
@@ -104,6 +132,7 @@ public final class UrlBuilder {
      * @return the port that has been assigned to this UrlBuilder.
      */
     public Integer getPort() {
+        final String port = (source != null) ? sourcePart(portStart, portEnd) : this.port;
         return port == null ? null : Integer.valueOf(port);
     }
 
@@ -114,6 +143,7 @@ public final class UrlBuilder {
      * @return This UrlBuilder so that multiple setters can be chained together.
      */
     public UrlBuilder setPath(String path) {
+        materialize();
         if (path == null || path.isEmpty()) {
             this.path = null;
         } else {
@@ -128,6 +158,9 @@ public final class UrlBuilder {
      * @return the path that has been assigned to this UrlBuilder.
      */
     public String getPath() {
+        if (source != null) {
+            return sourcePart(pathStart, pathEnd);
+        }
         return path;
     }
 
@@ -139,7 +172,12 @@ public final class UrlBuilder {
      * @return The provided query parameter name and encoded value to query string for the final URL.
      */
     public UrlBuilder setQueryParameter(String queryParameterName, String queryParameterEncodedValue) {
-        query.put(queryParameterName, queryParameterEncodedValue);
+        if (source != null && queryParameterName != null && queryParameterEncodedValue != null) {
+            setQueryEdit(queryParameterName, queryParameterEncodedValue);
+        } else {
+            materialize();
+            queryMap().put(queryParameterName, queryParameterEncodedValue);
+        }
         return this;
     }
 
@@ -150,8 +188,11 @@ public final class UrlBuilder {
      * @return This UrlBuilder so that multiple setters can be chained together.
      */
     public UrlBuilder setQuery(String query) {
+        materialize();
         if (query == null || query.isEmpty()) {
-            this.query.clear();
+            if (this.query != null) {
+                this.query.clear();
+            }
         } else {
             with(query, UrlTokenizerState.QUERY);
         }
@@ -164,7 +205,9 @@ public final class UrlBuilder {
      * @return the query that has been assigned to this UrlBuilder.
      */
     public Map<String, String> getQuery() {
-        return query;
+        // The map is mutable, so it has to hold the query parameters itself.
+        materialize();
+        return queryMap();
     }
 
     /**
@@ -172,7 +215,11 @@ public final class UrlBuilder {
      * @return A String containing the currently configured query string.
      */
     public String getQueryString() {
-        if (query.isEmpty()) {
+        if (source != null) {
+            final int from = queryStart < 0 ? source.length() : queryStart;
+            return queryEditCount == 0 ? source.substring(from) : buildFromSource(from);
+        }
+        if (query == null || query.isEmpty()) {
             return "";
         }
 
@@ -193,9 +240,8 @@ public final class UrlBuilder {
         final UrlTokenizer tokenizer = new UrlTokenizer(text, startState);
 
         while (tokenizer.next()) {
-            final UrlToken token = tokenizer.current();
-            final String tokenText = token.text();
-            final UrlTokenType tokenType = token.type();
+            final String tokenText = text.substring(tokenizer.tokenStart(), tokenizer.tokenEnd());
+            final UrlTokenType tokenType = tokenizer.tokenType();
             switch (tokenType) {
                 case SCHEME:
                     scheme = emptyToNull(tokenText);
@@ -259,6 +305,10 @@ public final class UrlBuilder {
      */
     @Override
     public String toString() {
+        if (source != null) {
+            return queryEditCount == 0 ? source : buildFromSource(0);
+        }
+
         final StringBuilder result = new StringBuilder();
 
         final boolean isAbsolutePath = path != null && (path.startsWith("http://") || path.startsWith("https://"));
@@ -301,28 +351,25 @@ public final class UrlBuilder {
      */
     public static UrlBuilder parse(String url) {
         /*
-         * Parsing the URL string into a UrlBuilder is a non-trivial operation and many calls into RestProxy will use
-         * the same root URL string. To save CPU costs we retain a parsed version of the URL string in memory. Given
-         * that UrlBuilder is mutable we must return a cloned version of the cached UrlBuilder.
+         * Since it is common to create a new UrlBuilder from the same root URL string over and over, the parsed
+         * UrlBuilders are cached. Parsing a URL string only records the ranges of its components, so a cached
+         * UrlBuilder is small and copying it copies no component. Given that UrlBuilder is mutable we must return a
+         * copy of the cached UrlBuilder.
          */
-        // ConcurrentHashMap doesn't allow for null keys, coerce it into an empty string.
+        // The cache doesn't allow for null keys, coerce it into an empty string.
         final String safeUrl = (url == null) ? "" : url;
 
-        synchronized (PARSED_URLS_LOCK) {
-            // If the number of parsed URLs are above the threshold clear the map and start fresh.
-            // This prevents the map from growing without bounds if too many unique URLs are parsed.
-            // TODO (alzimmer): consider using an LRU cache to evict selectively.
-            if (PARSED_URLS.size() >= MAX_CACHE_SIZE) {
-                PARSED_URLS.clear();
+        // URLs carrying unique ids are evicted least recently used first, the common root URLs stay cached.
+        // The cached UrlBuilders are never mutated, two threads parsing the same URL at once just both cache it.
+        UrlBuilder urlBuilder = PARSED_URLS.get(safeUrl);
+        if (urlBuilder == null) {
+            urlBuilder = new UrlBuilder();
+            if (!urlBuilder.wrap(safeUrl)) {
+                urlBuilder.with(safeUrl, UrlTokenizerState.SCHEME_OR_HOST);
             }
-
-            UrlBuilder urlBuilder = PARSED_URLS.get(safeUrl);
-            if (urlBuilder == null) {
-                urlBuilder = new UrlBuilder().with(safeUrl, UrlTokenizerState.SCHEME_OR_HOST);
-                PARSED_URLS.put(safeUrl, urlBuilder);
-            }
-            return urlBuilder.copy();
+            PARSED_URLS.put(safeUrl, urlBuilder);
         }
+        return urlBuilder.copy();
     }
 
     /**
@@ -369,14 +416,273 @@ public final class UrlBuilder {
     }
 
     private UrlBuilder copy() {
-        UrlBuilder copy = new UrlBuilder();
-
-        copy.scheme = this.scheme;
-        copy.host = this.host;
-        copy.path = this.path;
-        copy.port = this.port;
-        copy.query.putAll(this.query);
+        final UrlBuilder copy = new UrlBuilder();
+
+        if (source != null) {
+            copy.source = source;
+            copy.schemeEnd = schemeEnd;
+            copy.hostStart = hostStart;
+            copy.hostEnd = hostEnd;
+            copy.portStart = portStart;
+            copy.portEnd = portEnd;
+            copy.pathStart = pathStart;
+            copy.pathEnd = pathEnd;
+            copy.queryStart = queryStart;
+            if (queryEditCount > 0) {
+                copy.queryEdits = queryEdits.clone();
+                copy.queryEditCount = queryEditCount;
+            }
+            return copy;
+        }
 
+        copy.scheme = scheme;
+        copy.host = host;
+        copy.port = port;
+        copy.path = path;
+        if (query != null) {
+            copy.queryMap().putAll(query);
+        }
         return copy;
     }
+
+    private Map<String, String> queryMap() {
+        if (query == null) {
+            query = new LinkedHashMap<>();
+        }
+        return query;
+    }
+
+    /**
+     * Makes this builder wrap the given URL string, if building the URL back from its parsed components would give
+     * the same string.
+     *
+     * @param url The URL string.
+     * @return false if the URL string is not in its canonical form, in which case the builder is left unchanged.
+     */
+    private boolean wrap(String url) {
+        final UrlTokenizer tokenizer = new UrlTokenizer(url);
+        int schemeEnd = -1;
+        int hostStart = -1;
+        int hostEnd = -1;
+        int portStart = -1;
+        int portEnd = -1;
+        int pathStart = -1;
+        int pathEnd = -1;
+        int queryStart = -1;
+
+        while (tokenizer.next()) {
+            final int start = tokenizer.tokenStart();
+            final int end = tokenizer.tokenEnd();
+            switch (tokenizer.tokenType()) {
+                case SCHEME:
+                    if (start == end) {
+                        // The "://" separator is dropped with an empty scheme.
+                        return false;
+                    }
+                    schemeEnd = end;
+                    break;
+
+                case HOST:
+                    hostStart = start;
+                    hostEnd = end;
+                    break;
+
+                case PORT:
+                    if (start == end) {
+                        // The ':' separator is dropped with an empty port.
+                        return false;
+                    }
+                    portStart = start;
+                    portEnd = end;
+                    break;
+
+                case PATH:
+                    pathStart = start;
+                    pathEnd = end;
+                    break;
+
+                case QUERY:
+                    if (!isCanonicalQuery(url, start, end)) {
+                        return false;
+                    }
+                    // The query token follows the '?'.
+                    queryStart = start - 1;
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        this.source = url;
+        this.schemeEnd = schemeEnd;
+        this.hostStart = hostStart;
+        this.hostEnd = hostEnd;
+        this.portStart = portStart;
+        this.portEnd = portEnd;
+        this.pathStart = pathStart;
+        this.pathEnd = pathEnd;
+        this.queryStart = queryStart;
+        return true;
+    }
+
+    /**
+     * Checks that a query is rebuilt unchanged from its parameters: it must not be empty, and each of its parameters
+     * must have a name distinct from the others and exactly one '='.
+     */
+    private static boolean isCanonicalQuery(String url, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+
+        int entryStart = start;
+        while (true) {
+            int entryEnd = url.indexOf('&', entryStart);
+            if (entryEnd < 0 || entryEnd > end) {
+                entryEnd = end;
+            }
+
+            final int equals = url.indexOf('=', entryStart);
+            if (equals < 0 || equals >= entryEnd || entryEnd - entryStart == 1
+                || url.lastIndexOf('=', entryEnd - 1) != equals
+                || indexOfQueryParameter(url, start, entryStart, url, entryStart, equals - entryStart) >= 0) {
+                return false;
+            }
+
+            if (entryEnd == end) {
+                return true;
+            }
+            entryStart = entryEnd + 1;
+        }
+    }
+
+    /**
+     * Finds a parameter by name in a canonical query.
+     *
+     * @return The index of the '=' following the parameter name, or -1 if the parameter is not in the query.
+     */
+    private static int indexOfQueryParameter(String url, int start, int end, String name, int nameStart,
+        int nameLength) {
+        int entryStart = start;
+        while (entryStart < end) {
+            final int equals = url.indexOf('=', entryStart);
+            if (equals - entryStart == nameLength && url.regionMatches(entryStart, name, nameStart, nameLength)) {
+                return equals;
+            }
+            entryStart = queryValueEnd(url, equals, end) + 1;
+        }
+        return -1;
+    }
+
+    private static int queryValueEnd(String url, int equals, int end) {
+        final int ampersand = url.indexOf('&', equals);
+        return (ampersand < 0 || ampersand > end) ? end : ampersand;
+    }
+
+    private String sourcePart(int start, int end) {
+        return start < 0 || end <= start ? null : source.substring(start, end);
+    }
+
+    private void setQueryEdit(String name, String value) {
+        for (int i = 0; i < queryEditCount; i += 2) {
+            if (queryEdits[i].equals(name)) {
+                queryEdits[i + 1] = value;
+                return;
+            }
+        }
+        if (queryEdits == null) {
+            queryEdits = new String[4];
+        } else if (queryEditCount == queryEdits.length) {
+            final String[] edits = new String[queryEditCount * 2];
+            System.arraycopy(queryEdits, 0, edits, 0, queryEditCount);
+            queryEdits = edits;
+        }
+        queryEdits[queryEditCount++] = name;
+        queryEdits[queryEditCount++] = value;
+    }
+
+    private String findQueryEdit(int nameStart, int nameLength) {
+        for (int i = 0; i < queryEditCount; i += 2) {
+            final String name = queryEdits[i];
+            if (name.length() == nameLength && source.regionMatches(nameStart, name, 0, nameLength)) {
+                return queryEdits[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the URL string from the source and the query edits.
+     *
+     * @param from The index in the source to build the string from.
+     * @return The URL string.
+     */
+    private String buildFromSource(int from) {
+        final String url = source;
+        final int end = url.length();
+        final int queryContentStart = queryStart < 0 ? end : queryStart + 1;
+
+        // Size the builder exactly, so the only copy made is the final string.
+        int size = end - from;
+        for (int i = 0; i < queryEditCount; i += 2) {
+            final String name = queryEdits[i];
+            final String value = queryEdits[i + 1];
+            final int equals = indexOfQueryParameter(url, queryContentStart, end, name, 0, name.length());
+            if (equals < 0) {
+                size += name.length() + value.length() + 2;
+            } else {
+                size += value.length() - (queryValueEnd(url, equals, end) - equals - 1);
+            }
+        }
+
+        final StringBuilder result = new StringBuilder(size);
+        result.append(url, from, queryContentStart);
+        int entryStart = queryContentStart;
+        while (entryStart < end) {
+            final int equals = url.indexOf('=', entryStart);
+            final int entryEnd = queryValueEnd(url, equals, end);
+            final String editedValue = findQueryEdit(entryStart, equals - entryStart);
+            result.append(url, entryStart, equals + 1);
+            if (editedValue == null) {
+                result.append(url, equals + 1, entryEnd);
+            } else {
+                result.append(editedValue);
+            }
+            if (entryEnd < end) {
+                result.append('&');
+            }
+            entryStart = entryEnd + 1;
+        }
+
+        boolean hasQuery = queryStart >= 0;
+        for (int i = 0; i < queryEditCount; i += 2) {
+            final String name = queryEdits[i];
+            if (indexOfQueryParameter(url, queryContentStart, end, name, 0, name.length()) < 0) {
+                result.append(hasQuery ? '&' : '?').append(name).append('=').append(queryEdits[i + 1]);
+                hasQuery = true;
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Copies the components of the source to the fields, applies the query edits and drops the source.
+     */
+    private void materialize() {
+        if (source == null) {
+            return;
+        }
+
+        final String url = source;
+        final String[] edits = queryEdits;
+        final int editCount = queryEditCount;
+        source = null;
+        queryEdits = null;
+        queryEditCount = 0;
+
+        with(url, UrlTokenizerState.SCHEME_OR_HOST);
+        for (int i = 0; i < editCount; i += 2) {
+            queryMap().put(edits[i], edits[i + 1]);
+        }
+    }
 }
@@ -5,29 +5,36 @@ package com.azure.android.core.http.util;
 
 /**
  * The type to enumerate URL tokens in a text.
+ *
+ * <p>
+ * The tokenizer doesn't copy the text: each token is reported as its type and the range of indices it spans in the
+ * text, see {@link #tokenType()}, {@link #tokenStart()} and {@link #tokenEnd()}.
+ * </p>
  */
 public class UrlTokenizer {
-    private final String text;
+    private final CharSequence text;
     private final int textLength;
     private UrlTokenizerState state;
     private int currentIndex;
-    private UrlToken currentToken;
+    private UrlTokenType tokenType;
+    private int tokenStart;
+    private int tokenEnd;
 
     /**
      * Creates the UrlTokenizer.
      *
      * @param text The text value to enumerate URL tokens from.
      */
-    public UrlTokenizer(String text) {
+    public UrlTokenizer(CharSequence text) {
         this(text, UrlTokenizerState.SCHEME_OR_HOST);
     }
 
-    UrlTokenizer(String text, UrlTokenizerState state) {
+    UrlTokenizer(CharSequence text, UrlTokenizerState state) {
         this.text = text;
         this.textLength = (text == null ? 0 : text.length());
         this.state = state;
         this.currentIndex = 0;
-        this.currentToken = null;
+        this.tokenType = null;
     }
 
     private boolean hasCurrentCharacter() {
@@ -48,26 +55,58 @@ public class UrlTokenizer {
         }
     }
 
-    private String peekCharacters(int charactersToPeek) {
-        int endIndex = currentIndex + charactersToPeek;
-        if (textLength < endIndex) {
-            endIndex = textLength;
-        }
-        return text.substring(currentIndex, endIndex);
+    private boolean atSchemeSeparator() {
+        return currentIndex + 3 <= textLength
+            && text.charAt(currentIndex) == ':'
+            && text.charAt(currentIndex + 1) == '/'
+            && text.charAt(currentIndex + 2) == '/';
     }
 
+    /**
+     * Gets the current token, copying its text.
+     *
+     * @return The current token, or null if there is none.
+     */
     UrlToken current() {
-        return currentToken;
+        return tokenType == null
+            ? null
+            : new UrlToken(text.subSequence(tokenStart, tokenEnd).toString(), tokenType);
+    }
+
+    /**
+     * Gets the type of the current token.
+     *
+     * @return The type of the current token, or null if there is none.
+     */
+    UrlTokenType tokenType() {
+        return tokenType;
+    }
+
+    /**
+     * Gets the index in the text of the first character of the current token.
+     *
+     * @return The start index, inclusive.
+     */
+    int tokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * Gets the index in the text following the last character of the current token.
+     *
+     * @return The end index, exclusive.
+     */
+    int tokenEnd() {
+        return tokenEnd;
     }
 
     boolean next() {
         if (!hasCurrentCharacter()) {
-            currentToken = null;
+            tokenType = null;
         } else {
             switch (state) {
                 case SCHEME:
-                    final String scheme = readUntilNotLetterOrDigit();
-                    currentToken = UrlToken.scheme(scheme);
+                    readUntilNotLetterOrDigit(UrlTokenType.SCHEME);
                     if (!hasCurrentCharacter()) {
                         state = UrlTokenizerState.DONE;
                     } else {
@@ -76,34 +115,29 @@ public class UrlTokenizer {
                     break;
 
                 case SCHEME_OR_HOST:
-                    final String schemeOrHost = readUntilCharacter(':', '/', '?');
+                    readUntilCharacter(UrlTokenType.HOST, ":/?");
                     if (!hasCurrentCharacter()) {
-                        currentToken = UrlToken.host(schemeOrHost);
                         state = UrlTokenizerState.DONE;
                     } else if (currentCharacter() == ':') {
-                        if (peekCharacters(3).equals("://")) {
-                            currentToken = UrlToken.scheme(schemeOrHost);
+                        if (atSchemeSeparator()) {
+                            tokenType = UrlTokenType.SCHEME;
                             state = UrlTokenizerState.HOST;
                         } else {
-                            currentToken = UrlToken.host(schemeOrHost);
                             state = UrlTokenizerState.PORT;
                         }
                     } else if (currentCharacter() == '/') {
-                        currentToken = UrlToken.host(schemeOrHost);
                         state = UrlTokenizerState.PATH;
-                    } else if (currentCharacter() == '?') {
-                        currentToken = UrlToken.host(schemeOrHost);
+                    } else {
                         state = UrlTokenizerState.QUERY;
                     }
                     break;
 
                 case HOST:
-                    if (peekCharacters(3).equals("://")) {
+                    if (atSchemeSeparator()) {
                         nextCharacter(3);
                     }
 
-                    final String host = readUntilCharacter(':', '/', '?');
-                    currentToken = UrlToken.host(host);
+                    readUntilCharacter(UrlTokenType.HOST, ":/?");
 
                     if (!hasCurrentCharacter()) {
                         state = UrlTokenizerState.DONE;
@@ -121,8 +155,7 @@ public class UrlTokenizer {
                         nextCharacter();
                     }
 
-                    final String port = readUntilCharacter('/', '?');
-                    currentToken = UrlToken.port(port);
+                    readUntilCharacter(UrlTokenType.PORT, "/?");
 
                     if (!hasCurrentCharacter()) {
                         state = UrlTokenizerState.DONE;
@@ -134,8 +167,7 @@ public class UrlTokenizer {
                     break;
 
                 case PATH:
-                    final String path = readUntilCharacter('?');
-                    currentToken = UrlToken.path(path);
+                    readUntilCharacter(UrlTokenType.PATH, "?");
 
                     if (!hasCurrentCharacter()) {
                         state = UrlTokenizerState.DONE;
@@ -149,74 +181,37 @@ public class UrlTokenizer {
                         nextCharacter();
                     }
 
-                    final String query = readRemaining();
-                    currentToken = UrlToken.query(query);
+                    tokenType = UrlTokenType.QUERY;
+                    tokenStart = currentIndex;
+                    tokenEnd = textLength;
+                    currentIndex = textLength;
                     state = UrlTokenizerState.DONE;
                     break;
 
                 default:
+                    tokenType = null;
                     break;
             }
         }
 
-        return currentToken != null;
+        return tokenType != null;
     }
 
-    private String readUntilNotLetterOrDigit() {
-        String result = "";
-
-        if (hasCurrentCharacter()) {
-            final StringBuilder builder = new StringBuilder();
-            while (hasCurrentCharacter()) {
-                final char currentCharacter = currentCharacter();
-                if (!Character.isLetterOrDigit(currentCharacter)) {
-                    break;
-                } else {
-                    builder.append(currentCharacter);
-                    nextCharacter();
-                }
-            }
-            result = builder.toString();
+    private void readUntilNotLetterOrDigit(UrlTokenType type) {
+        tokenType = type;
+        tokenStart = currentIndex;
+        while (hasCurrentCharacter() && Character.isLetterOrDigit(currentCharacter())) {
+            nextCharacter();
         }
-
-        return result;
-    }
-
-    private String readUntilCharacter(char... terminatingCharacters) {
-        String result = "";
-
-        if (hasCurrentCharacter()) {
-            final StringBuilder builder = new StringBuilder();
-            boolean foundTerminator = false;
-            while (hasCurrentCharacter()) {
-                final char currentCharacter = currentCharacter();
-
-                for (final char terminatingCharacter : terminatingCharacters) {
-                    if (currentCharacter == terminatingCharacter) {
-                        foundTerminator = true;
-                        break;
-                    }
-                }
-
-                if (foundTerminator) {
-                    break;
-                } else {
-                    builder.append(currentCharacter);
-                    nextCharacter();
-                }
-            }
-            result = builder.toString();
-        }
-
-        return result;
+        tokenEnd = currentIndex;
     }
 
-    private String readRemaining() {
-        String result = "";
-        if (currentIndex < textLength) {
-            result = text.substring(currentIndex, textLength);
-            currentIndex = textLength;
+    private void readUntilCharacter(UrlTokenType type, String terminatingCharacters) {
+        tokenType = type;
+        tokenStart = currentIndex;
+        while (hasCurrentCharacter() && terminatingCharacters.indexOf(currentCharacter()) < 0) {
+            nextCharacter();
         }
-        return result;
+        tokenEnd = currentIndex;
     }
 }
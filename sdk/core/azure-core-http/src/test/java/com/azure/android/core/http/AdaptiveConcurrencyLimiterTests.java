@@ -0,0 +1,157 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveConcurrencyLimiterTests {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final String HOST = "contoso.com";
+
+    private long now = 1_000_000 * MILLIS;
+
+    @Test
+    public void initialLimitIsBoundedByMinAndMax() {
+        assertEquals(4, new AdaptiveConcurrencyLimiter(new AdaptiveConcurrencyOptions()
+            .setMinLimit(4).setInitialLimit(1)).getLimit());
+        assertEquals(8, new AdaptiveConcurrencyLimiter(new AdaptiveConcurrencyOptions()
+            .setMaxLimit(8).setInitialLimit(100)).getLimit());
+    }
+
+    @Test
+    public void timelyResponsesGrowTheLimitAdditively() {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new AdaptiveConcurrencyOptions()
+            .setInitialLimit(4));
+        // Growing from 4 to 5 takes about a limit's worth of responses.
+        for (int i = 0; i < 4; i++) {
+            assertFalse(sample(limiter, 20, false, 4));
+        }
+        assertTrue(sample(limiter, 20, false, 4));
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    public void limitDoesNotGrowWhileUnderused() {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new AdaptiveConcurrencyOptions()
+            .setInitialLimit(16));
+        for (int i = 0; i < 200; i++) {
+            sample(limiter, 20, false, 2);
+        }
+        assertEquals(16, limiter.getLimit());
+    }
+
+    @Test
+    public void limitDoesNotGrowOverMax() {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new AdaptiveConcurrencyOptions()
+            .setInitialLimit(6).setMaxLimit(8));
+        for (int i = 0; i < 500; i++) {
+            sample(limiter, 20, false, 8);
+        }
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void failuresShrinkTheLimitMultiplicatively() {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new AdaptiveConcurrencyOptions()
+            .setInitialLimit(20).setBackoffRatio(0.5));
+        sample(limiter, 20, true, 20);
+        assertEquals(10, limiter.getLimit());
+        sample(limiter, 20, true, 10);
+        assertEquals(5, limiter.getLimit());
+        sample(limiter, 20, true, 5);
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void slowResponsesShrinkTheLimit() {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new AdaptiveConcurrencyOptions()
+            .setInitialLimit(20).setLatencyTolerance(2));
+        sample(limiter, 20, false, 20);
+        final int limit = limiter.getLimit();
+        sample(limiter, 39, false, 20);
+        assertEquals(limit, limiter.getLimit());
+        sample(limiter, 41, false, 20);
+        assertTrue(limiter.getLimit() < limit);
+    }
+
+    @Test
+    public void slowerHostIsComparedToItsOwnBaseline() {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new AdaptiveConcurrencyOptions()
+            .setInitialLimit(20).setLatencyTolerance(2));
+        sample(limiter, "fast.contoso.com", 20, false, 20);
+        sample(limiter, "slow.contoso.com", 200, false, 20);
+        final int limit = limiter.getLimit();
+        sample(limiter, "slow.contoso.com", 300, false, 20);
+        sample(limiter, "fast.contoso.com", 30, false, 20);
+        assertTrue(limiter.getLimit() >= limit);
+        sample(limiter, "slow.contoso.com", 401, false, 20);
+        assertTrue(limiter.getLimit() < limit);
+    }
+
+    @Test
+    public void sustainedCongestionDoesNotRaiseTheBaseline() {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new AdaptiveConcurrencyOptions()
+            .setInitialLimit(32).setMinLimit(2).setLatencyTolerance(2));
+        sample(limiter, 20, false, 32);
+        for (int i = 0; i < 100; i++) {
+            sample(limiter, 100, false, limiter.getLimit());
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void baselineFollowsASlowerNetworkAtTheMinLimit() {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new AdaptiveConcurrencyOptions()
+            .setInitialLimit(4).setMinLimit(4).setLatencyTolerance(2));
+        sample(limiter, 20, false, 4);
+        // The network got 5 times slower, once the window of the old latency is forgotten the limit grows again.
+        for (int i = 0; i < 250; i++) {
+            sample(limiter, 100, false, 4);
+        }
+        assertTrue(limiter.getLimit() > 4);
+    }
+
+    @Test
+    public void overlappingSlowResponsesShrinkTheLimitOnce() {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new AdaptiveConcurrencyOptions()
+            .setInitialLimit(20).setBackoffRatio(0.5));
+        final long start = this.now;
+        this.now += 100 * MILLIS;
+        for (int i = 0; i < 5; i++) {
+            limiter.onSample(HOST, start, this.now, true, 20);
+        }
+        assertEquals(10, limiter.getLimit());
+        // A call sent after the decrease shrinks the limit again.
+        sample(limiter, 20, true, 10);
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    public void invalidOptionsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyOptions().setMinLimit(0));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyOptions().setLatencyTolerance(1));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyOptions().setBackoffRatio(1));
+        assertThrows(IllegalArgumentException.class, () -> new HttpCallDispatcher()
+            .setAdaptiveConcurrency(new AdaptiveConcurrencyOptions().setMinLimit(10).setMaxLimit(5)));
+    }
+
+    private boolean sample(AdaptiveConcurrencyLimiter limiter, long latencyMillis, boolean failed, int running) {
+        return sample(limiter, HOST, latencyMillis, failed, running);
+    }
+
+    private boolean sample(AdaptiveConcurrencyLimiter limiter, String host, long latencyMillis, boolean failed,
+                           int running) {
+        this.now += MILLIS;
+        final long start = this.now;
+        this.now += latencyMillis * MILLIS;
+        return limiter.onSample(host, start, this.now, failed, running);
+    }
+}
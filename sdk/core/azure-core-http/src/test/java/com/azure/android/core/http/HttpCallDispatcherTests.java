@@ -0,0 +1,587 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http;
+
+import com.azure.android.core.http.exception.HttpCallSupersededException;
+import com.azure.android.core.http.policy.MockHttpResponse;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpCallDispatcherTests {
+    @Test
+    public void throttledHostHoldsNewCalls() {
+        final ThrottlingHttpClient httpClient = new ThrottlingHttpClient("x-ms-retry-after-ms", "500");
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).build();
+
+        assertEquals(429, send(pipeline, "https://throttled.com/").getStatusCode());
+
+        final long start = System.nanoTime();
+        assertEquals(200, send(pipeline, "https://throttled.com/").getStatusCode());
+        final long heldMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(heldMillis >= 400, "The call was held for " + heldMillis + " ms only.");
+    }
+
+    @Test
+    public void throttledHostDoesNotHoldOtherHosts() {
+        final ThrottlingHttpClient httpClient = new ThrottlingHttpClient("Retry-After", "10");
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).build();
+
+        assertEquals(429, send(pipeline, "https://throttled.com/").getStatusCode());
+
+        final long start = System.nanoTime();
+        assertEquals(200, send(pipeline, "https://other.com/").getStatusCode());
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis < 5000, "The call to another host was held for " + elapsedMillis + " ms.");
+    }
+
+    @Test
+    public void invalidThrottlingDelayIsIgnored() {
+        final ThrottlingHttpClient httpClient = new ThrottlingHttpClient("Retry-After", "not-a-delay");
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).build();
+
+        assertEquals(429, send(pipeline, "https://throttled.com/").getStatusCode());
+        assertEquals(200, send(pipeline, "https://throttled.com/").getStatusCode());
+    }
+
+    @Test
+    public void malformedUrlFailsItsCallWhileHostIsThrottled() throws InterruptedException {
+        final ThrottlingHttpClient httpClient = new ThrottlingHttpClient("Retry-After", "10");
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).build();
+
+        assertEquals(429, send(pipeline, "https://throttled.com/").getStatusCode());
+
+        final RecordingCallback callback = new RecordingCallback();
+        pipeline.send(new HttpRequest(HttpMethod.GET, "foo://localhost/"), RequestContext.NONE,
+            CancellationToken.NONE, callback);
+        assertTrue(callback.latch.await(30, TimeUnit.SECONDS));
+        assertTrue(callback.error instanceof IllegalArgumentException, "Error: " + callback.error);
+
+        // The dispatcher keeps running the calls to the other hosts.
+        assertEquals(200, send(pipeline, "https://other.com/").getStatusCode());
+        assertEquals(0, httpClient.getHttpCallDispatcher().getMetrics().getRunningCallCount());
+    }
+
+    @Test
+    public void completingPausedPipelineWithoutRunningCallFails() throws InterruptedException {
+        final AtomicReference<HttpPipelinePolicyChain> pausedChain = new AtomicReference<>();
+        final CountDownLatch paused = new CountDownLatch(1);
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new ThrottlingHttpClient("Retry-After", "10"))
+            .policies(chain -> {
+                pausedChain.set(chain);
+                chain.processNextPolicy(chain.getRequest(), new NextPolicyCallback() {
+                    @Override
+                    public PolicyCompleter.CompletionState onSuccess(HttpResponse response,
+                                                                     PolicyCompleter completer) {
+                        return completer.completed(response);
+                    }
+
+                    @Override
+                    public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
+                        return completer.completedError(error);
+                    }
+                }, 200, TimeUnit.MILLISECONDS);
+                paused.countDown();
+            })
+            .build();
+        final RecordingCallback callback = new RecordingCallback();
+        pipeline.send(new HttpRequest(HttpMethod.GET, "https://other.com/"), RequestContext.NONE,
+            CancellationToken.NONE, callback);
+        assertTrue(paused.await(10, TimeUnit.SECONDS));
+
+        // The policy completes its paused pipeline run from outside of the run, no call of the run is running.
+        final RuntimeException error = assertThrows(RuntimeException.class,
+            () -> pausedChain.get().completedError(new IOException("Completed outside of the run.")));
+        assertTrue(error.getCause() instanceof IllegalStateException, "Error: " + error.getCause());
+        assertTrue(callback.error instanceof IOException);
+    }
+
+    @Test
+    public void adaptiveLimitShrinksWhenLatencyGrowsWithConcurrency() throws InterruptedException {
+        // The service keeps a 20 ms latency up to 8 concurrent calls, then queues the calls beyond.
+        final LatencyCurveHttpClient httpClient = new LatencyCurveHttpClient(new LatencyCurve() {
+            @Override
+            public long getLatencyMillis(int concurrentCalls) {
+                return concurrentCalls <= 8 ? 20 : 20L * concurrentCalls / 8;
+            }
+        });
+        final HttpCallDispatcher httpCallDispatcher = httpClient.getHttpCallDispatcher();
+        httpCallDispatcher.setAdaptiveConcurrency(new AdaptiveConcurrencyOptions()
+            .setMinLimit(2)
+            .setMaxLimit(64)
+            .setInitialLimit(48));
+        try {
+            sendConcurrently(new HttpPipelineBuilder().httpClient(httpClient).build(), 600);
+            final HttpCallDispatcherMetrics metrics = awaitIdle(httpCallDispatcher);
+            assertTrue(metrics.isAdaptiveLimitEnabled());
+            assertTrue(metrics.getRunningCallLimit() >= 2 && metrics.getRunningCallLimit() <= 32,
+                "The limit did not converge towards the service capacity: " + metrics.getRunningCallLimit());
+            assertEquals(0, metrics.getRunningCallCount());
+            assertEquals(0, metrics.getWaitingCallCount());
+        } finally {
+            httpClient.close();
+        }
+    }
+
+    @Test
+    public void adaptiveLimitGrowsWhileLatencyIsFlat() throws InterruptedException {
+        final LatencyCurveHttpClient httpClient = new LatencyCurveHttpClient(new LatencyCurve() {
+            @Override
+            public long getLatencyMillis(int concurrentCalls) {
+                return 20;
+            }
+        });
+        final HttpCallDispatcher httpCallDispatcher = httpClient.getHttpCallDispatcher();
+        httpCallDispatcher.setAdaptiveConcurrency(new AdaptiveConcurrencyOptions()
+            .setMinLimit(2)
+            .setMaxLimit(64)
+            .setInitialLimit(4)
+            .setLatencyTolerance(5));
+        try {
+            sendConcurrently(new HttpPipelineBuilder().httpClient(httpClient).build(), 300);
+            assertTrue(httpCallDispatcher.getMetrics().getRunningCallLimit() >= 10,
+                "The limit did not grow: " + httpCallDispatcher.getMetrics().getRunningCallLimit());
+            assertTrue(httpClient.maxConcurrentCalls.get() <= 64);
+        } finally {
+            httpClient.close();
+        }
+    }
+
+    @Test
+    public void adaptiveLimitShrinksOnFailures() throws InterruptedException {
+        final LatencyCurveHttpClient httpClient = new LatencyCurveHttpClient(new LatencyCurve() {
+            @Override
+            public long getLatencyMillis(int concurrentCalls) {
+                // Over 4 concurrent calls the service fails the calls, signaled by a negative latency.
+                return concurrentCalls <= 4 ? 10 : -10;
+            }
+        });
+        final HttpCallDispatcher httpCallDispatcher = httpClient.getHttpCallDispatcher();
+        httpCallDispatcher.setAdaptiveConcurrency(new AdaptiveConcurrencyOptions()
+            .setMinLimit(1)
+            .setInitialLimit(32));
+        try {
+            sendConcurrently(new HttpPipelineBuilder().httpClient(httpClient).build(), 300);
+            assertTrue(httpCallDispatcher.getMetrics().getRunningCallLimit() <= 12,
+                "The limit did not shrink: " + httpCallDispatcher.getMetrics().getRunningCallLimit());
+        } finally {
+            httpClient.close();
+        }
+    }
+
+    @Test
+    public void metricsReportTheFixedLimitByDefault() {
+        final HttpCallDispatcher httpCallDispatcher = new HttpCallDispatcher();
+        httpCallDispatcher.setMaxRunningCalls(10);
+        final HttpCallDispatcherMetrics metrics = httpCallDispatcher.getMetrics();
+        assertEquals(10, metrics.getRunningCallLimit());
+        assertFalse(metrics.isAdaptiveLimitEnabled());
+        httpCallDispatcher.setAdaptiveConcurrency(new AdaptiveConcurrencyOptions().setInitialLimit(6));
+        assertEquals(6, httpCallDispatcher.getMetrics().getRunningCallLimit());
+        httpCallDispatcher.setAdaptiveConcurrency(null);
+        assertEquals(10, httpCallDispatcher.getMetrics().getRunningCallLimit());
+    }
+
+    @Test
+    public void newerCallSupersedesWaitingCallWithSameKey() throws InterruptedException {
+        final GatedHttpClient httpClient = new GatedHttpClient();
+        httpClient.getHttpCallDispatcher().setMaxRunningCalls(1);
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).build();
+        final RequestContext typing = RequestContext.NONE.addData(HttpCallDispatcher.COALESCING_KEY, "typing:1");
+
+        final RecordingCallback blocker = sendAsync(pipeline, "https://service.com/blocker", RequestContext.NONE);
+        assertTrue(httpClient.started.await(5, TimeUnit.SECONDS));
+        final RecordingCallback first = sendAsync(pipeline, "https://service.com/typing/a", typing);
+        final RecordingCallback other = sendAsync(pipeline, "https://service.com/other", RequestContext.NONE);
+        final RecordingCallback second = sendAsync(pipeline, "https://service.com/typing/b", typing);
+        final RecordingCallback third = sendAsync(pipeline, "https://service.com/typing/c", typing);
+
+        // The superseded calls complete right away, without waiting for a running slot.
+        assertTrue(first.latch.await(5, TimeUnit.SECONDS));
+        assertTrue(second.latch.await(5, TimeUnit.SECONDS));
+        assertTrue(first.error instanceof HttpCallSupersededException);
+        assertEquals("typing:1", ((HttpCallSupersededException) first.error).getCoalescingKey());
+        assertTrue(second.error instanceof HttpCallSupersededException);
+
+        httpClient.gate.countDown();
+        for (RecordingCallback callback : new RecordingCallback[] { blocker, other, third }) {
+            assertTrue(callback.latch.await(5, TimeUnit.SECONDS));
+            assertEquals(200, callback.response.getStatusCode());
+        }
+        // The latest call took the place of the first one in the queue.
+        assertEquals(Arrays.asList("/blocker", "/typing/c", "/other"), httpClient.sentPaths);
+    }
+
+    @Test
+    public void callsWithDifferentKeysDoNotSupersedeEachOther() throws InterruptedException {
+        final GatedHttpClient httpClient = new GatedHttpClient();
+        httpClient.getHttpCallDispatcher().setMaxRunningCalls(1);
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).build();
+
+        final RecordingCallback blocker = sendAsync(pipeline, "https://service.com/blocker", RequestContext.NONE);
+        assertTrue(httpClient.started.await(5, TimeUnit.SECONDS));
+        final RecordingCallback thread1 = sendAsync(pipeline, "https://service.com/topic/1",
+            RequestContext.NONE.addData(HttpCallDispatcher.COALESCING_KEY, "topic:1"));
+        final RecordingCallback thread2 = sendAsync(pipeline, "https://service.com/topic/2",
+            RequestContext.NONE.addData(HttpCallDispatcher.COALESCING_KEY, "topic:2"));
+
+        httpClient.gate.countDown();
+        for (RecordingCallback callback : new RecordingCallback[] { blocker, thread1, thread2 }) {
+            assertTrue(callback.latch.await(5, TimeUnit.SECONDS));
+            assertEquals(200, callback.response.getStatusCode());
+        }
+        assertEquals(Arrays.asList("/blocker", "/topic/1", "/topic/2"), httpClient.sentPaths);
+    }
+
+    @Test
+    public void runningCallIsNotSuperseded() throws InterruptedException {
+        final GatedHttpClient httpClient = new GatedHttpClient();
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).build();
+        final RequestContext topic = RequestContext.NONE.addData(HttpCallDispatcher.COALESCING_KEY, "topic:1");
+
+        final RecordingCallback running = sendAsync(pipeline, "https://service.com/topic/a", topic);
+        assertTrue(httpClient.started.await(5, TimeUnit.SECONDS));
+        final RecordingCallback newer = sendAsync(pipeline, "https://service.com/topic/b", topic);
+
+        httpClient.gate.countDown();
+        assertTrue(running.latch.await(5, TimeUnit.SECONDS));
+        assertTrue(newer.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(200, running.response.getStatusCode());
+        assertEquals(200, newer.response.getStatusCode());
+        assertEquals(2, httpClient.sentPaths.size());
+    }
+
+    @Test
+    public void boundedThreadPoolQueuesCallsBeyondItsThreads() throws InterruptedException {
+        final HttpCallDispatcher httpCallDispatcher
+            = new HttpCallDispatcher(HttpCallExecutorStrategy.boundedThreadPool(2));
+        final GatedHttpClient httpClient = new GatedHttpClient(httpCallDispatcher);
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).build();
+
+        final List<RecordingCallback> callbacks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            callbacks.add(sendAsync(pipeline, "https://service.com/" + i, RequestContext.NONE));
+        }
+        assertTrue(httpClient.started.await(5, TimeUnit.SECONDS));
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        HttpCallDispatcherMetrics metrics = httpCallDispatcher.getMetrics();
+        while (metrics.getExecutorActiveThreadCount() < 2 && deadline - System.nanoTime() > 0) {
+            Thread.sleep(10);
+            metrics = httpCallDispatcher.getMetrics();
+        }
+        assertEquals(2, metrics.getExecutorThreadCount());
+        assertEquals(2, metrics.getExecutorActiveThreadCount());
+        assertEquals(3, metrics.getExecutorQueuedCallCount());
+        assertEquals(5, metrics.getRunningCallCount());
+        assertEquals(0, metrics.getExecutorRejectedCallCount());
+
+        httpClient.gate.countDown();
+        for (RecordingCallback callback : callbacks) {
+            assertTrue(callback.latch.await(5, TimeUnit.SECONDS));
+            assertEquals(200, callback.response.getStatusCode());
+        }
+        httpCallDispatcher.shutdown();
+        assertTrue(httpCallDispatcher.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void virtualThreadPerTaskRunsCalls() throws InterruptedException {
+        final HttpCallExecutorStrategy strategy = HttpCallExecutorStrategy.virtualThreadPerTask();
+        assertEquals(HttpCallExecutorStrategy.isVirtualThreadSupported(), strategy.isVirtualThreads());
+        assertTrue(strategy.isShutdownWithDispatcher());
+
+        final HttpCallDispatcher httpCallDispatcher = new HttpCallDispatcher(strategy);
+        final GatedHttpClient httpClient = new GatedHttpClient(httpCallDispatcher);
+        httpClient.gate.countDown();
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).build();
+        final RecordingCallback callback = sendAsync(pipeline, "https://service.com/", RequestContext.NONE);
+        assertTrue(callback.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(200, callback.response.getStatusCode());
+
+        httpCallDispatcher.shutdown();
+        assertTrue(httpCallDispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(strategy.getExecutorService().isTerminated());
+    }
+
+    @Test
+    public void shutdownCompletesAcceptedCallsAndRejectsNewOnes() throws InterruptedException {
+        final HttpCallDispatcher httpCallDispatcher
+            = new HttpCallDispatcher(HttpCallExecutorStrategy.cachedThreadPool());
+        final GatedHttpClient httpClient = new GatedHttpClient(httpCallDispatcher);
+        // Delays the network call, as a retry does, for the pipeline run to be paused when the dispatcher shuts down.
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .policies(chain -> chain.processNextPolicy(chain.getRequest(), new NextPolicyCallback() {
+                @Override
+                public PolicyCompleter.CompletionState onSuccess(HttpResponse response, PolicyCompleter completer) {
+                    return completer.completed(response);
+                }
+
+                @Override
+                public PolicyCompleter.CompletionState onError(Throwable error, PolicyCompleter completer) {
+                    return completer.completedError(error);
+                }
+            }, 200, TimeUnit.MILLISECONDS))
+            .httpClient(httpClient)
+            .build();
+        httpClient.gate.countDown();
+
+        final RecordingCallback accepted = sendAsync(pipeline, "https://service.com/accepted", RequestContext.NONE);
+        Thread.sleep(50);
+        httpCallDispatcher.shutdown();
+        assertTrue(httpCallDispatcher.isShutdown());
+        final RecordingCallback rejected = sendAsync(pipeline, "https://service.com/rejected", RequestContext.NONE);
+
+        assertTrue(rejected.latch.await(5, TimeUnit.SECONDS));
+        assertTrue(rejected.error instanceof InterruptedIOException);
+        assertFalse(httpCallDispatcher.awaitTermination(10, TimeUnit.MILLISECONDS));
+        assertTrue(accepted.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(200, accepted.response.getStatusCode());
+        assertTrue(httpCallDispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(httpCallDispatcher.getExecutorStrategy().getExecutorService().isTerminated());
+        assertEquals(Collections.singletonList("/accepted"), httpClient.sentPaths);
+    }
+
+    @Test
+    public void shutdownLeavesCallerManagedExecutorRunning() throws InterruptedException {
+        final ExecutorService executorService = Executors.newFixedThreadPool(1);
+        try {
+            final HttpCallDispatcher httpCallDispatcher
+                = new HttpCallDispatcher(HttpCallExecutorStrategy.fromExecutor(executorService, false));
+            httpCallDispatcher.shutdown();
+            assertTrue(httpCallDispatcher.awaitTermination(5, TimeUnit.SECONDS));
+            assertFalse(executorService.isShutdown());
+
+            final HttpCallDispatcher owningDispatcher
+                = new HttpCallDispatcher(HttpCallExecutorStrategy.fromExecutor(executorService, true));
+            owningDispatcher.shutdown();
+            assertTrue(owningDispatcher.awaitTermination(5, TimeUnit.SECONDS));
+            assertTrue(executorService.isShutdown());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static RecordingCallback sendAsync(HttpPipeline pipeline, String url, RequestContext requestContext) {
+        final RecordingCallback callback = new RecordingCallback();
+        pipeline.send(new HttpRequest(HttpMethod.GET, url), requestContext, CancellationToken.NONE, callback);
+        return callback;
+    }
+
+    private static void sendConcurrently(HttpPipeline pipeline, int calls) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(calls);
+        for (int i = 0; i < calls; i++) {
+            pipeline.send(new HttpRequest(HttpMethod.GET, "https://service.com/"), RequestContext.NONE,
+                CancellationToken.NONE, new HttpCallback() {
+                    @Override
+                    public void onSuccess(HttpResponse httpResponse) {
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        latch.countDown();
+                    }
+                });
+        }
+        assertTrue(latch.await(60, TimeUnit.SECONDS), "The calls did not complete.");
+    }
+
+    private static HttpCallDispatcherMetrics awaitIdle(HttpCallDispatcher httpCallDispatcher)
+        throws InterruptedException {
+        // The dispatcher releases a call once its callback returned.
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        HttpCallDispatcherMetrics metrics = httpCallDispatcher.getMetrics();
+        while (metrics.getRunningCallCount() > 0 && deadline - System.nanoTime() > 0) {
+            Thread.sleep(10);
+            metrics = httpCallDispatcher.getMetrics();
+        }
+        return metrics;
+    }
+
+    private static HttpResponse send(HttpPipeline pipeline, String url) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final HttpResponse[] response = new HttpResponse[1];
+        pipeline.send(new HttpRequest(HttpMethod.GET, url), RequestContext.NONE, CancellationToken.NONE,
+            new HttpCallback() {
+                @Override
+                public void onSuccess(HttpResponse httpResponse) {
+                    response[0] = httpResponse;
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    latch.countDown();
+                }
+            });
+        try {
+            assertTrue(latch.await(30, TimeUnit.SECONDS), "The call to " + url + " did not complete.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return response[0];
+    }
+
+    private static final class RecordingCallback implements HttpCallback {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile HttpResponse response;
+        private volatile Throwable error;
+
+        @Override
+        public void onSuccess(HttpResponse httpResponse) {
+            this.response = httpResponse;
+            this.latch.countDown();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+            this.latch.countDown();
+        }
+    }
+
+    /**
+     * Holds the first request until the gate opens, responds with 200 to all the requests.
+     */
+    private static final class GatedHttpClient implements HttpClient {
+        private final HttpCallDispatcher httpCallDispatcher;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private final List<String> sentPaths = Collections.synchronizedList(new ArrayList<>());
+
+        private GatedHttpClient() {
+            this(new HttpCallDispatcher());
+        }
+
+        private GatedHttpClient(HttpCallDispatcher httpCallDispatcher) {
+            this.httpCallDispatcher = httpCallDispatcher;
+        }
+
+        @Override
+        public HttpCallDispatcher getHttpCallDispatcher() {
+            return this.httpCallDispatcher;
+        }
+
+        @Override
+        public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+            this.sentPaths.add(httpRequest.getUrl().getPath());
+            this.started.countDown();
+            try {
+                this.gate.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200));
+        }
+    }
+
+    /**
+     * The latency of a simulated service as a function of the number of calls it serves concurrently.
+     */
+    private interface LatencyCurve {
+        /**
+         * Gets the latency of a call.
+         *
+         * @param concurrentCalls The number of calls in flight, including the call.
+         * @return The latency in milliseconds, negated for a call that fails after the latency.
+         */
+        long getLatencyMillis(int concurrentCalls);
+    }
+
+    /**
+     * Completes the requests asynchronously after the latency its curve gives for the calls in flight.
+     */
+    private static final class LatencyCurveHttpClient implements HttpClient {
+        private final HttpCallDispatcher httpCallDispatcher = new HttpCallDispatcher();
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        private final AtomicInteger concurrentCalls = new AtomicInteger();
+        private final AtomicInteger maxConcurrentCalls = new AtomicInteger();
+        private final LatencyCurve latencyCurve;
+
+        private LatencyCurveHttpClient(LatencyCurve latencyCurve) {
+            this.latencyCurve = latencyCurve;
+        }
+
+        @Override
+        public HttpCallDispatcher getHttpCallDispatcher() {
+            return this.httpCallDispatcher;
+        }
+
+        @Override
+        public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+            final int concurrent = this.concurrentCalls.incrementAndGet();
+            int max;
+            while ((max = this.maxConcurrentCalls.get()) < concurrent
+                && !this.maxConcurrentCalls.compareAndSet(max, concurrent)) {
+                // Retry.
+            }
+            final long latencyMillis = this.latencyCurve.getLatencyMillis(concurrent);
+            this.scheduler.schedule(() -> {
+                this.concurrentCalls.decrementAndGet();
+                if (latencyMillis < 0) {
+                    httpCallback.onError(new IOException("Service overloaded."));
+                } else {
+                    httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200));
+                }
+            }, Math.abs(latencyMillis), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void close() {
+            this.scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Throttles the first request to "throttled.com" with the given header, responds with 200 otherwise.
+     */
+    private static final class ThrottlingHttpClient implements HttpClient {
+        private final HttpCallDispatcher httpCallDispatcher = new HttpCallDispatcher();
+        private final AtomicBoolean throttled = new AtomicBoolean();
+        private final String headerName;
+        private final String headerValue;
+
+        private ThrottlingHttpClient(String headerName, String headerValue) {
+            this.headerName = headerName;
+            this.headerValue = headerValue;
+        }
+
+        @Override
+        public HttpCallDispatcher getHttpCallDispatcher() {
+            return this.httpCallDispatcher;
+        }
+
+        @Override
+        public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+            if ("throttled.com".equals(httpRequest.getUrl().getHost()) && this.throttled.compareAndSet(false, true)) {
+                httpCallback.onSuccess(new MockHttpResponse(httpRequest, 429)
+                    .addHeader(this.headerName, this.headerValue));
+            } else {
+                httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200));
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http;
+
+import com.azure.android.core.http.policy.MockHttpResponse;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the {@link HttpCallExecutorStrategy} strategies: the platform threads started and the time to complete a
+ * burst of calls blocking their thread, as HttpURLConnection does, and the overhead of handing a call over to the
+ * dispatcher thread and back, measured over calls completing right away.
+ *
+ * <p>
+ * The benchmark takes several seconds and only runs when the {@code AZURE_RUN_BENCHMARKS} environment variable is
+ * set to {@code true}; the results are printed to the standard output.
+ * </p>
+ */
+@EnabledIfEnvironmentVariable(named = "AZURE_RUN_BENCHMARKS", matches = "true")
+public class HttpCallExecutorBenchmark {
+    private static final int BURST_CALLS = 2_000;
+    private static final int BURST_MAX_RUNNING_CALLS = 256;
+    private static final long BLOCKING_MILLIS = 5;
+    private static final int WARM_UP_HAND_OVERS = 20_000;
+    private static final int HAND_OVERS = 100_000;
+
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    @Test
+    public void burstOfBlockingCalls() throws InterruptedException {
+        System.out.println("Burst of " + BURST_CALLS + " calls blocking " + BLOCKING_MILLIS + " ms, "
+            + BURST_MAX_RUNNING_CALLS + " running calls at most");
+        for (Map.Entry<String, HttpCallExecutorStrategy> strategy : createStrategies().entrySet()) {
+            final HttpCallDispatcher httpCallDispatcher = new HttpCallDispatcher(strategy.getValue());
+            httpCallDispatcher.setMaxRunningCalls(BURST_MAX_RUNNING_CALLS);
+            final HttpPipeline pipeline = new HttpPipelineBuilder()
+                .httpClient(new BlockingHttpClient(httpCallDispatcher, BLOCKING_MILLIS))
+                .build();
+
+            THREAD_BEAN.resetPeakThreadCount();
+            final long threadsBefore = THREAD_BEAN.getTotalStartedThreadCount();
+            final long start = System.nanoTime();
+            sendAndAwait(pipeline, BURST_CALLS);
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            System.out.printf("%s: %,d ms, %,d platform threads started, %,d live threads at peak%n",
+                strategy.getKey(), elapsedMillis, THREAD_BEAN.getTotalStartedThreadCount() - threadsBefore,
+                THREAD_BEAN.getPeakThreadCount());
+
+            httpCallDispatcher.shutdown();
+            assertTrue(httpCallDispatcher.awaitTermination(30, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void handOverOverhead() throws InterruptedException {
+        System.out.println("Hand over of a call completing right away to the dispatcher and back");
+        for (Map.Entry<String, HttpCallExecutorStrategy> strategy : createStrategies().entrySet()) {
+            final HttpCallDispatcher httpCallDispatcher = new HttpCallDispatcher(strategy.getValue());
+            final HttpPipeline pipeline = new HttpPipelineBuilder()
+                .httpClient(new BlockingHttpClient(httpCallDispatcher, 0))
+                .build();
+
+            for (int i = 0; i < WARM_UP_HAND_OVERS; i++) {
+                sendAndAwait(pipeline, 1);
+            }
+            final long threadsBefore = THREAD_BEAN.getTotalStartedThreadCount();
+            final long start = System.nanoTime();
+            for (int i = 0; i < HAND_OVERS; i++) {
+                sendAndAwait(pipeline, 1);
+            }
+            final long elapsedNanos = System.nanoTime() - start;
+            System.out.printf("%s: %,d ns per call, %,d platform threads started%n", strategy.getKey(),
+                elapsedNanos / HAND_OVERS, THREAD_BEAN.getTotalStartedThreadCount() - threadsBefore);
+
+            httpCallDispatcher.shutdown();
+            assertTrue(httpCallDispatcher.awaitTermination(30, TimeUnit.SECONDS));
+        }
+    }
+
+    private static Map<String, HttpCallExecutorStrategy> createStrategies() {
+        final Map<String, HttpCallExecutorStrategy> strategies = new LinkedHashMap<>();
+        strategies.put("cached thread pool", HttpCallExecutorStrategy.cachedThreadPool());
+        strategies.put("bounded thread pool (16)", HttpCallExecutorStrategy.boundedThreadPool(16));
+        strategies.put("bounded thread pool (" + BURST_MAX_RUNNING_CALLS + ")",
+            HttpCallExecutorStrategy.boundedThreadPool(BURST_MAX_RUNNING_CALLS));
+        if (HttpCallExecutorStrategy.isVirtualThreadSupported()) {
+            strategies.put("virtual thread per task", HttpCallExecutorStrategy.virtualThreadPerTask());
+        } else {
+            System.out.println("Virtual threads are not supported by this runtime, skipping them.");
+        }
+        return strategies;
+    }
+
+    private static void sendAndAwait(HttpPipeline pipeline, int calls) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(calls);
+        for (int i = 0; i < calls; i++) {
+            pipeline.send(new HttpRequest(HttpMethod.GET, "https://service.com/"), RequestContext.NONE,
+                CancellationToken.NONE, new HttpCallback() {
+                    @Override
+                    public void onSuccess(HttpResponse response) {
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        latch.countDown();
+                    }
+                });
+        }
+        assertTrue(latch.await(60, TimeUnit.SECONDS), "The calls did not complete.");
+    }
+
+    /**
+     * Blocks the dispatcher thread for the given time before responding with 200.
+     */
+    private static final class BlockingHttpClient implements HttpClient {
+        private final HttpCallDispatcher httpCallDispatcher;
+        private final long blockingMillis;
+
+        private BlockingHttpClient(HttpCallDispatcher httpCallDispatcher, long blockingMillis) {
+            this.httpCallDispatcher = httpCallDispatcher;
+            this.blockingMillis = blockingMillis;
+        }
+
+        @Override
+        public HttpCallDispatcher getHttpCallDispatcher() {
+            return this.httpCallDispatcher;
+        }
+
+        @Override
+        public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+            if (this.blockingMillis > 0) {
+                try {
+                    Thread.sleep(this.blockingMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200));
+        }
+    }
+}
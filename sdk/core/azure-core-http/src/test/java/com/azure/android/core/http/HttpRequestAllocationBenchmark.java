@@ -0,0 +1,103 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http;
+
+import com.azure.android.core.http.policy.NoOpHttpClient;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the memory allocated to construct, copy and send an {@link HttpRequest}.
+ *
+ * <p>
+ * The benchmark takes several seconds and only runs when the {@code AZURE_RUN_BENCHMARKS} environment variable is
+ * set to {@code true}; the results are printed to the standard output.
+ * </p>
+ */
+@EnabledIfEnvironmentVariable(named = "AZURE_RUN_BENCHMARKS", matches = "true")
+public class HttpRequestAllocationBenchmark {
+    private static final String URL = "https://contoso.communication.azure.com/chat/threads/"
+        + "19:a0dcd1ad0e8b4b35b5c4c1bf0c6d7f2e@thread.v2/messages?api-version=2021-09-07";
+    private static final int WARM_UP_ITERATIONS = 100_000;
+    private static final int ITERATIONS = 200_000;
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    public void constructCopyAndSend() throws InterruptedException {
+        final Runnable construct = () -> createRequest();
+        measure("construct", construct);
+
+        final HttpRequest request = createRequest();
+        request.getUrl();
+        final Runnable copy = () -> request.copy();
+        measure("copy", copy);
+
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(new NoOpHttpClient()).build();
+        final Runnable send = () -> send(pipeline, createRequest());
+        measure("construct and send", send);
+    }
+
+    private static HttpRequest createRequest() {
+        return new HttpRequest(HttpMethod.POST, URL)
+            .setHeader("Content-Type", "application/json")
+            .setBody("{\"content\":\"Hello\"}");
+    }
+
+    private static void send(HttpPipeline pipeline, HttpRequest request) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        pipeline.send(request, RequestContext.NONE, CancellationToken.NONE, new HttpCallback() {
+            @Override
+            public void onSuccess(HttpResponse response) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                latch.countDown();
+            }
+        });
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS), "The call did not complete.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void measure(String operation, Runnable runnable) {
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            runnable.run();
+        }
+        // The sends run on the dispatcher threads, so the allocations of all the threads are counted.
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            runnable.run();
+        }
+        final long elapsedNanos = System.nanoTime() - start;
+        final long allocated = allocatedBytes() - allocatedBefore;
+        System.out.printf("%s: %,d bytes allocated, %,d ns per call%n", operation, allocated / ITERATIONS,
+            elapsedNanos / ITERATIONS);
+    }
+
+    private static long allocatedBytes() {
+        long allocated = 0;
+        for (long bytes : THREAD_BEAN.getThreadAllocatedBytes(THREAD_BEAN.getAllThreadIds())) {
+            if (bytes > 0) {
+                allocated += bytes;
+            }
+        }
+        return allocated;
+    }
+}
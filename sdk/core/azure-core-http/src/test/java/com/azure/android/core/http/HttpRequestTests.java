@@ -0,0 +1,93 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpRequestTests {
+    private static final String URL = "https://chat.contoso.com:8443/threads/1/messages?api-version=2021-09-07";
+
+    @Test
+    public void urlIsParsedOnce() {
+        final HttpRequest request = new HttpRequest(HttpMethod.GET, URL);
+        final URL url = request.getUrl();
+        assertEquals("chat.contoso.com", url.getHost());
+        assertEquals(8443, url.getPort());
+        assertEquals("/threads/1/messages", url.getPath());
+        assertSame(url, request.getUrl());
+    }
+
+    @Test
+    public void setUrlReplacesTheParsedUrl() {
+        final HttpRequest request = new HttpRequest(HttpMethod.GET, URL);
+        request.getUrl();
+        request.setUrl("https://chat.fabrikam.com/threads");
+        assertEquals("chat.fabrikam.com", request.getUrl().getHost());
+    }
+
+    @Test
+    public void urlWithoutSchemeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new HttpRequest(HttpMethod.GET, "chat.contoso.com"));
+        assertThrows(IllegalArgumentException.class, () -> new HttpRequest(HttpMethod.GET, "://chat.contoso.com"));
+        assertThrows(IllegalArgumentException.class, () -> new HttpRequest(HttpMethod.GET, URL).setUrl("/threads"));
+        assertThrows(NullPointerException.class, () -> new HttpRequest(HttpMethod.GET, null));
+    }
+
+    @Test
+    public void malformedUrlIsRejectedWhenParsed() {
+        final HttpRequest request = new HttpRequest(HttpMethod.GET, "unknown://chat.contoso.com");
+        assertThrows(IllegalArgumentException.class, request::getUrl);
+    }
+
+    @Test
+    public void copySharesTheParsedUrl() {
+        final HttpRequest request = new HttpRequest(HttpMethod.GET, URL);
+        final URL url = request.getUrl();
+        assertSame(url, request.copy().getUrl());
+
+        // A copy made before parsing parses its own.
+        final HttpRequest unparsed = new HttpRequest(HttpMethod.GET, URL);
+        final HttpRequest unparsedCopy = unparsed.copy();
+        assertEquals(url, unparsedCopy.getUrl());
+        assertEquals(url, unparsed.getUrl());
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        final HttpRequest request = new HttpRequest(HttpMethod.POST, URL)
+            .setHeader("Content-Type", "application/json")
+            .setBody("{}");
+        request.getTags().put("attempt", 1);
+
+        final HttpRequest copy = request.copy();
+        copy.setHeader("Content-Type", "text/plain");
+        copy.getTags().put("attempt", 2);
+        copy.setUrl("https://chat.fabrikam.com/threads");
+
+        assertEquals("application/json", request.getHeaders().getValue("Content-Type"));
+        assertEquals(1, request.getTags().get("attempt"));
+        assertEquals("chat.contoso.com", request.getUrl().getHost());
+        assertEquals(HttpMethod.POST, copy.getHttpMethod());
+        assertEquals("2", copy.getHeaders().getValue("Content-Length"));
+    }
+
+    @Test
+    public void tagsAreCreatedOnFirstUse() {
+        final HttpRequest request = new HttpRequest(HttpMethod.GET, URL);
+        final HttpRequest copy = request.copy();
+        assertTrue(copy.getTags().isEmpty());
+
+        request.getTags().put("key", "value");
+        assertNull(copy.getTags().get("key"));
+        assertEquals("value", request.copy().getTags().get("key"));
+    }
+}
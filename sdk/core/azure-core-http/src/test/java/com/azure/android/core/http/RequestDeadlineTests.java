@@ -0,0 +1,131 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http;
+
+import com.azure.android.core.http.exception.DeadlineExceededException;
+import com.azure.android.core.http.policy.MockHttpResponse;
+import com.azure.android.core.http.policy.NoOpHttpClient;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+
+import org.junit.jupiter.api.Test;
+import org.threeten.bp.Duration;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestDeadlineTests {
+    @Test
+    public void remainingTimeCountsDown() {
+        final RequestDeadline deadline = RequestDeadline.after(Duration.ofMinutes(1));
+        assertFalse(deadline.isExpired());
+        assertTrue(deadline.getRemainingNanos() <= TimeUnit.MINUTES.toNanos(1));
+        assertTrue(deadline.getRemaining().getSeconds() >= 50);
+
+        final RequestDeadline expired = RequestDeadline.after(Duration.ZERO);
+        assertTrue(expired.isExpired());
+        assertEquals(Duration.ZERO, expired.getRemaining());
+
+        assertThrows(IllegalArgumentException.class, () -> RequestDeadline.after(Duration.ofMillis(-1)));
+        assertThrows(NullPointerException.class, () -> RequestDeadline.after(null));
+    }
+
+    @Test
+    public void timeoutIsBoundByTheRemainingTime() {
+        final RequestDeadline deadline = RequestDeadline.after(Duration.ofSeconds(10));
+        assertEquals(5_000, deadline.boundTimeout(5_000, TimeUnit.MILLISECONDS));
+        assertTrue(deadline.boundTimeout(60_000, TimeUnit.MILLISECONDS) <= 10_000);
+        // No timeout becomes the remaining time.
+        assertTrue(deadline.boundTimeout(0, TimeUnit.MILLISECONDS) > 9_000);
+
+        // A passed deadline gives the shortest timeout rather than 0, which usually means no timeout.
+        assertEquals(1, RequestDeadline.after(Duration.ZERO).boundTimeout(5_000, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void deadlineIsReadFromTheContext() {
+        final RequestDeadline deadline = RequestDeadline.after(Duration.ofSeconds(10));
+        assertSame(deadline,
+            RequestDeadline.fromContext(RequestContext.NONE.addData(RequestDeadline.CONTEXT_KEY, deadline)));
+        assertNull(RequestDeadline.fromContext(RequestContext.NONE));
+        assertNull(RequestDeadline.fromContext(RequestContext.NONE.addData(RequestDeadline.CONTEXT_KEY, "10s")));
+    }
+
+    @Test
+    public void pipelineTagsTheRequestWithTheDeadline() throws InterruptedException {
+        final AtomicReference<RequestDeadline> sentDeadline = new AtomicReference<>();
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new NoOpHttpClient() {
+                @Override
+                public void send(HttpRequest httpRequest,
+                                 CancellationToken cancellationToken,
+                                 HttpCallback httpCallback) {
+                    sentDeadline.set(RequestDeadline.fromRequest(httpRequest));
+                    httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200));
+                }
+            })
+            .build();
+
+        final RequestDeadline deadline = RequestDeadline.after(Duration.ofSeconds(10));
+        final AtomicReference<Object> result = sendAndAwait(pipeline,
+            RequestContext.NONE.addData(RequestDeadline.CONTEXT_KEY, deadline));
+        assertTrue(result.get() instanceof HttpResponse);
+        assertSame(deadline, sentDeadline.get());
+
+        sendAndAwait(pipeline, RequestContext.NONE);
+        assertNull(sentDeadline.get());
+    }
+
+    @Test
+    public void expiredDeadlineFailsTheCallBeforeSending() throws InterruptedException {
+        final AtomicInteger sendCount = new AtomicInteger();
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new NoOpHttpClient() {
+                @Override
+                public void send(HttpRequest httpRequest,
+                                 CancellationToken cancellationToken,
+                                 HttpCallback httpCallback) {
+                    sendCount.incrementAndGet();
+                    httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200));
+                }
+            })
+            .build();
+
+        final AtomicReference<Object> result = sendAndAwait(pipeline,
+            RequestContext.NONE.addData(RequestDeadline.CONTEXT_KEY, RequestDeadline.after(Duration.ZERO)));
+        assertTrue(result.get() instanceof DeadlineExceededException);
+        assertEquals(0, sendCount.get());
+    }
+
+    private static AtomicReference<Object> sendAndAwait(HttpPipeline pipeline, RequestContext requestContext)
+        throws InterruptedException {
+        final AtomicReference<Object> result = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        pipeline.send(new HttpRequest(HttpMethod.GET, "https://service.com/"), requestContext,
+            CancellationToken.NONE, new HttpCallback() {
+                @Override
+                public void onSuccess(HttpResponse response) {
+                    result.set(response);
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    result.set(error);
+                    latch.countDown();
+                }
+            });
+        assertTrue(latch.await(30, TimeUnit.SECONDS), "The call did not complete.");
+        return result;
+    }
+}
@@ -0,0 +1,58 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.implementation;
+
+import com.azure.android.core.credential.AccessToken;
+import com.azure.android.core.credential.TokenCredential;
+import com.azure.android.core.credential.TokenRequestContext;
+
+import org.junit.jupiter.api.Test;
+import org.threeten.bp.OffsetDateTime;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+public class AccessTokenCacheTests {
+    @Test
+    public void expiringTokenIsServedWhileRefreshingInBackground() throws InterruptedException {
+        // The first token is inside the refresh window, the second one is not.
+        final AccessToken[] tokens = {
+            new AccessToken("token1", OffsetDateTime.now().plusMinutes(1)),
+            new AccessToken("token2", OffsetDateTime.now().plusHours(1))
+        };
+        final List<Thread> callingThreads = new CopyOnWriteArrayList<>();
+        final TokenCredential credential = (request, callback) -> {
+            callingThreads.add(Thread.currentThread());
+            callback.onSuccess(tokens[callingThreads.size() - 1]);
+        };
+        final AccessTokenCache cache = new AccessTokenCache(credential,
+            new TokenRequestContext().addScopes("scope"), 0);
+
+        final AccessToken[] retrieved = new AccessToken[1];
+        cache.getToken(new TokenCredential.TokenCredentialCallback() {
+            @Override
+            public void onSuccess(AccessToken accessToken) {
+                retrieved[0] = accessToken;
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+        });
+        assertEquals("token1", retrieved[0].getToken());
+        assertEquals("token1", cache.getCachedToken().getToken());
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!"token2".equals(cache.getCachedToken().getToken()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("token2", cache.getCachedToken().getToken());
+        assertEquals(2, callingThreads.size());
+        // The background refresh doesn't run on the thread of the request.
+        assertNotSame(Thread.currentThread(), callingThreads.get(1));
+    }
+}
@@ -0,0 +1,88 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.implementation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BoundedRingBufferTests {
+    @Test
+    public void itemsArePolledInOrderAndFullBufferRejectsOffers() {
+        final BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(3);
+        // The capacity is rounded up to 4.
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+
+        assertEquals(0, buffer.poll());
+        assertTrue(buffer.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, buffer.poll());
+        }
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void invalidCapacityIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedRingBuffer<>(0));
+        assertThrows(NullPointerException.class, () -> new BoundedRingBuffer<>(1).offer(null));
+    }
+
+    @Test
+    public void concurrentProducersLoseNoItems() throws InterruptedException {
+        final int producerCount = 4;
+        final int itemsPerProducer = 20_000;
+        final BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(64);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger rejected = new AtomicInteger();
+        final List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < producerCount; p++) {
+            final int producer = p;
+            final Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < itemsPerProducer; i++) {
+                    final Integer item = producer * itemsPerProducer + i;
+                    while (!buffer.offer(item)) {
+                        rejected.incrementAndGet();
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.start();
+            producers.add(thread);
+        }
+
+        start.countDown();
+        final Set<Integer> received = new HashSet<>();
+        final long deadline = System.currentTimeMillis() + 30_000;
+        while (received.size() < producerCount * itemsPerProducer && System.currentTimeMillis() < deadline) {
+            final Integer item = buffer.poll();
+            if (item != null) {
+                assertTrue(received.add(item), "Item " + item + " was received twice.");
+            }
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertEquals(producerCount * itemsPerProducer, received.size());
+        assertNull(buffer.poll());
+    }
+}
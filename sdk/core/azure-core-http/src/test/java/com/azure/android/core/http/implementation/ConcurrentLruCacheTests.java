@@ -0,0 +1,83 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.implementation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentLruCacheTests {
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        // Small enough to have a single segment, so the eviction order is exact.
+        final ConcurrentLruCache<String, Integer> cache = new ConcurrentLruCache<>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        assertEquals(1, cache.get("a"));
+
+        cache.put("d", 4);
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(4, cache.get("d"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void sizeIsBounded() {
+        final ConcurrentLruCache<String, Integer> cache = new ConcurrentLruCache<>(1000);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put("https://contoso.com/chat/threads/" + i, i);
+        }
+        assertTrue(cache.size() <= 1000, "The cache holds " + cache.size() + " entries.");
+        // Recent entries are still cached.
+        assertEquals(9_999, cache.get("https://contoso.com/chat/threads/9999"));
+    }
+
+    @Test
+    public void invalidMaxSizeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrentLruCache<String, String>(0));
+    }
+
+    @Test
+    public void concurrentAccessKeepsTheCacheConsistent() throws InterruptedException {
+        final ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<>(256);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int thread = t;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 20_000; i++) {
+                        final String key = "key" + ((i * 31 + thread) % 1024);
+                        final String value = cache.get(key);
+                        if (value == null) {
+                            cache.put(key, key);
+                        } else if (!value.equals(key)) {
+                            throw new AssertionError("Unexpected value " + value + " for " + key);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertTrue(cache.size() <= 256);
+    }
+}
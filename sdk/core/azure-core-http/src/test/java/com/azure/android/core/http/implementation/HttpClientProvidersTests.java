@@ -0,0 +1,76 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.implementation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpClientProvidersTests {
+    @Test
+    public void transportIsSharedUntilTheLastReferenceIsReleased() {
+        final TransportFactory factory = new TransportFactory();
+        final Object transport = HttpClientProviders.acquireSharedTransport("shared", factory);
+        assertSame(transport, HttpClientProviders.acquireSharedTransport("shared", factory));
+        assertEquals(2, HttpClientProviders.getSharedTransportReferenceCount("shared"));
+        assertEquals(1, factory.created.size());
+
+        HttpClientProviders.releaseSharedTransport("shared");
+        assertTrue(factory.disposed.isEmpty());
+        HttpClientProviders.releaseSharedTransport("shared");
+        assertEquals(1, factory.disposed.size());
+        assertSame(transport, factory.disposed.get(0));
+        assertEquals(0, HttpClientProviders.getSharedTransportReferenceCount("shared"));
+
+        // The next acquire creates a new transport.
+        assertNotSame(transport, HttpClientProviders.acquireSharedTransport("shared", factory));
+        HttpClientProviders.releaseSharedTransport("shared");
+    }
+
+    @Test
+    public void transportsAreKeyedByConfiguration() {
+        final TransportFactory factory = new TransportFactory();
+        final Object first = HttpClientProviders.acquireSharedTransport("first", factory);
+        final Object second = HttpClientProviders.acquireSharedTransport("second", factory);
+        assertNotSame(first, second);
+
+        HttpClientProviders.releaseSharedTransport("first");
+        assertEquals(1, HttpClientProviders.getSharedTransportReferenceCount("second"));
+        HttpClientProviders.releaseSharedTransport("second");
+    }
+
+    @Test
+    public void invalidUsesAreRejected() {
+        assertThrows(IllegalStateException.class, () -> HttpClientProviders.releaseSharedTransport("unknown"));
+
+        HttpClientProviders.acquireSharedTransport("factory", new TransportFactory());
+        assertThrows(IllegalStateException.class,
+            () -> HttpClientProviders.acquireSharedTransport("factory", new TransportFactory()));
+        HttpClientProviders.releaseSharedTransport("factory");
+    }
+
+    private static final class TransportFactory implements HttpClientProviders.SharedTransportFactory<Object> {
+        private final List<Object> created = new ArrayList<>();
+        private final List<Object> disposed = new ArrayList<>();
+
+        @Override
+        public Object create() {
+            final Object transport = new Object();
+            this.created.add(transport);
+            return transport;
+        }
+
+        @Override
+        public void dispose(Object transport) {
+            this.disposed.add(transport);
+        }
+    }
+}
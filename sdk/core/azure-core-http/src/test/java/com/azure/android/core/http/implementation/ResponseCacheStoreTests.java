@@ -0,0 +1,65 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.implementation;
+
+import com.azure.android.core.http.HttpHeaders;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResponseCacheStoreTests {
+    @Test
+    public void changesAreVisibleBeforeDiskIsUpdated(@TempDir File directory) throws InterruptedException {
+        // No room in memory, the entries are read from the disk tier or from the changes not written yet.
+        final ResponseCacheStore store = new ResponseCacheStore(0, directory, 1024 * 1024);
+        for (int i = 0; i < 50; i++) {
+            store.put("key", newEntry("v" + i));
+            assertEquals("v" + i, new String(store.get("key").getBody(), StandardCharsets.UTF_8));
+            store.remove("key");
+            assertNull(store.get("key"));
+        }
+        store.put("key", newEntry("last"));
+
+        // Another store sees the changes once they are written.
+        final ResponseCacheStore reopenedStore = new ResponseCacheStore(0, directory, 1024 * 1024);
+        final long deadline = System.currentTimeMillis() + 10000;
+        ResponseCacheStore.Entry entry = reopenedStore.get("key");
+        while ((entry == null || !"last".equals(new String(entry.getBody(), StandardCharsets.UTF_8)))
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            entry = reopenedStore.get("key");
+        }
+        assertNotNull(entry);
+        assertEquals("last", new String(entry.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void unreadableEntryIsDeleted(@TempDir File directory) throws Exception {
+        final File file = new File(directory, ResponseCacheStore.hash("key") + ".entry");
+        assertTrue(file.createNewFile());
+
+        final ResponseCacheStore store = new ResponseCacheStore(1024, directory, 1024 * 1024);
+        assertNull(store.get("key"));
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (file.exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(file.exists());
+    }
+
+    private static ResponseCacheStore.Entry newEntry(String body) {
+        return new ResponseCacheStore.Entry(200, new HttpHeaders().put("Cache-Control", "max-age=60"),
+            body.getBytes(StandardCharsets.UTF_8), Collections.<String, String>emptyMap(), 0, 0);
+    }
+}
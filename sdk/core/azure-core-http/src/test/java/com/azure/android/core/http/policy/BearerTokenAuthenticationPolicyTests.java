@@ -0,0 +1,242 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.credential.AccessToken;
+import com.azure.android.core.credential.TokenCredential;
+import com.azure.android.core.credential.TokenRequestContext;
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipeline;
+import com.azure.android.core.http.HttpPipelineBuilder;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+
+import org.junit.jupiter.api.Test;
+import org.threeten.bp.OffsetDateTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BearerTokenAuthenticationPolicyTests {
+    private static final String URL = "https://localhost/";
+
+    @Test
+    public void tokenIsCachedAcrossRequests() {
+        final AtomicInteger getTokenCalls = new AtomicInteger();
+        final TokenCredential credential = (request, callback) -> {
+            getTokenCalls.incrementAndGet();
+            callback.onSuccess(new AccessToken("token", OffsetDateTime.now().plusHours(1)));
+        };
+        final List<String> authorizations = new ArrayList<>();
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new NoOpHttpClient() {
+                @Override
+                public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+                    authorizations.add(httpRequest.getHeaders().getValue("Authorization"));
+                    httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200));
+                }
+            })
+            .policies(new BearerTokenAuthenticationPolicy(credential, "scope"))
+            .build();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, sendAndAwait(pipeline, "tokenIsCachedAcrossRequests").getStatusCode());
+        }
+
+        assertEquals(1, getTokenCalls.get());
+        assertEquals(3, authorizations.size());
+        for (String authorization : authorizations) {
+            assertEquals("Bearer token", authorization);
+        }
+    }
+
+    @Test
+    public void concurrentRequestsShareOneTokenRetrieval() throws InterruptedException {
+        final AtomicInteger getTokenCalls = new AtomicInteger();
+        final CountDownLatch allRequestsWaiting = new CountDownLatch(1);
+        final TokenCredential credential = (request, callback) -> {
+            getTokenCalls.incrementAndGet();
+            new Thread(() -> {
+                try {
+                    allRequestsWaiting.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+                callback.onSuccess(new AccessToken("token", OffsetDateTime.now().plusHours(1)));
+            }).start();
+        };
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new NoOpHttpClient())
+            .policies(new BearerTokenAuthenticationPolicy(credential, "scope"))
+            .build();
+
+        final int requestCount = 5;
+        final CountDownLatch latch = new CountDownLatch(requestCount);
+        final AtomicInteger succeeded = new AtomicInteger();
+        for (int i = 0; i < requestCount; i++) {
+            pipeline.send(new HttpRequest(HttpMethod.GET, URL), RequestContext.NONE, CancellationToken.NONE,
+                new HttpCallback() {
+                    @Override
+                    public void onSuccess(HttpResponse response) {
+                        succeeded.incrementAndGet();
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        latch.countDown();
+                    }
+                });
+        }
+        Thread.sleep(200);
+        allRequestsWaiting.countDown();
+        awaitOnLatch(latch, "concurrentRequestsShareOneTokenRetrieval");
+
+        assertEquals(requestCount, succeeded.get());
+        assertEquals(1, getTokenCalls.get());
+    }
+
+    @Test
+    public void expiringTokenIsNotRefreshedForEveryRequest() {
+        // The credential returns tokens inside the refresh window.
+        final AtomicInteger getTokenCalls = new AtomicInteger();
+        final TokenCredential credential = (request, callback) -> {
+            getTokenCalls.incrementAndGet();
+            callback.onSuccess(new AccessToken("token", OffsetDateTime.now().plusMinutes(1)));
+        };
+        final List<String> authorizations = new ArrayList<>();
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new NoOpHttpClient() {
+                @Override
+                public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+                    authorizations.add(httpRequest.getHeaders().getValue("Authorization"));
+                    httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200));
+                }
+            })
+            .policies(new BearerTokenAuthenticationPolicy(credential, "scope"))
+            .build();
+
+        for (int i = 0; i < 5; i++) {
+            sendAndAwait(pipeline, "expiringTokenIsNotRefreshedForEveryRequest");
+        }
+
+        assertEquals(1, getTokenCalls.get());
+        assertEquals(5, authorizations.size());
+    }
+
+    @Test
+    public void unauthorizedResponseInvalidatesToken() {
+        final AtomicInteger getTokenCalls = new AtomicInteger();
+        final TokenCredential credential = (request, callback) -> callback.onSuccess(
+            new AccessToken("token" + getTokenCalls.incrementAndGet(), OffsetDateTime.now().plusHours(1)));
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new NoOpHttpClient() {
+                @Override
+                public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+                    final boolean isRevoked = "Bearer token1".equals(httpRequest.getHeaders().getValue("Authorization"));
+                    httpCallback.onSuccess(new MockHttpResponse(httpRequest, isRevoked ? 401 : 200));
+                }
+            })
+            .policies(new BearerTokenAuthenticationPolicy(credential, "scope"))
+            .build();
+
+        assertEquals(200, sendAndAwait(pipeline, "unauthorizedResponseInvalidatesToken").getStatusCode());
+        assertEquals(2, getTokenCalls.get());
+        assertEquals(200, sendAndAwait(pipeline, "unauthorizedResponseInvalidatesToken").getStatusCode());
+        assertEquals(2, getTokenCalls.get());
+    }
+
+    @Test
+    public void unauthorizedResponseIsRetriedOnlyOnce() {
+        final AtomicInteger sendCalls = new AtomicInteger();
+        final TokenCredential credential = (request, callback) ->
+            callback.onSuccess(new AccessToken("token", OffsetDateTime.now().plusHours(1)));
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new NoOpHttpClient() {
+                @Override
+                public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+                    sendCalls.incrementAndGet();
+                    httpCallback.onSuccess(new MockHttpResponse(httpRequest, 401));
+                }
+            })
+            .policies(new BearerTokenAuthenticationPolicy(credential, "scope"))
+            .build();
+
+        assertEquals(401, sendAndAwait(pipeline, "unauthorizedResponseIsRetriedOnlyOnce").getStatusCode());
+        assertEquals(2, sendCalls.get());
+    }
+
+    @Test
+    public void tokenRetrievalErrorIsPropagated() {
+        final TokenCredential credential = new TokenCredential() {
+            @Override
+            public void getToken(TokenRequestContext request, TokenCredentialCallback callback) {
+                callback.onError(new IllegalStateException("no token"));
+            }
+        };
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new NoOpHttpClient())
+            .policies(new BearerTokenAuthenticationPolicy(credential, "scope"))
+            .build();
+
+        final Throwable[] error = new Throwable[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        pipeline.send(new HttpRequest(HttpMethod.GET, URL), RequestContext.NONE, CancellationToken.NONE,
+            new HttpCallback() {
+                @Override
+                public void onSuccess(HttpResponse response) {
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    error[0] = throwable;
+                    latch.countDown();
+                }
+            });
+        awaitOnLatch(latch, "tokenRetrievalErrorIsPropagated");
+
+        assertNotNull(error[0]);
+        assertTrue(error[0] instanceof IllegalStateException);
+    }
+
+    private static HttpResponse sendAndAwait(HttpPipeline pipeline, String method) {
+        final HttpResponse[] httpResponse = new HttpResponse[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        pipeline.send(new HttpRequest(HttpMethod.GET, URL), RequestContext.NONE, CancellationToken.NONE,
+            new HttpCallback() {
+                @Override
+                public void onSuccess(HttpResponse response) {
+                    httpResponse[0] = response;
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    latch.countDown();
+                }
+            });
+        awaitOnLatch(latch, method);
+        assertNotNull(httpResponse[0], method + " didn't produce a response.");
+        return httpResponse[0];
+    }
+
+    private static void awaitOnLatch(CountDownLatch latch, String method) {
+        try {
+            latch.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            assertFalse(true, method + " didn't produce any result.");
+        }
+    }
+}
@@ -0,0 +1,286 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipeline;
+import com.azure.android.core.http.HttpPipelineBuilder;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.exception.CircuitBreakerOpenException;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+
+import org.junit.jupiter.api.Test;
+import org.threeten.bp.Duration;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CircuitBreakerPolicyTests {
+    private static final String HOST_A = "hosta.com";
+    private static final String HOST_B = "hostb.com";
+
+    @Test
+    public void failureRateOpensCircuit() {
+        final ScriptedHttpClient httpClient = new ScriptedHttpClient();
+        httpClient.statusCodes.put(HOST_A, 503);
+        final CircuitBreakerPolicy policy = new CircuitBreakerPolicy(new CircuitBreakerOptions()
+            .setSlidingWindowSize(4)
+            .setMinimumNumberOfCalls(4));
+        final HttpPipeline pipeline = createPipeline(httpClient, policy);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(503, send(pipeline, HOST_A).response.getStatusCode());
+            assertEquals(CircuitBreakerState.CLOSED, policy.getState(HOST_A));
+        }
+        assertEquals(503, send(pipeline, HOST_A).response.getStatusCode());
+        assertEquals(CircuitBreakerState.OPEN, policy.getState(HOST_A));
+
+        final Result rejected = send(pipeline, HOST_A);
+        assertTrue(rejected.error instanceof CircuitBreakerOpenException);
+        assertEquals(HOST_A, ((CircuitBreakerOpenException) rejected.error).getHost());
+        assertFalse(((CircuitBreakerOpenException) rejected.error).getRetryAfter().isZero());
+        assertEquals(4, httpClient.sendCount.get());
+    }
+
+    @Test
+    public void failureRateBelowThresholdKeepsCircuitClosed() {
+        final ScriptedHttpClient httpClient = new ScriptedHttpClient();
+        final CircuitBreakerPolicy policy = new CircuitBreakerPolicy(new CircuitBreakerOptions()
+            .setSlidingWindowSize(4)
+            .setMinimumNumberOfCalls(4));
+        final HttpPipeline pipeline = createPipeline(httpClient, policy);
+
+        for (int i = 0; i < 20; i++) {
+            // One failure in every four calls, 25% against a threshold of 50%.
+            httpClient.statusCodes.put(HOST_A, i % 4 == 0 ? 500 : 200);
+            assertNotNull(send(pipeline, HOST_A).response);
+        }
+        assertEquals(CircuitBreakerState.CLOSED, policy.getState(HOST_A));
+        assertEquals(20, httpClient.sendCount.get());
+    }
+
+    @Test
+    public void transportErrorsCountAsFailures() {
+        final ScriptedHttpClient httpClient = new ScriptedHttpClient();
+        httpClient.failingHosts.put(HOST_A, Boolean.TRUE);
+        final CircuitBreakerPolicy policy = new CircuitBreakerPolicy(new CircuitBreakerOptions()
+            .setSlidingWindowSize(2)
+            .setMinimumNumberOfCalls(2));
+        final HttpPipeline pipeline = createPipeline(httpClient, policy);
+
+        assertTrue(send(pipeline, HOST_A).error instanceof IOException);
+        assertTrue(send(pipeline, HOST_A).error instanceof IOException);
+        assertEquals(CircuitBreakerState.OPEN, policy.getState(HOST_A));
+        assertTrue(send(pipeline, HOST_A).error instanceof CircuitBreakerOpenException);
+    }
+
+    @Test
+    public void slowCallRateOpensCircuit() {
+        final ScriptedHttpClient httpClient = new ScriptedHttpClient();
+        httpClient.delayMillis = 50;
+        final CircuitBreakerPolicy policy = new CircuitBreakerPolicy(new CircuitBreakerOptions()
+            .setSlidingWindowSize(2)
+            .setMinimumNumberOfCalls(2)
+            .setSlowCallRateThreshold(100)
+            .setSlowCallDurationThreshold(Duration.ofMillis(20)));
+        final HttpPipeline pipeline = createPipeline(httpClient, policy);
+
+        assertEquals(200, send(pipeline, HOST_A).response.getStatusCode());
+        assertEquals(200, send(pipeline, HOST_A).response.getStatusCode());
+        assertEquals(CircuitBreakerState.OPEN, policy.getState(HOST_A));
+    }
+
+    @Test
+    public void circuitsArePerHost() {
+        final ScriptedHttpClient httpClient = new ScriptedHttpClient();
+        httpClient.statusCodes.put(HOST_A, 500);
+        final CircuitBreakerPolicy policy = new CircuitBreakerPolicy(new CircuitBreakerOptions()
+            .setSlidingWindowSize(2)
+            .setMinimumNumberOfCalls(2));
+        final HttpPipeline pipeline = createPipeline(httpClient, policy);
+
+        send(pipeline, HOST_A);
+        send(pipeline, HOST_A);
+        assertEquals(CircuitBreakerState.OPEN, policy.getState(HOST_A));
+
+        assertEquals(200, send(pipeline, HOST_B).response.getStatusCode());
+        assertEquals(CircuitBreakerState.CLOSED, policy.getState(HOST_B));
+    }
+
+    @Test
+    public void successfulProbesCloseCircuit() throws InterruptedException {
+        final ScriptedHttpClient httpClient = new ScriptedHttpClient();
+        httpClient.statusCodes.put(HOST_A, 500);
+        final CircuitBreakerPolicy policy = new CircuitBreakerPolicy(new CircuitBreakerOptions()
+            .setSlidingWindowSize(2)
+            .setMinimumNumberOfCalls(2)
+            .setOpenStateDuration(Duration.ofMillis(100))
+            .setPermittedCallsInHalfOpenState(2));
+        final HttpPipeline pipeline = createPipeline(httpClient, policy);
+
+        send(pipeline, HOST_A);
+        send(pipeline, HOST_A);
+        assertEquals(CircuitBreakerState.OPEN, policy.getState(HOST_A));
+
+        Thread.sleep(150);
+        assertEquals(CircuitBreakerState.HALF_OPEN, policy.getState(HOST_A));
+        httpClient.statusCodes.put(HOST_A, 200);
+        assertEquals(200, send(pipeline, HOST_A).response.getStatusCode());
+        assertEquals(CircuitBreakerState.HALF_OPEN, policy.getState(HOST_A));
+        assertEquals(200, send(pipeline, HOST_A).response.getStatusCode());
+        assertEquals(CircuitBreakerState.CLOSED, policy.getState(HOST_A));
+    }
+
+    @Test
+    public void failedProbeReopensCircuit() throws InterruptedException {
+        final ScriptedHttpClient httpClient = new ScriptedHttpClient();
+        httpClient.statusCodes.put(HOST_A, 500);
+        final CircuitBreakerPolicy policy = new CircuitBreakerPolicy(new CircuitBreakerOptions()
+            .setSlidingWindowSize(2)
+            .setMinimumNumberOfCalls(2)
+            .setOpenStateDuration(Duration.ofMillis(100))
+            .setPermittedCallsInHalfOpenState(1));
+        final HttpPipeline pipeline = createPipeline(httpClient, policy);
+
+        send(pipeline, HOST_A);
+        send(pipeline, HOST_A);
+        Thread.sleep(150);
+
+        assertEquals(500, send(pipeline, HOST_A).response.getStatusCode());
+        assertEquals(CircuitBreakerState.OPEN, policy.getState(HOST_A));
+        assertTrue(send(pipeline, HOST_A).error instanceof CircuitBreakerOpenException);
+        assertEquals(3, httpClient.sendCount.get());
+    }
+
+    @Test
+    public void halfOpenCircuitAdmitsOnlyPermittedProbes() throws InterruptedException {
+        final ScriptedHttpClient httpClient = new ScriptedHttpClient();
+        httpClient.statusCodes.put(HOST_A, 500);
+        final CircuitBreakerPolicy policy = new CircuitBreakerPolicy(new CircuitBreakerOptions()
+            .setSlidingWindowSize(2)
+            .setMinimumNumberOfCalls(2)
+            .setOpenStateDuration(Duration.ofMillis(100))
+            .setPermittedCallsInHalfOpenState(1));
+        final HttpPipeline pipeline = createPipeline(httpClient, policy);
+
+        send(pipeline, HOST_A);
+        send(pipeline, HOST_A);
+        Thread.sleep(150);
+
+        httpClient.statusCodes.put(HOST_A, 200);
+        httpClient.gate = new CountDownLatch(1);
+        final Result probe = new Result();
+        sendAsync(pipeline, HOST_A, probe);
+        // Wait for the probe to reach the client.
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (httpClient.sendCount.get() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        final Result rejected = send(pipeline, HOST_A);
+        assertTrue(rejected.error instanceof CircuitBreakerOpenException);
+        assertTrue(((CircuitBreakerOpenException) rejected.error).getRetryAfter().isZero());
+
+        httpClient.gate.countDown();
+        assertTrue(probe.latch.await(10, TimeUnit.SECONDS));
+        assertEquals(200, probe.response.getStatusCode());
+        assertEquals(CircuitBreakerState.CLOSED, policy.getState(HOST_A));
+    }
+
+    @Test
+    public void optionsRejectInvalidValues() {
+        final CircuitBreakerOptions options = new CircuitBreakerOptions();
+        assertThrows(IllegalArgumentException.class, () -> options.setFailureRateThreshold(0));
+        assertThrows(IllegalArgumentException.class, () -> options.setSlowCallRateThreshold(101));
+        assertThrows(IllegalArgumentException.class, () -> options.setSlidingWindowSize(0));
+        assertThrows(IllegalArgumentException.class, () -> options.setMinimumNumberOfCalls(0));
+        assertThrows(IllegalArgumentException.class, () -> options.setPermittedCallsInHalfOpenState(0));
+        assertThrows(IllegalArgumentException.class, () -> options.setOpenStateDuration(Duration.ZERO));
+        assertThrows(NullPointerException.class, () -> options.setSlowCallDurationThreshold(null));
+    }
+
+    private static HttpPipeline createPipeline(ScriptedHttpClient httpClient, CircuitBreakerPolicy policy) {
+        return new HttpPipelineBuilder()
+            .httpClient(httpClient)
+            .policies(policy)
+            .build();
+    }
+
+    private static Result send(HttpPipeline pipeline, String host) {
+        final Result result = new Result();
+        sendAsync(pipeline, host, result);
+        try {
+            assertTrue(result.latch.await(10, TimeUnit.SECONDS), "The call to " + host + " did not complete.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return result;
+    }
+
+    private static void sendAsync(HttpPipeline pipeline, String host, Result result) {
+        pipeline.send(new HttpRequest(HttpMethod.GET, "https://" + host + "/"), RequestContext.NONE,
+            CancellationToken.NONE, result);
+    }
+
+    private static final class ScriptedHttpClient extends NoOpHttpClient {
+        private final ConcurrentHashMap<String, Integer> statusCodes = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, Boolean> failingHosts = new ConcurrentHashMap<>();
+        private final AtomicInteger sendCount = new AtomicInteger();
+        private volatile long delayMillis;
+        private volatile CountDownLatch gate;
+
+        @Override
+        public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+            this.sendCount.incrementAndGet();
+            try {
+                if (this.gate != null) {
+                    this.gate.await(10, TimeUnit.SECONDS);
+                }
+                if (this.delayMillis > 0) {
+                    Thread.sleep(this.delayMillis);
+                }
+            } catch (InterruptedException e) {
+                httpCallback.onError(e);
+                return;
+            }
+            final String host = httpRequest.getUrl().getHost();
+            if (this.failingHosts.containsKey(host)) {
+                httpCallback.onError(new IOException("Connection refused."));
+                return;
+            }
+            final Integer statusCode = this.statusCodes.get(host);
+            httpCallback.onSuccess(new MockHttpResponse(httpRequest, statusCode == null ? 200 : statusCode));
+        }
+    }
+
+    private static final class Result implements HttpCallback {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile HttpResponse response;
+        private volatile Throwable error;
+
+        @Override
+        public void onSuccess(HttpResponse response) {
+            this.response = response;
+            this.latch.countDown();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+            this.latch.countDown();
+        }
+    }
+}
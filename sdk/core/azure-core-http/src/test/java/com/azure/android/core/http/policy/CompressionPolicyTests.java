@@ -0,0 +1,241 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpHeaders;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipeline;
+import com.azure.android.core.http.HttpPipelineBuilder;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompressionPolicyTests {
+    private static final String URL = "https://chat.contoso.com/threads/1/messages";
+    private static final String MESSAGES = createMessages();
+
+    @Test
+    public void gzipResponseIsDecoded() throws IOException {
+        final EncodingHttpClient httpClient = new EncodingHttpClient("gzip", gzip(utf8(MESSAGES)));
+        final HttpResponse response = send(httpClient, new CompressionPolicy(), new HttpRequest(HttpMethod.GET, URL));
+
+        assertEquals("gzip, deflate", httpClient.request.get().getHeaders().getValue("Accept-Encoding"));
+        assertNull(response.getHeaderValue("Content-Encoding"));
+        assertNull(response.getHeaderValue("Content-Length"));
+        assertEquals(MESSAGES, response.getBodyAsString());
+        // The decoded body can be read again.
+        assertEquals(MESSAGES, new String(readAll(response.getBody()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void gzipResponseIsDecodedAsStream() throws IOException {
+        final EncodingHttpClient httpClient = new EncodingHttpClient("gzip", gzip(utf8(MESSAGES)));
+        final HttpResponse response = send(httpClient, new CompressionPolicy(), new HttpRequest(HttpMethod.GET, URL));
+
+        // Read in small chunks to cross the decoder's buffer boundaries.
+        final InputStream body = response.getBody();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[7];
+        int count;
+        while ((count = body.read(buffer)) != -1) {
+            output.write(buffer, 0, count);
+        }
+        response.close();
+        assertEquals(MESSAGES, new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void deflateResponseIsDecoded() {
+        final EncodingHttpClient zlibHttpClient = new EncodingHttpClient("deflate", deflate(utf8(MESSAGES), false));
+        assertEquals(MESSAGES, send(zlibHttpClient, new CompressionPolicy(), new HttpRequest(HttpMethod.GET, URL))
+            .getBodyAsString());
+
+        final EncodingHttpClient rawHttpClient = new EncodingHttpClient("deflate", deflate(utf8(MESSAGES), true));
+        assertEquals(MESSAGES, send(rawHttpClient, new CompressionPolicy(), new HttpRequest(HttpMethod.GET, URL))
+            .getBodyAsString());
+    }
+
+    @Test
+    public void emptyEncodedResponseIsEmpty() {
+        final EncodingHttpClient httpClient = new EncodingHttpClient("gzip", new byte[0]);
+        final HttpResponse response = send(httpClient, new CompressionPolicy(), new HttpRequest(HttpMethod.GET, URL));
+
+        assertArrayEquals(new byte[0], response.getBodyAsByteArray());
+    }
+
+    @Test
+    public void corruptGzipResponseFails() {
+        final byte[] encoded = gzip(utf8(MESSAGES));
+        // Flip a bit of the CRC in the trailer.
+        encoded[encoded.length - 8] ^= 1;
+        final EncodingHttpClient httpClient = new EncodingHttpClient("gzip", encoded);
+        final HttpResponse response = send(httpClient, new CompressionPolicy(), new HttpRequest(HttpMethod.GET, URL));
+
+        assertThrows(RuntimeException.class, response::getBodyAsByteArray);
+    }
+
+    @Test
+    public void callerAcceptEncodingIsKept() {
+        final byte[] encoded = gzip(utf8(MESSAGES));
+        final EncodingHttpClient httpClient = new EncodingHttpClient("gzip", encoded);
+        final HttpResponse response = send(httpClient, new CompressionPolicy(),
+            new HttpRequest(HttpMethod.GET, URL).setHeader("Accept-Encoding", "gzip"));
+
+        assertEquals("gzip", response.getHeaderValue("Content-Encoding"));
+        assertArrayEquals(encoded, response.getBodyAsByteArray());
+    }
+
+    @Test
+    public void requestBodyIsCompressedForConfiguredHost() throws IOException {
+        final EncodingHttpClient httpClient = new EncodingHttpClient(null, new byte[0]);
+        final CompressionPolicy policy = new CompressionPolicy(new CompressionOptions()
+            .setRequestCompressionHosts("chat.contoso.com")
+            .setRequestCompressionThreshold(1024));
+        final HttpRequest request = new HttpRequest(HttpMethod.POST, URL).setBody(MESSAGES);
+        send(httpClient, policy, request);
+
+        final HttpRequest sent = httpClient.request.get();
+        assertEquals("gzip", sent.getHeaders().getValue("Content-Encoding"));
+        assertEquals(String.valueOf(sent.getBody().length), sent.getHeaders().getValue("Content-Length"));
+        assertTrue(sent.getBody().length < utf8(MESSAGES).length / 5);
+        assertEquals(MESSAGES, new String(readAll(new GZIPInputStream(new ByteArrayInputStream(sent.getBody()))),
+            StandardCharsets.UTF_8));
+        // The caller's request is left as is.
+        assertNull(request.getHeaders().getValue("Content-Encoding"));
+        assertEquals(MESSAGES, new String(request.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void requestBodyIsNotCompressedBelowThresholdOrForOtherHosts() {
+        final CompressionPolicy policy = new CompressionPolicy(new CompressionOptions()
+            .setRequestCompressionHosts("chat.contoso.com")
+            .setRequestCompressionThreshold(1024));
+
+        final EncodingHttpClient httpClient = new EncodingHttpClient(null, new byte[0]);
+        send(httpClient, policy, new HttpRequest(HttpMethod.POST, URL).setBody("{\"content\":\"hi\"}"));
+        assertNull(httpClient.request.get().getHeaders().getValue("Content-Encoding"));
+
+        send(httpClient, policy, new HttpRequest(HttpMethod.POST, "https://other.contoso.com/").setBody(MESSAGES));
+        assertNull(httpClient.request.get().getHeaders().getValue("Content-Encoding"));
+    }
+
+    private static HttpResponse send(EncodingHttpClient httpClient, CompressionPolicy policy, HttpRequest request) {
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<HttpResponse> response = new AtomicReference<>();
+        pipeline.send(request, RequestContext.NONE, CancellationToken.NONE, new HttpCallback() {
+            @Override
+            public void onSuccess(HttpResponse httpResponse) {
+                response.set(httpResponse);
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                latch.countDown();
+            }
+        });
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS), "The call did not complete.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return response.get();
+    }
+
+    private static String createMessages() {
+        final StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < 200; i++) {
+            builder.append(i == 0 ? "" : ",")
+                .append("{\"id\":\"").append(1600000000000L + i)
+                .append("\",\"type\":\"text\",\"content\":{\"message\":\"Message number ").append(i)
+                .append("\"},\"senderDisplayName\":\"Contoso Bot\"}");
+        }
+        return builder.append(']').toString();
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] bytes, boolean nowrap) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(output,
+            new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap))) {
+            deflate.write(bytes);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int count;
+        while ((count = input.read(buffer)) != -1) {
+            output.write(buffer, 0, count);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Responds with the given encoded body and records the request it received.
+     */
+    private static final class EncodingHttpClient extends NoOpHttpClient {
+        private final AtomicReference<HttpRequest> request = new AtomicReference<>();
+        private final String contentEncoding;
+        private final byte[] body;
+
+        EncodingHttpClient(String contentEncoding, byte[] body) {
+            this.contentEncoding = contentEncoding;
+            this.body = body;
+        }
+
+        @Override
+        public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+            this.request.set(httpRequest);
+            final HttpHeaders headers = new HttpHeaders()
+                .put("Content-Type", "application/json; charset=utf-8")
+                .put("Content-Length", String.valueOf(this.body.length));
+            if (this.contentEncoding != null) {
+                headers.put("Content-Encoding", this.contentEncoding);
+            }
+            httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200, headers, this.body));
+        }
+    }
+}
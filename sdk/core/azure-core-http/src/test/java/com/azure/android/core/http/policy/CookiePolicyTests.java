@@ -0,0 +1,269 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpHeaders;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipeline;
+import com.azure.android.core.http.HttpPipelineBuilder;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.threeten.bp.Clock;
+import org.threeten.bp.Duration;
+import org.threeten.bp.Instant;
+import org.threeten.bp.ZoneId;
+import org.threeten.bp.ZoneOffset;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CookiePolicyTests {
+    private static final String EXPIRES = "Wed, 01 Jan 2025 00:00:00 GMT";
+
+    @Test
+    public void requestWithoutCookiesIsUnchanged() {
+        final CookieHttpClient httpClient = new CookieHttpClient();
+        final HttpPipeline pipeline = createPipeline(httpClient, new CookiePolicy());
+
+        send(pipeline, "https://chat.contoso.com/threads");
+        assertNull(httpClient.lastCookie());
+        assertEquals(0, httpClient.request.get().getHeaders().getSize());
+    }
+
+    @Test
+    public void hostOnlyCookieIsSentToTheSameHostOnly() {
+        final CookieHttpClient httpClient = new CookieHttpClient()
+            .setCookie("/login", "session=abc; Path=/");
+        final HttpPipeline pipeline = createPipeline(httpClient, new CookiePolicy());
+
+        send(pipeline, "https://chat.contoso.com/login");
+        send(pipeline, "https://chat.contoso.com/threads");
+        assertEquals("session=abc", httpClient.lastCookie());
+
+        send(pipeline, "https://eu.chat.contoso.com/threads");
+        assertNull(httpClient.lastCookie());
+        send(pipeline, "https://fabrikam.com/threads");
+        assertNull(httpClient.lastCookie());
+    }
+
+    @Test
+    public void domainCookieIsSentToSubdomains() {
+        final CookieHttpClient httpClient = new CookieHttpClient()
+            .setCookie("/login", "affinity=node1; Domain=.contoso.com; Path=/");
+        final HttpPipeline pipeline = createPipeline(httpClient, new CookiePolicy());
+
+        send(pipeline, "https://chat.contoso.com/login");
+        send(pipeline, "https://eu.chat.contoso.com/threads");
+        assertEquals("affinity=node1", httpClient.lastCookie());
+        send(pipeline, "https://notcontoso.com/threads");
+        assertNull(httpClient.lastCookie());
+    }
+
+    @Test
+    public void cookieForAnotherDomainIsIgnored() {
+        final CookieHttpClient httpClient = new CookieHttpClient()
+            .setCookie("/login", "a=1; Domain=fabrikam.com, b=2; Domain=com, c=3");
+        final HttpPipeline pipeline = createPipeline(httpClient, new CookiePolicy());
+
+        send(pipeline, "https://chat.contoso.com/login");
+        send(pipeline, "https://chat.contoso.com/threads");
+        assertEquals("c=3", httpClient.lastCookie());
+        send(pipeline, "https://fabrikam.com/");
+        assertNull(httpClient.lastCookie());
+    }
+
+    @Test
+    public void cookiesAreMatchedByPathLongestFirst() {
+        final CookieHttpClient httpClient = new CookieHttpClient()
+            .setCookie("/login", "root=1; Path=/, thread=2; Path=/threads/1, other=3; Path=/threads/10");
+        final HttpPipeline pipeline = createPipeline(httpClient, new CookiePolicy());
+
+        send(pipeline, "https://chat.contoso.com/login");
+        send(pipeline, "https://chat.contoso.com/threads/1/messages");
+        assertEquals("thread=2; root=1", httpClient.lastCookie());
+        send(pipeline, "https://chat.contoso.com/threads/10");
+        assertEquals("other=3; root=1", httpClient.lastCookie());
+        send(pipeline, "https://chat.contoso.com/threads");
+        assertEquals("root=1", httpClient.lastCookie());
+    }
+
+    @Test
+    public void secureCookieIsSentOverHttpsOnly() {
+        final CookieHttpClient httpClient = new CookieHttpClient()
+            .setCookie("/login", "token=1; Path=/; Secure; HttpOnly");
+        final HttpPipeline pipeline = createPipeline(httpClient, new CookiePolicy());
+
+        send(pipeline, "https://chat.contoso.com/login");
+        send(pipeline, "http://chat.contoso.com/threads");
+        assertNull(httpClient.lastCookie());
+        send(pipeline, "https://chat.contoso.com/threads");
+        assertEquals("token=1", httpClient.lastCookie());
+    }
+
+    @Test
+    public void expiredCookiesAreNotSent() {
+        final MutableClock clock = new MutableClock();
+        final CookieHttpClient httpClient = new CookieHttpClient()
+            .setCookie("/login", "short=1; Max-Age=60; Path=/, dated=2; Expires=" + EXPIRES + "; Path=/")
+            .setCookie("/logout", "dated=; Max-Age=0; Path=/");
+        final HttpPipeline pipeline = createPipeline(httpClient,
+            new CookiePolicy(new CookieOptions().setClock(clock)));
+
+        send(pipeline, "https://chat.contoso.com/login");
+        send(pipeline, "https://chat.contoso.com/threads");
+        assertEquals("short=1; dated=2", httpClient.lastCookie());
+
+        clock.advanceSeconds(61);
+        send(pipeline, "https://chat.contoso.com/threads");
+        assertEquals("dated=2", httpClient.lastCookie());
+
+        send(pipeline, "https://chat.contoso.com/logout");
+        send(pipeline, "https://chat.contoso.com/threads");
+        assertNull(httpClient.lastCookie());
+    }
+
+    @Test
+    public void persistentCookiesSurviveRestart(@TempDir File directory) {
+        final File file = new File(directory, "cookies");
+        final CookieHttpClient httpClient = new CookieHttpClient()
+            .setCookie("/login", "session=abc; Path=/, remember=xyz; Expires=" + EXPIRES + "; Path=/");
+        final CookieOptions options = new CookieOptions()
+            .setPersistenceFile(file)
+            .setPersistenceWriteDelay(Duration.ofMinutes(1))
+            .setClock(new MutableClock());
+        final CookiePolicy policy = new CookiePolicy(options);
+        send(createPipeline(httpClient, policy), "https://chat.contoso.com/login");
+
+        // The write is pending until the delay elapses or the policy is flushed.
+        assertFalse(file.exists());
+        policy.flush();
+        assertTrue(file.exists());
+
+        final CookieHttpClient restartedHttpClient = new CookieHttpClient();
+        send(createPipeline(restartedHttpClient, new CookiePolicy(options)), "https://chat.contoso.com/threads");
+        assertEquals("remember=xyz", restartedHttpClient.lastCookie());
+    }
+
+    @Test
+    public void persistentCookieChangesAreWrittenAfterTheDelay(@TempDir File directory) throws InterruptedException {
+        final File file = new File(directory, "cookies");
+        final CookieHttpClient httpClient = new CookieHttpClient()
+            .setCookie("/login", "remember=xyz; Max-Age=3600; Path=/");
+        final CookieOptions options = new CookieOptions()
+            .setPersistenceFile(file)
+            .setPersistenceWriteDelay(Duration.ofMillis(50));
+        send(createPipeline(httpClient, new CookiePolicy(options)), "https://chat.contoso.com/login");
+
+        for (int i = 0; i < 100 && !file.exists(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(file.exists());
+
+        final CookieHttpClient restartedHttpClient = new CookieHttpClient();
+        send(createPipeline(restartedHttpClient, new CookiePolicy(options)), "https://chat.contoso.com/threads");
+        assertEquals("remember=xyz", restartedHttpClient.lastCookie());
+    }
+
+    @Test
+    public void invalidOptionsAreRejected() {
+        assertThrows(NullPointerException.class, () -> new CookiePolicy(null));
+        assertThrows(IllegalArgumentException.class,
+            () -> new CookieOptions().setPersistenceWriteDelay(Duration.ofSeconds(-1)));
+    }
+
+    private static HttpPipeline createPipeline(CookieHttpClient httpClient, CookiePolicy policy) {
+        return new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+    }
+
+    private static void send(HttpPipeline pipeline, String url) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        pipeline.send(new HttpRequest(HttpMethod.GET, url), RequestContext.NONE, CancellationToken.NONE,
+            new HttpCallback() {
+                @Override
+                public void onSuccess(HttpResponse response) {
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    latch.countDown();
+                }
+            });
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS), "The call to " + url + " did not complete.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Responds with the Set-Cookie header configured for the request path and records the request it received.
+     */
+    private static final class CookieHttpClient extends NoOpHttpClient {
+        private final Map<String, String> setCookies = new ConcurrentHashMap<>();
+        private final AtomicReference<HttpRequest> request = new AtomicReference<>();
+
+        CookieHttpClient setCookie(String path, String setCookie) {
+            this.setCookies.put(path, setCookie);
+            return this;
+        }
+
+        String lastCookie() {
+            return this.request.get().getHeaders().getValue("Cookie");
+        }
+
+        @Override
+        public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+            this.request.set(httpRequest);
+            final HttpHeaders headers = new HttpHeaders();
+            final String setCookie = this.setCookies.get(httpRequest.getUrl().getPath());
+            if (setCookie != null) {
+                headers.put("Set-Cookie", setCookie);
+            }
+            httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200, headers));
+        }
+    }
+
+    /**
+     * A clock the tests move forward explicitly, so cookies expire deterministically.
+     */
+    private static final class MutableClock extends Clock {
+        private volatile Instant instant = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advanceSeconds(long seconds) {
+            this.instant = this.instant.plusSeconds(seconds);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return this.instant;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.HttpCallDispatcher;
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipeline;
+import com.azure.android.core.http.HttpPipelineBuilder;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+
+import org.junit.jupiter.api.Test;
+import org.threeten.bp.Duration;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HedgingPolicyTests {
+    private static final String URL = "https://localhost/";
+
+    @Test
+    public void hedgeWinsAndLosingAttemptIsCancelled() throws InterruptedException {
+        // The first attempt answers only when cancelled, the second one answers at once.
+        final HangingFirstAttemptHttpClient httpClient = new HangingFirstAttemptHttpClient(true);
+        final HedgingPolicy policy = new HedgingPolicy(new HedgingOptions().setHedgeDelay(Duration.ofMillis(50)));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        final Result result = send(pipeline, HttpMethod.GET, CancellationToken.NONE);
+        assertTrue(result.latch.await(10, TimeUnit.SECONDS));
+        assertNotNull(result.response.get());
+        assertEquals(1, policy.getHedgeWinCount());
+        assertEquals(2, httpClient.tokens.size());
+        assertTrue(httpClient.tokens.get(0).isCancellationRequested());
+        assertFalse(httpClient.tokens.get(1).isCancellationRequested());
+    }
+
+    @Test
+    public void hedgeWinsAndLateResponseIsClosed() throws InterruptedException {
+        // The first attempt answers only when the test lets it, the second one answers at once.
+        final HangingFirstAttemptHttpClient httpClient = new HangingFirstAttemptHttpClient(false);
+        final HedgingPolicy policy = new HedgingPolicy(new HedgingOptions().setHedgeDelay(Duration.ofMillis(50)));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        final Result result = send(pipeline, HttpMethod.GET, CancellationToken.NONE);
+        assertTrue(result.latch.await(10, TimeUnit.SECONDS));
+        assertNotNull(result.response.get());
+        assertEquals(1, policy.getHedgeCount());
+        assertEquals(1, policy.getHedgeWinCount());
+        assertEquals(2, httpClient.tokens.size());
+
+        final AtomicBoolean closed = new AtomicBoolean();
+        httpClient.firstCallback.get().onSuccess(new MockHttpResponse(new HttpRequest(HttpMethod.GET, URL), 200) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        });
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void losingAttemptCountsAsRunningUntilItEnds() throws InterruptedException {
+        // The first attempt answers only when the test lets it, like a transport blocked on a slow connection.
+        final HttpCallDispatcher dispatcher = new HttpCallDispatcher();
+        final AtomicReference<HttpCallback> firstCallback = new AtomicReference<>();
+        final NoOpHttpClient httpClient = new NoOpHttpClient() {
+            @Override
+            public HttpCallDispatcher getHttpCallDispatcher() {
+                return dispatcher;
+            }
+
+            @Override
+            public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+                if (!firstCallback.compareAndSet(null, httpCallback)) {
+                    httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200));
+                }
+            }
+        };
+        final HedgingPolicy policy = new HedgingPolicy(new HedgingOptions().setHedgeDelay(Duration.ofMillis(50)));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        final Result result = send(pipeline, HttpMethod.GET, CancellationToken.NONE);
+        assertTrue(result.latch.await(10, TimeUnit.SECONDS));
+        assertNotNull(result.response.get());
+
+        // The hedge answered, the first attempt still holds its running call.
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (dispatcher.getMetrics().getRunningCallCount() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, dispatcher.getMetrics().getRunningCallCount());
+
+        firstCallback.get().onSuccess(new MockHttpResponse(new HttpRequest(HttpMethod.GET, URL), 200));
+        assertEquals(0, dispatcher.getMetrics().getRunningCallCount());
+    }
+
+    @Test
+    public void failedAttemptIsNotHedged() throws InterruptedException {
+        final AtomicInteger sendCount = new AtomicInteger();
+        final NoOpHttpClient httpClient = new NoOpHttpClient() {
+            @Override
+            public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+                sendCount.incrementAndGet();
+                httpCallback.onError(new IOException("Connection refused."));
+            }
+        };
+        final HedgingPolicy policy = new HedgingPolicy(new HedgingOptions().setHedgeDelay(Duration.ofMillis(100)));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        final Result result = send(pipeline, HttpMethod.GET, CancellationToken.NONE);
+        assertTrue(result.latch.await(10, TimeUnit.SECONDS));
+        assertTrue(result.error.get() instanceof IOException);
+        // The hedge, dropped once the call failed, is not sent when its delay elapses.
+        Thread.sleep(300);
+        assertEquals(1, sendCount.get());
+        assertEquals(0, policy.getHedgeCount());
+    }
+
+    @Test
+    public void nonIdempotentRequestIsNotHedged() throws InterruptedException {
+        final HangingFirstAttemptHttpClient httpClient = new HangingFirstAttemptHttpClient(true);
+        final HedgingPolicy policy = new HedgingPolicy(new HedgingOptions().setHedgeDelay(Duration.ofMillis(10)));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        final CancellationToken cancellationToken = new CancellationToken();
+        final Result result = send(pipeline, HttpMethod.POST, cancellationToken);
+        Thread.sleep(200);
+        assertEquals(1, httpClient.tokens.size());
+        assertEquals(0, policy.getHedgeCount());
+
+        cancellationToken.cancel();
+        assertTrue(result.latch.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void callerCancellationCancelsAllAttempts() throws InterruptedException {
+        // Each attempt has a token of its own, cancelled along with the token of the call.
+        final List<CancellationToken> tokens = new CopyOnWriteArrayList<>();
+        final NoOpHttpClient httpClient = new NoOpHttpClient() {
+            @Override
+            public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+                tokens.add(cancellationToken);
+                cancellationToken.registerOnCancel(() -> httpCallback.onError(new IOException("Canceled.")));
+            }
+        };
+        final HedgingPolicy policy = new HedgingPolicy(new HedgingOptions().setHedgeDelay(Duration.ofMillis(10)));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        final CancellationToken cancellationToken = new CancellationToken();
+        final Result result = send(pipeline, HttpMethod.GET, cancellationToken);
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (tokens.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, tokens.size());
+
+        cancellationToken.cancel();
+        assertTrue(result.latch.await(10, TimeUnit.SECONDS));
+        assertTrue(result.error.get() instanceof IOException);
+        assertNotSame(cancellationToken, tokens.get(0));
+        assertNotSame(tokens.get(0), tokens.get(1));
+        assertTrue(tokens.get(0).isCancellationRequested());
+        assertTrue(tokens.get(1).isCancellationRequested());
+    }
+
+    @Test
+    public void optionsRejectInvalidValues() {
+        final HedgingOptions options = new HedgingOptions();
+        assertThrows(IllegalArgumentException.class, () -> options.setHedgeDelay(Duration.ofMillis(-1)));
+        assertThrows(IllegalArgumentException.class, () -> options.setMaxHedgePercentage(0));
+        assertThrows(IllegalArgumentException.class, () -> options.setMaxHedgeBurst(0));
+        assertThrows(NullPointerException.class, () -> options.setIdempotentMethods((HttpMethod[]) null));
+    }
+
+    private static Result send(HttpPipeline pipeline, HttpMethod method, CancellationToken cancellationToken) {
+        final Result result = new Result();
+        pipeline.send(new HttpRequest(method, URL), RequestContext.NONE, cancellationToken, result);
+        return result;
+    }
+
+    private static final class HangingFirstAttemptHttpClient extends NoOpHttpClient {
+        private final List<CancellationToken> tokens = new CopyOnWriteArrayList<>();
+        private final AtomicReference<HttpCallback> firstCallback = new AtomicReference<>();
+        private final boolean honorsCancellation;
+
+        HangingFirstAttemptHttpClient(boolean honorsCancellation) {
+            this.honorsCancellation = honorsCancellation;
+        }
+
+        @Override
+        public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+            this.tokens.add(cancellationToken);
+            if (this.tokens.size() == 1) {
+                this.firstCallback.set(httpCallback);
+                if (this.honorsCancellation) {
+                    cancellationToken.registerOnCancel(() -> httpCallback.onError(new IOException("Canceled.")));
+                }
+            } else {
+                httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200));
+            }
+        }
+    }
+
+    private static final class Result implements HttpCallback {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final AtomicReference<HttpResponse> response = new AtomicReference<>();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        @Override
+        public void onSuccess(HttpResponse response) {
+            this.response.set(response);
+            this.latch.countDown();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error.set(error);
+            this.latch.countDown();
+        }
+    }
+}
@@ -17,13 +17,16 @@ import com.azure.android.core.util.RequestContext;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.parallel.ResourceLock;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.threeten.bp.Duration;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
@@ -32,10 +35,14 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -254,6 +261,213 @@ public class HttpLoggingPolicyTests {
         );
     }
 
+    /**
+     * Tests that asynchronous logging writes the redacted request and response on the background thread.
+     */
+    @Test
+    @ResourceLock("SYSTEM_OUT")
+    public void asyncLoggingWritesRequestAndResponse() {
+        HttpPipeline pipeline = new HttpPipelineBuilder()
+            .policies(new HttpLoggingPolicy(new HttpLogOptions()
+                .setLogLevel(HttpLogDetailLevel.BASIC)
+                .setAsyncLoggingEnabled(true)))
+            .httpClient(new NoOpHttpClient())
+            .build();
+
+        CountDownLatch latch = new CountDownLatch(1);
+        pipeline.send(new HttpRequest(HttpMethod.GET, "https://localhost/async?secret=value"),
+            RequestContext.NONE,
+            CancellationToken.NONE,
+            new HttpCallback() {
+                @Override
+                public void onSuccess(HttpResponse response) {
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    latch.countDown();
+                }
+            });
+        awaitOnLatch(latch, "asyncLoggingWritesRequestAndResponse");
+
+        awaitOnLog("--> GET https://localhost/async?secret=" + REDACTED);
+        awaitOnLog("<-- 200 https://localhost/async?secret=" + REDACTED);
+        assertFalse(convertOutputStreamToString(logCaptureStream).contains("value"));
+    }
+
+    /**
+     * Tests that asynchronous logging logs the response body as the caller reads it, without buffering it first.
+     */
+    @Test
+    @ResourceLock("SYSTEM_OUT")
+    public void asyncLoggingTeesResponseBody() throws IOException {
+        final byte[] content = "{\"message\":\"teed body\"}".getBytes(StandardCharsets.UTF_8);
+        final AtomicInteger bufferCount = new AtomicInteger();
+        HttpPipeline pipeline = new HttpPipelineBuilder()
+            .policies(new HttpLoggingPolicy(new HttpLogOptions()
+                .setLogLevel(HttpLogDetailLevel.BODY)
+                .setAsyncLoggingEnabled(true)))
+            .httpClient(new NoOpHttpClient() {
+                @Override
+                public void send(HttpRequest httpRequest,
+                                 CancellationToken cancellationToken,
+                                 HttpCallback httpCallback) {
+                    HttpHeaders headers = new HttpHeaders()
+                        .put("Content-Type", "application/json")
+                        .put("Content-Length", Integer.toString(content.length));
+                    httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200, headers, content) {
+                        @Override
+                        public HttpResponse buffer() {
+                            bufferCount.incrementAndGet();
+                            return super.buffer();
+                        }
+                    });
+                }
+            })
+            .build();
+
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<HttpResponse> response = new AtomicReference<>();
+        pipeline.send(new HttpRequest(HttpMethod.GET, "https://localhost/tee"),
+            RequestContext.NONE,
+            CancellationToken.NONE,
+            new HttpCallback() {
+                @Override
+                public void onSuccess(HttpResponse httpResponse) {
+                    response.set(httpResponse);
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    latch.countDown();
+                }
+            });
+        awaitOnLatch(latch, "asyncLoggingTeesResponseBody");
+        awaitOnLog("(body content logged as it is read)");
+        assertFalse(convertOutputStreamToString(logCaptureStream).contains("teed body"));
+
+        // Read the body in two parts, the log holds the whole body once it is read to the end.
+        final InputStream body = response.get().getBody();
+        final byte[] buffer = new byte[content.length];
+        int offset = body.read(buffer, 0, 5);
+        int count;
+        while ((count = body.read(buffer, offset, buffer.length - offset)) > 0) {
+            offset += count;
+        }
+        assertEquals(-1, body.read());
+        assertArrayEquals(content, buffer);
+
+        awaitOnLog("<-- 200 https://localhost/tee response body:");
+        awaitOnLog(new String(content, StandardCharsets.UTF_8));
+        assertEquals(0, bufferCount.get());
+    }
+
+    /**
+     * Tests that calls that are not sampled are not logged unless they fail or are slow.
+     */
+    @Test
+    @ResourceLock("SYSTEM_OUT")
+    public void unsampledCallsAreLoggedOnlyOnErrorOrSlowness() {
+        HttpPipeline pipeline = new HttpPipelineBuilder()
+            .policies(new HttpLoggingPolicy(new HttpLogOptions()
+                .setLogLevel(HttpLogDetailLevel.BASIC)
+                .setSampleRate(0)
+                .setSlowCallThreshold(Duration.ofMillis(100))))
+            .httpClient(new StatusHttpClient())
+            .build();
+
+        sendAndAwait(pipeline, "https://localhost/ok");
+        sendAndAwait(pipeline, "https://localhost/failed");
+        sendAndAwait(pipeline, "https://localhost/slow");
+        sendAndAwait(pipeline, "https://localhost/error");
+
+        String logString = convertOutputStreamToString(logCaptureStream);
+        assertFalse(logString.contains("/ok"));
+        assertTrue(logString.contains("--> GET https://localhost/failed"));
+        assertTrue(logString.contains("<-- 500 https://localhost/failed"));
+        assertTrue(logString.contains("--> GET https://localhost/slow"));
+        assertTrue(logString.contains("<-- 200 https://localhost/slow"));
+        assertTrue(logString.contains("--> GET https://localhost/error"));
+        assertTrue(logString.contains("HTTP FAILED"));
+    }
+
+    /**
+     * Tests that errors are not logged for calls that are not sampled when always logging errors is disabled.
+     */
+    @Test
+    @ResourceLock("SYSTEM_OUT")
+    public void unsampledErrorsAreNotLoggedWhenDisabled() {
+        HttpPipeline pipeline = new HttpPipelineBuilder()
+            .policies(new HttpLoggingPolicy(new HttpLogOptions()
+                .setLogLevel(HttpLogDetailLevel.BASIC)
+                .setSampleRate(0)
+                .setAlwaysLogErrors(false)))
+            .httpClient(new StatusHttpClient())
+            .build();
+
+        sendAndAwait(pipeline, "https://localhost/failed");
+        sendAndAwait(pipeline, "https://localhost/error");
+
+        assertEquals("", convertOutputStreamToString(logCaptureStream));
+    }
+
+    /**
+     * Tests that a host sample rate overrides the sample rate for that host only.
+     */
+    @Test
+    @ResourceLock("SYSTEM_OUT")
+    public void hostSampleRateOverridesSampleRate() {
+        HttpPipeline pipeline = new HttpPipelineBuilder()
+            .policies(new HttpLoggingPolicy(new HttpLogOptions()
+                .setLogLevel(HttpLogDetailLevel.BASIC)
+                .setSampleRate(0)
+                .setHostSampleRate("Investigated.Contoso.com", 1)))
+            .httpClient(new StatusHttpClient())
+            .build();
+
+        sendAndAwait(pipeline, "https://localhost/ok");
+        sendAndAwait(pipeline, "https://investigated.contoso.com/ok");
+
+        String logString = convertOutputStreamToString(logCaptureStream);
+        assertFalse(logString.contains("https://localhost/ok"));
+        assertTrue(logString.contains("--> GET https://investigated.contoso.com/ok"));
+        assertTrue(logString.contains("<-- 200 https://investigated.contoso.com/ok"));
+    }
+
+    /**
+     * Tests that a fraction of the calls is logged with a sample rate between 0 and 1.
+     */
+    @Test
+    @ResourceLock("SYSTEM_OUT")
+    public void sampleRateLogsAFractionOfTheCalls() {
+        HttpPipeline pipeline = new HttpPipelineBuilder()
+            .policies(new HttpLoggingPolicy(new HttpLogOptions()
+                .setLogLevel(HttpLogDetailLevel.BASIC)
+                .setSampleRate(0.5)))
+            .httpClient(new StatusHttpClient())
+            .build();
+
+        for (int i = 0; i < 200; i++) {
+            sendAndAwait(pipeline, "https://localhost/ok");
+        }
+
+        String logString = convertOutputStreamToString(logCaptureStream);
+        int logged = logString.split("--> GET https://localhost/ok", -1).length - 1;
+        assertTrue(logged > 50 && logged < 150, "Logged " + logged + " of 200 calls.");
+    }
+
+    @Test
+    public void invalidSamplingOptionsAreRejected() {
+        HttpLogOptions options = new HttpLogOptions();
+        assertThrows(IllegalArgumentException.class, () -> options.setSampleRate(1.5));
+        assertThrows(IllegalArgumentException.class, () -> options.setSampleRate(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> options.setHostSampleRate("localhost", -0.1));
+        assertThrows(NullPointerException.class, () -> options.setHostSampleRate(null, 1));
+        assertThrows(IllegalArgumentException.class, () -> options.setSlowCallThreshold(Duration.ofMillis(-1)));
+    }
+
 //    @ParameterizedTest(name = "[{index}] {displayName}")
 //    @EnumSource(value = HttpLogDetailLevel.class, mode = EnumSource.Mode.INCLUDE,
 //        names = { "BODY_AND_HEADERS" })
@@ -315,6 +529,61 @@ public class HttpLoggingPolicyTests {
         }
     }
 
+    private static void sendAndAwait(HttpPipeline pipeline, String url) {
+        CountDownLatch latch = new CountDownLatch(1);
+        pipeline.send(new HttpRequest(HttpMethod.GET, url), RequestContext.NONE, CancellationToken.NONE,
+            new HttpCallback() {
+                @Override
+                public void onSuccess(HttpResponse response) {
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    latch.countDown();
+                }
+            });
+        awaitOnLatch(latch, url);
+    }
+
+    /**
+     * Answers "/failed" with a 500 response, "/slow" with a 200 response after 200 ms, "/error" with an error and
+     * any other path with a 200 response.
+     */
+    private static final class StatusHttpClient extends NoOpHttpClient {
+        @Override
+        public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+            final String path = httpRequest.getUrl().getPath();
+            if (path.equals("/failed")) {
+                httpCallback.onSuccess(new MockHttpResponse(httpRequest, 500));
+            } else if (path.equals("/error")) {
+                httpCallback.onError(new IOException("Connection reset."));
+            } else {
+                if (path.equals("/slow")) {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200));
+            }
+        }
+    }
+
+    private void awaitOnLog(String expected) {
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while (!convertOutputStreamToString(logCaptureStream).contains(expected)
+            && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        assertTrue(convertOutputStreamToString(logCaptureStream).contains(expected), expected + " was not logged.");
+    }
+
     private static void awaitOnLatch(CountDownLatch latch, String method) {
         try {
             latch.await(10, TimeUnit.SECONDS);
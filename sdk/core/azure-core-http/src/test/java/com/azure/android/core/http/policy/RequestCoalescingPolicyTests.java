@@ -0,0 +1,235 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipeline;
+import com.azure.android.core.http.HttpPipelineBuilder;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestCoalescingPolicyTests {
+    private static final String URL = "https://localhost/threads/1";
+
+    @Test
+    public void identicalRequestsShareOneCall() throws InterruptedException {
+        final PendingHttpClient httpClient = new PendingHttpClient();
+        final RequestCoalescingPolicy policy = new RequestCoalescingPolicy();
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        final List<Result> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(send(pipeline, new HttpRequest(HttpMethod.GET, URL), CancellationToken.NONE));
+        }
+        awaitRequests(httpClient, policy, 1, 2);
+
+        httpClient.calls.get(0).respond("{\"topic\":\"hello\"}");
+        HttpResponse previous = null;
+        for (Result result : results) {
+            assertTrue(result.latch.await(10, TimeUnit.SECONDS));
+            final HttpResponse response = result.response.get();
+            assertEquals(200, response.getStatusCode());
+            // Each caller can read its copy of the body more than once.
+            assertEquals("{\"topic\":\"hello\"}", response.getBodyAsString());
+            assertEquals("{\"topic\":\"hello\"}", new String(response.getBodyAsByteArray(), StandardCharsets.UTF_8));
+            assertNotSame(previous, response);
+            previous = response;
+        }
+
+        // A request made after the call completed makes a new call.
+        send(pipeline, new HttpRequest(HttpMethod.GET, URL), CancellationToken.NONE);
+        awaitRequests(httpClient, policy, 2, 2);
+    }
+
+    @Test
+    public void requestsWithDifferentKeysAreNotCoalesced() throws InterruptedException {
+        final PendingHttpClient httpClient = new PendingHttpClient();
+        final RequestCoalescingPolicy policy = new RequestCoalescingPolicy();
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        send(pipeline, new HttpRequest(HttpMethod.GET, URL).setHeader("Authorization", "Bearer a"),
+            CancellationToken.NONE);
+        send(pipeline, new HttpRequest(HttpMethod.GET, URL).setHeader("Authorization", "Bearer b"),
+            CancellationToken.NONE);
+        send(pipeline, new HttpRequest(HttpMethod.GET, URL + "/participants"), CancellationToken.NONE);
+        send(pipeline, new HttpRequest(HttpMethod.POST, URL), CancellationToken.NONE);
+        send(pipeline, new HttpRequest(HttpMethod.POST, URL), CancellationToken.NONE);
+
+        awaitRequests(httpClient, policy, 5, 0);
+    }
+
+    @Test
+    public void cancellingOneWaiterKeepsSharedCall() throws InterruptedException {
+        final PendingHttpClient httpClient = new PendingHttpClient();
+        final RequestCoalescingPolicy policy = new RequestCoalescingPolicy();
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        final Result first = send(pipeline, new HttpRequest(HttpMethod.GET, URL), new CancellationToken());
+        awaitRequests(httpClient, policy, 1, 0);
+        final CancellationToken secondToken = new CancellationToken();
+        final Result second = send(pipeline, new HttpRequest(HttpMethod.GET, URL), secondToken);
+        awaitRequests(httpClient, policy, 1, 1);
+
+        secondToken.cancel();
+        assertTrue(second.latch.await(10, TimeUnit.SECONDS));
+        assertTrue(second.error.get() instanceof IOException);
+        assertFalse(httpClient.calls.get(0).cancellationToken.isCancellationRequested());
+
+        httpClient.calls.get(0).respond("ok");
+        assertTrue(first.latch.await(10, TimeUnit.SECONDS));
+        assertEquals("ok", first.response.get().getBodyAsString());
+    }
+
+    @Test
+    public void cancellingRequestThatMadeCallLeavesCallToOthers() throws InterruptedException {
+        final PendingHttpClient httpClient = new PendingHttpClient();
+        final RequestCoalescingPolicy policy = new RequestCoalescingPolicy();
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        final CancellationToken firstToken = new CancellationToken();
+        final Result first = send(pipeline, new HttpRequest(HttpMethod.GET, URL), firstToken);
+        awaitRequests(httpClient, policy, 1, 0);
+        final Result second = send(pipeline, new HttpRequest(HttpMethod.GET, URL), new CancellationToken());
+        awaitRequests(httpClient, policy, 1, 1);
+
+        // The call has a token of its own, cancelling the request that made it doesn't cancel it.
+        assertNotSame(firstToken, httpClient.calls.get(0).cancellationToken);
+        firstToken.cancel();
+        assertFalse(httpClient.calls.get(0).cancellationToken.isCancellationRequested());
+
+        httpClient.calls.get(0).respond("ok");
+        assertTrue(second.latch.await(10, TimeUnit.SECONDS));
+        assertEquals("ok", second.response.get().getBodyAsString());
+        assertTrue(first.latch.await(10, TimeUnit.SECONDS));
+        assertTrue(first.error.get() instanceof IOException);
+        assertEquals(1, httpClient.calls.size());
+    }
+
+    @Test
+    public void cancellingAllWaitersCancelsSharedCall() throws InterruptedException {
+        final PendingHttpClient httpClient = new PendingHttpClient();
+        final RequestCoalescingPolicy policy = new RequestCoalescingPolicy();
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        final CancellationToken firstToken = new CancellationToken();
+        final CancellationToken secondToken = new CancellationToken();
+        final Result first = send(pipeline, new HttpRequest(HttpMethod.GET, URL), firstToken);
+        awaitRequests(httpClient, policy, 1, 0);
+        final Result second = send(pipeline, new HttpRequest(HttpMethod.GET, URL), secondToken);
+        awaitRequests(httpClient, policy, 1, 1);
+
+        secondToken.cancel();
+        firstToken.cancel();
+        assertTrue(first.latch.await(10, TimeUnit.SECONDS));
+        assertTrue(second.latch.await(10, TimeUnit.SECONDS));
+        assertTrue(httpClient.calls.get(0).cancellationToken.isCancellationRequested());
+
+        // The cancelled call is no longer shared.
+        send(pipeline, new HttpRequest(HttpMethod.GET, URL), CancellationToken.NONE);
+        awaitRequests(httpClient, policy, 2, 1);
+    }
+
+    @Test
+    public void errorIsDeliveredToAllWaiters() throws InterruptedException {
+        final PendingHttpClient httpClient = new PendingHttpClient();
+        final RequestCoalescingPolicy policy = new RequestCoalescingPolicy();
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        final Result first = send(pipeline, new HttpRequest(HttpMethod.GET, URL), CancellationToken.NONE);
+        final Result second = send(pipeline, new HttpRequest(HttpMethod.GET, URL), CancellationToken.NONE);
+        awaitRequests(httpClient, policy, 1, 1);
+        final IOException error = new IOException("Connection reset.");
+        httpClient.calls.get(0).callback.onError(error);
+
+        assertTrue(first.latch.await(10, TimeUnit.SECONDS));
+        assertTrue(second.latch.await(10, TimeUnit.SECONDS));
+        assertEquals(error, first.error.get());
+        assertEquals(error, second.error.get());
+    }
+
+    private static Result send(HttpPipeline pipeline, HttpRequest request, CancellationToken cancellationToken) {
+        final Result result = new Result();
+        pipeline.send(request, RequestContext.NONE, cancellationToken, result);
+        return result;
+    }
+
+    private static void awaitRequests(PendingHttpClient httpClient, RequestCoalescingPolicy policy,
+                                      int callCount, int coalescedRequestCount) throws InterruptedException {
+        // The pipeline runs the policies on the dispatcher threads.
+        final long deadline = System.currentTimeMillis() + 10000;
+        while ((httpClient.calls.size() < callCount || policy.getCoalescedRequestCount() < coalescedRequestCount)
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        assertEquals(callCount, httpClient.calls.size());
+        assertEquals(coalescedRequestCount, policy.getCoalescedRequestCount());
+    }
+
+    /**
+     * Holds the calls until the test responds to them or they are cancelled.
+     */
+    private static final class PendingHttpClient extends NoOpHttpClient {
+        private final List<PendingCall> calls = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+            this.calls.add(new PendingCall(httpRequest, cancellationToken, httpCallback));
+            cancellationToken.registerOnCancel(() -> httpCallback.onError(new IOException("Canceled.")));
+        }
+    }
+
+    private static final class PendingCall {
+        private final HttpRequest request;
+        private final CancellationToken cancellationToken;
+        private final HttpCallback callback;
+
+        PendingCall(HttpRequest request, CancellationToken cancellationToken, HttpCallback callback) {
+            this.request = request;
+            this.cancellationToken = cancellationToken;
+            this.callback = callback;
+        }
+
+        void respond(String body) {
+            this.callback.onSuccess(new MockHttpResponse(this.request, 200, body.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    private static final class Result implements HttpCallback {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final AtomicReference<HttpResponse> response = new AtomicReference<>();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        @Override
+        public void onSuccess(HttpResponse response) {
+            this.response.set(response);
+            this.latch.countDown();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error.set(error);
+            this.latch.countDown();
+        }
+    }
+}
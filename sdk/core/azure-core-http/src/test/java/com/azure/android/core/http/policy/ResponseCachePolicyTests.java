@@ -0,0 +1,384 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.policy;
+
+import com.azure.android.core.http.HttpCallback;
+import com.azure.android.core.http.HttpHeaders;
+import com.azure.android.core.http.HttpMethod;
+import com.azure.android.core.http.HttpPipeline;
+import com.azure.android.core.http.HttpPipelineBuilder;
+import com.azure.android.core.http.HttpRequest;
+import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.threeten.bp.Clock;
+import org.threeten.bp.Instant;
+import org.threeten.bp.ZoneId;
+import org.threeten.bp.ZoneOffset;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResponseCachePolicyTests {
+    private static final String URL = "https://localhost/threads/1";
+
+    @Test
+    public void freshResponseIsServedFromCache() {
+        final MutableClock clock = new MutableClock();
+        final VersionedHttpClient httpClient = new VersionedHttpClient("Cache-Control", "max-age=60");
+        final ResponseCachePolicy policy = new ResponseCachePolicy(new ResponseCacheOptions().setClock(clock));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        assertEquals("v1", send(pipeline, HttpMethod.GET).getBodyAsString());
+        clock.advanceSeconds(59);
+        assertEquals("v1", send(pipeline, HttpMethod.GET).getBodyAsString());
+        assertEquals(1, httpClient.requests.size());
+        assertEquals(1, policy.getHitCount());
+
+        // Without a validator, the expired response is fetched again.
+        clock.advanceSeconds(2);
+        assertEquals("v2", send(pipeline, HttpMethod.GET).getBodyAsString());
+        assertEquals(2, httpClient.requests.size());
+        assertNull(httpClient.requests.get(1).getHeaders().getValue("If-None-Match"));
+    }
+
+    @Test
+    public void staleResponseIsRevalidatedWithETag() {
+        final MutableClock clock = new MutableClock();
+        final VersionedHttpClient httpClient = new VersionedHttpClient("Cache-Control", "max-age=10");
+        httpClient.etag = "\"1\"";
+        final ResponseCachePolicy policy = new ResponseCachePolicy(new ResponseCacheOptions().setClock(clock));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        assertEquals("v1", send(pipeline, HttpMethod.GET).getBodyAsString());
+        clock.advanceSeconds(11);
+        final HttpResponse revalidated = send(pipeline, HttpMethod.GET);
+        assertEquals(200, revalidated.getStatusCode());
+        assertEquals("v1", revalidated.getBodyAsString());
+        assertEquals("\"1\"", httpClient.requests.get(1).getHeaders().getValue("If-None-Match"));
+        assertEquals(1, policy.getConditionalHitCount());
+
+        // The 304 response refreshed the cached response.
+        clock.advanceSeconds(5);
+        assertEquals("v1", send(pipeline, HttpMethod.GET).getBodyAsString());
+        assertEquals(2, httpClient.requests.size());
+        assertEquals(1, policy.getHitCount());
+    }
+
+    @Test
+    public void staleResponseIsRevalidatedWithLastModified() {
+        final MutableClock clock = new MutableClock();
+        final VersionedHttpClient httpClient = new VersionedHttpClient("Cache-Control", "no-cache");
+        httpClient.lastModified = "Mon, 01 Jan 2024 00:00:00 GMT";
+        final ResponseCachePolicy policy = new ResponseCachePolicy(new ResponseCacheOptions().setClock(clock));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        send(pipeline, HttpMethod.GET);
+        assertEquals("v1", send(pipeline, HttpMethod.GET).getBodyAsString());
+        assertEquals("Mon, 01 Jan 2024 00:00:00 GMT",
+            httpClient.requests.get(1).getHeaders().getValue("If-Modified-Since"));
+        assertEquals(1, policy.getConditionalHitCount());
+
+        // The resource changed, the full response replaces the cached one.
+        httpClient.lastModified = "Tue, 02 Jan 2024 00:00:00 GMT";
+        assertEquals("v3", send(pipeline, HttpMethod.GET).getBodyAsString());
+        assertEquals("v3", send(pipeline, HttpMethod.GET).getBodyAsString());
+        assertEquals(2, policy.getConditionalHitCount());
+    }
+
+    @Test
+    public void lastModifiedResponseIsRevalidatedWithoutHeuristicFreshness() {
+        final MutableClock clock = new MutableClock();
+        final VersionedHttpClient httpClient = new VersionedHttpClient("Content-Type", "text/plain");
+        httpClient.lastModified = "Sun, 01 Oct 2023 00:00:00 GMT";
+        final ResponseCachePolicy policy = new ResponseCachePolicy(new ResponseCacheOptions().setClock(clock));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        send(pipeline, HttpMethod.GET);
+        clock.advanceSeconds(1);
+        assertEquals("v1", send(pipeline, HttpMethod.GET).getBodyAsString());
+        assertEquals(2, httpClient.requests.size());
+        assertEquals("Sun, 01 Oct 2023 00:00:00 GMT",
+            httpClient.requests.get(1).getHeaders().getValue("If-Modified-Since"));
+        assertEquals(0, policy.getHitCount());
+        assertEquals(1, policy.getConditionalHitCount());
+    }
+
+    @Test
+    public void lastModifiedResponseIsFreshWithHeuristicFreshness() {
+        final MutableClock clock = new MutableClock();
+        final VersionedHttpClient httpClient = new VersionedHttpClient("Content-Type", "text/plain");
+        // Modified 92 days before the response, fresh for 10% of that.
+        httpClient.lastModified = "Sun, 01 Oct 2023 00:00:00 GMT";
+        final ResponseCachePolicy policy = new ResponseCachePolicy(new ResponseCacheOptions()
+            .setClock(clock)
+            .setHeuristicFreshnessEnabled(true));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        send(pipeline, HttpMethod.GET);
+        clock.advanceSeconds(TimeUnit.DAYS.toSeconds(9));
+        assertEquals("v1", send(pipeline, HttpMethod.GET).getBodyAsString());
+        assertEquals(1, httpClient.requests.size());
+        assertEquals(1, policy.getHitCount());
+
+        clock.advanceSeconds(TimeUnit.DAYS.toSeconds(1));
+        assertEquals("v1", send(pipeline, HttpMethod.GET).getBodyAsString());
+        assertEquals(2, httpClient.requests.size());
+        assertEquals(1, policy.getConditionalHitCount());
+    }
+
+    @Test
+    public void noStoreResponseIsNotCached() {
+        final VersionedHttpClient httpClient = new VersionedHttpClient("Cache-Control", "no-store, max-age=60");
+        final ResponseCachePolicy policy = new ResponseCachePolicy();
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        assertEquals("v1", send(pipeline, HttpMethod.GET).getBodyAsString());
+        assertEquals("v2", send(pipeline, HttpMethod.GET).getBodyAsString());
+        assertEquals(0, policy.getHitCount());
+    }
+
+    @Test
+    public void unsafeRequestInvalidatesCachedResponse() {
+        final VersionedHttpClient httpClient = new VersionedHttpClient("Cache-Control", "max-age=60");
+        final ResponseCachePolicy policy = new ResponseCachePolicy();
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        assertEquals("v1", send(pipeline, HttpMethod.GET).getBodyAsString());
+        send(pipeline, HttpMethod.PATCH);
+        assertEquals("v3", send(pipeline, HttpMethod.GET).getBodyAsString());
+        assertEquals(0, policy.getHitCount());
+    }
+
+    @Test
+    public void responseVaryingOnRequestHeaderIsMatched() {
+        final VersionedHttpClient httpClient = new VersionedHttpClient("Cache-Control", "max-age=60");
+        httpClient.vary = "Accept-Language";
+        final ResponseCachePolicy policy = new ResponseCachePolicy();
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        assertEquals("v1", send(pipeline, new HttpRequest(HttpMethod.GET, URL)
+            .setHeader("Accept-Language", "en")).getBodyAsString());
+        assertEquals("v1", send(pipeline, new HttpRequest(HttpMethod.GET, URL)
+            .setHeader("Accept-Language", "en")).getBodyAsString());
+        assertEquals("v2", send(pipeline, new HttpRequest(HttpMethod.GET, URL)
+            .setHeader("Accept-Language", "fr")).getBodyAsString());
+    }
+
+    @Test
+    public void responseIsServedOnlyToRequestsWithSameCredentials() {
+        final VersionedHttpClient httpClient = new VersionedHttpClient("Cache-Control", "max-age=60");
+        final ResponseCachePolicy policy = new ResponseCachePolicy();
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        assertEquals("v1", send(pipeline, new HttpRequest(HttpMethod.GET, URL)
+            .setHeader("Authorization", "Bearer alice")).getBodyAsString());
+        assertEquals("v1", send(pipeline, new HttpRequest(HttpMethod.GET, URL)
+            .setHeader("Authorization", "Bearer alice")).getBodyAsString());
+        assertEquals("v2", send(pipeline, new HttpRequest(HttpMethod.GET, URL)
+            .setHeader("Authorization", "Bearer bob")).getBodyAsString());
+        assertEquals("v3", send(pipeline, HttpMethod.GET).getBodyAsString());
+        assertEquals(1, policy.getHitCount());
+    }
+
+    @Test
+    public void credentialsAndCookiesAreNotStored(@TempDir File directory) throws IOException {
+        final VersionedHttpClient httpClient = new VersionedHttpClient("Cache-Control", "max-age=60");
+        httpClient.setCookie = "session=secret";
+        final ResponseCacheOptions options = new ResponseCacheOptions().setDiskDirectory(directory);
+        final ResponseCachePolicy policy = new ResponseCachePolicy(options);
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        final HttpRequest request = new HttpRequest(HttpMethod.GET, URL).setHeader("Authorization", "Bearer alice");
+        assertEquals("session=secret", send(pipeline, request).getHeaderValue("Set-Cookie"));
+        final HttpResponse cachedResponse = send(pipeline, new HttpRequest(HttpMethod.GET, URL)
+            .setHeader("Authorization", "Bearer alice"));
+        assertEquals(1, policy.getHitCount());
+        assertNull(cachedResponse.getHeaderValue("Set-Cookie"));
+
+        final File[] files = awaitEntryFiles(directory, 1);
+        final String content = new String(Files.readAllBytes(files[0].toPath()), StandardCharsets.ISO_8859_1);
+        assertFalse(content.contains("alice"));
+        assertFalse(content.contains("secret"));
+    }
+
+    @Test
+    public void diskTierSurvivesNewPolicy(@TempDir File directory) {
+        final MutableClock clock = new MutableClock();
+        final VersionedHttpClient httpClient = new VersionedHttpClient("Cache-Control", "max-age=60");
+        final ResponseCacheOptions options = new ResponseCacheOptions().setClock(clock).setDiskDirectory(directory);
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient)
+            .policies(new ResponseCachePolicy(options)).build();
+        assertEquals("v1", send(pipeline, HttpMethod.GET).getBodyAsString());
+        awaitEntryFiles(directory, 1);
+
+        final ResponseCachePolicy policy = new ResponseCachePolicy(options);
+        final HttpPipeline newPipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+        clock.advanceSeconds(30);
+        final HttpResponse response = send(newPipeline, HttpMethod.GET);
+        assertEquals("v1", response.getBodyAsString());
+        assertEquals("max-age=60", response.getHeaderValue("Cache-Control"));
+        assertEquals(1, policy.getHitCount());
+        assertEquals(1, httpClient.requests.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedResponseIsEvicted() {
+        final VersionedHttpClient httpClient = new VersionedHttpClient("Cache-Control", "max-age=60");
+        // Room for two responses only.
+        final ResponseCachePolicy policy = new ResponseCachePolicy(new ResponseCacheOptions().setMaxMemorySize(120));
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        send(pipeline, new HttpRequest(HttpMethod.GET, URL + "/a"));
+        send(pipeline, new HttpRequest(HttpMethod.GET, URL + "/b"));
+        send(pipeline, new HttpRequest(HttpMethod.GET, URL + "/a"));
+        send(pipeline, new HttpRequest(HttpMethod.GET, URL + "/c"));
+        assertEquals(1, policy.getHitCount());
+
+        send(pipeline, new HttpRequest(HttpMethod.GET, URL + "/a"));
+        assertEquals(2, policy.getHitCount());
+        send(pipeline, new HttpRequest(HttpMethod.GET, URL + "/b"));
+        assertEquals(2, policy.getHitCount());
+    }
+
+    @Test
+    public void requestNoCacheBypassesFreshResponse() {
+        final VersionedHttpClient httpClient = new VersionedHttpClient("Cache-Control", "max-age=60");
+        final ResponseCachePolicy policy = new ResponseCachePolicy();
+        final HttpPipeline pipeline = new HttpPipelineBuilder().httpClient(httpClient).policies(policy).build();
+
+        send(pipeline, HttpMethod.GET);
+        assertEquals("v2", send(pipeline, new HttpRequest(HttpMethod.GET, URL)
+            .setHeader("Cache-Control", "no-cache")).getBodyAsString());
+        assertEquals(0, policy.getHitCount());
+    }
+
+    private static File[] awaitEntryFiles(File directory, int count) {
+        // The disk tier is written on a background thread.
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (true) {
+            final File[] files = directory.listFiles((dir, name) -> name.endsWith(".entry"));
+            if ((files != null && files.length >= count) || System.currentTimeMillis() > deadline) {
+                assertEquals(count, files == null ? 0 : files.length);
+                return files;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static HttpResponse send(HttpPipeline pipeline, HttpMethod method) {
+        return send(pipeline, new HttpRequest(method, URL));
+    }
+
+    private static HttpResponse send(HttpPipeline pipeline, HttpRequest request) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final HttpResponse[] response = new HttpResponse[1];
+        pipeline.send(request, RequestContext.NONE, CancellationToken.NONE, new HttpCallback() {
+            @Override
+            public void onSuccess(HttpResponse httpResponse) {
+                response[0] = httpResponse;
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                latch.countDown();
+            }
+        });
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS), "The call did not complete.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return response[0];
+    }
+
+    /**
+     * Responds with a new version of the resource to each request, or with 304 to a request whose validators
+     * match the current one.
+     */
+    private static final class VersionedHttpClient extends NoOpHttpClient {
+        private final List<HttpRequest> requests = new CopyOnWriteArrayList<>();
+        private final String headerName;
+        private final String headerValue;
+        private volatile String etag;
+        private volatile String lastModified;
+        private volatile String vary;
+        private volatile String setCookie;
+
+        VersionedHttpClient(String headerName, String headerValue) {
+            this.headerName = headerName;
+            this.headerValue = headerValue;
+        }
+
+        @Override
+        public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+            this.requests.add(httpRequest);
+            final HttpHeaders headers = new HttpHeaders().put(this.headerName, this.headerValue);
+            if (this.etag != null) {
+                headers.put("ETag", this.etag);
+            }
+            if (this.lastModified != null) {
+                headers.put("Last-Modified", this.lastModified);
+            }
+            if (this.vary != null) {
+                headers.put("Vary", this.vary);
+            }
+            if (this.setCookie != null) {
+                headers.put("Set-Cookie", this.setCookie);
+            }
+            final String ifNoneMatch = httpRequest.getHeaders().getValue("If-None-Match");
+            final String ifModifiedSince = httpRequest.getHeaders().getValue("If-Modified-Since");
+            if ((ifNoneMatch != null && ifNoneMatch.equals(this.etag))
+                || (ifModifiedSince != null && ifModifiedSince.equals(this.lastModified))) {
+                httpCallback.onSuccess(new MockHttpResponse(httpRequest, 304, headers));
+                return;
+            }
+            final String body = "v" + this.requests.size();
+            httpCallback.onSuccess(new MockHttpResponse(httpRequest, 200, headers,
+                body.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant instant = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advanceSeconds(long seconds) {
+            this.instant = this.instant.plusSeconds(seconds);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return this.instant;
+        }
+    }
+}
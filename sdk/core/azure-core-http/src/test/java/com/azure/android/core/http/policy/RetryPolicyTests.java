@@ -10,6 +10,7 @@ import com.azure.android.core.http.HttpPipeline;
 import com.azure.android.core.http.HttpPipelineBuilder;
 import com.azure.android.core.http.HttpRequest;
 import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.RequestDeadline;
 import com.azure.android.core.util.CancellationToken;
 import com.azure.android.core.util.RequestContext;
 
@@ -31,6 +32,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class RetryPolicyTests {
 
@@ -199,6 +202,102 @@ public class RetryPolicyTests {
         awaitOnLatch(latch, "exponentialDelayRetry");
     }
 
+    @Test
+    public void retryBudgetLimitsRetries() {
+        final AtomicInteger sendCount = new AtomicInteger();
+        final RetryBudget retryBudget = new RetryBudget(2, 0);
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new NoOpHttpClient() {
+                @Override
+                public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+                    sendCount.incrementAndGet();
+                    httpCallback.onSuccess(new MockHttpResponse(httpRequest, 503));
+                }
+            })
+            .policies(new RetryPolicy(new FixedDelay(3, Duration.ofMillis(0)), retryBudget))
+            .build();
+
+        // The first call spends the two tokens, the third retry is rejected.
+        assertEquals(503, sendAndAwait(pipeline, "retryBudgetLimitsRetries").getStatusCode());
+        assertEquals(3, sendCount.get());
+        // The budget is exhausted, the second call is not retried at all.
+        assertEquals(503, sendAndAwait(pipeline, "retryBudgetLimitsRetries").getStatusCode());
+        assertEquals(4, sendCount.get());
+
+        assertEquals(0, retryBudget.getAvailableTokens());
+        assertEquals(2, retryBudget.getRetryCount());
+        assertEquals(2, retryBudget.getRejectedRetryCount());
+    }
+
+    @Test
+    public void retryBudgetExhaustionReturnsOriginalError() {
+        final IOException connectionError = new IOException("connection reset");
+        final RetryBudget retryBudget = new RetryBudget(1, 0);
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new NoOpHttpClient() {
+                @Override
+                public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+                    httpCallback.onError(connectionError);
+                }
+            })
+            .policies(new RetryPolicy(new FixedDelay(3, Duration.ofMillis(0)), retryBudget))
+            .build();
+
+        final Throwable[] error = new Throwable[1];
+        CountDownLatch latch = new CountDownLatch(1);
+        pipeline.send(new HttpRequest(HttpMethod.GET, "http://localhost/"), RequestContext.NONE, CancellationToken.NONE,
+            new HttpCallback() {
+                @Override
+                public void onSuccess(HttpResponse response) {
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    error[0] = throwable;
+                    latch.countDown();
+                }
+            });
+        awaitOnLatch(latch, "retryBudgetExhaustionReturnsOriginalError");
+
+        assertSame(connectionError, error[0]);
+        assertEquals(1, retryBudget.getRejectedRetryCount());
+    }
+
+    @Test
+    public void retryBudgetIsRefilledBySuccesses() {
+        final AtomicInteger sendCount = new AtomicInteger();
+        final RetryBudget retryBudget = new RetryBudget(1, 0.5);
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new NoOpHttpClient() {
+                @Override
+                public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+                    // Every odd attempt fails, every even attempt succeeds.
+                    final int code = sendCount.incrementAndGet() % 2 == 1 ? 500 : 200;
+                    httpCallback.onSuccess(new MockHttpResponse(httpRequest, code));
+                }
+            })
+            .policies(new RetryPolicy(new FixedDelay(1, Duration.ofMillis(0)), retryBudget))
+            .build();
+
+        // Spends the only token on the retry, the successful retry refills half a token.
+        assertEquals(200, sendAndAwait(pipeline, "retryBudgetIsRefilledBySuccesses").getStatusCode());
+        assertEquals(0, retryBudget.getAvailableTokens());
+        // Not enough tokens to retry.
+        assertEquals(500, sendAndAwait(pipeline, "retryBudgetIsRefilledBySuccesses").getStatusCode());
+        assertEquals(1, retryBudget.getRejectedRetryCount());
+        // Succeeds without retry, refilling the other half.
+        assertEquals(200, sendAndAwait(pipeline, "retryBudgetIsRefilledBySuccesses").getStatusCode());
+        assertEquals(1, retryBudget.getAvailableTokens());
+    }
+
+    @Test
+    public void retryBudgetRejectsInvalidArguments() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RetryBudget(0, 0.1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RetryBudget(10, -1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RetryBudget(1, 2));
+    }
+
     @Test
     public void retryConsumesBody() {
         final AtomicInteger bodyConsumptionCount = new AtomicInteger();
@@ -282,6 +381,79 @@ public class RetryPolicyTests {
     }
 
 
+    @Test
+    public void deadlineShortensRetryDelay() {
+        final AtomicInteger sendCount = new AtomicInteger();
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new NoOpHttpClient() {
+                @Override
+                public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+                    sendCount.incrementAndGet();
+                    httpCallback.onSuccess(new MockHttpResponse(httpRequest, 500));
+                }
+            })
+            .policies(new RetryPolicy(new FixedDelay(3, Duration.ofSeconds(10))))
+            .build();
+
+        final RequestContext requestContext = RequestContext.NONE
+            .addData(RequestDeadline.CONTEXT_KEY, RequestDeadline.after(Duration.ofMillis(300)));
+        final long start = System.nanoTime();
+        // The 10 seconds delay is shortened to fit the time left.
+        assertEquals(500, sendAndAwait(pipeline, requestContext, "deadlineShortensRetryDelay").getStatusCode());
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5);
+        assertTrue(sendCount.get() >= 2);
+    }
+
+    @Test
+    public void deadlineSurfacesThrottledResponseAskingForLongerDelay() {
+        final AtomicInteger sendCount = new AtomicInteger();
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new NoOpHttpClient() {
+                @Override
+                public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+                    sendCount.incrementAndGet();
+                    final HttpHeaders headers = new HttpHeaders().put("x-ms-retry-after-ms", "5000");
+                    httpCallback.onSuccess(new MockHttpResponse(httpRequest, 429, headers));
+                }
+            })
+            .policies(new RetryPolicy(new FixedDelay(3, Duration.ofMillis(0))))
+            .build();
+
+        final RequestContext requestContext = RequestContext.NONE
+            .addData(RequestDeadline.CONTEXT_KEY, RequestDeadline.after(Duration.ofSeconds(1)));
+        assertEquals(429, sendAndAwait(pipeline, requestContext,
+            "deadlineSurfacesThrottledResponseAskingForLongerDelay").getStatusCode());
+        assertEquals(1, sendCount.get());
+    }
+
+    @Test
+    public void deadlineStopsRetriesThatCannotCompleteInTime() {
+        final AtomicInteger sendCount = new AtomicInteger();
+        final HttpPipeline pipeline = new HttpPipelineBuilder()
+            .httpClient(new NoOpHttpClient() {
+                @Override
+                public void send(HttpRequest httpRequest, CancellationToken cancellationToken, HttpCallback httpCallback) {
+                    sendCount.incrementAndGet();
+                    try {
+                        Thread.sleep(300);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    httpCallback.onSuccess(new MockHttpResponse(httpRequest, 503));
+                }
+            })
+            .policies(new RetryPolicy(new FixedDelay(3, Duration.ofMillis(0))))
+            .build();
+
+        // After a 300 ms attempt, the 100 ms left can't fit another one.
+        final RequestContext requestContext = RequestContext.NONE
+            .addData(RequestDeadline.CONTEXT_KEY, RequestDeadline.after(Duration.ofMillis(400)));
+        assertEquals(503, sendAndAwait(pipeline, requestContext,
+            "deadlineStopsRetriesThatCannotCompleteInTime").getStatusCode());
+        assertEquals(1, sendCount.get());
+    }
+
+
     private static byte[] collectBytesInInputStream(InputStream is) {
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
         int nRead;
@@ -297,6 +469,31 @@ public class RetryPolicyTests {
         return buffer.toByteArray();
     }
 
+    private static HttpResponse sendAndAwait(HttpPipeline pipeline, String method) {
+        return sendAndAwait(pipeline, RequestContext.NONE, method);
+    }
+
+    private static HttpResponse sendAndAwait(HttpPipeline pipeline, RequestContext requestContext, String method) {
+        final HttpResponse[] httpResponse = new HttpResponse[1];
+        CountDownLatch latch = new CountDownLatch(1);
+        pipeline.send(new HttpRequest(HttpMethod.GET, "http://localhost/"), requestContext, CancellationToken.NONE,
+            new HttpCallback() {
+                @Override
+                public void onSuccess(HttpResponse response) {
+                    httpResponse[0] = response;
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    latch.countDown();
+                }
+            });
+        awaitOnLatch(latch, method);
+        assertNotNull(httpResponse[0]);
+        return httpResponse[0];
+    }
+
     private static void awaitOnLatch(CountDownLatch latch, String method) {
         try {
             latch.await(30, TimeUnit.SECONDS);
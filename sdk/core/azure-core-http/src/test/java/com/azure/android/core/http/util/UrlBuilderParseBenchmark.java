@@ -0,0 +1,149 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.http.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the throughput of {@link UrlBuilder#parse(String)} from several threads over chat URLs, where a few root
+ * URLs are parsed over and over and most of the others carry unique thread and message ids, and the memory allocated
+ * to parse a URL, set a query parameter and build the URL string back.
+ *
+ * <p>
+ * The benchmark takes several seconds and only runs when the {@code AZURE_RUN_BENCHMARKS} environment variable is
+ * set to {@code true}; the results are printed to the standard output.
+ * </p>
+ */
+@EnabledIfEnvironmentVariable(named = "AZURE_RUN_BENCHMARKS", matches = "true")
+public class UrlBuilderParseBenchmark {
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+    private static final long WARM_UP_MILLIS = 1000;
+    private static final long MEASURE_MILLIS = 3000;
+    // Three times the cache capacity, so the unique URLs keep evicting each other.
+    private static final int UNIQUE_URL_COUNT = 30_000;
+    private static final double ROOT_URL_RATIO = 0.3;
+
+    @Test
+    public void parseHighCardinalityChatUrls() throws InterruptedException {
+        final String[] rootUrls = createRootUrls();
+        final String[] uniqueUrls = createUniqueUrls();
+
+        System.out.println("UrlBuilder.parse, " + UNIQUE_URL_COUNT + " unique URLs, " + (int) (ROOT_URL_RATIO * 100)
+            + "% root URLs");
+        for (int threadCount : THREAD_COUNTS) {
+            final double opsPerSecond = run(threadCount, rootUrls, uniqueUrls);
+            System.out.printf("%d thread(s): %,.0f parses/s (%,.0f per thread)%n", threadCount, opsPerSecond,
+                opsPerSecond / threadCount);
+            assertTrue(opsPerSecond > 0);
+        }
+    }
+
+    @Test
+    public void parseSetQueryParameterAndBuildAllocations() {
+        final String[] uniqueUrls = createUniqueUrls();
+        final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+
+        long length = 0;
+        for (int i = 0; i < 200_000; i++) {
+            length += parseSetQueryParameterAndBuild(uniqueUrls[i % uniqueUrls.length]).length();
+        }
+
+        final int iterations = 1_000_000;
+        length = 0;
+        final long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            length += parseSetQueryParameterAndBuild(uniqueUrls[i % uniqueUrls.length]).length();
+        }
+        final long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.printf("parse, setQueryParameter and toString: %,d bytes allocated per call for %,d chars%n",
+            allocated / iterations, length / iterations);
+        assertTrue(length > 0);
+    }
+
+    private static String parseSetQueryParameterAndBuild(String url) {
+        return UrlBuilder.parse(url).setQueryParameter("api-version", "2021-10-01").toString();
+    }
+
+    private static double run(int threadCount, String[] rootUrls, String[] uniqueUrls) throws InterruptedException {
+        final AtomicLong operations = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        final long warmUpEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WARM_UP_MILLIS);
+        final long measureEnd = warmUpEnd + TimeUnit.MILLISECONDS.toNanos(MEASURE_MILLIS);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final long seed = t;
+            threads.add(new Thread(() -> {
+                final Random random = new Random(seed);
+                long measured = 0;
+                long now;
+                while ((now = System.nanoTime()) < measureEnd) {
+                    // Parse in small batches, to keep the clock reads out of the measurement.
+                    for (int i = 0; i < 64; i++) {
+                        final String url = random.nextDouble() < ROOT_URL_RATIO
+                            ? rootUrls[random.nextInt(rootUrls.length)]
+                            : uniqueUrls[random.nextInt(uniqueUrls.length)];
+                        UrlBuilder.parse(url);
+                    }
+                    if (now >= warmUpEnd) {
+                        measured += 64;
+                    }
+                }
+                operations.addAndGet(measured);
+                done.countDown();
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        done.await();
+        return operations.get() * 1000.0 / MEASURE_MILLIS;
+    }
+
+    private static String[] createRootUrls() {
+        return new String[] {
+            "https://contoso.communication.azure.com/chat/threads?api-version=2021-09-07",
+            "https://contoso.communication.azure.com/chat/threads?maxPageSize=20&api-version=2021-09-07",
+            "https://contoso.communication.azure.com/identities?api-version=2021-03-07",
+            "https://fabrikam.communication.azure.com/chat/threads?api-version=2021-09-07",
+        };
+    }
+
+    private static String[] createUniqueUrls() {
+        final Random random = new Random(42);
+        final String[] urls = new String[UNIQUE_URL_COUNT];
+        for (int i = 0; i < urls.length; i++) {
+            final String threadId = "19:" + UUID.randomUUID().toString().replace("-", "") + "@thread.v2";
+            switch (random.nextInt(3)) {
+                case 0:
+                    urls[i] = "https://contoso.communication.azure.com/chat/threads/" + threadId
+                        + "/messages?maxPageSize=50&api-version=2021-09-07";
+                    break;
+                case 1:
+                    urls[i] = "https://contoso.communication.azure.com/chat/threads/" + threadId + "/messages/"
+                        + (1600000000000L + random.nextInt(1_000_000)) + "?api-version=2021-09-07";
+                    break;
+                default:
+                    urls[i] = "https://contoso.communication.azure.com/chat/threads/" + threadId
+                        + "/participants?api-version=2021-09-07";
+                    break;
+            }
+        }
+        return urls;
+    }
+}
@@ -737,6 +737,77 @@ public class UrlBuilderTests {
         assertEquals("http://www.bing.com", builder.toString());
     }
 
+    @Test
+    public void parseAndSetExistingQueryParameter() {
+        final UrlBuilder builder = UrlBuilder.parse("https://www.bing.com/path?a=1&b=2&c=3")
+            .setQueryParameter("b", "twenty");
+        assertEquals("https://www.bing.com/path?a=1&b=twenty&c=3", builder.toString());
+        assertEquals("?a=1&b=twenty&c=3", builder.getQueryString());
+    }
+
+    @Test
+    public void parseAndSetNewQueryParameters() {
+        final UrlBuilder builder = UrlBuilder.parse("https://www.bing.com:8080/path")
+            .setQueryParameter("a", "1")
+            .setQueryParameter("b", "2")
+            .setQueryParameter("a", "3");
+        assertEquals("https://www.bing.com:8080/path?a=3&b=2", builder.toString());
+        assertEquals("https", builder.getScheme());
+        assertEquals("www.bing.com", builder.getHost());
+        assertEquals(8080, builder.getPort());
+        assertEquals("/path", builder.getPath());
+
+        final UrlBuilder hostOnly = UrlBuilder.parse("www.bing.com");
+        assertNull(hostOnly.getScheme());
+        assertNull(hostOnly.getPort());
+        assertNull(hostOnly.getPath());
+    }
+
+    @Test
+    public void parseAndSetQueryParametersThenChangeHost() {
+        final UrlBuilder builder = UrlBuilder.parse("https://www.bing.com/path?a=1")
+            .setQueryParameter("b", "2")
+            .setHost("www.example.com")
+            .setQueryParameter("a", "3");
+        assertEquals("https://www.example.com/path?a=3&b=2", builder.toString());
+    }
+
+    @Test
+    public void parseAndGetQuery() {
+        final UrlBuilder builder = UrlBuilder.parse("https://www.bing.com/path?a=1")
+            .setQueryParameter("b", "2");
+        builder.getQuery().remove("a");
+        assertEquals("https://www.bing.com/path?b=2", builder.toString());
+    }
+
+    @Test
+    public void parseNonCanonicalUrls() {
+        assertEquals("https://www.bing.com?a=2", UrlBuilder.parse("https://www.bing.com?a=1&a=2").toString());
+        assertEquals("https://www.bing.com?a=&b=1", UrlBuilder.parse("https://www.bing.com?a&b=1").toString());
+        assertEquals("https://www.bing.com?a=1", UrlBuilder.parse("https://www.bing.com?a=1&").toString());
+        assertEquals("https://www.bing.com?a=", UrlBuilder.parse("https://www.bing.com?a=b=c").toString());
+        assertEquals("https://www.bing.com", UrlBuilder.parse("https://www.bing.com?").toString());
+        assertEquals("www.bing.com/path", UrlBuilder.parse("www.bing.com:/path").toString());
+        assertEquals("www.bing.com", UrlBuilder.parse("://www.bing.com").toString());
+        assertEquals("https://www.bing.com?a=1&b=2",
+            UrlBuilder.parse("https://www.bing.com?a=1").setQueryParameter("b", "2").toString());
+    }
+
+    @Test
+    public void changingParsedUrlDoesNotChangeTheCachedOne() {
+        final String url = "https://www.bing.com/search?q=1";
+        UrlBuilder.parse(url).setQueryParameter("q", "2").setQueryParameter("a", "b");
+        UrlBuilder.parse(url).setHost("www.example.com").setQuery("x=y");
+        UrlBuilder.parse(url).getQuery().clear();
+
+        assertEquals(url, UrlBuilder.parse(url).toString());
+
+        final String nonCanonicalUrl = "https://www.bing.com?a&b=1";
+        UrlBuilder.parse(nonCanonicalUrl).setQueryParameter("b", "2").setPath("path");
+
+        assertEquals("https://www.bing.com?a=&b=1", UrlBuilder.parse(nonCanonicalUrl).toString());
+    }
+
     @Test
     public void parallelParsing() throws InterruptedException {
         Thread.UncaughtExceptionHandler handler = mock(Thread.UncaughtExceptionHandler.class);
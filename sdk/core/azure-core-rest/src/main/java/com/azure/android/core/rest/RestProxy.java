@@ -69,6 +69,12 @@ public final class RestProxy implements InvocationHandler {
             cancellationToken = (CancellationToken) swaggerMethodArgs[methodParser.cancellationTokenArgIndex];
         }
 
+        RequestContext requestContext = RequestContext.NONE;
+        if (methodParser.requestContextArgIndex != -1
+            && swaggerMethodArgs[methodParser.requestContextArgIndex] != null) {
+            requestContext = (RequestContext) swaggerMethodArgs[methodParser.requestContextArgIndex];
+        }
+
         final HttpRequest httpRequest;
         try {
             httpRequest = methodParser.mapToHttpRequest(swaggerMethodArgs);
@@ -80,7 +86,7 @@ public final class RestProxy implements InvocationHandler {
             return null;
         }
 
-        this.httpPipeline.send(httpRequest, RequestContext.NONE,
+        this.httpPipeline.send(httpRequest, requestContext,
             cancellationToken,
             new HttpPipelineCallback(methodParser, restCallback));
         return null;
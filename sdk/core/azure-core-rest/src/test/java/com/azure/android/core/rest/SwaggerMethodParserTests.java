@@ -4,6 +4,7 @@
 package com.azure.android.core.rest;
 
 import com.azure.android.core.util.CancellationToken;
+import com.azure.android.core.util.RequestContext;
 import com.azure.android.core.rest.annotation.ExpectedResponses;
 import com.azure.android.core.rest.annotation.Get;
 import com.azure.android.core.rest.annotation.Host;
@@ -107,4 +108,52 @@ public class SwaggerMethodParserTests {
         // it in any other index (like in this case) is ignored.
         Assertions.assertEquals(-1,  methodParser1.cancellationTokenArgIndex);
     }
+
+    @Host("https://azure.com")
+    @ServiceInterface(name = "myService")
+    interface RequestContextParamMethods {
+        @Get("my/url/path0")
+        @ExpectedResponses({200})
+        void requestContextBeforeCallback(Integer param0,
+                                          RequestContext requestContext,
+                                          Callback<Response<Void>> callback);
+
+        @Get("my/url/path1")
+        @ExpectedResponses({200})
+        void requestContextFirst(RequestContext requestContext,
+                                 Integer param0,
+                                 CancellationToken cancellationToken,
+                                 Callback<Response<Void>> callback);
+
+        @Get("my/url/path2")
+        @ExpectedResponses({200})
+        void noRequestContext(Integer param0, Callback<Response<Void>> callback);
+    }
+
+    @Test
+    public void requestContextIndex() throws NoSuchMethodException {
+        Class<RequestContextParamMethods> clazz = RequestContextParamMethods.class;
+
+        SwaggerMethodParser methodParser0 = new SwaggerMethodParser("https://raw.host.com",
+            clazz.getDeclaredMethod("requestContextBeforeCallback", Integer.class, RequestContext.class,
+                Callback.class),
+            new JacksonSerder(),
+            this.logger);
+        Assertions.assertEquals(1, methodParser0.requestContextArgIndex);
+
+        // Unlike the CancellationToken, the RequestContext can be at any index.
+        SwaggerMethodParser methodParser1 = new SwaggerMethodParser("https://raw.host.com",
+            clazz.getDeclaredMethod("requestContextFirst", RequestContext.class, Integer.class,
+                CancellationToken.class, Callback.class),
+            new JacksonSerder(),
+            this.logger);
+        Assertions.assertEquals(0, methodParser1.requestContextArgIndex);
+        Assertions.assertEquals(2, methodParser1.cancellationTokenArgIndex);
+
+        SwaggerMethodParser methodParser2 = new SwaggerMethodParser("https://raw.host.com",
+            clazz.getDeclaredMethod("noRequestContext", Integer.class, Callback.class),
+            new JacksonSerder(),
+            this.logger);
+        Assertions.assertEquals(-1, methodParser2.requestContextArgIndex);
+    }
 }
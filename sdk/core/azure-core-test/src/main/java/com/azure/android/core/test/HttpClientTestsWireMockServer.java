@@ -24,6 +24,7 @@ public class HttpClientTestsWireMockServer {
     private static final String UTF_32LE_BOM_RESPONSE = "/utf32LeBomBytes";
     private static final String BOM_WITH_SAME_HEADER = "/bomBytesWithSameHeader";
     private static final String BOM_WITH_DIFFERENT_HEADER = "/bomBytesWithDifferentHeader";
+    private static final String SLOW_RESPONSE = "/slowResponse";
 
     private static final byte[] UTF_8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
     private static final byte[] UTF_16BE_BOM = {(byte) 0xFE, (byte) 0xFF};
@@ -78,6 +79,10 @@ public class HttpClientTestsWireMockServer {
         server.stubFor(WireMock.get(BOM_WITH_DIFFERENT_HEADER).willReturn(WireMock.aResponse()
             .withBody(addBom(UTF_8_BOM)).withHeader("Content-Type", "charset=UTF-16")));
 
+        // Basic bytes after a delay longer than the deadline of the call.
+        server.stubFor(WireMock.get(SLOW_RESPONSE).willReturn(WireMock.aResponse().withBody(RETURN_BYTES)
+            .withFixedDelay(3000)));
+
         return server;
     }
 
@@ -8,9 +8,11 @@ import com.azure.android.core.http.HttpClient;
 import com.azure.android.core.http.HttpMethod;
 import com.azure.android.core.http.HttpRequest;
 import com.azure.android.core.http.HttpResponse;
+import com.azure.android.core.http.RequestDeadline;
 import com.azure.android.core.util.CancellationToken;
 
 import org.junit.jupiter.api.Test;
+import org.threeten.bp.Duration;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -19,6 +21,8 @@ import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Generic test suite for {@link HttpClient HttpClients}.
@@ -35,6 +39,7 @@ public abstract class HttpClientTests {
     private static final String UTF_32LE_BOM_RESPONSE = "utf32LeBomBytes";
     private static final String BOM_WITH_SAME_HEADER = "bomBytesWithSameHeader";
     private static final String BOM_WITH_DIFFERENT_HEADER = "bomBytesWithDifferentHeader";
+    private static final String SLOW_RESPONSE = "slowResponse";
 
     private static final byte[] EXPECTED_RETURN_BYTES = "Hello World!".getBytes(StandardCharsets.UTF_8);
 
@@ -152,6 +157,36 @@ public abstract class HttpClientTests {
         assertEquals(expected, actual);
     }
 
+    /**
+     * Tests that the deadline the pipeline tags the request with bounds the time the client waits for the response.
+     */
+    @Test
+    public void deadlineBoundsTheWaitForResponse() {
+        final HttpRequest request = new HttpRequest(HttpMethod.GET,
+            REQUEST_HOST + ":" + getWireMockPort() + "/" + SLOW_RESPONSE);
+        request.getTags().put(RequestDeadline.CONTEXT_KEY, RequestDeadline.after(Duration.ofMillis(500)));
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Throwable[] throwable = new Throwable[1];
+        final long start = System.nanoTime();
+        createHttpClient().send(request, CancellationToken.NONE, new HttpCallback() {
+            @Override
+            public void onSuccess(HttpResponse response) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                throwable[0] = error;
+                latch.countDown();
+            }
+        });
+        awaitOnLatch(latch, "deadlineBoundsTheWaitForResponse");
+
+        assertNotNull(throwable[0], "The call completed after its deadline.");
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2500);
+    }
+
     private String sendRequest(String requestPath, String method) {
         CountDownLatch latch = new CountDownLatch(1);
 
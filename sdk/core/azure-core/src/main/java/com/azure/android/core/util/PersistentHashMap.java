@@ -0,0 +1,196 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.azure.android.core.util;
+
+/**
+ * An immutable hash map whose {@link #put(Object, Object)} returns a new map sharing all but the path to the changed
+ * entry with this one, a hash array mapped trie.
+ *
+ * <p>
+ * Each level of the trie consumes 5 bits of the hash of the keys, a lookup visits at most 8 nodes. A node stores its
+ * entries and sub-nodes in an array sized to the bits set in its bitmap. The keys must not be null.
+ * </p>
+ */
+final class PersistentHashMap {
+    static final PersistentHashMap EMPTY = new PersistentHashMap(BitmapNode.EMPTY, 0);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return The number of entries.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Gets the value associated with a key.
+     *
+     * @param key The key.
+     * @param notFound The object to return if the map has no entry for the key.
+     * @return The value, {@code notFound} if the map has no entry for the key.
+     */
+    Object get(Object key, Object notFound) {
+        return this.root.find(0, key.hashCode(), key, notFound);
+    }
+
+    /**
+     * Creates a map with the entries of this map and the given entry, which replaces the entry of the same key.
+     *
+     * @param key The key.
+     * @param value The value.
+     * @return The new map, or this map if it already associates the key to the value.
+     */
+    PersistentHashMap put(Object key, Object value) {
+        final boolean[] added = new boolean[1];
+        final Node root = this.root.put(0, key.hashCode(), key, value, added);
+        return root == this.root ? this : new PersistentHashMap(root, added[0] ? this.size + 1 : this.size);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static Object[] copyWith(Object[] array, int index, Object element) {
+        final Object[] copy = array.clone();
+        copy[index] = element;
+        return copy;
+    }
+
+    private interface Node {
+        Object find(int shift, int hash, Object key, Object notFound);
+
+        Node put(int shift, int hash, Object key, Object value, boolean[] added);
+    }
+
+    /**
+     * A node holding the entries and sub-nodes of the hashes whose bits at its level are set in the bitmap. The array
+     * holds a key and value pair per bit, or null and the sub-node when several keys share the bits.
+     */
+    private static final class BitmapNode implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key, Object notFound) {
+            final int bit = bit(hash, shift);
+            if ((this.bitmap & bit) == 0) {
+                return notFound;
+            }
+            final int index = 2 * Integer.bitCount(this.bitmap & (bit - 1));
+            final Object entryKey = this.array[index];
+            final Object entryValue = this.array[index + 1];
+            if (entryKey == null) {
+                return ((Node) entryValue).find(shift + BITS, hash, key, notFound);
+            }
+            return key.equals(entryKey) ? entryValue : notFound;
+        }
+
+        @Override
+        public Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            final int bit = bit(hash, shift);
+            final int index = 2 * Integer.bitCount(this.bitmap & (bit - 1));
+            if ((this.bitmap & bit) == 0) {
+                final Object[] array = new Object[this.array.length + 2];
+                System.arraycopy(this.array, 0, array, 0, index);
+                array[index] = key;
+                array[index + 1] = value;
+                System.arraycopy(this.array, index, array, index + 2, this.array.length - index);
+                added[0] = true;
+                return new BitmapNode(this.bitmap | bit, array);
+            }
+
+            final Object entryKey = this.array[index];
+            final Object entryValue = this.array[index + 1];
+            if (entryKey == null) {
+                final Node node = ((Node) entryValue).put(shift + BITS, hash, key, value, added);
+                return node == entryValue ? this : new BitmapNode(this.bitmap, copyWith(this.array, index + 1, node));
+            }
+            if (key.equals(entryKey)) {
+                return value == entryValue
+                    ? this
+                    : new BitmapNode(this.bitmap, copyWith(this.array, index + 1, value));
+            }
+            added[0] = true;
+            final Object[] array = copyWith(this.array, index, null);
+            array[index + 1] = createNode(shift + BITS, entryKey, entryValue, hash, key, value);
+            return new BitmapNode(this.bitmap, array);
+        }
+
+        private static Node createNode(int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+            final int hash1 = key1.hashCode();
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            }
+            // Distinct hashes differ in some bit, the keys part at the latest on the level of that bit.
+            final boolean[] added = new boolean[1];
+            return EMPTY.put(shift, hash1, key1, value1, added).put(shift, hash2, key2, value2, added);
+        }
+    }
+
+    /**
+     * A node holding the key and value pairs of distinct keys with the same hash.
+     */
+    private static final class CollisionNode implements Node {
+        private final int hash;
+        private final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key, Object notFound) {
+            if (hash == this.hash) {
+                for (int i = 0; i < this.array.length; i += 2) {
+                    if (key.equals(this.array[i])) {
+                        return this.array[i + 1];
+                    }
+                }
+            }
+            return notFound;
+        }
+
+        @Override
+        public Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // Nest this node in a bitmap node of its level, next to the new entry.
+                return new BitmapNode(bit(this.hash, shift), new Object[] {null, this})
+                    .put(shift, hash, key, value, added);
+            }
+            for (int i = 0; i < this.array.length; i += 2) {
+                if (key.equals(this.array[i])) {
+                    return value == this.array[i + 1]
+                        ? this
+                        : new CollisionNode(this.hash, copyWith(this.array, i + 1, value));
+                }
+            }
+            final Object[] array = new Object[this.array.length + 2];
+            System.arraycopy(this.array, 0, array, 0, this.array.length);
+            array[this.array.length] = key;
+            array[this.array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(this.hash, array);
+        }
+    }
+}
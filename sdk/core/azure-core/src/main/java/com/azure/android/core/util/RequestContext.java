@@ -11,21 +11,26 @@ import com.azure.android.core.logging.ClientLogger;
  * {@code null}.
  * <p>
  * Each context object is immutable. The {@link #addData(Object, Object)} method creates a new
- * {@code RequestContext} object that refers to its parent, forming a linked list.
+ * {@code RequestContext} object holding the pairs of its parent and the new pair, which replaces the pair of the same
+ * key. A context of a few pairs holds them in a small array, a larger context in a persistent hash map sharing most
+ * of its structure with its parent, so {@link #getData(Object)} doesn't depend on the number of pairs added.
  */
 public class RequestContext {
-    private final ClientLogger logger = new ClientLogger(RequestContext.class);
+    private static final ClientLogger LOGGER = new ClientLogger(RequestContext.class);
+    // The pairs of a context of up to this many pairs are scanned in an array, the pairs of a larger one hashed.
+    private static final int MAX_INLINE_PAIRS = 8;
+    private static final Object NOT_FOUND = new Object();
 
     // All fields must be immutable.
     //
     /**
      * Signifies that no data needs to be passed to the pipeline.
      */
-    public static final RequestContext NONE = new RequestContext(null, null, null);
+    public static final RequestContext NONE = new RequestContext(new Object[0], null);
 
-    private final RequestContext parent;
-    private final Object key;
-    private final Object value;
+    // The keys at even indexes followed by their values, null for a context holding its pairs in the map.
+    private final Object[] pairs;
+    private final PersistentHashMap map;
 
     /**
      * Constructs a new {@link RequestContext} object.
@@ -35,18 +40,16 @@ public class RequestContext {
      * @throws IllegalArgumentException If {@code key} is {@code null}.
      */
     public RequestContext(Object key, Object value) {
-        this.parent = null;
         if (key == null) {
             throw new NullPointerException("'key' cannot be null.");
         }
-        this.key = key;
-        this.value = value;
+        this.pairs = new Object[] {key, value};
+        this.map = null;
     }
 
-    private RequestContext(RequestContext parent, Object key, Object value) {
-        this.parent = parent;
-        this.key = key;
-        this.value = value;
+    private RequestContext(Object[] pairs, PersistentHashMap map) {
+        this.pairs = pairs;
+        this.map = map;
     }
 
     /**
@@ -60,14 +63,35 @@ public class RequestContext {
      */
     public RequestContext addData(Object key, Object value) {
         if (key == null) {
-            throw logger.logExceptionAsError(new IllegalArgumentException("key cannot be null"));
+            throw LOGGER.logExceptionAsError(new IllegalArgumentException("key cannot be null"));
         }
-        return new RequestContext(this, key, value);
+        if (this.map != null) {
+            return new RequestContext(null, this.map.put(key, value));
+        }
+        for (int i = 0; i < this.pairs.length; i += 2) {
+            if (key.equals(this.pairs[i])) {
+                final Object[] pairs = this.pairs.clone();
+                pairs[i + 1] = value;
+                return new RequestContext(pairs, null);
+            }
+        }
+        if (this.pairs.length < 2 * MAX_INLINE_PAIRS) {
+            final Object[] pairs = new Object[this.pairs.length + 2];
+            System.arraycopy(this.pairs, 0, pairs, 0, this.pairs.length);
+            pairs[this.pairs.length] = key;
+            pairs[this.pairs.length + 1] = value;
+            return new RequestContext(pairs, null);
+        }
+        PersistentHashMap map = PersistentHashMap.EMPTY;
+        for (int i = 0; i < this.pairs.length; i += 2) {
+            map = map.put(this.pairs[i], this.pairs[i + 1]);
+        }
+        return new RequestContext(null, map.put(key, value));
     }
 
     /**
-     * Scans the linked-list of {@link RequestContext} objects looking for one with the specified key.
-     * Note that the first key found, i.e. the most recently added, will be returned.
+     * Looks for the value associated with the specified key.
+     * Note that the value most recently added with the key will be returned.
      *
      * @param key The key to search for.
      * @return The value of the specified key if it exists.
@@ -75,11 +99,15 @@ public class RequestContext {
      */
     public Option<Object> getData(Object key) {
         if (key == null) {
-            throw logger.logExceptionAsError(new IllegalArgumentException("key cannot be null"));
+            throw LOGGER.logExceptionAsError(new IllegalArgumentException("key cannot be null"));
+        }
+        if (this.map != null) {
+            final Object value = this.map.get(key, NOT_FOUND);
+            return value == NOT_FOUND ? Option.uninitialized() : Option.of(value);
         }
-        for (RequestContext c = this; c != null; c = c.parent) {
-            if (key.equals(c.key)) {
-                return Option.of(c.value);
+        for (int i = 0; i < this.pairs.length; i += 2) {
+            if (key.equals(this.pairs[i])) {
+                return Option.of(this.pairs[i + 1]);
             }
         }
         return Option.uninitialized();
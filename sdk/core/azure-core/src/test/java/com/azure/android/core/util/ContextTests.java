@@ -71,4 +71,84 @@ public class ContextTests {
     public void getValueKeyCannotBeNull() {
         assertThrows(IllegalArgumentException.class, () -> RequestContext.NONE.getData(null));
     }
+
+    @Test
+    public void largeContextHoldsAllPairs() {
+        RequestContext context = RequestContext.NONE;
+        for (int i = 0; i < 1000; i++) {
+            context = context.addData("key" + i, i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, context.getData("key" + i).getValue());
+        }
+        assertFalse(context.getData("key1000").isInitialized());
+    }
+
+    @Test
+    public void addDataLeavesTheParentUnchanged() {
+        // Cover both the contexts holding their pairs inline and the ones holding them in a map.
+        for (int size : new int[] {1, 8, 9, 100}) {
+            RequestContext parent = RequestContext.NONE;
+            for (int i = 0; i < size; i++) {
+                parent = parent.addData("key" + i, "value" + i);
+            }
+
+            final RequestContext replaced = parent.addData("key0", "newValue");
+            final RequestContext added = parent.addData("newKey", "newValue");
+
+            assertEquals("newValue", replaced.getData("key0").getValue());
+            assertEquals("newValue", added.getData("newKey").getValue());
+            assertEquals("value0", added.getData("key0").getValue());
+            assertEquals("value0", parent.getData("key0").getValue());
+            assertFalse(parent.getData("newKey").isInitialized());
+            assertFalse(replaced.getData("newKey").isInitialized());
+        }
+    }
+
+    @Test
+    public void keysWithSameHashAreToldApart() {
+        RequestContext context = RequestContext.NONE;
+        for (int i = 0; i < 50; i++) {
+            // 5 keys per hash, including hashes that differ in their highest bits only.
+            context = context.addData(new FixedHashKey((i % 10) << 28, i), i);
+        }
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, context.getData(new FixedHashKey((i % 10) << 28, i)).getValue());
+        }
+        assertFalse(context.getData(new FixedHashKey(0, 50)).isInitialized());
+
+        final RequestContext replaced = context.addData(new FixedHashKey(0, 10), "replaced");
+        assertEquals("replaced", replaced.getData(new FixedHashKey(0, 10)).getValue());
+        assertEquals(10, context.getData(new FixedHashKey(0, 10)).getValue());
+        assertEquals(20, replaced.getData(new FixedHashKey(0, 20)).getValue());
+    }
+
+    @Test
+    public void nullValueIsFound() {
+        RequestContext context = RequestContext.NONE;
+        for (int i = 0; i < 20; i++) {
+            context = context.addData("key" + i, null);
+            assertTrue(context.getData("key" + i).isInitialized());
+        }
+    }
+
+    private static final class FixedHashKey {
+        private final int hash;
+        private final int id;
+
+        private FixedHashKey(int hash, int id) {
+            this.hash = hash;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof FixedHashKey && ((FixedHashKey) other).id == this.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
 }